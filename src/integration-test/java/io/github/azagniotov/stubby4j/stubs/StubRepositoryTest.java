@@ -64,10 +64,10 @@ public class StubRepositoryTest {
     private HttpServletRequest mockHttpServletRequest;
 
     @Spy
-    private Cache<String, StubHttpLifecycle> spyDefaultCache = Cache.stubHttpLifecycleCache(false);
+    private Cache<String, StubMatch> spyDefaultCache = Cache.stubHttpLifecycleCache(false);
 
     @Spy
-    private Cache<String, StubHttpLifecycle> spyNoOpCache = Cache.stubHttpLifecycleCache(true);
+    private Cache<String, StubMatch> spyNoOpCache = Cache.stubHttpLifecycleCache(true);
 
     @Spy
     private StubRepository spyStubRepository = new StubRepository(CONFIG_FILE,
@@ -117,7 +117,7 @@ public class StubRepositoryTest {
         stubRepository.search(mockHttpServletRequest);
 
         verify(spyDefaultCache, times(7)).get(anyString());
-        verify(spyDefaultCache, times(1)).putIfAbsent(anyString(), any(StubHttpLifecycle.class));
+        verify(spyDefaultCache, times(1)).putIfAbsent(anyString(), any(StubMatch.class));
     }
 
     @Test
@@ -155,7 +155,7 @@ public class StubRepositoryTest {
         stubRepository.search(mockHttpServletRequest);
 
         verify(spyNoOpCache, times(7)).get(anyString());
-        verify(spyNoOpCache, times(7)).putIfAbsent(anyString(), any(StubHttpLifecycle.class));
+        verify(spyNoOpCache, times(7)).putIfAbsent(anyString(), any(StubMatch.class));
     }
 
     @Test
@@ -544,7 +544,7 @@ public class YamlParserTest {
         final StubResponse actualResponse = actualHttpLifecycle.getResponse(true);
 
         assertThat(actualResponse.getFile()).isEqualTo(new byte[]{});
-        assertThat(StringUtils.newStringUtf8(actualResponse.getResponseBodyAsBytes())).isEqualTo(expectedBody);
+        assertThat(actualResponse.getBody()).isEqualTo(expectedBody);
     }
 
     @Test
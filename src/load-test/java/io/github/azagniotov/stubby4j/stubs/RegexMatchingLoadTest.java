@@ -0,0 +1,114 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static com.google.common.truth.Truth.assertThat;
+import static io.github.azagniotov.stubby4j.utils.FileUtils.BR;
+
+/**
+ * Compares the single-pass {@link CompiledRegex} matching with the MULTILINE -> MULTILINE|DOTALL retry loop that
+ * was used before, over the regex stubs of the unit tests. Most of the stubs do not match most of the incoming
+ * values, so it is the cost of a miss that matters the most.
+ */
+public class RegexMatchingLoadTest {
+
+    private static final int WARM_UP_ITERATIONS = 20_000;
+    private static final int MEASURED_ITERATIONS = 200_000;
+
+    private static final String MULTILINE_SUBJECT = "Biggest tech companies in the world by their market value as of 2018:" + BR +
+            "Apple: $741.8 billion. In 2014, Apple, Inc. introduced a programming language called Swift." + BR +
+            "Alphabet: $367.6 billion. In October 2015, Google restructured the company so that Alphabet, Inc." + BR +
+            "became the parent company under which Google operates.";
+
+    // Stubbed value, incoming value
+    private static final String[][] CORPUS = new String[][]{
+            {"^/$", "/invoice/123"},
+            {"^/invoice/123$", "/invoice/1234"},
+            {"^/invoice/123.*", "/invoice/12"},
+            {"^/resources/asn/.*$", "/resources/items/1"},
+            {"(\\d{1,})", "abc"},
+            {"([A-Z]{5})", "QwErTyUi"},
+            {"\\d+", "5675675686786786785675464564564"},
+            {"^/resource/item/(\\d+)$", "/resource/item/abc"},
+            {"^abc[xyz{*", "someStringToMatch"},
+            {"(.*)\\s+Apple:\\s+(.*)\\s+Alphabet:\\s+(.*)", MULTILINE_SUBJECT},
+            {"(.*)\\s+Microsoft:\\s+(.*)", MULTILINE_SUBJECT},
+    };
+
+    @Test
+    public void compareSinglePassWithRetryLoop() throws Exception {
+        final CompiledRegex[] compiledRegexes = new CompiledRegex[CORPUS.length];
+        final Pattern[][] retryLoopPatterns = new Pattern[CORPUS.length][];
+        for (int idx = 0; idx < CORPUS.length; idx++) {
+            compiledRegexes[idx] = CompiledRegex.compile(CORPUS[idx][0]);
+            retryLoopPatterns[idx] = compileForRetryLoop(CORPUS[idx][0]);
+
+            final Map<String, String> singlePassGroups = new HashMap<>();
+            final Map<String, String> retryLoopGroups = new HashMap<>();
+            assertThat(compiledRegexes[idx].match(CORPUS[idx][1], "token", singlePassGroups))
+                    .isEqualTo(matchWithRetryLoop(retryLoopPatterns[idx], CORPUS[idx][1], retryLoopGroups));
+            assertThat(singlePassGroups).isEqualTo(retryLoopGroups);
+        }
+
+        runSinglePass(compiledRegexes, WARM_UP_ITERATIONS);
+        runRetryLoop(retryLoopPatterns, WARM_UP_ITERATIONS);
+
+        final long singlePassElapsed = runSinglePass(compiledRegexes, MEASURED_ITERATIONS);
+        final long retryLoopElapsed = runRetryLoop(retryLoopPatterns, MEASURED_ITERATIONS);
+
+        System.out.println("\n\n**************************************************************");
+        System.out.println(String.format("Single pass: %s ns per corpus pass", singlePassElapsed / MEASURED_ITERATIONS));
+        System.out.println(String.format("Retry loop: %s ns per corpus pass", retryLoopElapsed / MEASURED_ITERATIONS));
+        System.out.println("**************************************************************\n");
+    }
+
+    private static long runSinglePass(final CompiledRegex[] compiledRegexes, final int iterations) {
+        final Map<String, String> regexGroups = new HashMap<>();
+        final long start = System.nanoTime();
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int idx = 0; idx < compiledRegexes.length; idx++) {
+                compiledRegexes[idx].match(CORPUS[idx][1], "token", regexGroups);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runRetryLoop(final Pattern[][] retryLoopPatterns, final int iterations) {
+        final Map<String, String> regexGroups = new HashMap<>();
+        final long start = System.nanoTime();
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int idx = 0; idx < retryLoopPatterns.length; idx++) {
+                matchWithRetryLoop(retryLoopPatterns[idx], CORPUS[idx][1], regexGroups);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static Pattern[] compileForRetryLoop(final String value) {
+        try {
+            return new Pattern[]{Pattern.compile(value, Pattern.MULTILINE), Pattern.compile(value, Pattern.MULTILINE | Pattern.DOTALL)};
+        } catch (final PatternSyntaxException e) {
+            final Pattern literalPattern = Pattern.compile(value, Pattern.LITERAL);
+            return new Pattern[]{literalPattern, literalPattern};
+        }
+    }
+
+    private static boolean matchWithRetryLoop(final Pattern[] patterns, final String subject, final Map<String, String> regexGroups) {
+        for (final Pattern pattern : patterns) {
+            final Matcher matcher = pattern.matcher(subject);
+            if (matcher.matches()) {
+                for (int idx = 0; idx <= matcher.groupCount(); idx++) {
+                    regexGroups.put("token." + idx, matcher.group(idx));
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,18 +1,17 @@
 package io.github.azagniotov.stubby4j.caching;
 
 
-import io.github.azagniotov.stubby4j.stubs.StubHttpLifecycle;
+import io.github.azagniotov.stubby4j.stubs.StubMatch;
 import org.ehcache.UserManagedCache;
 
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Pattern;
 
 public interface Cache<K, V> {
 
     long CACHE_ENTRY_LIFETIME_SECONDS = 3600L;  // 3600 secs => 60 minutes
 
-    static Cache<String, StubHttpLifecycle> stubHttpLifecycleCache(final boolean buildNoOpCache) {
+    static Cache<String, StubMatch> stubHttpLifecycleCache(final boolean buildNoOpCache) {
         if (buildNoOpCache) {
             return new NoOpStubHttpLifecycleCache();
         } else {
@@ -20,10 +19,6 @@ public interface Cache<K, V> {
         }
     }
 
-    static Cache<Integer, Pattern> regexPatternCache() {
-        return new RegexPatternCache(CACHE_ENTRY_LIFETIME_SECONDS);
-    }
-
     default Optional<V> get(final K key) {
         return Optional.ofNullable(cache().get(key));
     }
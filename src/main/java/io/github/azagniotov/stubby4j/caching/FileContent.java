@@ -0,0 +1,119 @@
+package io.github.azagniotov.stubby4j.caching;
+
+
+import io.github.azagniotov.stubby4j.stubs.ResponseTemplate;
+import io.github.azagniotov.stubby4j.utils.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The content of a stubbed 'file', as it is served: a character file is loaded onto the heap (trimmed and with
+ * normalized line separators, see {@link FileUtils#fileToBytes(File)}) and is compiled into a {@link ResponseTemplate}
+ * if it has template tokens, a binary file is loaded onto the heap as it is. A binary file that is larger than the
+ * whole {@link FileContentCache} budget is not loaded at all, but is streamed from the disk every time it is served
+ * (see {@link #isStreamed()}), so that a file that changes while it is served can not fail the whole process, same
+ * as a memory-mapped file would.
+ * <p>
+ * Instances are immutable, apart from the time they were last served at, and are held by {@link FileContentCache},
+ * together with the file modification time and size that the content was loaded at.
+ */
+public final class FileContent {
+
+    private final File file;
+    private final long lastModified;
+    private final long size;
+    private final byte[] bytes;
+    private final ByteBuffer readOnlyBuffer;
+    private final ResponseTemplate template;
+    // The least recently served contents are evicted first, see FileContentCache
+    private volatile long lastServedNanos;
+
+    private FileContent(final File file, final long lastModified, final long size, final byte[] bytes, final ResponseTemplate template) {
+        this.file = file;
+        this.lastModified = lastModified;
+        this.size = size;
+        this.bytes = bytes;
+        this.readOnlyBuffer = bytes == null ? null : ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        this.template = template;
+        this.lastServedNanos = System.nanoTime();
+    }
+
+    static FileContent load(final File file, final long lastModified, final long size, final long maxLoadedBytes) throws IOException {
+        if (FileUtils.isBinaryFile(file)) {
+            if (size > maxLoadedBytes) {
+                return new FileContent(file, lastModified, size, null, null);
+            }
+            return new FileContent(file, lastModified, size, Files.readAllBytes(file.toPath()), null);
+        }
+
+        final byte[] bytes = FileUtils.fileToBytes(file);
+        final ResponseTemplate template = ResponseTemplate.compile(bytes);
+        return new FileContent(file, lastModified, size, bytes, template.hasTokens() ? template : null);
+    }
+
+    boolean isModified(final long lastModified, final long size) {
+        return this.lastModified != lastModified || this.size != size;
+    }
+
+    void served() {
+        this.lastServedNanos = System.nanoTime();
+    }
+
+    long getLastServedNanos() {
+        return lastServedNanos;
+    }
+
+    /**
+     * @return the number of bytes that the content takes, which counts towards the {@link FileContentCache} budget
+     */
+    long weight() {
+        return bytes == null ? 0L : bytes.length;
+    }
+
+    public boolean isEmpty() {
+        return bytes == null ? size == 0 : bytes.length == 0;
+    }
+
+    /**
+     * @return true if the content is not held in memory, but has to be read from the file every time it is served,
+     * see {@link #openChannel()}
+     */
+    public boolean isStreamed() {
+        return bytes == null;
+    }
+
+    /**
+     * @return a channel to stream a {@link #isStreamed() streamed} content from, which must be closed by the caller
+     */
+    public FileChannel openChannel() throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * @return a read-only view of the content, which can be written without copying it. A streamed content
+     * is read from the file onto the heap, prefer {@link #openChannel()} to serve it
+     */
+    public ByteBuffer getContent() throws IOException {
+        return bytes == null ? ByteBuffer.wrap(Files.readAllBytes(file.toPath())) : readOnlyBuffer.duplicate();
+    }
+
+    /**
+     * @return the content bytes, which are shared, so they must not be modified. A streamed content
+     * is read from the file onto the heap, prefer {@link #openChannel()} to serve it
+     */
+    public byte[] getBytes() throws IOException {
+        return bytes == null ? Files.readAllBytes(file.toPath()) : bytes;
+    }
+
+    /**
+     * @return the compiled template of a character file content, or null if there are no template tokens
+     */
+    public ResponseTemplate getTemplate() {
+        return template;
+    }
+}
@@ -0,0 +1,151 @@
+package io.github.azagniotov.stubby4j.caching;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A size-bounded cache of the stubbed 'file' contents, which are loaded on first use instead of when the stubs
+ * are loaded. The total size of the cached contents is kept within a budget (see the '--file_cache_budget_mb'
+ * command line option), by evicting the least recently served contents. A character file content that is larger
+ * than the whole budget is served, but is not cached, a binary file that is larger than the whole budget is streamed
+ * from the disk (see {@link FileContent#isStreamed()}).
+ * <p>
+ * Every {@link #get(File)} checks the file for its modification time and size: if either of them changed since
+ * the content was loaded, the content is loaded again. A file that does not exist (anymore) or can not be read has
+ * no content, i.e.: {@link #get(File)} returns null. The content of a served response is looked up once per request,
+ * so the file is checked once per request.
+ * <p>
+ * Looking up a cached content does not take a lock. Two threads that miss the cache for the same file at the same
+ * time may both load it, the last one loaded is cached. Evicting contents over the budget, which only happens when
+ * a content is loaded, is serialized.
+ */
+public final class FileContentCache {
+
+    public static final long DEFAULT_BUDGET_MEGABYTES = 64L;
+
+    private static final long BYTES_IN_MEGABYTE = 1024L * 1024L;
+
+    // Keyed by the absolute path of the file
+    private final ConcurrentMap<String, FileContent> contents;
+    private final long budgetBytes;
+    private final AtomicLong weightBytes;
+
+    FileContentCache(final long budgetBytes) {
+        this.contents = new ConcurrentHashMap<>();
+        this.budgetBytes = budgetBytes;
+        this.weightBytes = new AtomicLong(0L);
+    }
+
+    /**
+     * @param budgetMegabytes the total size of the cached contents, in megabytes
+     * @throws IllegalArgumentException if the budget is negative
+     */
+    public static FileContentCache withBudgetMegabytes(final long budgetMegabytes) {
+        if (budgetMegabytes < 0 || budgetMegabytes > Long.MAX_VALUE / BYTES_IN_MEGABYTE) {
+            throw new IllegalArgumentException(
+                    String.format("File cache budget must be between 0 and %s megabytes, got %s",
+                            Long.MAX_VALUE / BYTES_IN_MEGABYTE, budgetMegabytes));
+        }
+        return new FileContentCache(budgetMegabytes * BYTES_IN_MEGABYTE);
+    }
+
+    /**
+     * @return the content of the given file, loaded if it was not cached or if the file was modified since
+     * it was cached, or null if the file does not exist or can not be read
+     */
+    public FileContent get(final File file) {
+        final String path = file.getAbsolutePath();
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (final Exception e) {
+            invalidate(path);
+            return null;
+        }
+        if (!attributes.isRegularFile()) {
+            return null;
+        }
+
+        final long lastModified = attributes.lastModifiedTime().toMillis();
+        final long size = attributes.size();
+        final FileContent cached = contents.get(path);
+        if (cached != null && !cached.isModified(lastModified, size)) {
+            cached.served();
+            return cached;
+        }
+
+        final FileContent loaded;
+        try {
+            loaded = FileContent.load(file, lastModified, size, budgetBytes);
+        } catch (final IOException | RuntimeException e) {
+            invalidate(path);
+            return null;
+        }
+        put(path, loaded);
+
+        return loaded;
+    }
+
+    public void invalidate(final File file) {
+        invalidate(file.getAbsolutePath());
+    }
+
+    public void clear() {
+        for (final String path : contents.keySet()) {
+            invalidate(path);
+        }
+    }
+
+    public int size() {
+        return contents.size();
+    }
+
+    public long weightBytes() {
+        return weightBytes.get();
+    }
+
+    private void invalidate(final String path) {
+        final FileContent removed = contents.remove(path);
+        if (removed != null) {
+            weightBytes.addAndGet(-removed.weight());
+        }
+    }
+
+    private void put(final String path, final FileContent content) {
+        if (content.weight() > budgetBytes) {
+            invalidate(path);
+            return;
+        }
+
+        final FileContent replaced = contents.put(path, content);
+        weightBytes.addAndGet(content.weight() - (replaced == null ? 0L : replaced.weight()));
+        if (weightBytes.get() > budgetBytes) {
+            evictOverBudget();
+        }
+    }
+
+    private synchronized void evictOverBudget() {
+        while (weightBytes.get() > budgetBytes) {
+            Map.Entry<String, FileContent> leastRecentlyServed = null;
+            for (final Map.Entry<String, FileContent> entry : contents.entrySet()) {
+                if (entry.getValue().weight() > 0 && (leastRecentlyServed == null ||
+                        entry.getValue().getLastServedNanos() - leastRecentlyServed.getValue().getLastServedNanos() < 0)) {
+                    leastRecentlyServed = entry;
+                }
+            }
+            if (leastRecentlyServed == null) {
+                return;
+            }
+            if (contents.remove(leastRecentlyServed.getKey(), leastRecentlyServed.getValue())) {
+                weightBytes.addAndGet(-leastRecentlyServed.getValue().weight());
+            }
+        }
+    }
+}
@@ -1,13 +1,13 @@
 package io.github.azagniotov.stubby4j.caching;
 
 
-import io.github.azagniotov.stubby4j.stubs.StubHttpLifecycle;
+import io.github.azagniotov.stubby4j.stubs.StubMatch;
 import org.ehcache.UserManagedCache;
 
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 
-class NoOpStubHttpLifecycleCache implements Cache<String, StubHttpLifecycle> {
+class NoOpStubHttpLifecycleCache implements Cache<String, StubMatch> {
 
     private static final AtomicInteger ATOMIC_INTEGER_ZERO = new AtomicInteger();
 
@@ -16,12 +16,12 @@ class NoOpStubHttpLifecycleCache implements Cache<String, StubHttpLifecycle> {
     }
 
     @Override
-    public Optional<StubHttpLifecycle> get(final String key) {
+    public Optional<StubMatch> get(final String key) {
         return Optional.empty();
     }
 
     @Override
-    public void putIfAbsent(final String key, final StubHttpLifecycle value) {
+    public void putIfAbsent(final String key, final StubMatch value) {
         // NO-OP
     }
 
@@ -36,7 +36,7 @@ class NoOpStubHttpLifecycleCache implements Cache<String, StubHttpLifecycle> {
     }
 
     @Override
-    public UserManagedCache<String, StubHttpLifecycle> cache() {
+    public UserManagedCache<String, StubMatch> cache() {
         throw new UnsupportedOperationException();
     }
 
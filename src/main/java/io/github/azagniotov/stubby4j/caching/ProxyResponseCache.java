@@ -0,0 +1,264 @@
+package io.github.azagniotov.stubby4j.caching;
+
+
+import io.github.azagniotov.stubby4j.stubs.RequestFingerprint;
+import io.github.azagniotov.stubby4j.stubs.StubRequest;
+import io.github.azagniotov.stubby4j.stubs.StubResponse;
+import io.github.azagniotov.stubby4j.stubs.proxy.StubProxyCacheConfig;
+import io.github.azagniotov.stubby4j.utils.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A TTL and LRU cache of the responses of a proxy config (see {@link StubProxyCacheConfig}), so that a proxied
+ * request that was answered before is served from memory, without sending the request to the proxy config endpoint.
+ * The cache is bounded both by the number of the cached responses and by their total size: once either of the limits
+ * is reached, the least recently served responses are evicted. A response that is larger than the whole budget
+ * is not cached. A response is served until its TTL expires, counting from when it was cached.
+ * <p>
+ * The cached responses are keyed by the fields of the incoming request listed in the cache settings, see
+ * {@link #keyOf(StubRequest)}. Two requests that miss the cache for the same key at the same time are both proxied,
+ * the last response received is cached.
+ */
+public final class ProxyResponseCache {
+
+    private final StubProxyCacheConfig config;
+    private final LongSupplier nanoClock;
+    private final long ttlNanos;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    // Access ordered, i.e.: the eldest entry is the least recently served one
+    private final LinkedHashMap<String, CachedProxyResponse> responses;
+    private long weightBytes;
+
+    public ProxyResponseCache(final StubProxyCacheConfig config) {
+        this(config, System::nanoTime);
+    }
+
+    ProxyResponseCache(final StubProxyCacheConfig config, final LongSupplier nanoClock) {
+        this.config = config;
+        this.nanoClock = nanoClock;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(config.getTtlMillis());
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.responses = new LinkedHashMap<>(16, 0.75f, true);
+        this.weightBytes = 0L;
+    }
+
+    public StubProxyCacheConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return the cache key of the given incoming request. Must be called before the request is modified for
+     * proxying (e.g.: before the headers of an additive proxy config are added to it)
+     */
+    public Key keyOf(final StubRequest incomingRequest) {
+        final String method = config.isKeyMethod() && !incomingRequest.getMethod().isEmpty() ? incomingRequest.getMethod().get(0) : null;
+        final String uri = config.isKeyPath() ? incomingRequest.getUri() : null;
+        final Map<String, String> query = config.isKeyQuery() ? new TreeMap<>(incomingRequest.getQuery()) : Collections.emptyMap();
+
+        final Map<String, String> headers = new TreeMap<>();
+        final Map<String, String> incomingHeaders = incomingRequest.getHeaders();
+        for (final String headerName : config.getKeyHeaders()) {
+            if (incomingHeaders.containsKey(headerName)) {
+                headers.put(headerName, incomingHeaders.get(headerName));
+            }
+        }
+
+        final String post = config.isKeyBody() && StringUtils.isSet(incomingRequest.getPostBody()) ? incomingRequest.getPostBody() : null;
+        final String value = new RequestFingerprint()
+                .append(method)
+                .append(uri)
+                .appendQuery(query)
+                .appendHeaders(headers, headers.keySet())
+                .appendDigest(post)
+                .toString();
+
+        return new Key(value, method, uri, query, headers, post);
+    }
+
+    /**
+     * @return the cached response, or null if no response is cached for the given key, or if its TTL has expired
+     */
+    public StubResponse get(final Key key) {
+        synchronized (this) {
+            final CachedProxyResponse cached = responses.get(key.value);
+            if (cached != null) {
+                if (nanoClock.getAsLong() - cached.cachedAtNanos < ttlNanos) {
+                    hits.increment();
+                    return cached.response;
+                }
+                responses.remove(key.value);
+                weightBytes -= cached.weight;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(final Key key, final StubResponse response) {
+        final CachedProxyResponse cached = new CachedProxyResponse(key, response, nanoClock.getAsLong());
+        synchronized (this) {
+            final CachedProxyResponse replaced = responses.remove(key.value);
+            if (replaced != null) {
+                weightBytes -= replaced.weight;
+            }
+            if (cached.weight > config.getMaxBytes()) {
+                return;
+            }
+
+            responses.put(key.value, cached);
+            weightBytes += cached.weight;
+            evictOverLimits();
+        }
+    }
+
+    private void evictOverLimits() {
+        final Iterator<Map.Entry<String, CachedProxyResponse>> iterator = responses.entrySet().iterator();
+        while ((weightBytes > config.getMaxBytes() || responses.size() > config.getMaxEntries()) && iterator.hasNext()) {
+            weightBytes -= iterator.next().getValue().weight;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * @return the cached responses whose TTL has not expired, from the least to the most recently served one
+     */
+    public synchronized List<CachedProxyResponse> getResponses() {
+        final long nowNanos = nanoClock.getAsLong();
+        final List<CachedProxyResponse> unexpired = new ArrayList<>(responses.size());
+        for (final CachedProxyResponse cached : responses.values()) {
+            if (nowNanos - cached.cachedAtNanos < ttlNanos) {
+                unexpired.add(cached);
+            }
+        }
+        return unexpired;
+    }
+
+    /**
+     * @return the number of the flushed responses
+     */
+    public synchronized int clear() {
+        final int flushed = responses.size();
+        responses.clear();
+        weightBytes = 0L;
+        return flushed;
+    }
+
+    public synchronized int size() {
+        return responses.size();
+    }
+
+    public synchronized long weightBytes() {
+        return weightBytes;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * The cache key of an incoming request, together with the request fields that it was made of, so that a cached
+     * response can be turned into a stub that matches the same requests
+     */
+    public static final class Key {
+        private final String value;
+        private final String method;
+        private final String uri;
+        private final Map<String, String> query;
+        private final Map<String, String> headers;
+        private final String post;
+
+        private Key(final String value,
+                    final String method,
+                    final String uri,
+                    final Map<String, String> query,
+                    final Map<String, String> headers,
+                    final String post) {
+            this.value = value;
+            this.method = method;
+            this.uri = uri;
+            this.query = query;
+            this.headers = headers;
+            this.post = post;
+        }
+
+        /**
+         * @return the HTTP method of the request if the method is part of the key, otherwise null
+         */
+        public String getMethod() {
+            return method;
+        }
+
+        /**
+         * @return the path of the request if the path is part of the key, otherwise null
+         */
+        public String getUri() {
+            return uri;
+        }
+
+        /**
+         * @return the query params of the request, if the query is part of the key
+         */
+        public Map<String, String> getQuery() {
+            return query;
+        }
+
+        /**
+         * @return the headers of the request that are part of the key
+         */
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+
+        /**
+         * @return the body of the request if the body is part of the key, otherwise null
+         */
+        public String getPost() {
+            return post;
+        }
+    }
+
+    public static final class CachedProxyResponse {
+        private final Key key;
+        private final StubResponse response;
+        private final long cachedAtNanos;
+        private final long weight;
+
+        private CachedProxyResponse(final Key key, final StubResponse response, final long cachedAtNanos) {
+            this.key = key;
+            this.response = response;
+            this.cachedAtNanos = cachedAtNanos;
+
+            long headersWeight = 0L;
+            for (final Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+                headersWeight += StringUtils.calculateStringLength(header.getKey()) + StringUtils.calculateStringLength(header.getValue());
+            }
+            // The proxied responses have no 'file', their body is held encoded
+            this.weight = response.getResponseBody().remaining() + headersWeight + key.value.length();
+        }
+
+        public Key getKey() {
+            return key;
+        }
+
+        public StubResponse getResponse() {
+            return response;
+        }
+    }
+}
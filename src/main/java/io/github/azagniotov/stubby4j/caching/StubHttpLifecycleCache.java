@@ -1,7 +1,7 @@
 package io.github.azagniotov.stubby4j.caching;
 
 
-import io.github.azagniotov.stubby4j.stubs.StubHttpLifecycle;
+import io.github.azagniotov.stubby4j.stubs.StubMatch;
 import org.ehcache.UserManagedCache;
 import org.ehcache.config.builders.ExpiryPolicyBuilder;
 import org.ehcache.config.builders.ResourcePoolsBuilder;
@@ -10,16 +10,16 @@ import org.ehcache.config.builders.UserManagedCacheBuilder;
 import java.time.Duration;
 import java.util.concurrent.atomic.AtomicInteger;
 
-class StubHttpLifecycleCache implements Cache<String, StubHttpLifecycle> {
+class StubHttpLifecycleCache implements Cache<String, StubMatch> {
 
     private final AtomicInteger cacheSize;
-    private final UserManagedCache<String, StubHttpLifecycle> localCache;
+    private final UserManagedCache<String, StubMatch> localCache;
 
     StubHttpLifecycleCache(final long cacheEntryLifetimeSeconds) {
         final Duration timeToLiveExpiration = Duration.ofSeconds(cacheEntryLifetimeSeconds);
 
         this.localCache = UserManagedCacheBuilder
-                .newUserManagedCacheBuilder(String.class, StubHttpLifecycle.class)
+                .newUserManagedCacheBuilder(String.class, StubMatch.class)
                 .withResourcePools(ResourcePoolsBuilder.heap(500L))
                 .identifier(this.getClass().getSimpleName())
                 .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(timeToLiveExpiration))
@@ -29,7 +29,7 @@ class StubHttpLifecycleCache implements Cache<String, StubHttpLifecycle> {
     }
 
     @Override
-    public UserManagedCache<String, StubHttpLifecycle> cache() {
+    public UserManagedCache<String, StubMatch> cache() {
         return localCache;
     }
 
@@ -1,6 +1,9 @@
 package io.github.azagniotov.stubby4j.cli;
 
 import io.github.azagniotov.stubby4j.annotations.GeneratedCodeMethodCoverageExclusion;
+import io.github.azagniotov.stubby4j.caching.FileContentCache;
+import io.github.azagniotov.stubby4j.stubs.StubHttpLifecycle;
+import io.github.azagniotov.stubby4j.stubs.StubRepository;
 import io.github.azagniotov.stubby4j.utils.ObjectUtils;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -37,8 +40,10 @@ public final class CommandLineInterpreter {
     public static final String OPTION_DISABLE_SSL = "disable_ssl";
     public static final String OPTION_DISABLE_STUB_CACHING = "disable_stub_caching";
     public static final String OPTION_ENABLE_TLS_WITH_ALPN_AND_HTTP_2 = "enable_tls_with_alpn_and_http_2";
+    public static final String OPTION_DEBUG = "debug";
+    public static final String OPTION_FILE_CACHE_BUDGET = "file_cache_budget_mb";
+    public static final String OPTION_SEQUENCE_CLIENT_KEY = "sequence_client_key";
     private static final String OPTION_VERSION = "version";
-    private static final String OPTION_DEBUG = "debug";
     private static final CommandLineParser POSIX_PARSER = new DefaultParser();
     private static final Options OPTIONS = new Options();
 
@@ -53,10 +58,12 @@ public final class CommandLineInterpreter {
         OPTIONS.addOption("h", OPTION_HELP, false, "This help text.");
         OPTIONS.addOption("m", OPTION_MUTE, false, "Mute console output.");
         OPTIONS.addOption("v", OPTION_VERSION, false, "Prints out to console stubby version.");
-        OPTIONS.addOption("o", OPTION_DEBUG, false, "Dumps raw HTTP request to the console (if console is not muted!).");
+        OPTIONS.addOption("o", OPTION_DEBUG, false, "Dumps raw HTTP request to the console (if console is not muted!). Since v7.5.3, also explains why the incoming requests did not match any of the stubs, see admin portal '/ajax/explain'.");
         OPTIONS.addOption("da", OPTION_DISABLE_ADMIN, false, "Does not start Admin portal");
         OPTIONS.addOption("dc", OPTION_DISABLE_STUB_CACHING, false, "Since v7.2.0. Disables stubs in-memory caching when stubs are successfully matched to the incoming HTTP requests");
         OPTIONS.addOption("ta", OPTION_ENABLE_TLS_WITH_ALPN_AND_HTTP_2, false, "Since v7.4.0. Enables HTTP/2 over TCP (h2c) and HTTP/2 over TLS (h2) on TLS v1.2 or newer using ALPN extension");
+        OPTIONS.addOption("fc", OPTION_FILE_CACHE_BUDGET, true, String.format("Since v7.5.3. Memory budget in megabytes for the content of the stubbed 'file' responses, which are loaded on first use and reloaded when modified. Defaults to %s.", FileContentCache.DEFAULT_BUDGET_MEGABYTES));
+        OPTIONS.addOption("sc", OPTION_SEQUENCE_CLIENT_KEY, true, String.format("Since v7.5.3. Makes every client step through the sequenced responses on its own. Clients are told apart by the value of the given request header, or by their IP address if '%s' is given. Up to %s clients are tracked per stub, once more clients show up, the least recently served client starts its sequence over.", StubRepository.SEQUENCE_CLIENT_KEY_REMOTE_ADDRESS, StubHttpLifecycle.MAX_CLIENT_SEQUENCES));
         OPTIONS.addOption("ds", OPTION_DISABLE_SSL, false, "Disables TLS support (enabled by default) and disables the '--enable_tls_with_alpn_and_http_2' flag, if the latter was provided");
         @SuppressWarnings("static-access")
         Option watch =
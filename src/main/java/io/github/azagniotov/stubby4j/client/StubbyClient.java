@@ -36,10 +36,11 @@ public final class StubbyClient {
 
     private static final ExecutorService EXECUTOR_SERVICE = Executors.newFixedThreadPool(1);
 
+    private final StubbyHttpTransport stubbyHttpTransport;
     private StubbyManager stubbyManager;
 
     public StubbyClient() {
-
+        this.stubbyHttpTransport = new StubbyHttpTransport();
     }
 
     /**
@@ -555,12 +556,11 @@ public final class StubbyClient {
             headers.put("Authorization", stubbyRequest.getAuthorization().asFullValue());
         }
 
-        return new StubbyHttpTransport().request(
+        return stubbyHttpTransport.request(
                 stubbyRequest.getMethod(),
                 stubbyRequest.constructFullUrl(),
                 stubbyRequest.getPost(),
-                headers,
-                stubbyRequest.calculatePostLength());
+                headers);
     }
 
     private CompletableFuture<YamlParseResultSet> parseYamlAsync(final File configFile) {
@@ -57,8 +57,4 @@ final class StubbyRequest {
     String constructFullUrl() {
         return String.format(URL_TEMPLATE, scheme.toLowerCase(Locale.US), host, clientPort, StringUtils.isSet(uri) ? uri : "");
     }
-
-    int calculatePostLength() {
-        return StringUtils.calculateStringLength(post);
-    }
 }
@@ -0,0 +1,72 @@
+package io.github.azagniotov.stubby4j.handlers;
+
+import io.github.azagniotov.stubby4j.annotations.GeneratedCodeClassCoverageExclusion;
+import io.github.azagniotov.stubby4j.stubs.StubMatchTrace;
+import io.github.azagniotov.stubby4j.stubs.StubRepository;
+import io.github.azagniotov.stubby4j.utils.ConsoleUtils;
+import io.github.azagniotov.stubby4j.utils.HandlerUtils;
+import io.github.azagniotov.stubby4j.utils.StringUtils;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Explains why the most recent incoming requests did not match any of the stubs, e.g.: {@code GET /ajax/explain?last=5}.
+ * The explanations are only available when stubby4j runs with the {@code --debug} flag.
+ */
+@GeneratedCodeClassCoverageExclusion
+public class AjaxNonMatchesExplanationHandler extends AbstractHandler implements AbstractHandlerExtension {
+
+    private static final String PARAM_LAST = "last";
+    private static final int DEFAULT_LAST = 10;
+
+    private final StubRepository stubRepository;
+
+    public AjaxNonMatchesExplanationHandler(final StubRepository stubRepository) {
+        this.stubRepository = stubRepository;
+    }
+
+    @Override
+    public void handle(final String target, final Request baseRequest, final HttpServletRequest request, final HttpServletResponse response) throws IOException, ServletException {
+        if (logAndCheckIsHandled("ajaxNonMatchesExplanation", baseRequest, request, response)) {
+            return;
+        }
+        baseRequest.setHandled(true);
+
+        HandlerUtils.setResponseMainHeaders(response);
+        response.setContentType("application/json;charset=UTF-8");
+
+        final String lastParam = request.getParameter(PARAM_LAST);
+        if (StringUtils.isSet(lastParam) && !StringUtils.isNumeric(lastParam)) {
+            HandlerUtils.configureErrorResponse(response, HttpStatus.BAD_REQUEST_400,
+                    String.format("Query parameter '%s' must be a positive number, got: %s", PARAM_LAST, lastParam));
+            return;
+        }
+
+        try {
+            final int last = StringUtils.isSet(lastParam) ? Integer.parseInt(lastParam) : DEFAULT_LAST;
+
+            final JSONArray nonMatches = new JSONArray();
+            for (final StubMatchTrace matchTrace : stubRepository.getLastNonMatchTraces(last)) {
+                nonMatches.put(matchTrace.toJson());
+            }
+
+            final JSONObject explanation = new JSONObject()
+                    .put("tracing", stubRepository.isMatchTracingEnabled())
+                    .put("nonMatches", nonMatches);
+
+            response.setStatus(HttpStatus.OK_200);
+            response.getWriter().println(explanation.toString());
+            ConsoleUtils.logOutgoingResponse(request.getRequestURI(), response);
+        } catch (final Exception ex) {
+            HandlerUtils.configureErrorResponse(response, HttpStatus.INTERNAL_SERVER_ERROR_500, ex.toString());
+        }
+    }
+}
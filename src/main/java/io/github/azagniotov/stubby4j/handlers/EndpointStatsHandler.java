@@ -0,0 +1,69 @@
+package io.github.azagniotov.stubby4j.handlers;
+
+import io.github.azagniotov.stubby4j.annotations.GeneratedCodeClassCoverageExclusion;
+import io.github.azagniotov.stubby4j.stubs.StubRepository;
+import io.github.azagniotov.stubby4j.utils.ConsoleUtils;
+import io.github.azagniotov.stubby4j.utils.HandlerUtils;
+import io.github.azagniotov.stubby4j.utils.StringUtils;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Serves the hits of the loaded stubs and proxy configs, and the number of incoming requests that matched no stub,
+ * e.g.: {@code GET /stats} as JSON, or {@code GET /stats?format=csv} as CSV. The stats are written straight into
+ * the response as they are read from the counters.
+ */
+@GeneratedCodeClassCoverageExclusion
+public class EndpointStatsHandler extends AbstractHandler implements AbstractHandlerExtension {
+
+    private static final String PARAM_FORMAT = "format";
+    private static final String FORMAT_JSON = "json";
+    private static final String FORMAT_CSV = "csv";
+
+    private final StubRepository stubRepository;
+
+    public EndpointStatsHandler(final StubRepository stubRepository) {
+        this.stubRepository = stubRepository;
+    }
+
+    @Override
+    public void handle(final String target, final Request baseRequest, final HttpServletRequest request, final HttpServletResponse response) throws IOException, ServletException {
+        if (logAndCheckIsHandled("endpointStats", baseRequest, request, response)) {
+            return;
+        }
+        baseRequest.setHandled(true);
+
+        HandlerUtils.setResponseMainHeaders(response);
+
+        final String formatParam = request.getParameter(PARAM_FORMAT);
+        final String format = StringUtils.isSet(formatParam) ? StringUtils.toLower(formatParam.trim()) : FORMAT_JSON;
+        if (!format.equals(FORMAT_JSON) && !format.equals(FORMAT_CSV)) {
+            HandlerUtils.configureErrorResponse(response, HttpStatus.BAD_REQUEST_400,
+                    String.format("Query parameter '%s' must be either '%s' or '%s', got: %s", PARAM_FORMAT, FORMAT_JSON, FORMAT_CSV, formatParam));
+            return;
+        }
+
+        try {
+            response.setStatus(HttpStatus.OK_200);
+            if (format.equals(FORMAT_CSV)) {
+                response.setContentType("text/csv;charset=UTF-8");
+                stubRepository.writeStatsAsCsv(response.getWriter());
+            } else {
+                response.setContentType("application/json;charset=UTF-8");
+                final PrintWriter writer = response.getWriter();
+                stubRepository.writeStatsAsJson(writer);
+                writer.println();
+            }
+            ConsoleUtils.logOutgoingResponse(request.getRequestURI(), response);
+        } catch (final Exception ex) {
+            HandlerUtils.configureErrorResponse(response, HttpStatus.INTERNAL_SERVER_ERROR_500, ex.toString());
+        }
+    }
+}
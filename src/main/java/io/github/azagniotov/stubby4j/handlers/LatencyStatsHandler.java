@@ -0,0 +1,54 @@
+package io.github.azagniotov.stubby4j.handlers;
+
+import io.github.azagniotov.stubby4j.annotations.GeneratedCodeClassCoverageExclusion;
+import io.github.azagniotov.stubby4j.stubs.StubRepository;
+import io.github.azagniotov.stubby4j.utils.ConsoleUtils;
+import io.github.azagniotov.stubby4j.utils.HandlerUtils;
+import io.github.azagniotov.stubby4j.utils.StringUtils;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Serves the latency percentiles of matching, rendering and proxying, for all requests and for every stub,
+ * e.g.: {@code GET /latency}. With {@code GET /latency?reset=true}, the percentiles of the latencies recorded since
+ * the previous reset are served, and a new interval is started.
+ */
+@GeneratedCodeClassCoverageExclusion
+public class LatencyStatsHandler extends AbstractHandler implements AbstractHandlerExtension {
+
+    private static final String PARAM_RESET = "reset";
+
+    private final StubRepository stubRepository;
+
+    public LatencyStatsHandler(final StubRepository stubRepository) {
+        this.stubRepository = stubRepository;
+    }
+
+    @Override
+    public void handle(final String target, final Request baseRequest, final HttpServletRequest request, final HttpServletResponse response) throws IOException, ServletException {
+        if (logAndCheckIsHandled("latencyStats", baseRequest, request, response)) {
+            return;
+        }
+        baseRequest.setHandled(true);
+
+        HandlerUtils.setResponseMainHeaders(response);
+        response.setContentType("application/json;charset=UTF-8");
+
+        try {
+            final String resetParam = request.getParameter(PARAM_RESET);
+            final boolean reset = StringUtils.isSet(resetParam) && Boolean.parseBoolean(resetParam.trim());
+
+            response.setStatus(HttpStatus.OK_200);
+            response.getWriter().println(stubRepository.getLatenciesAsJson(reset).toString());
+            ConsoleUtils.logOutgoingResponse(request.getRequestURI(), response);
+        } catch (final Exception ex) {
+            HandlerUtils.configureErrorResponse(response, HttpStatus.INTERNAL_SERVER_ERROR_500, ex.toString());
+        }
+    }
+}
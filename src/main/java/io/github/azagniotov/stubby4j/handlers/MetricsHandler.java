@@ -0,0 +1,96 @@
+package io.github.azagniotov.stubby4j.handlers;
+
+import io.github.azagniotov.stubby4j.annotations.GeneratedCodeClassCoverageExclusion;
+import io.github.azagniotov.stubby4j.server.websocket.StubsServerWebSocket;
+import io.github.azagniotov.stubby4j.stubs.StubRepository;
+import io.github.azagniotov.stubby4j.utils.ConsoleUtils;
+import io.github.azagniotov.stubby4j.utils.HandlerUtils;
+import io.github.azagniotov.stubby4j.utils.PrometheusTextWriter;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Serves the metrics of stubby4j in the Prometheus text format, e.g.: {@code GET /metrics}, for scraping by
+ * Prometheus or by any OpenMetrics compatible agent. Besides the request counts, the cache hits, the reloads and the
+ * latencies kept by the {@link StubRepository}, the utilization of the Jetty thread pool and the number of open
+ * web socket sessions are served.
+ */
+@GeneratedCodeClassCoverageExclusion
+public class MetricsHandler extends AbstractHandler implements AbstractHandlerExtension {
+
+    private final StubRepository stubRepository;
+    private final ThreadPool threadPool;
+
+    public MetricsHandler(final StubRepository stubRepository, final ThreadPool threadPool) {
+        this.stubRepository = stubRepository;
+        this.threadPool = threadPool;
+    }
+
+    @Override
+    public void handle(final String target, final Request baseRequest, final HttpServletRequest request, final HttpServletResponse response) throws IOException, ServletException {
+        if (logAndCheckIsHandled("metrics", baseRequest, request, response)) {
+            return;
+        }
+        baseRequest.setHandled(true);
+
+        HandlerUtils.setResponseMainHeaders(response);
+        response.setContentType(PrometheusTextWriter.CONTENT_TYPE);
+
+        try {
+            response.setStatus(HttpStatus.OK_200);
+            final PrintWriter responseWriter = response.getWriter();
+            final PrometheusTextWriter writer = new PrometheusTextWriter(responseWriter);
+            stubRepository.writeMetrics(writer);
+            writeThreadPoolMetrics(writer);
+
+            writer.metric("stubby4j_websocket_sessions_open", PrometheusTextWriter.TYPE_GAUGE,
+                    "Web socket sessions that are currently open");
+            writer.sample("stubby4j_websocket_sessions_open", StubsServerWebSocket.getOpenSessions());
+            responseWriter.flush();
+
+            ConsoleUtils.logOutgoingResponse(request.getRequestURI(), response);
+        } catch (final Exception ex) {
+            HandlerUtils.configureErrorResponse(response, HttpStatus.INTERNAL_SERVER_ERROR_500, ex.toString());
+        }
+    }
+
+    private void writeThreadPoolMetrics(final PrometheusTextWriter writer) throws IOException {
+        if (threadPool == null) {
+            return;
+        }
+
+        final int idleThreads = threadPool.getIdleThreads();
+        final int busyThreads = threadPool instanceof QueuedThreadPool
+                ? ((QueuedThreadPool) threadPool).getBusyThreads()
+                : threadPool.getThreads() - idleThreads;
+        writer.metric("stubby4j_jetty_threads", PrometheusTextWriter.TYPE_GAUGE,
+                "Threads of the Jetty thread pool, by state");
+        writer.sample("stubby4j_jetty_threads", busyThreads, "state", "busy");
+        writer.sample("stubby4j_jetty_threads", idleThreads, "state", "idle");
+
+        if (threadPool instanceof ThreadPool.SizedThreadPool) {
+            final int maxThreads = ((ThreadPool.SizedThreadPool) threadPool).getMaxThreads();
+            writer.metric("stubby4j_jetty_threads_max", PrometheusTextWriter.TYPE_GAUGE,
+                    "Maximum number of threads of the Jetty thread pool");
+            writer.sample("stubby4j_jetty_threads_max", maxThreads);
+            writer.metric("stubby4j_jetty_thread_pool_utilization", PrometheusTextWriter.TYPE_GAUGE,
+                    "Busy threads out of the maximum number of threads of the Jetty thread pool");
+            writer.sample("stubby4j_jetty_thread_pool_utilization", maxThreads == 0 ? 0.0 : (double) busyThreads / maxThreads);
+        }
+
+        if (threadPool instanceof QueuedThreadPool) {
+            writer.metric("stubby4j_jetty_queue_size", PrometheusTextWriter.TYPE_GAUGE,
+                    "Jobs waiting for a thread of the Jetty thread pool");
+            writer.sample("stubby4j_jetty_queue_size", ((QueuedThreadPool) threadPool).getQueueSize());
+        }
+    }
+}
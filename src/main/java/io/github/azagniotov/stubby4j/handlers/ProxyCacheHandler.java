@@ -0,0 +1,64 @@
+package io.github.azagniotov.stubby4j.handlers;
+
+import io.github.azagniotov.stubby4j.annotations.GeneratedCodeClassCoverageExclusion;
+import io.github.azagniotov.stubby4j.stubs.StubRepository;
+import io.github.azagniotov.stubby4j.utils.ConsoleUtils;
+import io.github.azagniotov.stubby4j.utils.HandlerUtils;
+import io.github.azagniotov.stubby4j.utils.StringUtils;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Serves the cached proxy responses as stubs YAML, e.g.: {@code GET /proxy-cache}, which can be saved and loaded
+ * to replay the proxied responses without proxying the requests. With {@code GET /proxy-cache?flush=true}, the cached
+ * responses are flushed instead. Both can be narrowed down to a single proxy config, e.g.:
+ * {@code GET /proxy-cache?uuid=some-unique-name}.
+ */
+@GeneratedCodeClassCoverageExclusion
+public class ProxyCacheHandler extends AbstractHandler implements AbstractHandlerExtension {
+
+    private static final String PARAM_FLUSH = "flush";
+    private static final String PARAM_UUID = "uuid";
+
+    private final StubRepository stubRepository;
+
+    public ProxyCacheHandler(final StubRepository stubRepository) {
+        this.stubRepository = stubRepository;
+    }
+
+    @Override
+    public void handle(final String target, final Request baseRequest, final HttpServletRequest request, final HttpServletResponse response) throws IOException, ServletException {
+        if (logAndCheckIsHandled("proxyCache", baseRequest, request, response)) {
+            return;
+        }
+        baseRequest.setHandled(true);
+
+        HandlerUtils.setResponseMainHeaders(response);
+
+        try {
+            final String flushParam = request.getParameter(PARAM_FLUSH);
+            final boolean flush = StringUtils.isSet(flushParam) && Boolean.parseBoolean(flushParam.trim());
+            final String uuidParam = request.getParameter(PARAM_UUID);
+            final String proxyConfigUuid = StringUtils.isSet(uuidParam) ? uuidParam.trim() : null;
+
+            response.setStatus(HttpStatus.OK_200);
+            if (flush) {
+                response.setContentType("text/plain;charset=UTF-8");
+                final int flushed = stubRepository.flushProxyResponseCaches(proxyConfigUuid);
+                response.getWriter().println(String.format("Flushed %s cached proxy responses", flushed));
+            } else {
+                response.setContentType("application/x-yaml;charset=UTF-8");
+                response.getWriter().print(stubRepository.dumpProxyResponseCachesAsYaml(proxyConfigUuid));
+            }
+            ConsoleUtils.logOutgoingResponse(request.getRequestURI(), response);
+        } catch (final Exception ex) {
+            HandlerUtils.configureErrorResponse(response, HttpStatus.INTERNAL_SERVER_ERROR_500, ex.toString());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package io.github.azagniotov.stubby4j.handlers;
+
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A timer shared by all stub responses that are deferred, e.g.: responses with a stubbed 'latency'.
+ * <p>
+ * A deferred response is held by a suspended (i.e.: async) request, which does not tie up a Jetty thread while it
+ * waits. When the delay expires, the timer thread only dispatches the response back to the Jetty thread pool (see
+ * {@link javax.servlet.AsyncContext#start(Runnable)}), so a single timer thread is enough to hold thousands of
+ * delayed responses at once. The timer thread is a daemon thread, it does not keep the JVM alive.
+ */
+public final class ResponseScheduler {
+
+    private static final ScheduledThreadPoolExecutor SCHEDULER = newScheduler();
+
+    private ResponseScheduler() {
+
+    }
+
+    public static ScheduledFuture<?> schedule(final Runnable task, final long delayMillis) {
+        return SCHEDULER.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static ScheduledThreadPoolExecutor newScheduler() {
+        final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "stubby4j-response-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Do not keep the cancelled tasks in the queue until their delay expires
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+}
@@ -1,7 +1,10 @@
 package io.github.azagniotov.stubby4j.handlers;
 
 import io.github.azagniotov.stubby4j.handlers.strategy.stubs.StubResponseHandlingStrategy;
+import io.github.azagniotov.stubby4j.stubs.StubLatencies;
 import io.github.azagniotov.stubby4j.stubs.StubRepository;
+import io.github.azagniotov.stubby4j.stubs.StubRequest;
+import io.github.azagniotov.stubby4j.stubs.StubResponse;
 import io.github.azagniotov.stubby4j.stubs.StubSearchResult;
 import io.github.azagniotov.stubby4j.utils.ConsoleUtils;
 import io.github.azagniotov.stubby4j.utils.HandlerUtils;
@@ -9,10 +12,13 @@ import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 import static io.github.azagniotov.stubby4j.handlers.strategy.stubs.StubsResponseHandlingStrategyFactory.getStrategy;
 
@@ -35,13 +41,130 @@ public class StubsPortalHandler extends AbstractHandler implements AbstractHandl
         baseRequest.setHandled(true);
 
         try {
+            final long searchStartNanos = System.nanoTime();
             final StubSearchResult stubSearchResult = stubRepository.search(request);
-            final StubResponseHandlingStrategy strategyStubResponse = getStrategy(stubSearchResult.getMatch());
+            // A streamed request that is not let through is served its fast fail response below
+            if (stubSearchResult.isStreamed() && request.isAsyncSupported() && stubSearchResult.getStreamedProxyRequest().stream(request, response)) {
+                return;
+            }
+            if (stubSearchResult.isPending() && request.isAsyncSupported()) {
+                handlePendingAsync(request, response, stubSearchResult, searchStartNanos);
+                return;
+            }
+            final long searchNanos = System.nanoTime() - searchStartNanos;
+            final StubRequest assertionStubRequest = stubSearchResult.getInvariant();
+            final StubResponse foundStubResponse = stubSearchResult.getMatch();
+            final StubResponseHandlingStrategy strategyStubResponse = getStrategy(foundStubResponse, stubRepository.getFileContentCache());
 
-            strategyStubResponse.handle(response, stubSearchResult.getInvariant());
-            ConsoleUtils.logOutgoingResponse(stubSearchResult.getInvariant().getUrl(), response);
+            final long latencyMillis = foundStubResponse.getLatencyMillis();
+            final boolean throttled = foundStubResponse.getBandwidthBytesPerSecond() > 0;
+            if ((latencyMillis > 0 || throttled) && request.isAsyncSupported()) {
+                handleAsync(request, response, strategyStubResponse, stubSearchResult, searchNanos, latencyMillis);
+                return;
+            } else if (latencyMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            }
+
+            final long renderStartNanos = System.nanoTime();
+            strategyStubResponse.handle(response, assertionStubRequest);
+            recordServedResponse(stubSearchResult, response, searchNanos, System.nanoTime() - renderStartNanos);
+            ConsoleUtils.logOutgoingResponse(assertionStubRequest.getUrl(), response);
         } catch (final Exception ex) {
             HandlerUtils.configureErrorResponse(response, HttpStatus.INTERNAL_SERVER_ERROR_500, ex.toString());
         }
     }
+
+    /**
+     * Suspends the request, so that neither the stubbed latency nor the throttled body transfer hold a Jetty thread.
+     * Once the latency expires, the response is handled on a Jetty thread, and the request is completed either
+     * right away, or once the throttled body has been written.
+     */
+    private void handleAsync(final HttpServletRequest request,
+                             final HttpServletResponse response,
+                             final StubResponseHandlingStrategy strategyStubResponse,
+                             final StubSearchResult stubSearchResult,
+                             final long searchNanos,
+                             final long latencyMillis) {
+        final AsyncContext asyncContext = request.startAsync();
+        // The request is completed when the response has been written, not by the async timeout
+        asyncContext.setTimeout(0);
+
+        final Runnable handleStubResponse = () -> handleStubResponse(response, strategyStubResponse, stubSearchResult, searchNanos, asyncContext);
+        if (latencyMillis == 0) {
+            handleStubResponse.run();
+            return;
+        }
+
+        ResponseScheduler.schedule(() -> {
+            try {
+                asyncContext.start(handleStubResponse);
+            } catch (final IllegalStateException ex) {
+                // The request has already been completed, e.g.: the connection was closed while waiting
+            }
+        }, latencyMillis);
+    }
+
+    /**
+     * Suspends the request until its response is known, e.g.: until the proxied response arrives, so that waiting
+     * for the response does not hold a Jetty thread. The response is then handled on a Jetty thread.
+     */
+    private void handlePendingAsync(final HttpServletRequest request,
+                                    final HttpServletResponse response,
+                                    final StubSearchResult stubSearchResult,
+                                    final long searchStartNanos) {
+        final AsyncContext asyncContext = request.startAsync();
+        // The request is completed when the response has been written, the pending response has its own timeout
+        asyncContext.setTimeout(0);
+
+        stubSearchResult.whenMatched(() -> {
+            final long searchNanos = System.nanoTime() - searchStartNanos;
+            final StubResponseHandlingStrategy strategyStubResponse = getStrategy(stubSearchResult.getMatch(), stubRepository.getFileContentCache());
+            try {
+                asyncContext.start(() -> handleStubResponse(response, strategyStubResponse, stubSearchResult, searchNanos, asyncContext));
+            } catch (final IllegalStateException ex) {
+                // The request has already been completed, e.g.: the connection was closed while waiting
+            }
+        });
+    }
+
+    private void handleStubResponse(final HttpServletResponse response,
+                                    final StubResponseHandlingStrategy strategyStubResponse,
+                                    final StubSearchResult stubSearchResult,
+                                    final long searchNanos,
+                                    final AsyncContext asyncContext) {
+        try {
+            final StubRequest assertionStubRequest = stubSearchResult.getInvariant();
+            final long renderStartNanos = System.nanoTime();
+            final WriteListener bodyWriter = strategyStubResponse.handle(response, assertionStubRequest, asyncContext);
+            recordServedResponse(stubSearchResult, response, searchNanos, System.nanoTime() - renderStartNanos);
+            ConsoleUtils.logOutgoingResponse(assertionStubRequest.getUrl(), response);
+            if (bodyWriter == null) {
+                asyncContext.complete();
+            } else {
+                // From here on, the body writer completes the request
+                response.getOutputStream().setWriteListener(bodyWriter);
+            }
+        } catch (final Exception ex) {
+            try {
+                HandlerUtils.configureErrorResponse(response, HttpStatus.INTERNAL_SERVER_ERROR_500, ex.toString());
+            } catch (final IOException ioEx) {
+                // The error response could not be written, e.g.: the client has gone away
+            } finally {
+                asyncContext.complete();
+            }
+        }
+    }
+
+    /**
+     * Counts the status code of the response and records the latencies. The total latency is the time stubby4j spent
+     * on the request, i.e.: it neither includes the stubbed latency, nor the time it takes to transfer a throttled body
+     */
+    private static void recordServedResponse(final StubSearchResult stubSearchResult,
+                                             final HttpServletResponse response,
+                                             final long searchNanos,
+                                             final long renderNanos) {
+        stubSearchResult.recordStatus(response.getStatus());
+        stubSearchResult.recordLatency(StubLatencies.Phase.RENDER, renderNanos);
+        stubSearchResult.recordLatency(StubLatencies.Phase.TOTAL, searchNanos + renderNanos);
+    }
 }
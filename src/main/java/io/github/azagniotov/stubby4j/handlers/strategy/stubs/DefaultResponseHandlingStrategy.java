@@ -1,74 +1,199 @@
 package io.github.azagniotov.stubby4j.handlers.strategy.stubs;
 
+import io.github.azagniotov.stubby4j.caching.FileContent;
+import io.github.azagniotov.stubby4j.caching.FileContentCache;
+import io.github.azagniotov.stubby4j.stubs.ResponseTemplate;
 import io.github.azagniotov.stubby4j.stubs.StubRequest;
 import io.github.azagniotov.stubby4j.stubs.StubResponse;
-import io.github.azagniotov.stubby4j.utils.StringUtils;
 import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.HttpOutput;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
-import static io.github.azagniotov.stubby4j.utils.FileUtils.fileToBytes;
 import static io.github.azagniotov.stubby4j.utils.HandlerUtils.setResponseMainHeaders;
-import static io.github.azagniotov.stubby4j.utils.StringUtils.getBytesUtf8;
-import static io.github.azagniotov.stubby4j.utils.StringUtils.isTokenized;
-import static io.github.azagniotov.stubby4j.utils.StringUtils.replaceTokens;
-import static io.github.azagniotov.stubby4j.utils.StringUtils.replaceTokensInString;
 
 public final class DefaultResponseHandlingStrategy implements StubResponseHandlingStrategy {
 
     private final StubResponse stubbedResponse;
+    // Looked up once per request, null if the stubbed 'body' is served (or if the 'file' path is a template)
+    private final FileContent fileContent;
+    private final FileContentCache fileContentCache;
 
-    DefaultResponseHandlingStrategy(final StubResponse stubbedResponse) {
+    DefaultResponseHandlingStrategy(final StubResponse stubbedResponse, final FileContent fileContent, final FileContentCache fileContentCache) {
         this.stubbedResponse = stubbedResponse;
+        this.fileContent = fileContent;
+        this.fileContentCache = fileContentCache;
     }
 
     @Override
     public void handle(final HttpServletResponse response, final StubRequest assertionStubRequest) throws Exception {
         final Map<String, String> regexGroups = assertionStubRequest.getRegexGroups();
 
-        setResponseMainHeaders(response);
-        setResponseStubbedHeaders(response, stubbedResponse, regexGroups);
+        setResponseStatusAndHeaders(response, regexGroups);
 
-        if (StringUtils.isSet(stubbedResponse.getLatency())) {
-            final long latency = Long.parseLong(stubbedResponse.getLatency());
-            TimeUnit.MILLISECONDS.sleep(latency);
+        final long bandwidthBytesPerSecond = stubbedResponse.getBandwidthBytesPerSecond();
+        if (bandwidthBytesPerSecond > 0) {
+            // The request could not be suspended, so the body is trickled by the request thread
+            final ByteBuffer responseBody = resolveThrottledResponseBody(response, regexGroups);
+            if (responseBody != null) {
+                try (final OutputStream outputStream = response.getOutputStream()) {
+                    ThrottledBodyWriter.writeBlocking(outputStream, responseBody, bandwidthBytesPerSecond);
+                }
+            }
+            return;
         }
-        response.setStatus(stubbedResponse.getHttpStatusCode().getCode());
 
-        final byte[] responseBody = stubbedResponse.getResponseBodyAsBytes();
         if (stubbedResponse.isFilePathContainsTemplateTokens()) {
-            final String resolvedPath = replaceTokensInString(stubbedResponse.getRawFileAbsolutePath(), regexGroups);
-            final File resolvedFile = new File(resolvedPath);
-            if (resolvedFile.exists()) {
-                writeOutputStream(response, getBytesUtf8(replaceTokens(fileToBytes(resolvedFile), regexGroups)));
-            } else {
+            final FileContent resolvedFileContent = resolveFileContent(regexGroups);
+            if (resolvedFileContent == null) {
                 response.setStatus(HttpStatus.NOT_FOUND_404);
+            } else {
+                writeOutputStream(response, resolvedFileContent, regexGroups);
             }
-        } else if (stubbedResponse.isBodyContainsTemplateTokens()) {
-            writeOutputStream(response, getBytesUtf8(replaceTokens(responseBody, regexGroups)));
+            return;
+        }
+
+        if (fileContent != null) {
+            writeOutputStream(response, fileContent, regexGroups);
+            return;
+        }
+
+        final ResponseTemplate bodyTemplate = stubbedResponse.getBodyTemplate();
+        if (bodyTemplate != null) {
+            writeOutputStream(response, bodyTemplate, regexGroups);
         } else {
-            writeOutputStream(response, responseBody);
+            writeOutputStream(response, stubbedResponse.getResponseBody());
         }
     }
 
+    /**
+     * A response with a stubbed 'bandwidth' returns a {@link ThrottledBodyWriter}, which trickles the body
+     * using non-blocking writes. Any other response is written as it is, see {@link #handle(HttpServletResponse, StubRequest)},
+     * which trickles a throttled body by holding the request thread instead
+     */
+    @Override
+    public WriteListener handle(final HttpServletResponse response,
+                                final StubRequest assertionStubRequest,
+                                final AsyncContext asyncContext) throws Exception {
+        final long bandwidthBytesPerSecond = stubbedResponse.getBandwidthBytesPerSecond();
+        if (bandwidthBytesPerSecond == 0) {
+            handle(response, assertionStubRequest);
+            return null;
+        }
+
+        final Map<String, String> regexGroups = assertionStubRequest.getRegexGroups();
+        setResponseStatusAndHeaders(response, regexGroups);
+
+        final ByteBuffer responseBody = resolveThrottledResponseBody(response, regexGroups);
+        if (responseBody == null) {
+            return null;
+        }
+
+        return new ThrottledBodyWriter(asyncContext, response.getOutputStream(), responseBody, bandwidthBytesPerSecond);
+    }
+
+    /**
+     * @return the whole body of a throttled response, or null if the resolved 'file' path does not exist,
+     * in which case the response status is set to 404
+     */
+    private ByteBuffer resolveThrottledResponseBody(final HttpServletResponse response, final Map<String, String> regexGroups) throws IOException {
+        if (stubbedResponse.isFilePathContainsTemplateTokens()) {
+            final FileContent resolvedFileContent = resolveFileContent(regexGroups);
+            if (resolvedFileContent == null) {
+                response.setStatus(HttpStatus.NOT_FOUND_404);
+                return null;
+            }
+            return resolvedFileContent.getTemplate() != null ?
+                    render(resolvedFileContent.getTemplate(), regexGroups) : resolvedFileContent.getContent();
+        } else if (fileContent != null) {
+            // A streamed file is read onto the heap, since it is trickled to the client anyway
+            return fileContent.getTemplate() != null ?
+                    render(fileContent.getTemplate(), regexGroups) : fileContent.getContent();
+        }
+        final ResponseTemplate bodyTemplate = stubbedResponse.getBodyTemplate();
+        return bodyTemplate != null ? render(bodyTemplate, regexGroups) : stubbedResponse.getResponseBody();
+    }
+
+    private void setResponseStatusAndHeaders(final HttpServletResponse response, final Map<String, String> regexGroups) {
+        setResponseMainHeaders(response);
+        setResponseStubbedHeaders(response, stubbedResponse, regexGroups);
+
+        response.setStatus(stubbedResponse.getHttpStatusCode().getCode());
+    }
+
+    private FileContent resolveFileContent(final Map<String, String> regexGroups) {
+        final String resolvedPath = stubbedResponse.getFilePathTemplate().render(regexGroups);
+        return fileContentCache.get(new File(resolvedPath));
+    }
+
+    private static ByteBuffer render(final ResponseTemplate responseTemplate, final Map<String, String> regexGroups) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        responseTemplate.render(outputStream, regexGroups);
+        return ByteBuffer.wrap(outputStream.toByteArray());
+    }
+
     private void setResponseStubbedHeaders(final HttpServletResponse response, final StubResponse stubResponse, final Map<String, String> regexGroups) {
         for (final Map.Entry<String, String> headerPair : stubResponse.getHeaders().entrySet()) {
-            String responseHeaderValue = headerPair.getValue();
-            if (isTokenized(responseHeaderValue)) {
-                responseHeaderValue = replaceTokensInString(headerPair.getValue(), regexGroups);
-            }
+            final ResponseTemplate headerTemplate = stubResponse.getHeaderTemplate(headerPair.getKey());
+            final String responseHeaderValue = headerTemplate == null ? headerPair.getValue() : headerTemplate.render(regexGroups);
             response.setHeader(headerPair.getKey(), responseHeaderValue);
         }
     }
 
-    private void writeOutputStream(final HttpServletResponse response, final byte[] responseBody) throws IOException {
+    private void writeOutputStream(final HttpServletResponse response, final ResponseTemplate responseTemplate, final Map<String, String> regexGroups) throws IOException {
+        try (final OutputStream outputStream = response.getOutputStream()) {
+            responseTemplate.render(outputStream, regexGroups);
+            outputStream.flush();
+        }
+    }
+
+    private void writeOutputStream(final HttpServletResponse response, final FileContent fileContent, final Map<String, String> regexGroups) throws IOException {
+        if (fileContent.getTemplate() != null) {
+            writeOutputStream(response, fileContent.getTemplate(), regexGroups);
+        } else if (fileContent.isStreamed()) {
+            writeOutputStream(response, fileContent);
+        } else {
+            writeOutputStream(response, fileContent.getContent());
+        }
+    }
+
+    private void writeOutputStream(final HttpServletResponse response, final FileContent streamedFileContent) throws IOException {
+        try (final FileChannel fileChannel = streamedFileContent.openChannel();
+             final OutputStream outputStream = response.getOutputStream()) {
+            if (outputStream instanceof HttpOutput) {
+                ((HttpOutput) outputStream).sendContent(fileChannel);
+            } else {
+                final WritableByteChannel outputChannel = Channels.newChannel(outputStream);
+                final long size = fileChannel.size();
+                long position = 0;
+                while (position < size) {
+                    position += fileChannel.transferTo(position, size - position, outputChannel);
+                }
+            }
+            outputStream.flush();
+        }
+    }
+
+    private void writeOutputStream(final HttpServletResponse response, final ByteBuffer responseBody) throws IOException {
         try (final OutputStream outputStream = response.getOutputStream()) {
-            outputStream.write(responseBody);
+            if (outputStream instanceof HttpOutput) {
+                // Jetty sends the pre-encoded body, or the loaded file, as is,
+                // without copying it into an array first
+                ((HttpOutput) outputStream).sendContent(responseBody);
+            } else {
+                Channels.newChannel(outputStream).write(responseBody);
+            }
             outputStream.flush();
         }
     }
@@ -1,17 +1,13 @@
 package io.github.azagniotov.stubby4j.handlers.strategy.stubs;
 
+import io.github.azagniotov.stubby4j.stubs.ResponseTemplate;
 import io.github.azagniotov.stubby4j.stubs.StubRequest;
 import io.github.azagniotov.stubby4j.stubs.StubResponse;
 import io.github.azagniotov.stubby4j.utils.HandlerUtils;
-import io.github.azagniotov.stubby4j.utils.StringUtils;
 import org.eclipse.jetty.http.HttpHeader;
 
 import javax.servlet.http.HttpServletResponse;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
-
-import static io.github.azagniotov.stubby4j.utils.StringUtils.isTokenized;
-import static io.github.azagniotov.stubby4j.utils.StringUtils.replaceTokensInString;
 
 public class RedirectResponseHandlingStrategy implements StubResponseHandlingStrategy {
 
@@ -26,14 +22,10 @@ public class RedirectResponseHandlingStrategy implements StubResponseHandlingStr
         HandlerUtils.setResponseMainHeaders(response);
         final Map<String, String> regexGroups = assertionStubRequest.getRegexGroups();
 
-        if (StringUtils.isSet(foundStubResponse.getLatency())) {
-            final long latency = Long.parseLong(foundStubResponse.getLatency());
-            TimeUnit.MILLISECONDS.sleep(latency);
-        }
-
         final String headerLocation = foundStubResponse.getHeaders().get("location");
-        if (isTokenized(headerLocation)) {
-            response.setHeader(HttpHeader.LOCATION.asString(), replaceTokensInString(headerLocation, regexGroups));
+        final ResponseTemplate headerLocationTemplate = foundStubResponse.getHeaderTemplate("location");
+        if (headerLocationTemplate != null) {
+            response.setHeader(HttpHeader.LOCATION.asString(), headerLocationTemplate.render(regexGroups));
         } else {
             response.setHeader(HttpHeader.LOCATION.asString(), headerLocation);
         }
@@ -2,8 +2,25 @@ package io.github.azagniotov.stubby4j.handlers.strategy.stubs;
 
 import io.github.azagniotov.stubby4j.stubs.StubRequest;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletResponse;
 
 public interface StubResponseHandlingStrategy {
     void handle(final HttpServletResponse response, final StubRequest assertionStubRequest) throws Exception;
+
+    /**
+     * Handles the response of a suspended (i.e.: async) request. A strategy that writes the response body
+     * asynchronously returns the {@link WriteListener} that writes it, which is registered by the caller once the
+     * caller is done with the response, and which completes the request once the body has been written.
+     *
+     * @return the listener that writes the response body and completes the request, or null if the response
+     * has already been written, in which case the caller completes the request
+     */
+    default WriteListener handle(final HttpServletResponse response,
+                                 final StubRequest assertionStubRequest,
+                                 final AsyncContext asyncContext) throws Exception {
+        handle(response, assertionStubRequest);
+        return null;
+    }
 }
@@ -1,5 +1,7 @@
 package io.github.azagniotov.stubby4j.handlers.strategy.stubs;
 
+import io.github.azagniotov.stubby4j.caching.FileContent;
+import io.github.azagniotov.stubby4j.caching.FileContentCache;
 import io.github.azagniotov.stubby4j.stubs.StubResponse;
 import org.eclipse.jetty.http.HttpStatus;
 
@@ -9,15 +11,16 @@ public final class StubsResponseHandlingStrategyFactory {
 
     }
 
-    public static StubResponseHandlingStrategy getStrategy(final StubResponse foundStubResponse) {
+    public static StubResponseHandlingStrategy getStrategy(final StubResponse foundStubResponse, final FileContentCache fileContentCache) {
 
         final HttpStatus.Code httpStatusCode = foundStubResponse.getHttpStatusCode();
         switch (httpStatusCode) {
             case NOT_FOUND:
-                if (foundStubResponse.getResponseBodyAsBytes().length == 0) {
+                final FileContent notFoundFileContent = foundStubResponse.getFileContent(fileContentCache);
+                if (notFoundFileContent == null && !foundStubResponse.getResponseBody().hasRemaining()) {
                     return new NotFoundResponseHandlingStrategy();
                 }
-                break;
+                return new DefaultResponseHandlingStrategy(foundStubResponse, notFoundFileContent, fileContentCache);
             case UNAUTHORIZED:
                 return new UnauthorizedResponseHandlingStrategy();
 
@@ -43,6 +46,6 @@ public final class StubsResponseHandlingStrategyFactory {
                 return new RedirectResponseHandlingStrategy(foundStubResponse);
         }
 
-        return new DefaultResponseHandlingStrategy(foundStubResponse);
+        return new DefaultResponseHandlingStrategy(foundStubResponse, foundStubResponse.getFileContent(fileContentCache), fileContentCache);
     }
 }
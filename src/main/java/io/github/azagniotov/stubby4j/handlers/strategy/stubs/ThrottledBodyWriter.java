@@ -0,0 +1,152 @@
+package io.github.azagniotov.stubby4j.handlers.strategy.stubs;
+
+import io.github.azagniotov.stubby4j.handlers.ResponseScheduler;
+import org.eclipse.jetty.server.HttpOutput;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes a response body at the stubbed 'bandwidth', i.e.: in chunks of up to a tenth of the bytes per second,
+ * one chunk per tick, using non-blocking writes. Between the chunks, no thread is held: when the tick is due, the
+ * {@link ResponseScheduler} timer thread dispatches the next chunk to a Jetty thread (see {@link AsyncContext#start(Runnable)}),
+ * so that the timer thread never writes, and a Jetty thread also writes the next chunk when the output becomes
+ * ready again (see {@link WriteListener#onWritePossible()}). Since the next chunk is only written once the previous
+ * one has been written, a slow client slows down the transfer further, same as a real slow downstream would.
+ * <p>
+ * The request is completed once the whole body has been written, or when writing the body fails.
+ */
+final class ThrottledBodyWriter implements WriteListener {
+
+    private static final long TICKS_PER_SECOND = 10L;
+
+    private final AsyncContext asyncContext;
+    private final ServletOutputStream outputStream;
+    private final ByteBuffer responseBody;
+    private final int chunkSize;
+    private final long tickNanos;
+    private final AtomicBoolean completed;
+    private byte[] chunkBytes;
+    private long nextChunkNanos;
+
+    ThrottledBodyWriter(final AsyncContext asyncContext,
+                        final ServletOutputStream outputStream,
+                        final ByteBuffer responseBody,
+                        final long bandwidthBytesPerSecond) {
+        this.asyncContext = asyncContext;
+        this.outputStream = outputStream;
+        this.responseBody = responseBody;
+        this.chunkSize = chunkSize(bandwidthBytesPerSecond);
+        this.tickNanos = tickNanos(chunkSize, bandwidthBytesPerSecond);
+        this.completed = new AtomicBoolean(false);
+        this.nextChunkNanos = System.nanoTime();
+    }
+
+    /**
+     * Called by Jetty once the writer is registered, and whenever the output becomes ready again after
+     * {@link ServletOutputStream#isReady()} returned false. Never called concurrently with {@link #writeNextChunk()},
+     * which is only scheduled while the output is ready.
+     */
+    @Override
+    public void onWritePossible() throws IOException {
+        while (outputStream.isReady()) {
+            if (!responseBody.hasRemaining()) {
+                complete();
+                return;
+            }
+
+            final long nowNanos = System.nanoTime();
+            final long waitNanos = nextChunkNanos - nowNanos;
+            if (waitNanos > 0) {
+                ResponseScheduler.schedule(this::onTick, Math.max(1L, TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+                return;
+            }
+
+            writeChunk();
+            // The time lost to a slow client is not caught up with a burst of chunks
+            nextChunkNanos = Math.max(nextChunkNanos, nowNanos) + tickNanos;
+        }
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        // The client has gone away, or has timed out
+        complete();
+    }
+
+    /**
+     * Writes the body at the stubbed 'bandwidth' by holding the calling thread between the chunks, which is only
+     * meant for the requests that can not be suspended, i.e.: when async is not supported
+     */
+    static void writeBlocking(final OutputStream outputStream,
+                              final ByteBuffer responseBody,
+                              final long bandwidthBytesPerSecond) throws IOException, InterruptedException {
+        final int chunkSize = chunkSize(bandwidthBytesPerSecond);
+        final long tickNanos = tickNanos(chunkSize, bandwidthBytesPerSecond);
+        final byte[] chunkBytes = new byte[Math.min(chunkSize, responseBody.remaining())];
+        while (responseBody.hasRemaining()) {
+            final int length = Math.min(chunkSize, responseBody.remaining());
+            responseBody.get(chunkBytes, 0, length);
+            outputStream.write(chunkBytes, 0, length);
+            outputStream.flush();
+            if (responseBody.hasRemaining()) {
+                TimeUnit.NANOSECONDS.sleep(tickNanos);
+            }
+        }
+    }
+
+    private static int chunkSize(final long bandwidthBytesPerSecond) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1L, bandwidthBytesPerSecond / TICKS_PER_SECOND));
+    }
+
+    private static long tickNanos(final int chunkSize, final long bandwidthBytesPerSecond) {
+        return chunkSize * TimeUnit.SECONDS.toNanos(1) / bandwidthBytesPerSecond;
+    }
+
+    private void onTick() {
+        try {
+            asyncContext.start(this::writeNextChunk);
+        } catch (final IllegalStateException ex) {
+            // The request has already been completed, e.g.: the connection was closed while waiting
+            complete();
+        }
+    }
+
+    private void writeNextChunk() {
+        try {
+            onWritePossible();
+        } catch (final Throwable throwable) {
+            onError(throwable);
+        }
+    }
+
+    private void writeChunk() throws IOException {
+        final int length = Math.min(chunkSize, responseBody.remaining());
+        if (outputStream instanceof HttpOutput) {
+            // Jetty writes a slice of the pre-encoded body, or of the loaded file, without copying it
+            final ByteBuffer chunk = responseBody.slice();
+            chunk.limit(length);
+            responseBody.position(responseBody.position() + length);
+            ((HttpOutput) outputStream).write(chunk);
+        } else {
+            if (chunkBytes == null) {
+                // The first chunk is the largest one
+                chunkBytes = new byte[length];
+            }
+            responseBody.get(chunkBytes, 0, length);
+            outputStream.write(chunkBytes, 0, length);
+        }
+    }
+
+    private void complete() {
+        if (completed.compareAndSet(false, true)) {
+            asyncContext.complete();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package io.github.azagniotov.stubby4j.http;
+
+import io.github.azagniotov.stubby4j.utils.StringUtils;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.util.Callback;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.IntConsumer;
+
+/**
+ * Pipes a proxied response to the client as it arrives: the status code and every header field (except for the
+ * hop-by-hop ones) are copied as they were received, and every chunk of the body is written to the client using
+ * non-blocking writes (see {@link WriteListener}).
+ * <p>
+ * The next chunk of the body is not read from the proxy config endpoint until the previous one has been written to the
+ * client, i.e.: a slow client slows down the reading of the proxied response, and at most one chunk is held in
+ * memory, regardless of the size of the body.
+ * <p>
+ * If the proxied request fails before the response started, a 500 response with the failure message is served,
+ * same as when the response is not streamed. If it fails while the body is being piped, the connection to the client
+ * is aborted, so that the client does not mistake the truncated body for a complete one.
+ */
+final class ProxyResponsePipe extends Response.Listener.Adapter implements WriteListener {
+
+    // Describe the connection to the proxy config endpoint, not the proxied response
+    private static final Set<String> HOP_BY_HOP_HEADERS = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER) {{
+        add("Connection");
+        add("Keep-Alive");
+        add("Proxy-Authenticate");
+        add("Proxy-Authorization");
+        add("Proxy-Connection");
+        add("TE");
+        add("Trailer");
+        add("Transfer-Encoding");
+        add("Upgrade");
+    }};
+
+    private final AsyncContext asyncContext;
+    private final HttpServletResponse servletResponse;
+    private final Map<String, String> additionalHeaders;
+    private final Runnable onResponseStarted;
+    private final IntConsumer onCompleted;
+
+    // Guarded by 'this'
+    private Response upstreamResponse;
+    private ServletOutputStream outputStream;
+    private ByteBuffer pendingContent;
+    private Callback pendingContentCallback;
+    private Callback writtenContentCallback;
+    private boolean upstreamCompleted;
+    private boolean completed;
+    private int status;
+
+    /**
+     * @param additionalHeaders the headers to add to the proxied response
+     * @param onResponseStarted called once the status and headers of the proxied response have been received
+     * @param onCompleted       called with the status code of the served response once the request is completed
+     */
+    ProxyResponsePipe(final AsyncContext asyncContext,
+                      final HttpServletResponse servletResponse,
+                      final Map<String, String> additionalHeaders,
+                      final Runnable onResponseStarted,
+                      final IntConsumer onCompleted) {
+        this.asyncContext = asyncContext;
+        this.servletResponse = servletResponse;
+        this.additionalHeaders = additionalHeaders;
+        this.onResponseStarted = onResponseStarted;
+        this.onCompleted = onCompleted;
+    }
+
+    @Override
+    public void onHeaders(final Response response) {
+        onResponseStarted.run();
+        servletResponse.setStatus(response.getStatus());
+        for (final HttpField httpField : response.getHeaders()) {
+            if (!HOP_BY_HOP_HEADERS.contains(httpField.getName())) {
+                servletResponse.addHeader(httpField.getName(), httpField.getValue());
+            }
+        }
+        for (final Map.Entry<String, String> entry : additionalHeaders.entrySet()) {
+            servletResponse.setHeader(entry.getKey(), entry.getValue());
+        }
+
+        try {
+            final ServletOutputStream servletOutputStream = servletResponse.getOutputStream();
+            synchronized (this) {
+                this.upstreamResponse = response;
+                this.outputStream = servletOutputStream;
+                this.status = response.getStatus();
+            }
+            servletOutputStream.setWriteListener(this);
+        } catch (final IOException | RuntimeException ex) {
+            response.abort(ex);
+        }
+    }
+
+    @Override
+    public void onContent(final Response response, final ByteBuffer content, final Callback callback) {
+        synchronized (this) {
+            pendingContent = content;
+            pendingContentCallback = callback;
+        }
+        writePending();
+    }
+
+    @Override
+    public void onComplete(final Result result) {
+        if (result.isFailed()) {
+            fail(result.getFailure());
+            return;
+        }
+
+        synchronized (this) {
+            upstreamCompleted = true;
+        }
+        writePending();
+    }
+
+    @Override
+    public void onWritePossible() {
+        writePending();
+    }
+
+    @Override
+    public void onError(final Throwable failure) {
+        // The client has gone away, or has timed out: the proxied response is not read any further
+        final Callback contentCallback;
+        final Response response;
+        synchronized (this) {
+            contentCallback = pendingContentCallback != null ? pendingContentCallback : writtenContentCallback;
+            response = upstreamResponse;
+            pendingContent = null;
+            pendingContentCallback = null;
+            writtenContentCallback = null;
+        }
+
+        if (contentCallback != null) {
+            contentCallback.failed(failure);
+        } else if (response != null) {
+            response.abort(failure);
+        }
+        complete();
+    }
+
+    /**
+     * Writes the pending chunk of the body while the output is ready, and completes the request once the whole
+     * body has been written. Called by the HTTP client when a chunk arrives, and by Jetty when the output becomes
+     * ready again after the previous chunk could not be written right away.
+     */
+    private void writePending() {
+        Callback contentWritten = null;
+        boolean bodyWritten = false;
+        try {
+            synchronized (this) {
+                if (outputStream == null || completed) {
+                    return;
+                }
+
+                while (outputStream.isReady()) {
+                    // The previous chunk has been written, its buffer can be handed back to the HTTP client
+                    if (writtenContentCallback != null) {
+                        contentWritten = writtenContentCallback;
+                        writtenContentCallback = null;
+                    }
+
+                    if (pendingContent == null) {
+                        bodyWritten = upstreamCompleted;
+                        break;
+                    }
+
+                    write(pendingContent);
+                    writtenContentCallback = pendingContentCallback;
+                    pendingContent = null;
+                    pendingContentCallback = null;
+                }
+            }
+        } catch (final IOException | RuntimeException ex) {
+            onError(ex);
+            return;
+        }
+
+        if (contentWritten != null) {
+            // Asks the HTTP client for the next chunk, which may arrive on this very thread
+            contentWritten.succeeded();
+        }
+        if (bodyWritten) {
+            complete();
+        }
+    }
+
+    private void write(final ByteBuffer content) throws IOException {
+        if (outputStream instanceof HttpOutput) {
+            ((HttpOutput) outputStream).write(content);
+        } else {
+            final byte[] bytes = new byte[content.remaining()];
+            content.get(bytes);
+            outputStream.write(bytes);
+        }
+    }
+
+    /**
+     * Serves a 500 response if the proxied response has not started yet, otherwise aborts the connection to the client.
+     * The 500 response body is written by a Jetty thread (see {@link AsyncContext#start(Runnable)}), since the failure
+     * is usually reported by an HTTP client thread, which must not block on a slow client.
+     */
+    void fail(final Throwable failure) {
+        final boolean started;
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            started = outputStream != null;
+        }
+
+        if (!started && !servletResponse.isCommitted()) {
+            servletResponse.reset();
+            servletResponse.setStatus(HttpStatus.INTERNAL_SERVER_ERROR_500);
+            for (final Map.Entry<String, String> entry : additionalHeaders.entrySet()) {
+                servletResponse.setHeader(entry.getKey(), entry.getValue());
+            }
+            synchronized (this) {
+                status = HttpStatus.INTERNAL_SERVER_ERROR_500;
+            }
+
+            try {
+                asyncContext.start(() -> writeFailure(failure));
+            } catch (final IllegalStateException ex) {
+                // The request has already been completed, e.g.: the connection was closed while waiting
+                complete();
+            }
+            return;
+        }
+
+        Request.getBaseRequest(asyncContext.getRequest()).getHttpChannel().abort(failure);
+        complete();
+    }
+
+    private void writeFailure(final Throwable failure) {
+        try {
+            if (failure.getMessage() != null) {
+                servletResponse.getOutputStream().write(StringUtils.getBytesUtf8(failure.getMessage()));
+            }
+        } catch (final IOException | RuntimeException ex) {
+            // The client has gone away
+        } finally {
+            complete();
+        }
+    }
+
+    private void complete() {
+        final int servedStatus;
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            servedStatus = status;
+        }
+
+        try {
+            asyncContext.complete();
+        } finally {
+            onCompleted.accept(servedStatus);
+        }
+    }
+}
@@ -2,43 +2,71 @@ package io.github.azagniotov.stubby4j.http;
 
 import io.github.azagniotov.stubby4j.cli.ANSITerminal;
 import io.github.azagniotov.stubby4j.client.StubbyResponse;
+import io.github.azagniotov.stubby4j.server.ssl.SslUtils;
 import io.github.azagniotov.stubby4j.stubs.StubRequest;
 import io.github.azagniotov.stubby4j.utils.ConsoleUtils;
 import io.github.azagniotov.stubby4j.utils.StringUtils;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.client.util.StringContentProvider;
+import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpMethod;
-import org.eclipse.jetty.http.HttpScheme;
 import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.net.ssl.HttpsURLConnection;
-import java.io.BufferedWriter;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
 
 import static io.github.azagniotov.stubby4j.common.Common.POSTING_METHODS;
-import static io.github.azagniotov.stubby4j.server.ssl.SslUtils.SSL_SOCKET_FACTORY;
-import static io.github.azagniotov.stubby4j.utils.StringUtils.charsetUTF8;
-import static io.github.azagniotov.stubby4j.utils.StringUtils.inputStreamToString;
-import static java.lang.String.valueOf;
 import static java.util.Map.Entry;
 import static org.eclipse.jetty.http.HttpHeader.CONTENT_ENCODING;
 import static org.eclipse.jetty.http.HttpHeader.CONTENT_LANGUAGE;
-import static org.eclipse.jetty.http.HttpHeader.CONTENT_LENGTH;
 import static org.eclipse.jetty.http.HttpHeader.CONTENT_TYPE;
 
-
+/**
+ * Makes the HTTP requests to the proxy config endpoints and to the recording sources, and the requests of the
+ * {@link io.github.azagniotov.stubby4j.client.StubbyClient}. The requests are sent by a single Jetty {@link HttpClient},
+ * which keeps the connections to every destination (i.e.: scheme, host and port) alive in a bounded pool, and does
+ * not block a thread while waiting for the response. The client is started on first use.
+ * <p>
+ * The connect timeout of a Jetty {@link HttpClient} can not be set per request, so the requests with a connect timeout
+ * other than the default one (e.g.: of a proxy config, see {@link #httpRequestFromStubAsync(StubRequest, String, long, long)})
+ * are sent by another client, one per distinct connect timeout, with its own pool of connections.
+ */
 public class StubbyHttpTransport {
     private static final Logger LOGGER = LoggerFactory.getLogger(StubbyHttpTransport.class);
 
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_DESTINATION = 64;
+    public static final int DEFAULT_MAX_REQUESTS_QUEUED_PER_DESTINATION = 1024;
+    public static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    // Closes a connection that has been silent for this long, i.e.: the time to wait for the next bytes of a response
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    // The time to wait for the whole exchange, from queueing the request to receiving the last byte of the response
+    public static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    private static final int MAX_BUFFERED_RESPONSE_BYTES = 64 * 1024 * 1024;
+
     private static final Set<String> SUPPORTED_METHODS = new HashSet<String>() {{
         add(HttpMethod.GET.asString());
         add(HttpMethod.HEAD.asString());
@@ -50,107 +78,318 @@ public class StubbyHttpTransport {
         add(HttpMethodExtended.PATCH.asString());
     }};
 
+    // The headers that HttpURLConnection, which this transport used before, never sent on behalf of the caller.
+    // They describe the connection to stubby4j (e.g.: Host, Content-Length), not the request to the destination
+    private static final Set<String> RESTRICTED_HEADERS = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER) {{
+        add("Access-Control-Request-Headers");
+        add("Access-Control-Request-Method");
+        add("Connection");
+        add("Content-Length");
+        add("Content-Transfer-Encoding");
+        add("Host");
+        add("Keep-Alive");
+        add("Origin");
+        add("Trailer");
+        add("Transfer-Encoding");
+        add("Upgrade");
+        add("Via");
+    }};
+
+    // Shared by all the HTTP clients, i.e.: a proxy config with its own connect timeout does not add threads
+    private final QueuedThreadPool executor;
+    private final Scheduler scheduler;
+    private final HttpClient httpClient;
+    private final ConcurrentMap<Long, HttpClient> httpClientsByConnectTimeout;
+    private final int maxConnectionsPerDestination;
+    private final long connectTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long requestTimeoutMillis;
+
     public StubbyHttpTransport() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_DESTINATION,
+                DEFAULT_CONNECT_TIMEOUT_MILLIS,
+                DEFAULT_IDLE_TIMEOUT_MILLIS,
+                DEFAULT_REQUEST_TIMEOUT_MILLIS);
+    }
 
+    public StubbyHttpTransport(final int maxConnectionsPerDestination,
+                               final long connectTimeoutMillis,
+                               final long idleTimeoutMillis,
+                               final long requestTimeoutMillis) {
+        this.maxConnectionsPerDestination = maxConnectionsPerDestination;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        this.executor = new QueuedThreadPool();
+        this.executor.setName("stubby4j-http-client");
+        // The clients are started on first use and may never be stopped, so they must not keep the JVM alive
+        this.executor.setDaemon(true);
+        this.scheduler = new ScheduledExecutorScheduler("stubby4j-http-client-scheduler", true);
+        this.httpClient = newHttpClient(connectTimeoutMillis);
+        this.httpClientsByConnectTimeout = new ConcurrentHashMap<>();
+    }
+
+    private HttpClient newHttpClient(final long connectTimeoutMillis) {
+        final SslContextFactory.Client sslContextFactory = new SslContextFactory.Client();
+        // Trusts stubby4j self-signed certificate, as well as the certificates trusted by the default trust store.
+        // The requests outside are made as part of StubRepository class behavior when proxying requests
+        sslContextFactory.setSslContext(SslUtils.getDefaultSslContext());
+
+        final HttpClient client = new HttpClient(sslContextFactory);
+        client.setExecutor(executor);
+        client.setScheduler(scheduler);
+        // Started and stopped together with the clients, see startedHttpClient() and stop(), not by every client
+        client.unmanage(executor);
+        client.unmanage(scheduler);
+        client.setMaxConnectionsPerDestination(maxConnectionsPerDestination);
+        client.setMaxRequestsQueuedPerDestination(DEFAULT_MAX_REQUESTS_QUEUED_PER_DESTINATION);
+        client.setConnectTimeout(connectTimeoutMillis);
+        client.setIdleTimeout(idleTimeoutMillis);
+        client.setFollowRedirects(false);
+        client.setUserAgentField(null);
+        // Responses are passed on the way they were received, e.g.: a gzipped body is not decompressed
+        client.getContentDecoderFactories().clear();
+        return client;
     }
 
     public StubbyResponse httpRequestFromStub(final StubRequest request, final String recordingSource) throws Exception {
+        return awaitResponse(httpRequestFromStubAsync(request, recordingSource));
+    }
+
+    /**
+     * Same as {@link #httpRequestFromStub(StubRequest, String)}, but does not wait for the response
+     *
+     * @return a future that is completed with the response, or exceptionally if the request failed or timed out
+     */
+    public CompletableFuture<StubbyResponse> httpRequestFromStubAsync(final StubRequest request, final String recordingSource) {
+        return httpRequestFromStubAsync(request, recordingSource, 0L, 0L);
+    }
+
+    /**
+     * Same as {@link #httpRequestFromStubAsync(StubRequest, String)}, but with the given timeouts
+     *
+     * @param connectTimeoutMillis the timeout of connecting to the destination, or zero to use the default one
+     * @param readTimeoutMillis    the longest silence of the destination while the response is awaited or read,
+     *                             or zero to use the default idle timeout. A request with a read timeout does not
+     *                             time out as a whole, i.e.: it may take longer than the default request timeout
+     *                             as long as the destination is never silent for longer than the read timeout
+     */
+    public CompletableFuture<StubbyResponse> httpRequestFromStubAsync(final StubRequest request,
+                                                                      final String recordingSource,
+                                                                      final long connectTimeoutMillis,
+                                                                      final long readTimeoutMillis) {
         final String method = request.getMethod().get(0);
         if (!ANSITerminal.isMute()) {
             final String logMessage = String.format("[%s] -> Making %s HTTP request from stub metadata to: [%s]", ConsoleUtils.getLocalDateTime(), method, recordingSource);
             ANSITerminal.incoming(logMessage);
         }
         LOGGER.debug("Making {} HTTP request from stub metadata to: [{}].", method, recordingSource);
-        return request(method,
+        return requestAsync(method,
                 recordingSource,
                 request.getPostBody(),
                 request.getHeaders(),
-                StringUtils.calculateStringLength(request.getPostBody()));
+                connectTimeoutMillis,
+                readTimeoutMillis);
     }
 
     public StubbyResponse request(final String method,
                                   final String fullUrl,
                                   final String post,
-                                  final Map<String, String> headers,
-                                  final int postLength) throws Exception {
+                                  final Map<String, String> headers) throws Exception {
+        return awaitResponse(requestAsync(method, fullUrl, post, headers, 0L, 0L));
+    }
 
+    private CompletableFuture<StubbyResponse> requestAsync(final String method,
+                                                           final String fullUrl,
+                                                           final String post,
+                                                           final Map<String, String> headers,
+                                                           final long connectTimeoutMillis,
+                                                           final long readTimeoutMillis) {
+        final CompletableFuture<StubbyResponse> responseFuture = new CompletableFuture<>();
         if (!SUPPORTED_METHODS.contains(method)) {
-            throw new UnsupportedOperationException(String.format("HTTP method '%s' not supported when contacting stubby4j", method));
+            responseFuture.completeExceptionally(new UnsupportedOperationException(String.format("HTTP method '%s' not supported when contacting stubby4j", method)));
+            return responseFuture;
         }
 
-        final HttpURLConnection connection = getHttpURLConnection(fullUrl);
+        try {
+            final Request request = newRequest(method, fullUrl, post, headers, connectTimeoutMillis, readTimeoutMillis);
+            if (readTimeoutMillis <= 0) {
+                request.timeout(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            request.send(new BufferingResponseListener(MAX_BUFFERED_RESPONSE_BYTES) {
+                @Override
+                public void onComplete(final Result result) {
+                    if (result.isFailed()) {
+                        responseFuture.completeExceptionally(result.getFailure());
+                    } else {
+                        responseFuture.complete(buildStubbyResponse(result.getResponse(), getContentAsString(StringUtils.UTF_8)));
+                    }
+                }
+            });
+        } catch (final Exception ex) {
+            responseFuture.completeExceptionally(ex);
+        }
 
-        connection.setRequestMethod(method);
-        connection.setUseCaches(false);
-        connection.setInstanceFollowRedirects(false);
-        setRequestHeaders(connection, headers, postLength);
+        return responseFuture;
+    }
 
-        if (POSTING_METHODS.contains(method)) {
-            writePost(connection, post);
+    /**
+     * Same as {@link #httpRequestFromStubAsync(StubRequest, String)}, but pipes the response to the given servlet
+     * response as it arrives, instead of receiving it in full (see {@link ProxyResponsePipe}). The memory held by
+     * the request is bounded by the response buffer size of the HTTP client, regardless of the size of the body.
+     * Unlike the buffered requests, the request does not time out as a whole, as a large body may take a long while
+     * to be piped: it times out if the connection is silent for the idle timeout.
+     *
+     * @param additionalHeaders    the headers to add to the response
+     * @param connectTimeoutMillis the timeout of connecting to the destination, or zero to use the default one
+     * @param readTimeoutMillis    the longest silence of the destination while the response is awaited or read,
+     *                             or zero to use the default idle timeout
+     * @param onResponseStarted    called once the status and headers of the response have been received
+     * @param onCompleted          called with the status code of the served response, once the given async context
+     *                             has been completed
+     */
+    public void streamRequestFromStub(final StubRequest request,
+                                      final String proxyEndpoint,
+                                      final AsyncContext asyncContext,
+                                      final HttpServletResponse response,
+                                      final Map<String, String> additionalHeaders,
+                                      final long connectTimeoutMillis,
+                                      final long readTimeoutMillis,
+                                      final Runnable onResponseStarted,
+                                      final IntConsumer onCompleted) {
+        final String method = request.getMethod().get(0);
+        if (!ANSITerminal.isMute()) {
+            final String logMessage = String.format("[%s] -> Streaming %s HTTP request from stub metadata to: [%s]", ConsoleUtils.getLocalDateTime(), method, proxyEndpoint);
+            ANSITerminal.incoming(logMessage);
         }
+        LOGGER.debug("Streaming {} HTTP request from stub metadata to: [{}].", method, proxyEndpoint);
 
-        return buildStubbyResponse(connection);
+        final ProxyResponsePipe proxyResponsePipe = new ProxyResponsePipe(asyncContext, response, additionalHeaders, onResponseStarted, onCompleted);
+        if (!SUPPORTED_METHODS.contains(method)) {
+            proxyResponsePipe.fail(new UnsupportedOperationException(String.format("HTTP method '%s' not supported when contacting stubby4j", method)));
+            return;
+        }
+
+        try {
+            newRequest(method, proxyEndpoint, request.getPostBody(), request.getHeaders(), connectTimeoutMillis, readTimeoutMillis).send(proxyResponsePipe);
+        } catch (final Exception ex) {
+            proxyResponsePipe.fail(ex);
+        }
     }
 
-    private HttpURLConnection getHttpURLConnection(final String fullUrl) throws Exception {
-        final URL url = new URL(fullUrl);
-        if (url.getProtocol().equalsIgnoreCase(HttpScheme.HTTPS.asString())) {
-            final HttpsURLConnection httpsURLConnection = (HttpsURLConnection) url.openConnection();
-            // As part of this SSL socket factory, providing a way for the web client to validate stubby4j self-signed
-            // certificate, as well as making requests to the outside world using the default trust store.
-            // The requests outside are made as part of StubRepository class behavior when proxying requests
-            httpsURLConnection.setSSLSocketFactory(SSL_SOCKET_FACTORY);
+    private Request newRequest(final String method,
+                               final String fullUrl,
+                               final String post,
+                               final Map<String, String> headers,
+                               final long connectTimeoutMillis,
+                               final long readTimeoutMillis) throws Exception {
+        final Request request = startedHttpClient(connectTimeoutMillis)
+                .newRequest(fullUrl)
+                .method(method);
+        if (readTimeoutMillis > 0) {
+            request.idleTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        setRequestHeaders(request, headers);
 
-            return httpsURLConnection;
-        } else {
-            return (HttpURLConnection) url.openConnection();
+        if (POSTING_METHODS.contains(method)) {
+            request.content(new StringContentProvider(post == null ? "" : post, StringUtils.charsetUTF8()));
         }
+        return request;
     }
 
-    private StubbyResponse buildStubbyResponse(final HttpURLConnection connection) throws IOException {
-        try {
-            connection.connect();
-            final int responseCode = connection.getResponseCode();
-            final Map<String, List<String>> responseHeaders = new HashMap<>(connection.getHeaderFields());
-            if (responseCode == HttpStatus.OK_200 || responseCode == HttpStatus.CREATED_201) {
-                try (final InputStream inputStream = connection.getInputStream()) {
-                    final String responseContent = inputStreamToString(inputStream);
-
-                    return new StubbyResponse(responseCode, responseContent, responseHeaders);
+    private HttpClient startedHttpClient(final long connectTimeoutMillis) throws Exception {
+        final HttpClient client = connectTimeoutMillis <= 0 || connectTimeoutMillis == this.connectTimeoutMillis
+                ? httpClient
+                : httpClientsByConnectTimeout.computeIfAbsent(connectTimeoutMillis, this::newHttpClient);
+        if (!client.isStarted()) {
+            synchronized (client) {
+                if (!client.isStarted()) {
+                    // A no-op if they have been started by another client already
+                    executor.start();
+                    scheduler.start();
+                    client.start();
                 }
             }
-            return new StubbyResponse(responseCode, connection.getResponseMessage(), responseHeaders);
-        } finally {
-            connection.disconnect();
-        }
-    }
-
-    private void setRequestHeaders(final HttpURLConnection connection, final Map<String, String> headers, final int postLength) {
-        connection.setRequestProperty("User-Agent", StringUtils.constructUserAgentName());
-        final String requestMethod = connection.getRequestMethod();
-        if (POSTING_METHODS.contains(StringUtils.toUpper(requestMethod))) {
-            connection.setDoOutput(true);
-            connection.setRequestProperty(CONTENT_TYPE.asString(), "application/x-www-form-urlencoded");
-            connection.setRequestProperty(CONTENT_LANGUAGE.asString(), "en-US");
-            connection.setRequestProperty(CONTENT_ENCODING.asString(), StringUtils.UTF_8);
-
-            connection.setRequestProperty(CONTENT_LENGTH.asString(), valueOf(postLength));
-            if (postLength > 0) {
-                connection.setFixedLengthStreamingMode(postLength);
-            } else {
-                connection.setChunkedStreamingMode(0);
+        }
+        return client;
+    }
+
+    /**
+     * Stops and drops the HTTP clients of the connect timeouts other than the given ones, e.g.: of the proxy configs
+     * that were deleted, or whose connect timeout changed. The default client is always kept
+     *
+     * @param connectTimeoutsMillis the connect timeouts that are still in use
+     */
+    public void retainConnectTimeouts(final Set<Long> connectTimeoutsMillis) {
+        for (final Map.Entry<Long, HttpClient> entry : httpClientsByConnectTimeout.entrySet()) {
+            if (connectTimeoutsMillis.contains(entry.getKey()) || !httpClientsByConnectTimeout.remove(entry.getKey(), entry.getValue())) {
+                continue;
+            }
+            final HttpClient client = entry.getValue();
+            synchronized (client) {
+                try {
+                    client.stop();
+                } catch (final Exception ex) {
+                    LOGGER.warn("Could not stop the HTTP client with connect timeout {}ms.", entry.getKey(), ex);
+                }
             }
         }
+    }
 
-        for (final Entry<String, String> entry : headers.entrySet()) {
-            connection.setRequestProperty(entry.getKey(), entry.getValue());
+    /**
+     * Stops the HTTP clients and closes the pooled connections. The clients are started again on next use
+     */
+    public void stop() throws Exception {
+        synchronized (httpClient) {
+            httpClient.stop();
         }
+        for (final HttpClient client : httpClientsByConnectTimeout.values()) {
+            synchronized (client) {
+                client.stop();
+            }
+        }
+        scheduler.stop();
+        executor.stop();
     }
 
-    private void writePost(final HttpURLConnection connection, final String post) throws IOException {
-        try (final OutputStreamWriter outputStreamWriter = new OutputStreamWriter(connection.getOutputStream(), charsetUTF8());
-             final BufferedWriter bufferedWriter = new BufferedWriter(outputStreamWriter)) {
-            bufferedWriter.write(post);
+    private static StubbyResponse awaitResponse(final CompletableFuture<StubbyResponse> responseFuture) throws Exception {
+        try {
+            return responseFuture.get();
+        } catch (final ExecutionException ex) {
+            if (ex.getCause() instanceof Exception) {
+                throw (Exception) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    private static StubbyResponse buildStubbyResponse(final Response response, final String responseContent) {
+        final Map<String, List<String>> responseHeaders = new HashMap<>();
+        for (final HttpField httpField : response.getHeaders()) {
+            responseHeaders.computeIfAbsent(httpField.getName(), name -> new ArrayList<>()).add(httpField.getValue());
+        }
+
+        final int responseCode = response.getStatus();
+        if (responseCode == HttpStatus.OK_200 || responseCode == HttpStatus.CREATED_201) {
+            return new StubbyResponse(responseCode, responseContent.trim(), responseHeaders);
+        }
+        return new StubbyResponse(responseCode, response.getReason(), responseHeaders);
+    }
+
+    private static void setRequestHeaders(final Request request, final Map<String, String> headers) {
+        request.agent(StringUtils.constructUserAgentName());
+        if (POSTING_METHODS.contains(StringUtils.toUpper(request.getMethod()))) {
+            request.header(CONTENT_TYPE, "application/x-www-form-urlencoded");
+            request.header(CONTENT_LANGUAGE, "en-US");
+            request.header(CONTENT_ENCODING, StringUtils.UTF_8);
+        }
+
+        for (final Entry<String, String> entry : headers.entrySet()) {
+            if (entry.getKey() != null && !RESTRICTED_HEADERS.contains(entry.getKey())) {
+                // Replaces the value set above, if any
+                request.header(entry.getKey(), null);
+                request.header(entry.getKey(), entry.getValue());
+            }
         }
     }
 }
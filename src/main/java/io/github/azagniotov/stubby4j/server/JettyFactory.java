@@ -5,9 +5,15 @@ import io.github.azagniotov.stubby4j.cli.ANSITerminal;
 import io.github.azagniotov.stubby4j.cli.CommandLineInterpreter;
 import io.github.azagniotov.stubby4j.handlers.AdminPortalHandler;
 import io.github.azagniotov.stubby4j.handlers.AjaxEndpointStatsHandler;
+import io.github.azagniotov.stubby4j.handlers.AjaxNonMatchesExplanationHandler;
 import io.github.azagniotov.stubby4j.handlers.AjaxResourceContentHandler;
+import io.github.azagniotov.stubby4j.handlers.EndpointStatsHandler;
 import io.github.azagniotov.stubby4j.handlers.FaviconHandler;
 import io.github.azagniotov.stubby4j.handlers.JsonErrorHandler;
+import io.github.azagniotov.stubby4j.handlers.LatencyStatsHandler;
+import io.github.azagniotov.stubby4j.handlers.MetricsHandler;
+import io.github.azagniotov.stubby4j.handlers.ProxyCacheHandler;
+import io.github.azagniotov.stubby4j.handlers.ProxyHealthHandler;
 import io.github.azagniotov.stubby4j.handlers.StatusPageHandler;
 import io.github.azagniotov.stubby4j.handlers.StubDataRefreshActionHandler;
 import io.github.azagniotov.stubby4j.handlers.StubsPortalHandler;
@@ -98,13 +104,13 @@ public final class JettyFactory {
         server.setStopAtShutdown(true);
 
         server.setConnectors(buildConnectors(server));
-        server.setHandler(constructHandlers());
+        server.setHandler(constructHandlers(server));
 
         // The WebSocketServerContainerInitializer.configureContext() requires knowledge about the Server that it will be run under.
         // Add the ServletContextHandler to the Server instance via its Server.setHandler(Handler) call before you attempt to configure the context.
         // https://stackoverflow.com/a/34044984
         // https://stackoverflow.com/questions/34007087/jetty-9-add-websockets-handler-to-handler-list
-        final ContextHandlerCollection contextHandlerCollection = constructHandlers();
+        final ContextHandlerCollection contextHandlerCollection = constructHandlers(server);
         final ServletContextHandler servletContextHandler =
                 new ServletContextHandler(contextHandlerCollection, WS_ROOT_PATH_INFO, ServletContextHandler.SESSIONS);
         servletContextHandler.setErrorHandler(new JsonErrorHandler());
@@ -128,7 +134,7 @@ public final class JettyFactory {
         return server;
     }
 
-    private ContextHandlerCollection constructHandlers() {
+    private ContextHandlerCollection constructHandlers(final Server server) {
 
         final JettyContext jettyContext = new JettyContext(currentHost, currentStubsPort, currentStubsSslPort, currentAdminPort);
         final ContextHandlerCollection handlers = new ContextHandlerCollection();
@@ -142,6 +148,11 @@ public final class JettyFactory {
 
                         constructHandler(ADMIN_CONNECTOR_NAME, "/status", gzipHandler(new StatusPageHandler(jettyContext, stubRepository))),
                         constructHandler(ADMIN_CONNECTOR_NAME, "/refresh", new StubDataRefreshActionHandler(stubRepository)),
+                        constructHandler(ADMIN_CONNECTOR_NAME, "/stats", gzipHandler(new EndpointStatsHandler(stubRepository))),
+                        constructHandler(ADMIN_CONNECTOR_NAME, "/latency", gzipHandler(new LatencyStatsHandler(stubRepository))),
+                        constructHandler(ADMIN_CONNECTOR_NAME, "/metrics", gzipHandler(new MetricsHandler(stubRepository, server.getThreadPool()))),
+                        constructHandler(ADMIN_CONNECTOR_NAME, "/proxy-cache", gzipHandler(new ProxyCacheHandler(stubRepository))),
+                        constructHandler(ADMIN_CONNECTOR_NAME, "/proxy-health", gzipHandler(new ProxyHealthHandler(stubRepository))),
                         constructHandler(ADMIN_CONNECTOR_NAME, "/js/highlight", gzipHandler(staticResourceHandler("ui/js/highlight/"))),
                         constructHandler(ADMIN_CONNECTOR_NAME, "/js/minified", gzipHandler(staticResourceHandler("ui/js/minified/"))),
                         constructHandler(ADMIN_CONNECTOR_NAME, "/js/d3", gzipHandler(staticResourceHandler("ui/js/d3/"))),
@@ -150,6 +161,7 @@ public final class JettyFactory {
                         constructHandler(ADMIN_CONNECTOR_NAME, "/images", gzipHandler(staticResourceHandler("ui/images/"))),
                         constructHandler(ADMIN_CONNECTOR_NAME, "/ajax/resource", gzipHandler(new AjaxResourceContentHandler(stubRepository))),
                         constructHandler(ADMIN_CONNECTOR_NAME, "/ajax/stats", gzipHandler(new AjaxEndpointStatsHandler(stubRepository))),
+                        constructHandler(ADMIN_CONNECTOR_NAME, "/ajax/explain", gzipHandler(new AjaxNonMatchesExplanationHandler(stubRepository))),
                         constructHandler(ADMIN_CONNECTOR_NAME, "/favicon.ico", gzipHandler(new FaviconHandler())),
                         constructHandler(ADMIN_CONNECTOR_NAME, ROOT_PATH_INFO, gzipHandler(new AdminPortalHandler(stubRepository)))
                 }
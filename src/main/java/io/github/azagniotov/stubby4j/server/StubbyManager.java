@@ -7,6 +7,7 @@ import io.github.azagniotov.stubby4j.cli.CommandLineInterpreter;
 import io.github.azagniotov.stubby4j.filesystem.ExternalFilesScanner;
 import io.github.azagniotov.stubby4j.filesystem.MainIncludedYamlScanner;
 import io.github.azagniotov.stubby4j.filesystem.MainYamlScanner;
+import io.github.azagniotov.stubby4j.http.StubbyHttpTransport;
 import io.github.azagniotov.stubby4j.stubs.StubRepository;
 import io.github.azagniotov.stubby4j.utils.ObjectUtils;
 import org.eclipse.jetty.server.Server;
@@ -23,12 +24,18 @@ public final class StubbyManager {
     private final Server server;
     private final JettyFactory jettyFactory;
     private final StubRepository stubRepository;
+    private final StubbyHttpTransport stubbyHttpTransport;
 
-    StubbyManager(final Map<String, String> commandLineArgs, final Server server, final JettyFactory jettyFactory, final StubRepository stubRepository) {
+    StubbyManager(final Map<String, String> commandLineArgs,
+                  final Server server,
+                  final JettyFactory jettyFactory,
+                  final StubRepository stubRepository,
+                  final StubbyHttpTransport stubbyHttpTransport) {
         this.commandLineArgs = commandLineArgs;
         this.server = server;
         this.jettyFactory = jettyFactory;
         this.stubRepository = stubRepository;
+        this.stubbyHttpTransport = stubbyHttpTransport;
     }
 
     public synchronized void startJetty() throws Exception {
@@ -57,6 +64,8 @@ public final class StubbyManager {
         }
 
         server.stop();
+        // Closes the pooled connections to the proxy config endpoints and to the recording sources
+        stubbyHttpTransport.stop();
 
         while (!isJettyDown()) {
             ANSITerminal.warn("Waiting for Jetty to finish shutting down..");
@@ -1,11 +1,12 @@
 package io.github.azagniotov.stubby4j.server;
 
 import io.github.azagniotov.stubby4j.caching.Cache;
+import io.github.azagniotov.stubby4j.caching.FileContentCache;
 import io.github.azagniotov.stubby4j.cli.ANSITerminal;
 import io.github.azagniotov.stubby4j.cli.CommandLineInterpreter;
 import io.github.azagniotov.stubby4j.cli.EmptyLogger;
 import io.github.azagniotov.stubby4j.http.StubbyHttpTransport;
-import io.github.azagniotov.stubby4j.stubs.StubHttpLifecycle;
+import io.github.azagniotov.stubby4j.stubs.StubMatch;
 import io.github.azagniotov.stubby4j.stubs.StubRepository;
 import io.github.azagniotov.stubby4j.yaml.YamlParseResultSet;
 import org.eclipse.jetty.server.Server;
@@ -30,16 +31,19 @@ public class StubbyManagerFactory {
             Log.setLog(new EmptyLogger());
         }
 
-        //TODO BUG: When stubs are cached, upon finding the previously cached match by hashCode,
-        // if stubbed response has template tokens for dynamic token replacement, the tokens are
-        // not replaced with values from the incoming request because the cached stub is not going
-        // through the same matching process like upon the first match. Either fix this bug or just
-        // deprecate the stub caching all together, as it is causing more headaches than not.
-        // Also, deprecate the --disable_stub_caching command line flag if the caching has retired.
         final boolean shouldDisableStubCache = commandLineArgs.containsKey(CommandLineInterpreter.OPTION_DISABLE_STUB_CACHING);
-        final Cache<String, StubHttpLifecycle> stubCache = Cache.stubHttpLifecycleCache(true);
+        final Cache<String, StubMatch> stubCache = Cache.stubHttpLifecycleCache(shouldDisableStubCache);
 
-        final StubRepository stubRepository = new StubRepository(configFile, stubCache, stubLoadComputation, new StubbyHttpTransport());
+        long fileCacheBudgetMegabytes = FileContentCache.DEFAULT_BUDGET_MEGABYTES;
+        if (commandLineArgs.containsKey(CommandLineInterpreter.OPTION_FILE_CACHE_BUDGET)) {
+            fileCacheBudgetMegabytes = Long.parseLong(commandLineArgs.get(CommandLineInterpreter.OPTION_FILE_CACHE_BUDGET));
+        }
+        final FileContentCache fileContentCache = FileContentCache.withBudgetMegabytes(fileCacheBudgetMegabytes);
+
+        final StubbyHttpTransport stubbyHttpTransport = new StubbyHttpTransport();
+        final StubRepository stubRepository = new StubRepository(configFile, stubCache, stubLoadComputation, stubbyHttpTransport, fileContentCache);
+        stubRepository.enableMatchTracing(commandLineArgs.containsKey(CommandLineInterpreter.OPTION_DEBUG));
+        stubRepository.setSequenceClientKey(commandLineArgs.get(CommandLineInterpreter.OPTION_SEQUENCE_CLIENT_KEY));
         final JettyFactory jettyFactory = new JettyFactory(commandLineArgs, stubRepository);
         final Server server = jettyFactory.construct();
 
@@ -47,6 +51,6 @@ public class StubbyManagerFactory {
             ANSITerminal.muteConsole(true);
         }
 
-        return new StubbyManager(commandLineArgs, server, jettyFactory, stubRepository);
+        return new StubbyManager(commandLineArgs, server, jettyFactory, stubRepository, stubbyHttpTransport);
     }
 }
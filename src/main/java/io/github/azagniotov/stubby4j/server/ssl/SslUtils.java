@@ -95,6 +95,14 @@ public final class SslUtils {
         // init static { ... }
     }
 
+    /**
+     * @return the default SSL context, which trusts stubby4j self-signed certificate, as well as the certificates
+     * trusted by the default trust store
+     */
+    public static SSLContext getDefaultSslContext() {
+        return DEFAULT_SSL_CONTEXT;
+    }
+
     private static boolean isTLSv13SupportedByCurrentJDK() {
         try {
             final SSLContext tlsContext = SSLContext.getInstance(TLS);
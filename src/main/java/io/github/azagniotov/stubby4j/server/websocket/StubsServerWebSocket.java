@@ -27,6 +27,8 @@ import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.github.azagniotov.stubby4j.stubs.websocket.StubWebSocketMessageType.TEXT;
 import static io.github.azagniotov.stubby4j.stubs.websocket.StubWebSocketServerResponsePolicy.DISCONNECT;
@@ -44,12 +46,15 @@ public class StubsServerWebSocket {
     private static final Logger LOGGER = LoggerFactory.getLogger(StubsServerWebSocket.class);
     private static final String NORMAL_CLOSE_REASON = "bye";
     private static final int FRAGMENTATION_FRAMES = 100;
+    private static final AtomicInteger OPEN_SESSIONS = new AtomicInteger(0);
 
     private final StubWebSocketConfig stubWebSocketConfig;
     private final ScheduledExecutorService scheduledExecutorService;
 
     private volatile Session session;
     private RemoteEndpoint remote;
+    // Makes sure the socket is counted out of the open sessions once, even if it is closed more than once
+    private final AtomicBoolean open = new AtomicBoolean(false);
 
     public StubsServerWebSocket(final StubWebSocketConfig stubWebSocketConfig,
                                 final ScheduledExecutorService scheduledExecutorService) {
@@ -61,6 +66,9 @@ public class StubsServerWebSocket {
     public void onWebSocketConnect(final Session session) {
         this.session = session;
         this.remote = this.session.getRemote();
+        if (open.compareAndSet(false, true)) {
+            OPEN_SESSIONS.incrementAndGet();
+        }
 
         if (stubWebSocketConfig.getOnOpenServerResponse() != null) {
             dispatchServerResponse(stubWebSocketConfig.getOnOpenServerResponse());
@@ -115,6 +123,10 @@ public class StubsServerWebSocket {
 
     @OnWebSocketClose
     public void onWebSocketClose(final int statusCode, final String reason) {
+        if (open.compareAndSet(true, false)) {
+            OPEN_SESSIONS.decrementAndGet();
+        }
+
         final String logMessage = String.format("[%s] <= %s %s\n",
                 getLocalDateTime(),
                 statusCode,
@@ -125,6 +137,13 @@ public class StubsServerWebSocket {
         LOGGER.info(logMessage);
     }
 
+    /**
+     * @return the number of the web socket sessions that are currently open, across all web socket configs
+     */
+    public static int getOpenSessions() {
+        return OPEN_SESSIONS.get();
+    }
+
     @OnWebSocketError
     @GeneratedCodeMethodCoverageExclusion
     public void onWebSocketError(Throwable cause) {
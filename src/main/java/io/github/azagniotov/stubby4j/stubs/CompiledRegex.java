@@ -0,0 +1,84 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static io.github.azagniotov.stubby4j.utils.StringUtils.buildToken;
+
+/**
+ * A stubbed value compiled into the regex {@link Pattern} it is matched with. A value that can not be compiled
+ * as a regex (e.g.: a JSON string literal with unescaped special characters) is compiled with {@link Pattern#LITERAL}.
+ * <p>
+ * The value is matched with {@link Pattern#MULTILINE} first and, failing that, with {@link Pattern#MULTILINE} and
+ * {@link Pattern#DOTALL} (see {@link RegexParser#REGEX_FLAGS}). Whether the second pass can change the outcome is
+ * decided once, when the value is compiled: it can not, unless the pattern has a '.' metacharacter and the incoming
+ * value has a line terminator. In practice, URL, header and query param values are matched in a single pass.
+ * <p>
+ * Instances are immutable and are owned by whoever holds the stubbed value, e.g.: {@link StubRequestMatchPlan},
+ * so the compiled patterns live exactly as long as the stub is loaded and are never compiled on the request path.
+ */
+final class CompiledRegex {
+
+    private final String value;
+    private final Pattern pattern;
+    private final Pattern dotAllPattern;
+
+    private CompiledRegex(final String value, final Pattern pattern, final Pattern dotAllPattern) {
+        this.value = value;
+        this.pattern = pattern;
+        this.dotAllPattern = dotAllPattern;
+    }
+
+    static CompiledRegex compile(final String value) {
+        try {
+            final Pattern pattern = Pattern.compile(value, Pattern.MULTILINE);
+            final Pattern dotAllPattern = RegexParser.isDotAllSensitive(value) ?
+                    Pattern.compile(value, Pattern.MULTILINE | Pattern.DOTALL) : null;
+
+            return new CompiledRegex(value, pattern, dotAllPattern);
+        } catch (final PatternSyntaxException e) {
+            // We could not compile the pattern, probably because of some unescaped
+            // characters that are special for regex, i.e.: JSON string literal
+            return new CompiledRegex(value, Pattern.compile(value, Pattern.LITERAL), null);
+        }
+    }
+
+    String getValue() {
+        return value;
+    }
+
+    boolean isDotAllSensitive() {
+        return dotAllPattern != null;
+    }
+
+    boolean match(final String subject, final String templateTokenName, final Map<String, String> regexGroups) {
+        if (match(pattern, subject, templateTokenName, regexGroups)) {
+            return true;
+        }
+        // Without line terminators in the subject, DOTALL would not have matched anything that was not already matched
+        return dotAllPattern != null &&
+                RegexParser.hasLineTerminator(subject) &&
+                match(dotAllPattern, subject, templateTokenName, regexGroups);
+    }
+
+    private static boolean match(final Pattern pattern, final String subject, final String templateTokenName, final Map<String, String> regexGroups) {
+        final Matcher matcher = pattern.matcher(subject);
+        if (!matcher.matches()) {
+            return false;
+        }
+
+        // group(0) holds the full regex match
+        regexGroups.put(buildToken(templateTokenName, 0), matcher.group(0));
+
+        //Matcher.groupCount() returns the number of explicitly defined capturing groups in the pattern regardless
+        // of whether the capturing groups actually participated in the match. It does not include matcher.group(0)
+        final int groupCount = matcher.groupCount();
+        for (int idx = 1; idx <= groupCount; idx++) {
+            regexGroups.put(buildToken(templateTokenName, idx), matcher.group(idx));
+        }
+        return true;
+    }
+}
@@ -0,0 +1,122 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.skyscreamer.jsonassert.JSONCompare;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+import org.skyscreamer.jsonassert.JSONParser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A JSON request body (i.e.: a JSON object or a JSON array) parsed once, together with its canonical form, i.e.:
+ * object keys sorted, array elements sorted and numbers normalized. Two bodies with the same canonical form are
+ * equal under the {@link JSONCompareMode#NON_EXTENSIBLE} comparison, which does not care about the order of
+ * object keys nor of array elements, so the equality of the canonical forms is checked before anything else.
+ * <p>
+ * Instances are immutable. A stubbed body is parsed when the stub is loaded (see {@link StubRequestMatchPlan}),
+ * an incoming body is parsed at most once per incoming request (see {@link StubRequest#getJsonPostBody()}).
+ */
+final class JsonBody {
+
+    static final JsonBody NOT_JSON = new JsonBody(null, null);
+
+    private final Object json;
+    private final String canonical;
+    private final int canonicalHash;
+
+    private JsonBody(final Object json, final String canonical) {
+        this.json = json;
+        this.canonical = canonical;
+        this.canonicalHash = canonical == null ? 0 : canonical.hashCode();
+    }
+
+    /**
+     * @param body request body
+     * @return the parsed body, or {@link #NOT_JSON} if the body is not a JSON object nor a JSON array
+     */
+    static JsonBody parse(final String body) {
+        if (body == null) {
+            return NOT_JSON;
+        }
+
+        try {
+            // Same parser that JSONCompare uses when it is given strings
+            final Object json = JSONParser.parseJSON(body);
+            if (json instanceof JSONObject || json instanceof JSONArray) {
+                return new JsonBody(json, canonicalize(json));
+            }
+            return NOT_JSON;
+        } catch (final JSONException e) {
+            return NOT_JSON;
+        }
+    }
+
+    boolean isJson() {
+        return json != null;
+    }
+
+    String getCanonical() {
+        return canonical;
+    }
+
+    boolean canonicallyEquals(final JsonBody that) {
+        return this.canonicalHash == that.canonicalHash && this.canonical.equals(that.canonical);
+    }
+
+    /**
+     * Compares this (stubbed) body with the given incoming body using {@link JSONCompareMode#NON_EXTENSIBLE}
+     * mode, without parsing any of them again
+     */
+    boolean nonExtensiblyEquals(final JsonBody actual) throws JSONException {
+        if (this.json instanceof JSONObject && actual.json instanceof JSONObject) {
+            return JSONCompare.compareJSON((JSONObject) this.json, (JSONObject) actual.json, JSONCompareMode.NON_EXTENSIBLE).passed();
+        } else if (this.json instanceof JSONArray && actual.json instanceof JSONArray) {
+            return JSONCompare.compareJSON((JSONArray) this.json, (JSONArray) actual.json, JSONCompareMode.NON_EXTENSIBLE).passed();
+        }
+        return false;
+    }
+
+    private static String canonicalize(final Object value) throws JSONException {
+        if (value instanceof JSONObject) {
+            final JSONObject jsonObject = (JSONObject) value;
+            final List<String> keys = new ArrayList<>();
+            final Iterator<String> keysIterator = jsonObject.keys();
+            while (keysIterator.hasNext()) {
+                keys.add(keysIterator.next());
+            }
+            Collections.sort(keys);
+
+            final StringBuilder builder = new StringBuilder("{");
+            for (final String key : keys) {
+                if (builder.length() > 1) {
+                    builder.append(',');
+                }
+                builder.append(JSONObject.quote(key)).append(':').append(canonicalize(jsonObject.get(key)));
+            }
+            return builder.append('}').toString();
+        } else if (value instanceof JSONArray) {
+            final JSONArray jsonArray = (JSONArray) value;
+            final List<String> elements = new ArrayList<>(jsonArray.length());
+            for (int idx = 0; idx < jsonArray.length(); idx++) {
+                elements.add(canonicalize(jsonArray.get(idx)));
+            }
+            // NON_EXTENSIBLE comparison does not enforce the order of array elements
+            Collections.sort(elements);
+            return "[" + String.join(",", elements) + "]";
+        } else if (value instanceof Number) {
+            // JSONCompare compares numbers by their double values, i.e.: 1 and 1.0 are equal
+            return Double.toString(((Number) value).doubleValue());
+        } else if (value instanceof String) {
+            return JSONObject.quote((String) value);
+        } else if (value == null || JSONObject.NULL.equals(value)) {
+            return "null";
+        }
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,165 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+import io.github.azagniotov.stubby4j.stubs.proxy.StubProxyCircuitBreakerConfig;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * The circuit breaker of a proxy config, see {@link StubProxyCircuitBreakerConfig}. The outcomes of the most recent
+ * proxied requests are kept in a ring buffer the size of the window, and the error rate is checked once the window
+ * is full. A tripped breaker is open for the configured duration, then half-open: it lets a single trial request
+ * through, and waits for its outcome to either close or to trip again.
+ */
+final class ProxyCircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN;
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.US);
+        }
+    }
+
+    enum Admission {
+        REJECTED, REGULAR, TRIAL
+    }
+
+    private final StubProxyCircuitBreakerConfig config;
+    private final LongSupplier nanoClock;
+    private final long latencyNanos;
+    private final long openNanos;
+
+    private final boolean[] outcomes;
+    private int outcomesCount;
+    private int outcomesNext;
+    private int failures;
+
+    private State state;
+    private long openedAtNanos;
+    private boolean trialInFlight;
+    private long trips;
+
+    ProxyCircuitBreaker(final StubProxyCircuitBreakerConfig config) {
+        this(config, System::nanoTime);
+    }
+
+    ProxyCircuitBreaker(final StubProxyCircuitBreakerConfig config, final LongSupplier nanoClock) {
+        this.config = config;
+        this.nanoClock = nanoClock;
+        this.latencyNanos = TimeUnit.MILLISECONDS.toNanos(config.getLatencyMillis());
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(config.getOpenMillis());
+        this.outcomes = new boolean[config.getWindow()];
+        this.state = State.CLOSED;
+    }
+
+    StubProxyCircuitBreakerConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return whether the request may be proxied. Once the open duration has elapsed, only the first caller is
+     * allowed to proxy its request, as the {@link Admission#TRIAL} one
+     */
+    synchronized Admission tryAcquire() {
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAtNanos >= openNanos) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return Admission.REJECTED;
+            }
+            trialInFlight = true;
+            return Admission.TRIAL;
+        }
+        return state == State.CLOSED ? Admission.REGULAR : Admission.REJECTED;
+    }
+
+    /**
+     * Records the outcome of a proxied request that was allowed by {@link #tryAcquire()}
+     *
+     * @param admission    how the request was allowed by {@link #tryAcquire()}
+     * @param serverError  whether the request could not be proxied, or its response was a server error
+     * @param elapsedNanos how long it took to proxy the request
+     */
+    synchronized void onCompleted(final Admission admission, final boolean serverError, final long elapsedNanos) {
+        final boolean failed = serverError || (latencyNanos > 0 && elapsedNanos > latencyNanos);
+        if (state == State.HALF_OPEN) {
+            // Only the trial request closes or trips the breaker again. The requests that were in flight while
+            // the breaker tripped may complete after the open duration has elapsed, and are ignored
+            if (admission != Admission.TRIAL) {
+                return;
+            }
+            if (failed) {
+                trip();
+            } else {
+                state = State.CLOSED;
+                resetOutcomes();
+            }
+            return;
+        }
+
+        // The requests that were in flight while the breaker tripped are not counted towards the next window
+        if (state == State.OPEN) {
+            return;
+        }
+
+        if (outcomesCount == outcomes.length) {
+            if (outcomes[outcomesNext]) {
+                failures--;
+            }
+        } else {
+            outcomesCount++;
+        }
+        outcomes[outcomesNext] = failed;
+        outcomesNext = (outcomesNext + 1) % outcomes.length;
+        if (failed) {
+            failures++;
+        }
+
+        if (outcomesCount == outcomes.length && failures * 100L >= (long) config.getErrorRatePercent() * outcomesCount) {
+            trip();
+        }
+    }
+
+    /**
+     * Gives back a request that was allowed by {@link #tryAcquire()}, but was never proxied, without recording
+     * an outcome, i.e.: a half-open breaker lets another trial request through if the given request was the trial one
+     */
+    synchronized void release(final Admission admission) {
+        if (admission == Admission.TRIAL && state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    private void trip() {
+        state = State.OPEN;
+        openedAtNanos = nanoClock.getAsLong();
+        trialInFlight = false;
+        trips++;
+        resetOutcomes();
+    }
+
+    private void resetOutcomes() {
+        outcomesCount = 0;
+        outcomesNext = 0;
+        failures = 0;
+    }
+
+    /**
+     * @return the current state, i.e.: an open breaker whose open duration has elapsed is reported as half-open
+     */
+    synchronized State getState() {
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAtNanos >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    synchronized long getTrips() {
+        return trips;
+    }
+}
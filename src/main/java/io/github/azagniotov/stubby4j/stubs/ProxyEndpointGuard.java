@@ -0,0 +1,163 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+import io.github.azagniotov.stubby4j.stubs.proxy.StubProxyConfig;
+import org.json.JSONObject;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Guards the endpoint of a proxy config from the proxied requests that it can not serve in time: at most
+ * {@link StubProxyConfig#getMaxInFlight()} requests are in flight to the endpoint at the same time (i.e.: a bulkhead),
+ * and no request is proxied while the circuit breaker of the proxy config is open, see {@link ProxyCircuitBreaker}.
+ * The requests that are not proxied fail fast with the {@link StubProxyConfig#getFastFailStatus()}.
+ */
+final class ProxyEndpointGuard {
+
+    enum Rejection {
+        MAX_IN_FLIGHT, CIRCUIT_OPEN
+    }
+
+    /**
+     * The answer of {@link #tryAcquire()}: a request that was let through must hand its permit back to
+     * {@link #onCompleted(Permit, int, long)} or {@link #release(Permit)}, so that only the trial request of
+     * a half-open circuit breaker decides whether it closes
+     */
+    static final class Permit {
+
+        private static final Permit REGULAR = new Permit(null, ProxyCircuitBreaker.Admission.REGULAR);
+        private static final Permit TRIAL = new Permit(null, ProxyCircuitBreaker.Admission.TRIAL);
+        private static final Permit REJECTED_MAX_IN_FLIGHT = new Permit(Rejection.MAX_IN_FLIGHT, ProxyCircuitBreaker.Admission.REJECTED);
+        private static final Permit REJECTED_CIRCUIT_OPEN = new Permit(Rejection.CIRCUIT_OPEN, ProxyCircuitBreaker.Admission.REJECTED);
+
+        private final Rejection rejection;
+        private final ProxyCircuitBreaker.Admission admission;
+
+        private Permit(final Rejection rejection, final ProxyCircuitBreaker.Admission admission) {
+            this.rejection = rejection;
+            this.admission = admission;
+        }
+
+        boolean isRejected() {
+            return rejection != null;
+        }
+
+        /**
+         * @return the reason for not proxying the request, or null if it was let through
+         */
+        Rejection getRejection() {
+            return rejection;
+        }
+    }
+
+    private final int maxInFlight;
+    private final ProxyCircuitBreaker circuitBreaker;
+    private final AtomicInteger inFlight;
+    private final LongAdder rejectedMaxInFlight;
+    private final LongAdder rejectedCircuitOpen;
+
+    ProxyEndpointGuard(final StubProxyConfig proxyConfig) {
+        this.maxInFlight = proxyConfig.getMaxInFlight();
+        this.circuitBreaker = proxyConfig.getCircuitBreakerConfig() == null ? null : new ProxyCircuitBreaker(proxyConfig.getCircuitBreakerConfig());
+        this.inFlight = new AtomicInteger(0);
+        this.rejectedMaxInFlight = new LongAdder();
+        this.rejectedCircuitOpen = new LongAdder();
+    }
+
+    /**
+     * @return whether this guard enforces the limits of the given proxy config, i.e.: it does not have to be replaced
+     * after the proxy config was reloaded
+     */
+    boolean isGuarding(final StubProxyConfig proxyConfig) {
+        return maxInFlight == proxyConfig.getMaxInFlight() &&
+                Objects.equals(circuitBreaker == null ? null : circuitBreaker.getConfig(), proxyConfig.getCircuitBreakerConfig());
+    }
+
+    /**
+     * @return a permit that is not rejected if the request may be proxied, in which case
+     * {@link #onCompleted(Permit, int, long)} must be called once it has been proxied (or {@link #release(Permit)}
+     * if it was not proxied after all), otherwise a permit with the reason for not proxying it
+     */
+    Permit tryAcquire() {
+        if (maxInFlight > 0) {
+            int current;
+            do {
+                current = inFlight.get();
+                if (current >= maxInFlight) {
+                    rejectedMaxInFlight.increment();
+                    return Permit.REJECTED_MAX_IN_FLIGHT;
+                }
+            } while (!inFlight.compareAndSet(current, current + 1));
+        } else {
+            inFlight.incrementAndGet();
+        }
+
+        if (circuitBreaker == null) {
+            return Permit.REGULAR;
+        }
+        final ProxyCircuitBreaker.Admission admission = circuitBreaker.tryAcquire();
+        if (admission == ProxyCircuitBreaker.Admission.REJECTED) {
+            inFlight.decrementAndGet();
+            rejectedCircuitOpen.increment();
+            return Permit.REJECTED_CIRCUIT_OPEN;
+        }
+        return admission == ProxyCircuitBreaker.Admission.TRIAL ? Permit.TRIAL : Permit.REGULAR;
+    }
+
+    /**
+     * @param permit       the permit that let the request through
+     * @param status       the status code of the proxied response, 500 if the request could not be proxied
+     * @param elapsedNanos how long it took the proxy config endpoint to answer the request
+     */
+    void onCompleted(final Permit permit, final int status, final long elapsedNanos) {
+        inFlight.decrementAndGet();
+        if (circuitBreaker != null) {
+            circuitBreaker.onCompleted(permit.admission, status >= 500, elapsedNanos);
+        }
+    }
+
+    /**
+     * Gives back a request that was let through by {@link #tryAcquire()}, but was never proxied
+     */
+    void release(final Permit permit) {
+        inFlight.decrementAndGet();
+        if (circuitBreaker != null) {
+            circuitBreaker.release(permit.admission);
+        }
+    }
+
+    boolean hasCircuitBreaker() {
+        return circuitBreaker != null;
+    }
+
+    ProxyCircuitBreaker.State getCircuitBreakerState() {
+        return circuitBreaker == null ? ProxyCircuitBreaker.State.CLOSED : circuitBreaker.getState();
+    }
+
+    long getCircuitBreakerTrips() {
+        return circuitBreaker == null ? 0L : circuitBreaker.getTrips();
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    long getRejected(final Rejection rejection) {
+        return rejection == Rejection.MAX_IN_FLIGHT ? rejectedMaxInFlight.sum() : rejectedCircuitOpen.sum();
+    }
+
+    JSONObject toJson() {
+        final JSONObject json = new JSONObject()
+                .put("inFlight", getInFlight())
+                .put("maxInFlight", maxInFlight)
+                .put("rejectedMaxInFlight", rejectedMaxInFlight.sum());
+        if (circuitBreaker != null) {
+            json.put("circuitBreaker", new JSONObject()
+                    .put("state", circuitBreaker.getState().toString())
+                    .put("trips", circuitBreaker.getTrips())
+                    .put("rejected", rejectedCircuitOpen.sum()));
+        }
+        return json;
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces the concurrent proxied requests of a proxy config: while a request is in flight to the proxy config
+ * endpoint, the incoming requests with the same fingerprint (see {@link #fingerprint(StubRequest, Set)}) are not
+ * proxied, they are all served the response of the request in flight. A request that arrives once the response
+ * has been received is proxied again.
+ */
+final class ProxyRequestCoalescer {
+
+    private final ConcurrentMap<String, CompletableFuture<StubResponse>> inFlight;
+    private final LongAdder coalesced;
+
+    ProxyRequestCoalescer() {
+        this.inFlight = new ConcurrentHashMap<>();
+        this.coalesced = new LongAdder();
+    }
+
+    /**
+     * Computes the fingerprint of the given incoming request: HTTP methods, URI, query params, values of the given
+     * headers and a digest of the request body. Must be called before the request is modified for proxying (e.g.:
+     * before the headers of an additive proxy config are added to it)
+     *
+     * @param keyHeaders the lower case names of the request headers whose values are part of the fingerprint
+     */
+    static String fingerprint(final StubRequest incomingRequest, final Set<String> keyHeaders) {
+        return new RequestFingerprint()
+                .appendMethods(incomingRequest.getMethod())
+                .append(incomingRequest.getUri())
+                .appendQuery(incomingRequest.getQuery())
+                .appendHeaders(incomingRequest.getHeaders(), keyHeaders)
+                .appendDigest(incomingRequest.getPostBody())
+                .toString();
+    }
+
+    /**
+     * @param fingerprint     the fingerprint of the incoming request
+     * @param upstreamRequest sends the incoming request to the proxy config endpoint, it is only called if no request
+     *                        with the same fingerprint is in flight
+     * @return the future of the response of the request in flight with the same fingerprint, shared by all the
+     * coalesced requests
+     */
+    CompletableFuture<StubResponse> coalesce(final String fingerprint, final Supplier<CompletableFuture<StubResponse>> upstreamRequest) {
+        final CompletableFuture<StubResponse> existing = inFlight.get(fingerprint);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+
+        final CompletableFuture<StubResponse> shared = new CompletableFuture<>();
+        final CompletableFuture<StubResponse> raced = inFlight.putIfAbsent(fingerprint, shared);
+        if (raced != null) {
+            coalesced.increment();
+            return raced;
+        }
+
+        try {
+            upstreamRequest.get().whenComplete((stubResponse, failure) -> {
+                // Removed before the waiting requests are served, so that a request arriving afterwards is proxied again
+                inFlight.remove(fingerprint, shared);
+                if (failure != null) {
+                    shared.completeExceptionally(failure);
+                } else {
+                    shared.complete(stubResponse);
+                }
+            });
+        } catch (final RuntimeException e) {
+            inFlight.remove(fingerprint, shared);
+            shared.completeExceptionally(e);
+        }
+
+        return shared;
+    }
+
+    /**
+     * @return the number of the requests that are in flight to the proxy config endpoint
+     */
+    int getInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return the number of the incoming requests that were served the response of a request in flight,
+     * instead of being proxied
+     */
+    long getCoalesced() {
+        return coalesced.sum();
+    }
+}
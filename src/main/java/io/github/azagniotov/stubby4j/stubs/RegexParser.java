@@ -2,15 +2,10 @@ package io.github.azagniotov.stubby4j.stubs;
 
 
 import io.github.azagniotov.stubby4j.annotations.VisibleForTesting;
-import io.github.azagniotov.stubby4j.caching.Cache;
 
 import java.util.Map;
-import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
-
-import static io.github.azagniotov.stubby4j.utils.StringUtils.buildToken;
 
 enum RegexParser {
 
@@ -46,8 +41,6 @@ enum RegexParser {
     @VisibleForTesting
     static final char[] REGEX_CHARS = new char[]{'$', '(', ')', '*', '+', '.', '?', '[', ']', '\\', '^', '{', '|', '}'};
 
-    @VisibleForTesting
-    static final Cache<Integer, Pattern> REGEX_PATTERN_CACHE = Cache.regexPatternCache();
     private static final boolean[] SPECIAL_CHARS;
     private static final int REGEX_CHAR_LENGTH_THRESHOLD = 2;
 
@@ -67,6 +60,99 @@ enum RegexParser {
         return potentialRegex(pattern, REGEX_CHAR_LENGTH_THRESHOLD);
     }
 
+    /**
+     * Unlike {@link #potentialRegex(String)}, tests whether the given string contains no regex special
+     * characters at all. For such strings, a regex {@link Matcher#matches()} is equivalent to {@link String#equals(Object)}
+     *
+     * @param value to check for absence of regex special characters
+     */
+    static boolean isLiteral(final String value) {
+        for (int idx = 0; idx < value.length(); idx++) {
+            final char currentChar = value.charAt(idx);
+            if (currentChar < SPECIAL_CHARS.length && SPECIAL_CHARS[currentChar]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the longest literal string that any value fully matching the given regex pattern must start with,
+     * i.e.: for the pattern {@code ^/api/v1/users/(\d+)$}, the literal prefix is {@code /api/v1/users/}. An empty
+     * string is returned when no such prefix can be determined, e.g.: the pattern contains an alternation.
+     *
+     * @param pattern regex pattern to extract the leading literal characters from
+     */
+    static String literalPrefix(final String pattern) {
+        if (pattern.indexOf('|') >= 0) {
+            return "";
+        }
+
+        final int start = pattern.startsWith("^") ? 1 : 0;
+        int end = start;
+        while (end < pattern.length()) {
+            final char currentChar = pattern.charAt(end);
+            if (currentChar < SPECIAL_CHARS.length && SPECIAL_CHARS[currentChar]) {
+                break;
+            }
+            end++;
+        }
+
+        if (end < pattern.length() && end > start) {
+            final char quantifier = pattern.charAt(end);
+            // The last literal character may occur zero times, so it can not be a part of the prefix
+            if (quantifier == '?' || quantifier == '*' || quantifier == '{') {
+                end--;
+            }
+        }
+
+        return pattern.substring(start, end);
+    }
+
+    /**
+     * Tests whether compiling the given regex pattern with {@link Pattern#DOTALL} can change what it matches, which
+     * is only the case when the pattern has a '.' metacharacter, i.e.: a dot that is neither escaped nor a part
+     * of a character class. The test errs on the safe side, e.g.: a pattern quoted with \Q..\E is deemed sensitive.
+     *
+     * @param pattern regex pattern to check for the '.' metacharacter
+     */
+    static boolean isDotAllSensitive(final String pattern) {
+        int characterClassDepth = 0;
+        for (int idx = 0; idx < pattern.length(); idx++) {
+            final char currentChar = pattern.charAt(idx);
+            if (currentChar == '\\') {
+                if (idx + 1 < pattern.length() && pattern.charAt(idx + 1) == 'Q') {
+                    return true;
+                }
+                // Skip the escaped character
+                idx++;
+            } else if (currentChar == '[') {
+                characterClassDepth++;
+            } else if (currentChar == ']' && characterClassDepth > 0) {
+                characterClassDepth--;
+            } else if (currentChar == '.' && characterClassDepth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tests whether the given string has any of the characters that the '.' regex metacharacter does not
+     * match unless the pattern was compiled with {@link Pattern#DOTALL}
+     *
+     * @param subject the string to check for line terminators
+     */
+    static boolean hasLineTerminator(final String subject) {
+        for (int idx = 0; idx < subject.length(); idx++) {
+            final char currentChar = subject.charAt(idx);
+            if (currentChar == '\n' || currentChar == '\r' || currentChar == '\u0085' || currentChar == '\u2028' || currentChar == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static boolean potentialRegex(final String pattern, int threshold) {
 
         char[] chars = pattern.toCharArray();
@@ -101,73 +187,12 @@ enum RegexParser {
         return threshold == 0;
     }
 
-    void compilePatternAndCache(final String value) {
-        int currentFlags = 0;
-        for (int flag : REGEX_FLAGS) {
-            compilePatternAndCache(value, currentFlags |= flag);
-        }
-    }
-
-    private void compilePatternAndCache(final String value, final int flags) {
-        try {
-            if (potentialRegex(value)) {
-                final int patternHashCodeRegexFlagKey = value.hashCode() + flags;
-                final Pattern computedPattern = Pattern.compile(value, flags);
-
-                REGEX_PATTERN_CACHE.putIfAbsent(patternHashCodeRegexFlagKey, computedPattern);
-            }
-        } catch (final PatternSyntaxException e) {
-            // We could not compile the pattern, probably because of some unescaped
-            // characters that are special for regex, i.e.: JSON string literal
-            compilePatternAndCache(value, Pattern.LITERAL);
-        }
-    }
-
+    /**
+     * Compiles the given pattern for this match only. The patterns of the stubbed values are compiled once, when
+     * the stub is loaded, and are owned by its {@link StubRequestMatchPlan}, so this is never used to match
+     * a loaded stub, and a pattern is never kept around once matched.
+     */
     boolean match(final String patternCandidate, final String subject, final String templateTokenName, final Map<String, String> regexGroups) {
-        int currentFlags = 0;
-        for (int flag : REGEX_FLAGS) {
-            if (match(patternCandidate, subject, templateTokenName, regexGroups, currentFlags |= flag)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean match(final String patternCandidate, final String subject, final String templateTokenName, final Map<String, String> regexGroups, final int flags) {
-        try {
-            final Pattern computedPattern = getCachedPatternOrCacheNewCompiled(patternCandidate, flags);
-            final Matcher matcher = computedPattern.matcher(subject);
-            final boolean isMatch = matcher.matches();
-            if (isMatch) {
-                // group(0) holds the full regex matchStubByIndex
-                regexGroups.put(buildToken(templateTokenName, 0), matcher.group(0));
-
-                //Matcher.groupCount() returns the number of explicitly defined capturing groups in the pattern regardless
-                // of whether the capturing groups actually participated in the matchStubByIndex. It does not include matcher.group(0)
-                final int groupCount = matcher.groupCount();
-                if (groupCount > 0) {
-                    for (int idx = 1; idx <= groupCount; idx++) {
-                        regexGroups.put(buildToken(templateTokenName, idx), matcher.group(idx));
-                    }
-                }
-            }
-            return isMatch;
-        } catch (final PatternSyntaxException e) {
-            // We could not compile the pattern, probably because of some unescaped
-            // characters that are special for regex, i.e.: JSON string literal
-            return match(patternCandidate, subject, templateTokenName, regexGroups, Pattern.LITERAL);
-        }
-    }
-
-    private Pattern getCachedPatternOrCacheNewCompiled(final String patternCandidate, int flags) {
-        final int patternHashCodeRegexFlagKey = patternCandidate.hashCode() + flags;
-        final Optional<Pattern> compiledPatternOptional = REGEX_PATTERN_CACHE.get(patternHashCodeRegexFlagKey);
-
-        return compiledPatternOptional.orElseGet(() -> {
-            final Pattern computedPattern = Pattern.compile(patternCandidate, flags);
-            REGEX_PATTERN_CACHE.putIfAbsent(patternHashCodeRegexFlagKey, computedPattern);
-
-            return computedPattern;
-        });
+        return CompiledRegex.compile(patternCandidate).match(subject, templateTokenName, regexGroups);
     }
 }
@@ -0,0 +1,109 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static io.github.azagniotov.stubby4j.utils.StringUtils.isSet;
+import static io.github.azagniotov.stubby4j.utils.StringUtils.sha256;
+
+/**
+ * Builds a fingerprint of the fields of an incoming request, which is used as a key to look up what was stored
+ * for the same request: the cached stub matches (see {@link StubRepositorySnapshot#matchCacheKey(StubRequest)}),
+ * the proxied requests in flight (see {@link ProxyRequestCoalescer}) and the cached proxied responses
+ * (see {@link io.github.azagniotov.stubby4j.caching.ProxyResponseCache}).
+ * <p>
+ * Every field is prefixed with its length, and every group of fields (the methods, the query params and the headers)
+ * is prefixed with a section tag and the number of its fields, e.g.: a query param can not be mistaken for a header
+ * with the same name and value. Provided that the fields are appended in the same order for every request, two
+ * requests have the same fingerprint only if they have the same fields, or bodies with the same SHA-256 digest.
+ */
+public final class RequestFingerprint {
+
+    private static final char FIELD_SEPARATOR = '\u0000';
+    private static final char SECTION_METHODS = 'M';
+    private static final char SECTION_QUERY = 'Q';
+    private static final char SECTION_HEADERS = 'H';
+
+    private final StringBuilder builder;
+
+    public RequestFingerprint() {
+        this.builder = new StringBuilder(128);
+    }
+
+    /**
+     * @param field the field value, or null if the request has no such field
+     */
+    public RequestFingerprint append(final String field) {
+        if (field == null) {
+            builder.append(FIELD_SEPARATOR).append(-1);
+        } else {
+            builder.append(FIELD_SEPARATOR).append(field.length()).append(':').append(field);
+        }
+        return this;
+    }
+
+    public RequestFingerprint appendMethods(final List<String> methods) {
+        appendSection(SECTION_METHODS, methods.size());
+        for (final String method : methods) {
+            append(method);
+        }
+        return this;
+    }
+
+    /**
+     * Appends the names and values of the given query params, sorted by their names
+     */
+    public RequestFingerprint appendQuery(final Map<String, String> query) {
+        final Map<String, String> sortedQuery = query instanceof SortedMap ? query : new TreeMap<>(query);
+        appendSection(SECTION_QUERY, sortedQuery.size());
+        for (final Map.Entry<String, String> queryParam : sortedQuery.entrySet()) {
+            append(queryParam.getKey());
+            append(queryParam.getValue());
+        }
+        return this;
+    }
+
+    /**
+     * Appends the names and values of the given headers that the request has, in the order of the given names
+     *
+     * @param incomingHeaders the headers of the request, keyed by their lower case names
+     * @param headerNames     the lower case names of the headers that are part of the fingerprint
+     */
+    public RequestFingerprint appendHeaders(final Map<String, String> incomingHeaders, final Iterable<String> headerNames) {
+        int present = 0;
+        for (final String headerName : headerNames) {
+            if (incomingHeaders.containsKey(headerName)) {
+                present++;
+            }
+        }
+
+        appendSection(SECTION_HEADERS, present);
+        for (final String headerName : headerNames) {
+            if (incomingHeaders.containsKey(headerName)) {
+                append(headerName);
+                append(incomingHeaders.get(headerName));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Appends the SHA-256 digest of the given request body, so that a large body does not make a large fingerprint
+     */
+    public RequestFingerprint appendDigest(final String body) {
+        return append(isSet(body) ? sha256(body) : null);
+    }
+
+    // Starts with a letter, so it can not be mistaken for a field, which starts with its length
+    private void appendSection(final char tag, final int count) {
+        builder.append(FIELD_SEPARATOR).append(tag).append(count);
+    }
+
+    @Override
+    public String toString() {
+        return builder.toString();
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts of the responses served, by HTTP status code. The counters are indexed by the status code, so counting
+ * a response neither boxes the status code nor takes a lock. The counter of a status code is only allocated once
+ * a response with the status code is served. Status codes outside of 100-599 are not counted.
+ */
+final class ResponseStatusCounts {
+
+    private static final int MIN_STATUS = 100;
+    private static final int MAX_STATUS = 599;
+
+    private final AtomicReferenceArray<LongAdder> counts;
+
+    ResponseStatusCounts() {
+        this.counts = new AtomicReferenceArray<>(MAX_STATUS - MIN_STATUS + 1);
+    }
+
+    void count(final int status) {
+        if (status < MIN_STATUS || status > MAX_STATUS) {
+            return;
+        }
+
+        final int index = status - MIN_STATUS;
+        LongAdder count = counts.get(index);
+        if (count == null) {
+            counts.compareAndSet(index, null, new LongAdder());
+            count = counts.get(index);
+        }
+        count.increment();
+    }
+
+    /**
+     * @return the number of responses with the given status code
+     */
+    long get(final int status) {
+        if (status < MIN_STATUS || status > MAX_STATUS) {
+            return 0L;
+        }
+        final LongAdder count = counts.get(status - MIN_STATUS);
+        return count == null ? 0L : count.sum();
+    }
+
+    /**
+     * Calls the given consumer with every status code that was served at least once, in the ascending order
+     */
+    void forEach(final StatusCountConsumer consumer) throws IOException {
+        for (int index = 0; index < counts.length(); index++) {
+            final LongAdder count = counts.get(index);
+            if (count != null) {
+                consumer.accept(MIN_STATUS + index, count.sum());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface StatusCountConsumer {
+        void accept(final int status, final long count) throws IOException;
+    }
+}
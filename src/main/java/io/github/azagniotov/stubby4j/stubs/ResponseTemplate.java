@@ -0,0 +1,159 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+
+import io.github.azagniotov.stubby4j.utils.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static io.github.azagniotov.stubby4j.utils.StringUtils.getBytesUtf8;
+
+/**
+ * A stubbed response body, header value or file path compiled into a sequence of literal byte segments and
+ * template token slots, e.g.: "Hello, <% url.1 %>!" is compiled into the literal "Hello, ", the token slot "url.1"
+ * and the literal "!". The template is compiled once, when the stub is loaded (see {@link StubResponse}), and is
+ * rendered in a single pass that writes the literal segments and the values of the captured regex groups directly
+ * into the given output, instead of scanning the whole template once per captured regex group.
+ * <p>
+ * A token slot that has no value in the captured regex groups is rendered as it was stubbed, e.g.: "<% query.1 %>".
+ * Token values are written as they are, i.e.: they are not themselves rendered as templates.
+ * <p>
+ * The template is compiled from the UTF-8 bytes of the stubbed content. The '<%' and '%>' token delimiters are
+ * ASCII, which never occur inside of a multi-byte UTF-8 sequence, so the literal segments are written out exactly
+ * as they were stubbed. Instances are immutable.
+ */
+public final class ResponseTemplate {
+
+    private static final byte TOKEN_LEFT_OPEN = '<';
+    private static final byte TOKEN_RIGHT_OPEN = '%';
+    private static final byte TOKEN_CLOSE = '>';
+
+    private final byte[] template;
+    private final Segment[] segments;
+
+    private ResponseTemplate(final byte[] template, final Segment[] segments) {
+        this.template = template;
+        this.segments = segments;
+    }
+
+    public static ResponseTemplate compile(final String template) {
+        return compile(getBytesUtf8(template));
+    }
+
+    public static ResponseTemplate compile(final byte[] template) {
+        final List<Segment> segments = new ArrayList<>();
+
+        int literalStart = 0;
+        int idx = 0;
+        while (idx < template.length - 1) {
+            if (template[idx] != TOKEN_LEFT_OPEN || template[idx + 1] != TOKEN_RIGHT_OPEN) {
+                idx++;
+                continue;
+            }
+
+            // Same as the regex <%\s{0,}token\s{0,}%>
+            final int nameStart = skipWhitespace(template, idx + 2);
+            int nameEnd = nameStart;
+            while (nameEnd < template.length && !isWhitespace(template[nameEnd]) && !isTokenRight(template, nameEnd)) {
+                nameEnd++;
+            }
+            final int tokenRight = skipWhitespace(template, nameEnd);
+
+            if (nameEnd == nameStart || !isTokenRight(template, tokenRight)) {
+                // Not a template token, i.e.: just a '<%' in the stubbed content
+                idx += 2;
+                continue;
+            }
+
+            if (idx > literalStart) {
+                segments.add(Segment.literal(literalStart, idx));
+            }
+            final String tokenName = new String(template, nameStart, nameEnd - nameStart, StringUtils.charsetUTF8());
+            segments.add(Segment.token(idx, tokenRight + 2, tokenName));
+
+            idx = tokenRight + 2;
+            literalStart = idx;
+        }
+
+        if (template.length > literalStart) {
+            segments.add(Segment.literal(literalStart, template.length));
+        }
+
+        return new ResponseTemplate(template, segments.toArray(new Segment[0]));
+    }
+
+    /**
+     * @return true if the template has at least one template token slot
+     */
+    public boolean hasTokens() {
+        for (final Segment segment : segments) {
+            if (segment.tokenName != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void render(final OutputStream outputStream, final Map<String, String> tokensAndValues) throws IOException {
+        for (final Segment segment : segments) {
+            final String tokenValue = segment.tokenName == null ? null : tokensAndValues.get(segment.tokenName);
+            if (tokenValue == null) {
+                outputStream.write(template, segment.start, segment.end - segment.start);
+            } else {
+                outputStream.write(getBytesUtf8(tokenValue));
+            }
+        }
+    }
+
+    public String render(final Map<String, String> tokensAndValues) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(template.length);
+        try {
+            render(outputStream, tokensAndValues);
+        } catch (final IOException e) {
+            // ByteArrayOutputStream does not throw
+            throw new UncheckedIOException(e);
+        }
+        return StringUtils.newStringUtf8(outputStream.toByteArray());
+    }
+
+    private static int skipWhitespace(final byte[] template, int idx) {
+        while (idx < template.length && isWhitespace(template[idx])) {
+            idx++;
+        }
+        return idx;
+    }
+
+    private static boolean isTokenRight(final byte[] template, final int idx) {
+        return idx < template.length - 1 && template[idx] == TOKEN_RIGHT_OPEN && template[idx + 1] == TOKEN_CLOSE;
+    }
+
+    // Same characters as the regex \s
+    private static boolean isWhitespace(final byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+
+    private static final class Segment {
+        private final int start;
+        private final int end;
+        private final String tokenName;
+
+        private Segment(final int start, final int end, final String tokenName) {
+            this.start = start;
+            this.end = end;
+            this.tokenName = tokenName;
+        }
+
+        private static Segment literal(final int start, final int end) {
+            return new Segment(start, end, null);
+        }
+
+        private static Segment token(final int start, final int end, final String tokenName) {
+            return new Segment(start, end, tokenName);
+        }
+    }
+}
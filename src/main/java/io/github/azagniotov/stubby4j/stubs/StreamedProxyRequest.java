@@ -0,0 +1,125 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+
+import io.github.azagniotov.stubby4j.http.StubbyHttpTransport;
+import io.github.azagniotov.stubby4j.stubs.proxy.StubProxyConfig;
+import io.github.azagniotov.stubby4j.utils.ConsoleUtils;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A request to the endpoint of a streaming proxy config (see {@link io.github.azagniotov.stubby4j.stubs.proxy.StubProxyConfig#isStreaming()}).
+ * The request is not sent until the response can be piped to the client, see {@link #stream(HttpServletRequest, HttpServletResponse)}.
+ * <p>
+ * If the incoming request cannot be suspended (i.e.: it does not support async), the proxied response is received
+ * in full and served the same way as a response of a non-streaming proxy config, see {@link #buffered()}.
+ * Either way, the request is only sent if the {@link ProxyEndpointGuard} of the proxy config lets it through, and
+ * the guard is told once the request has completed. A request that is not let through is served the fast fail
+ * response instead, see {@link #buffered()}.
+ */
+public final class StreamedProxyRequest {
+
+    private final StubbyHttpTransport stubbyHttpTransport;
+    private final StubRequest incomingRequest;
+    private final String proxyEndpoint;
+    private final StubProxyConfig proxyConfig;
+    private final ProxyEndpointGuard proxyEndpointGuard;
+    private final Map<String, String> proxyResponseHeaders;
+    private final Function<ProxyEndpointGuard.Permit, CompletableFuture<StubResponse>> bufferedRequest;
+    private final Function<ProxyEndpointGuard.Rejection, StubResponse> fastFailResponse;
+    private final StubLatencies latencies;
+    private final ResponseStatusCounts statusCounts;
+
+    private CompletableFuture<StubResponse> bufferedResponse;
+
+    StreamedProxyRequest(final StubbyHttpTransport stubbyHttpTransport,
+                         final StubRequest incomingRequest,
+                         final String proxyEndpoint,
+                         final StubProxyConfig proxyConfig,
+                         final ProxyEndpointGuard proxyEndpointGuard,
+                         final Map<String, String> proxyResponseHeaders,
+                         final Function<ProxyEndpointGuard.Permit, CompletableFuture<StubResponse>> bufferedRequest,
+                         final Function<ProxyEndpointGuard.Rejection, StubResponse> fastFailResponse,
+                         final StubLatencies latencies,
+                         final ResponseStatusCounts statusCounts) {
+        this.stubbyHttpTransport = stubbyHttpTransport;
+        this.incomingRequest = incomingRequest;
+        this.proxyEndpoint = proxyEndpoint;
+        this.proxyConfig = proxyConfig;
+        this.proxyEndpointGuard = proxyEndpointGuard;
+        this.proxyResponseHeaders = proxyResponseHeaders;
+        this.bufferedRequest = bufferedRequest;
+        this.fastFailResponse = fastFailResponse;
+        this.latencies = latencies;
+        this.statusCounts = statusCounts;
+    }
+
+    /**
+     * Suspends the given request, sends it, and pipes the proxied response to the given response as it arrives.
+     * The request is completed once the whole proxied response has been written, or once the request failed.
+     *
+     * @return false if the request was not let through by the {@link ProxyEndpointGuard}, in which case the request
+     * is not suspended and the fast fail response is to be served, see {@link #buffered()}
+     */
+    public boolean stream(final HttpServletRequest request, final HttpServletResponse response) {
+        final ProxyEndpointGuard.Permit permit = proxyEndpointGuard.tryAcquire();
+        if (permit.isRejected()) {
+            synchronized (this) {
+                bufferedResponse = CompletableFuture.completedFuture(fastFailResponse.apply(permit.getRejection()));
+            }
+            return false;
+        }
+
+        final AsyncContext asyncContext;
+        try {
+            asyncContext = request.startAsync();
+        } catch (final RuntimeException ex) {
+            proxyEndpointGuard.release(permit);
+            throw ex;
+        }
+        // The request is completed when the proxied response has been piped, which may take a long while
+        asyncContext.setTimeout(0);
+
+        final long proxyStartNanos = System.nanoTime();
+        final AtomicLong answeredNanos = new AtomicLong(-1L);
+        stubbyHttpTransport.streamRequestFromStub(incomingRequest,
+                proxyEndpoint,
+                asyncContext,
+                response,
+                proxyResponseHeaders,
+                proxyConfig.getConnectTimeoutMillis(),
+                proxyConfig.getReadTimeoutMillis(),
+                () -> answeredNanos.compareAndSet(-1L, System.nanoTime() - proxyStartNanos),
+                status -> {
+                    final long elapsedNanos = System.nanoTime() - proxyStartNanos;
+                    // The endpoint is judged by how long it took to answer, not by how long the client took to read the body
+                    proxyEndpointGuard.onCompleted(permit, status, answeredNanos.get() < 0 ? elapsedNanos : answeredNanos.get());
+                    latencies.record(StubLatencies.Phase.PROXY, elapsedNanos);
+                    statusCounts.count(status);
+                    ConsoleUtils.logOutgoingResponse(incomingRequest.getUrl(), response);
+                });
+        return true;
+    }
+
+    /**
+     * Sends the request, unless it has been sent already, without streaming the proxied response
+     *
+     * @return a future that is completed with the proxied response once it has been received in full, or with
+     * the fast fail response if the request was not let through by the {@link ProxyEndpointGuard}
+     */
+    synchronized CompletableFuture<StubResponse> buffered() {
+        if (bufferedResponse == null) {
+            final ProxyEndpointGuard.Permit permit = proxyEndpointGuard.tryAcquire();
+            bufferedResponse = permit.isRejected()
+                    ? CompletableFuture.completedFuture(fastFailResponse.apply(permit.getRejection()))
+                    : bufferedRequest.apply(permit);
+        }
+        return bufferedResponse;
+    }
+}
@@ -5,10 +5,13 @@ import io.github.azagniotov.stubby4j.annotations.VisibleForTesting;
 import io.github.azagniotov.stubby4j.utils.ReflectionUtils;
 import io.github.azagniotov.stubby4j.utils.StringUtils;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.github.azagniotov.generics.TypeSafeConverter.asCheckedLinkedList;
@@ -17,15 +20,21 @@ import static io.github.azagniotov.stubby4j.stubs.StubResponse.okResponse;
 
 public class StubHttpLifecycle implements ReflectableStub {
 
-    private final AtomicInteger responseSequencedIdCounter = new AtomicInteger(0);
+    // The most clients that a sequence of responses tracks its own position for, see #getResponse(String)
+    public static final int MAX_CLIENT_SEQUENCES = 1024;
 
     private final String completeYAML;
     private final StubRequest request;
-    private final Object response;
+    // An immutable snapshot of the stubbed response(s), a sequence of responses is served from it using a cursor
+    private final StubResponse[] responses;
+    private final AtomicInteger responseSequencedIdCounter;
+    private final Map<String, AtomicInteger> clientResponseSequencedIdCounters;
     private final String requestAsYAML;
     private final String responseAsYAML;
     private final String description;
     private final String uuid;
+    // The position of this stub among the loaded stubs, which is also its resource ID
+    private final int resourceIndex;
 
     private StubHttpLifecycle(
             final StubRequest request,
@@ -34,14 +43,35 @@ public class StubHttpLifecycle implements ReflectableStub {
             final String responseAsYAML,
             final String completeYAML,
             final String description,
-            final String uuid) {
+            final String uuid,
+            final int resourceIndex) {
         this.request = request;
-        this.response = response;
+        this.responses = toResponsesArray(response);
+        this.responseSequencedIdCounter = new AtomicInteger(0);
+        this.clientResponseSequencedIdCounters = newClientResponseSequencedIdCounters();
         this.requestAsYAML = requestAsYAML;
         this.responseAsYAML = responseAsYAML;
         this.completeYAML = completeYAML;
         this.description = description;
         this.uuid = uuid;
+        this.resourceIndex = resourceIndex;
+    }
+
+    private StubHttpLifecycle(final StubHttpLifecycle stub, final int resourceIndex) {
+        this.request = stub.request;
+        this.responses = new StubResponse[stub.responses.length];
+        for (int idx = 0; idx < responses.length; idx++) {
+            this.responses[idx] = stub.responses[idx].withResourceIDHeader(resourceIndex);
+        }
+        // The moved stub keeps its position in the sequence of responses
+        this.responseSequencedIdCounter = stub.responseSequencedIdCounter;
+        this.clientResponseSequencedIdCounters = stub.clientResponseSequencedIdCounters;
+        this.requestAsYAML = stub.requestAsYAML;
+        this.responseAsYAML = stub.responseAsYAML;
+        this.completeYAML = stub.completeYAML;
+        this.description = stub.description;
+        this.uuid = stub.uuid;
+        this.resourceIndex = resourceIndex;
     }
 
     public StubRequest getRequest() {
@@ -49,23 +79,45 @@ public class StubHttpLifecycle implements ReflectableStub {
     }
 
     public StubResponse getResponse(final boolean incrementSequencedResponseId) {
-
-        if (response instanceof StubResponse) {
-            return (StubResponse) response;
-        }
-
-        final List<StubResponse> stubResponses = asCheckedLinkedList(this.response, StubResponse.class);
-        if (stubResponses.isEmpty()) {
+        if (responses.length == 0) {
             return okResponse();
         }
 
         if (incrementSequencedResponseId) {
-            final int responseSequencedId = responseSequencedIdCounter.getAndIncrement();
-            responseSequencedIdCounter.compareAndSet(stubResponses.size(), 0);
-            return stubResponses.get(responseSequencedId);
+            return responses[nextSequencedResponseId(responseSequencedIdCounter)];
         }
 
-        return stubResponses.get(responseSequencedIdCounter.get());
+        return responses[responseSequencedIdCounter.get()];
+    }
+
+    /**
+     * Serves the next response in the sequence of the given client, i.e.: every client steps through the sequence
+     * of stubbed responses on its own, regardless of the requests made by the other clients. The positions of at most
+     * {@link #MAX_CLIENT_SEQUENCES} clients are tracked at once, when more clients show up, the position of the least
+     * recently served client is dropped, i.e.: that client starts its sequence over.
+     *
+     * @param sequenceClientKey identifies the client, or null to serve the next response in the sequence
+     *                          shared by all clients, see {@link #getResponse(boolean)}
+     */
+    public StubResponse getResponse(final String sequenceClientKey) {
+        if (sequenceClientKey == null || responses.length < 2) {
+            return getResponse(true);
+        }
+
+        final AtomicInteger clientResponseSequencedIdCounter = clientResponseSequencedIdCounters.computeIfAbsent(sequenceClientKey, key -> new AtomicInteger(0));
+
+        return responses[nextSequencedResponseId(clientResponseSequencedIdCounter)];
+    }
+
+    // Keyed in the order the clients were last served, the least recently served client is dropped once there are
+    // too many. The map is locked for the lookup only, the position itself is moved without locking
+    private static Map<String, AtomicInteger> newClientResponseSequencedIdCounters() {
+        return Collections.synchronizedMap(new LinkedHashMap<String, AtomicInteger>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, AtomicInteger> eldest) {
+                return size() > MAX_CLIENT_SEQUENCES;
+            }
+        });
     }
 
     public int getNextSequencedResponseId() {
@@ -73,10 +125,26 @@ public class StubHttpLifecycle implements ReflectableStub {
     }
 
     public List<StubResponse> getResponses() {
+        return new LinkedList<>(Arrays.asList(responses));
+    }
+
+    /**
+     * Moves the cursor to the next response in the sequence, wrapping around to the first response after the last
+     * one. The cursor never leaves the bounds of the sequence, so concurrent callers can not observe an out of bounds
+     * position, and the cursor is moved without taking a lock nor allocating.
+     *
+     * @return the position of the response to serve
+     */
+    private int nextSequencedResponseId(final AtomicInteger sequencedIdCounter) {
+        final int sequenceLength = responses.length;
+        return sequencedIdCounter.getAndUpdate(current -> current + 1 < sequenceLength ? current + 1 : 0);
+    }
+
+    private static StubResponse[] toResponsesArray(final Object response) {
         if (response instanceof StubResponse) {
-            return new LinkedList<>(Collections.singletonList((StubResponse) response));
+            return new StubResponse[]{(StubResponse) response};
         }
-        return asCheckedLinkedList(this.response, StubResponse.class);
+        return asCheckedLinkedList(response, StubResponse.class).toArray(new StubResponse[0]);
     }
 
     boolean isAuthorizationRequired() {
@@ -99,11 +167,24 @@ public class StubHttpLifecycle implements ReflectableStub {
     }
 
     public String getResourceId() {
-        return getResponses().get(0).getResourceIDHeader();
+        return responses[0].getResourceIDHeader();
     }
 
-    void setResourceId(final int resourceId) {
-        getResponses().forEach(response -> response.addResourceIDHeader(resourceId));
+    /**
+     * @return the position of this stub among the loaded stubs, or -1 if the position was never set
+     */
+    int getResourceIndex() {
+        return resourceIndex;
+    }
+
+    /**
+     * A loaded stub may be served concurrently, so it is never modified once loaded. When the stub moves to another
+     * position among the loaded stubs (e.g.: a stub before it is deleted), a copy of it is loaded instead.
+     *
+     * @return this stub if it is already at the given position, otherwise a copy of this stub at the given position
+     */
+    StubHttpLifecycle withResourceId(final int resourceId) {
+        return resourceId == resourceIndex ? this : new StubHttpLifecycle(this, resourceId);
     }
 
     /**
@@ -192,6 +273,7 @@ public class StubHttpLifecycle implements ReflectableStub {
         private String responseAsYAML;
         private String description;
         private String uuid;
+        private int resourceIndex;
 
         public Builder() {
             this.request = null;
@@ -201,6 +283,7 @@ public class StubHttpLifecycle implements ReflectableStub {
             this.responseAsYAML = null;
             this.description = null;
             this.uuid = null;
+            this.resourceIndex = -1;
         }
 
         public Builder withRequest(final StubRequest request) {
@@ -239,6 +322,7 @@ public class StubHttpLifecycle implements ReflectableStub {
 
         public Builder withResourceId(final int resourceId) {
             getResponses().forEach(response -> response.addResourceIDHeader(resourceId));
+            this.resourceIndex = resourceId;
 
             return this;
         }
@@ -264,7 +348,8 @@ public class StubHttpLifecycle implements ReflectableStub {
                             responseAsYAML,
                             completeYAML,
                             description,
-                            uuid);
+                            uuid,
+                            resourceIndex);
 
             this.request = null;
             this.response = okResponse();
@@ -273,6 +358,7 @@ public class StubHttpLifecycle implements ReflectableStub {
             this.responseAsYAML = null;
             this.description = null;
             this.uuid = null;
+            this.resourceIndex = -1;
 
             return stubHttpLifecycle;
         }
@@ -0,0 +1,161 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static io.github.azagniotov.stubby4j.utils.StringUtils.isSet;
+
+/**
+ * An immutable, load-time index over the loaded stubs, which narrows down the list of stubs that have to
+ * be matched against the incoming request to a handful of candidates.
+ * <p>
+ * Stubs whose URL does not contain any regex special characters are placed into a hash table keyed by HTTP
+ * method and URL path. The rest of the stubs, i.e.: stubs with a regex URL (see {@link RegexParser#potentialRegex(String)})
+ * or without URL at all, are placed into a {@link UrlPrefixTrie} per HTTP method, keyed by the literal prefix of
+ * their URL regex, so that only the regex URLs that can potentially match the incoming URL are tried. Stubs
+ * without stubbed HTTP method are registered under a wildcard method.
+ * <p>
+ * The candidates are returned in the order in which the stubs were defined in the YAML, so the first-defined-wins
+ * matching semantics are preserved.
+ */
+final class StubIndex {
+
+    private static final String ANY_METHOD = "*";
+    private static final int[] NO_CANDIDATES = new int[]{};
+
+    private final List<StubHttpLifecycle> stubs;
+    private final Map<String, int[]> literalUrlBuckets;
+    private final Map<String, UrlPrefixTrie> nonLiteralUrlTries;
+
+    StubIndex(final List<StubHttpLifecycle> stubs) {
+        this.stubs = Collections.unmodifiableList(new ArrayList<>(stubs));
+
+        final Map<String, List<Integer>> literalUrlIndices = new HashMap<>();
+        final Map<String, UrlPrefixTrie> nonLiteralUrlTries = new HashMap<>();
+
+        for (int index = 0; index < this.stubs.size(); index++) {
+            final StubRequest stubbedRequest = this.stubs.get(index).getRequest();
+            final String stubbedUrl = stubbedRequest.getUri();
+            final boolean isLiteralUrl = isSet(stubbedUrl) && RegexParser.isLiteral(stubbedUrl);
+
+            final Set<String> stubbedMethods = new LinkedHashSet<>(stubbedRequest.getMethod());
+            if (stubbedMethods.isEmpty()) {
+                stubbedMethods.add(ANY_METHOD);
+            }
+
+            for (final String stubbedMethod : stubbedMethods) {
+                if (isLiteralUrl) {
+                    literalUrlIndices.computeIfAbsent(literalUrlKey(stubbedMethod, stubbedUrl), key -> new LinkedList<>()).add(index);
+                } else {
+                    final String literalPrefix = isSet(stubbedUrl) ? RegexParser.literalPrefix(stubbedUrl) : "";
+                    nonLiteralUrlTries.computeIfAbsent(stubbedMethod, key -> new UrlPrefixTrie()).add(literalPrefix, index);
+
+                    // Regex URL is also compared for equality with the incoming URL, see StubMatcher
+                    if (isSet(stubbedUrl)) {
+                        literalUrlIndices.computeIfAbsent(literalUrlKey(stubbedMethod, stubbedUrl), key -> new LinkedList<>()).add(index);
+                    }
+                }
+            }
+        }
+
+        this.literalUrlBuckets = toBuckets(literalUrlIndices);
+        this.nonLiteralUrlTries = nonLiteralUrlTries;
+    }
+
+    private static Map<String, int[]> toBuckets(final Map<String, List<Integer>> indices) {
+        final Map<String, int[]> buckets = new HashMap<>();
+        for (final Map.Entry<String, List<Integer>> entry : indices.entrySet()) {
+            buckets.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        return buckets;
+    }
+
+    private static String literalUrlKey(final String method, final String url) {
+        return method + " " + url;
+    }
+
+    List<StubHttpLifecycle> getStubs() {
+        return stubs;
+    }
+
+    int size() {
+        return stubs.size();
+    }
+
+    /**
+     * Returns stubs that may potentially match the incoming request, in the order of their definition in the YAML.
+     * The returned candidates still have to be matched using the {@link StubMatcher}.
+     *
+     * @param incomingRequest the incoming {@link StubRequest request}
+     * @return a {@link List} of candidate stubs
+     */
+    List<StubHttpLifecycle> candidates(final StubRequest incomingRequest) {
+        final String incomingUrl = incomingRequest.getUri();
+        final List<int[]> buckets = new ArrayList<>();
+
+        for (final String incomingMethod : incomingRequest.getMethod()) {
+            collectBuckets(buckets, incomingMethod, incomingUrl);
+        }
+        collectBuckets(buckets, ANY_METHOD, incomingUrl);
+
+        final int[] candidateIndices = mergeSorted(buckets);
+        final List<StubHttpLifecycle> candidates = new ArrayList<>(candidateIndices.length);
+        for (final int candidateIndex : candidateIndices) {
+            candidates.add(stubs.get(candidateIndex));
+        }
+
+        return candidates;
+    }
+
+    private void collectBuckets(final List<int[]> buckets, final String method, final String incomingUrl) {
+        final int[] literalUrlBucket = literalUrlBuckets.getOrDefault(literalUrlKey(method, incomingUrl), NO_CANDIDATES);
+        if (literalUrlBucket.length > 0) {
+            buckets.add(literalUrlBucket);
+        }
+
+        final UrlPrefixTrie nonLiteralUrlTrie = nonLiteralUrlTries.get(method);
+        if (nonLiteralUrlTrie != null) {
+            nonLiteralUrlTrie.collect(incomingUrl, buckets);
+        }
+    }
+
+    private static int[] mergeSorted(final List<int[]> buckets) {
+        if (buckets.isEmpty()) {
+            return NO_CANDIDATES;
+        } else if (buckets.size() == 1) {
+            return buckets.get(0);
+        }
+
+        int totalLength = 0;
+        for (final int[] bucket : buckets) {
+            totalLength += bucket.length;
+        }
+
+        final int[] merged = new int[totalLength];
+        int offset = 0;
+        for (final int[] bucket : buckets) {
+            System.arraycopy(bucket, 0, merged, offset, bucket.length);
+            offset += bucket.length;
+        }
+        Arrays.sort(merged);
+
+        // A stub may end up in more than one bucket, e.g.: when incoming request has multiple HTTP methods
+        int distinct = 0;
+        for (int idx = 0; idx < merged.length; idx++) {
+            if (idx == 0 || merged[idx] != merged[idx - 1]) {
+                merged[distinct++] = merged[idx];
+            }
+        }
+
+        return Arrays.copyOf(merged, distinct);
+    }
+}
@@ -0,0 +1,102 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+
+import io.github.azagniotov.stubby4j.utils.LatencyHistogram;
+import org.json.JSONObject;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The {@link LatencyHistogram latency histograms} of the phases of serving incoming requests, kept either for
+ * a single stub or for all requests. A value recorded into the latencies of a stub is recorded into the latencies
+ * of all requests too. The histogram of a phase is only allocated once a value is recorded for the phase, e.g.: the
+ * latencies of a stub never hold a {@link Phase#PROXY} histogram.
+ */
+public final class StubLatencies {
+
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    public enum Phase {
+        // Matching plus rendering, i.e.: the time stubby4j spends on a request, without stubbed latency or bandwidth
+        TOTAL("total"),
+        // Looking up the stub that matches the incoming request
+        MATCH("match"),
+        // Rendering the templates and writing the response
+        RENDER("render"),
+        // Round trip to the proxy config endpoint
+        PROXY("proxy");
+
+        private final String name;
+
+        Phase(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private final StubLatencies parent;
+    private final AtomicReferenceArray<LatencyHistogram> histograms;
+
+    StubLatencies(final StubLatencies parent) {
+        this.parent = parent;
+        this.histograms = new AtomicReferenceArray<>(Phase.values().length);
+    }
+
+    public void record(final Phase phase, final long nanos) {
+        LatencyHistogram histogram = histograms.get(phase.ordinal());
+        if (histogram == null) {
+            histograms.compareAndSet(phase.ordinal(), null, new LatencyHistogram());
+            histogram = histograms.get(phase.ordinal());
+        }
+        histogram.record(nanos);
+
+        if (parent != null) {
+            parent.record(phase, nanos);
+        }
+    }
+
+    /**
+     * @return the histogram of the given phase, or null if no value was recorded for the phase yet
+     */
+    public LatencyHistogram getHistogram(final Phase phase) {
+        return histograms.get(phase.ordinal());
+    }
+
+    /**
+     * @param reset whether to report the values recorded since the previous reset and start a new interval,
+     *              instead of the values recorded since the latencies were created
+     * @return the count, mean, max and percentiles (in microseconds) of every phase a value was recorded for, e.g.:
+     * {@code {"match":{"count":10,"mean":12,"max":40,"p50":11,"p90":20,"p99":40,"p999":40}}}
+     */
+    JSONObject toJson(final boolean reset) {
+        final JSONObject json = new JSONObject();
+        for (final Phase phase : Phase.values()) {
+            final LatencyHistogram histogram = histograms.get(phase.ordinal());
+            if (histogram == null) {
+                continue;
+            }
+
+            final LatencyHistogram.Snapshot snapshot = reset ? histogram.snapshotAndReset() : histogram.snapshot();
+            final JSONObject phaseJson = new JSONObject()
+                    .put("count", snapshot.getCount())
+                    .put("mean", toMicros(snapshot.getMeanNanos()))
+                    .put("max", toMicros(snapshot.getMaxNanos()));
+            for (int idx = 0; idx < PERCENTILES.length; idx++) {
+                phaseJson.put(PERCENTILE_NAMES[idx], toMicros(snapshot.getValueAtPercentile(PERCENTILES[idx])));
+            }
+            json.put(phase.toString(), phaseJson);
+        }
+        return json;
+    }
+
+    private static long toMicros(final long nanos) {
+        // Rounded up, so that a sub-microsecond latency is not reported as 0
+        return (nanos + TimeUnit.MICROSECONDS.toNanos(1) - 1) / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+}
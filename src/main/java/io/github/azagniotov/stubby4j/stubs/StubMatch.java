@@ -0,0 +1,30 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A cached result of matching an incoming request to the loaded stubs: the matched stub, together with
+ * the regex groups captured while matching, so that the template tokens in the stubbed response
+ * (e.g.: {@code <% url.1 %>}) can be replaced when the match is served from the cache.
+ */
+public final class StubMatch {
+
+    private final StubHttpLifecycle stub;
+    private final Map<String, String> regexGroups;
+
+    public StubMatch(final StubHttpLifecycle stub, final Map<String, String> regexGroups) {
+        this.stub = stub;
+        this.regexGroups = Collections.unmodifiableMap(new TreeMap<>(regexGroups));
+    }
+
+    public StubHttpLifecycle getStub() {
+        return stub;
+    }
+
+    public Map<String, String> getRegexGroups() {
+        return regexGroups;
+    }
+}
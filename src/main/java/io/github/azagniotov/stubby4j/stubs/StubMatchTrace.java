@@ -0,0 +1,164 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+
+import io.github.azagniotov.stubby4j.utils.ConsoleUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static io.github.azagniotov.stubby4j.utils.StringUtils.isSet;
+
+/**
+ * A structured trace of matching one incoming request to the candidate stubs: for every candidate stub that
+ * was compared to the incoming request, records which of the stubbed request fields (i.e.: URL, method, body,
+ * headers and query) matched or did not match, together with the stubbed and the incoming values.
+ * <p>
+ * A trace is only created when match tracing is enabled (see {@link StubRepository#enableMatchTracing(boolean)}),
+ * otherwise {@link StubMatcher} does not record anything, and the matching does not pay for formatting
+ * the diagnostic messages. A trace is bounded: it records at most {@link #MAX_TRACED_STUBS} candidate stubs.
+ * <p>
+ * A trace is recorded by the thread that matches the incoming request, and is read only after
+ * the matching has completed.
+ */
+public final class StubMatchTrace {
+
+    static final int MAX_TRACED_STUBS = 32;
+
+    static final String FIELD_URL = "url";
+    static final String FIELD_METHOD = "method";
+    static final String FIELD_POST_BODY = "post";
+    static final String FIELD_HEADERS = "headers";
+    static final String FIELD_QUERY = "query";
+
+    private final String timestamp;
+    private final List<String> method;
+    private final String url;
+    private final List<TracedStub> tracedStubs;
+    private int untracedStubs;
+
+    StubMatchTrace(final StubRequest incomingRequest) {
+        this.timestamp = ConsoleUtils.getLocalDateTime();
+        this.method = incomingRequest.getMethod();
+        this.url = incomingRequest.getUrl();
+        this.tracedStubs = new ArrayList<>();
+        this.untracedStubs = 0;
+    }
+
+    void beginStub(final StubRequest stubbedRequest) {
+        if (tracedStubs.size() < MAX_TRACED_STUBS) {
+            tracedStubs.add(new TracedStub(stubbedRequest.getUri()));
+        } else {
+            untracedStubs++;
+        }
+    }
+
+    void record(final String field, final Object stubbedValue, final Object incomingValue, final boolean matched) {
+        if (untracedStubs > 0 || tracedStubs.isEmpty()) {
+            return;
+        }
+        final TracedStub currentStub = tracedStubs.get(tracedStubs.size() - 1);
+        currentStub.fields.add(new TracedField(field, String.valueOf(stubbedValue), String.valueOf(incomingValue), matched));
+    }
+
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    public List<String> getMethod() {
+        return Collections.unmodifiableList(method);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getTracedStubsCount() {
+        return tracedStubs.size();
+    }
+
+    public int getUntracedStubsCount() {
+        return untracedStubs;
+    }
+
+    public JSONObject toJson() throws JSONException {
+        final JSONArray stubs = new JSONArray();
+        for (final TracedStub tracedStub : tracedStubs) {
+            final JSONArray fields = new JSONArray();
+            for (final TracedField tracedField : tracedStub.fields) {
+                fields.put(new JSONObject()
+                        .put("field", tracedField.field)
+                        .put("matched", tracedField.matched)
+                        .put("stubbed", tracedField.stubbedValue)
+                        .put("incoming", tracedField.incomingValue));
+            }
+            stubs.put(new JSONObject().put("url", tracedStub.url).put("fields", fields));
+        }
+
+        return new JSONObject()
+                .put("timestamp", timestamp)
+                .put("method", new JSONArray(method))
+                .put("url", url)
+                .put("stubs", stubs)
+                .put("untracedStubs", untracedStubs);
+    }
+
+    /**
+     * @return a human readable summary of the trace, i.e.: for every traced stub, the first field that did not match
+     */
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder()
+                .append("No stubbed match for ")
+                .append(method)
+                .append(" ")
+                .append(url);
+        if (tracedStubs.isEmpty()) {
+            builder.append(": there were no candidate stubs to compare with");
+        }
+        for (final TracedStub tracedStub : tracedStubs) {
+            builder.append(System.lineSeparator())
+                    .append("  stubbed [")
+                    .append(tracedStub.url)
+                    .append("]");
+            for (final TracedField tracedField : tracedStub.fields) {
+                if (!tracedField.matched) {
+                    builder.append(String.format(" failed to match on %s [%s] WITH incoming [%s]",
+                            tracedField.field, tracedField.stubbedValue, tracedField.incomingValue));
+                }
+            }
+        }
+        if (untracedStubs > 0) {
+            builder.append(System.lineSeparator())
+                    .append(String.format("  ... and %s more stubs", untracedStubs));
+        }
+        return builder.toString();
+    }
+
+    private static final class TracedStub {
+        private final String url;
+        private final List<TracedField> fields;
+
+        private TracedStub(final String url) {
+            this.url = isSet(url) ? url : "";
+            this.fields = new ArrayList<>();
+        }
+    }
+
+    private static final class TracedField {
+        private final String field;
+        private final String stubbedValue;
+        private final String incomingValue;
+        private final boolean matched;
+
+        private TracedField(final String field, final String stubbedValue, final String incomingValue, final boolean matched) {
+            this.field = field;
+            this.stubbedValue = stubbedValue;
+            this.incomingValue = incomingValue;
+            this.matched = matched;
+        }
+    }
+}
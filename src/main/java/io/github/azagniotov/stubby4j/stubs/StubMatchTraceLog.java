@@ -0,0 +1,49 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A bounded log of the most recent {@link StubMatchTrace traces} of the incoming requests that did not match
+ * any of the stubs. Once the log is full, the oldest trace is evicted to make room for the newest one.
+ */
+final class StubMatchTraceLog {
+
+    static final int DEFAULT_CAPACITY = 100;
+
+    private final int capacity;
+    private final Deque<StubMatchTrace> traces;
+
+    StubMatchTraceLog(final int capacity) {
+        this.capacity = capacity;
+        this.traces = new ArrayDeque<>(capacity);
+    }
+
+    synchronized void add(final StubMatchTrace trace) {
+        if (traces.size() == capacity) {
+            traces.removeFirst();
+        }
+        traces.addLast(trace);
+    }
+
+    /**
+     * @param limit the maximum number of traces to return
+     * @return up to {@code limit} most recent traces, the newest first
+     */
+    synchronized List<StubMatchTrace> last(final int limit) {
+        final List<StubMatchTrace> lastTraces = new ArrayList<>(Math.min(Math.max(limit, 0), traces.size()));
+        final Iterator<StubMatchTrace> newestFirst = traces.descendingIterator();
+        while (newestFirst.hasNext() && lastTraces.size() < limit) {
+            lastTraces.add(newestFirst.next());
+        }
+        return lastTraces;
+    }
+
+    synchronized void clear() {
+        traces.clear();
+    }
+}
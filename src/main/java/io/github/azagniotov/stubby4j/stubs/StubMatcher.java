@@ -10,6 +10,7 @@ import org.skyscreamer.jsonassert.JSONCompare;
 import org.skyscreamer.jsonassert.JSONCompareMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
 import org.xmlunit.builder.DiffBuilder;
 import org.xmlunit.builder.Input;
 import org.xmlunit.diff.ComparisonControllers;
@@ -25,13 +26,9 @@ import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import static io.github.azagniotov.stubby4j.utils.StringUtils.escapeSpecialRegexCharacters;
 import static io.github.azagniotov.stubby4j.utils.StringUtils.getBytesUtf8;
 import static io.github.azagniotov.stubby4j.utils.StringUtils.isNotSet;
 import static io.github.azagniotov.stubby4j.utils.StringUtils.isSet;
-import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.HEADERS;
-import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.QUERY;
-import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.URL;
 import static org.xmlunit.builder.Input.fromByteArray;
 
 class StubMatcher {
@@ -39,98 +36,92 @@ class StubMatcher {
     private static final DefaultNodeMatcher NODE_MATCHER_BY_NAME_AND_ALL_ATTRIBUTES = new DefaultNodeMatcher(ElementSelectors.byNameAndAllAttributes);
     private static final Pattern SUB_TYPE_PATTERN = Pattern.compile("/(?:.*\\+)?(\\w*);?");
 
-    private static final String FAILED_TO_MATCH_ON_STUBBED = "Failed to match on stubbed";
-    private static final String MATCHED_ON_STUBBED = "Matched on stubbed";
-
-    private static final String MSG_FIELDS_TEMPLATE = "[%s] WITH incoming [%s]";
-    private static final String MSG_FIELD_URL = " URL ";
-    private static final String MSG_FIELD_METHOD = " METHOD ";
-    private static final String MSG_FIELD_POST_BODY = " POST BODY ";
-    private static final String MSG_FIELD_HEADERS = " HEADERS ";
-    private static final String MSG_FIELD_QUERY = " QUERY ";
-
     private final Map<String, String> regexGroups;
+    private final StubMatchTrace matchTrace;
 
     StubMatcher(final Map<String, String> regexGroups) {
+        this(regexGroups, null);
+    }
+
+    /**
+     * @param regexGroups where the regex groups captured while matching are stored
+     * @param matchTrace  where the per-field outcomes are recorded, or {@code null} when match tracing is disabled
+     */
+    StubMatcher(final Map<String, String> regexGroups, final StubMatchTrace matchTrace) {
         this.regexGroups = regexGroups;
+        this.matchTrace = matchTrace;
     }
 
     boolean matches(final StubRequest stubbedRequest, final StubRequest assertingRequest) {
+        final StubRequestMatchPlan matchPlan = stubbedRequest.getMatchPlan();
+
+        // The outcomes are recorded only when tracing, so that the matching does not format any messages otherwise
+        if (matchTrace != null) {
+            matchTrace.beginStub(stubbedRequest);
+        }
+
         // Match stubbed request URI path
-        if (!urlsMatch(stubbedRequest.getUri(), assertingRequest.getUri())) {
-            final String urlMatchFailed = String.format(FAILED_TO_MATCH_ON_STUBBED + MSG_FIELD_URL + MSG_FIELDS_TEMPLATE, stubbedRequest.getUri(), assertingRequest.getUri());
-            ANSITerminal.error(urlMatchFailed);
-            LOGGER.error(urlMatchFailed);
+        final boolean urlMatched = valuesMatch(matchPlan.getUrl(), assertingRequest.getUri());
+        if (matchTrace != null) {
+            matchTrace.record(StubMatchTrace.FIELD_URL, stubbedRequest.getUri(), assertingRequest.getUri(), urlMatched);
+        }
+        if (!urlMatched) {
             return false;
         }
-        final String urlMatchSuccess = String.format(MATCHED_ON_STUBBED + MSG_FIELD_URL + MSG_FIELDS_TEMPLATE, stubbedRequest.getUri(), assertingRequest.getUri());
-        ANSITerminal.info(urlMatchSuccess);
-        LOGGER.info(urlMatchSuccess);
 
         // Match stubbed request HTTP method(s)
-        if (!stubbedRequest.getMethod().isEmpty()) {
-            if (!listsIntersect(stubbedRequest.getMethod(), assertingRequest.getMethod())) {
-                final String methodMatchFailed = String.format(FAILED_TO_MATCH_ON_STUBBED + MSG_FIELD_METHOD + MSG_FIELDS_TEMPLATE, stubbedRequest.getMethod(), assertingRequest.getMethod());
-                ANSITerminal.error(methodMatchFailed);
-                LOGGER.error(methodMatchFailed);
+        if (matchPlan.hasMethods()) {
+            final boolean methodMatched = matchPlan.methodsIntersect(assertingRequest.getMethod());
+            if (matchTrace != null) {
+                matchTrace.record(StubMatchTrace.FIELD_METHOD, stubbedRequest.getMethod(), assertingRequest.getMethod(), methodMatched);
+            }
+            if (!methodMatched) {
                 return false;
             }
-            final String methodMatchSuccess = String.format(MATCHED_ON_STUBBED + MSG_FIELD_METHOD + MSG_FIELDS_TEMPLATE, stubbedRequest.getMethod(), assertingRequest.getMethod());
-            ANSITerminal.info(methodMatchSuccess);
-            LOGGER.info(methodMatchSuccess);
         }
 
         // Match stubbed request body payload (POST, PUT & PATCH)
-        if (stubbedRequest.isRequestBodyStubbed()) {
-            if (!postBodiesMatch(stubbedRequest, assertingRequest)) {
-                final String bodyMatchFailed = String.format(FAILED_TO_MATCH_ON_STUBBED + MSG_FIELD_POST_BODY + MSG_FIELDS_TEMPLATE, stubbedRequest.getPostBody(), assertingRequest.getPostBody());
-                ANSITerminal.error(bodyMatchFailed);
-                LOGGER.error(bodyMatchFailed);
+        if (matchPlan.isRequestBodyStubbed()) {
+            final boolean bodyMatched = postBodiesMatch(matchPlan, assertingRequest);
+            if (matchTrace != null) {
+                matchTrace.record(StubMatchTrace.FIELD_POST_BODY, stubbedRequest.getPostBody(), assertingRequest.getPostBody(), bodyMatched);
+            }
+            if (!bodyMatched) {
                 return false;
             }
-            final String bodyMatchSuccess = String.format(MATCHED_ON_STUBBED + MSG_FIELD_POST_BODY + MSG_FIELDS_TEMPLATE, stubbedRequest.getPostBody(), assertingRequest.getPostBody());
-            ANSITerminal.info(bodyMatchSuccess);
-            LOGGER.info(bodyMatchSuccess);
         }
 
         // Match stubbed request headers
-        if (!stubbedRequest.getHeaders().isEmpty()) {
-            if (!headersMatch(stubbedRequest.getHeaders(), assertingRequest.getHeaders())) {
-                final String headersMatchFailed = String.format(FAILED_TO_MATCH_ON_STUBBED + MSG_FIELD_HEADERS + MSG_FIELDS_TEMPLATE, stubbedRequest.getHeaders(), assertingRequest.getHeaders());
-                ANSITerminal.error(headersMatchFailed);
-                LOGGER.error(headersMatchFailed);
+        if (matchPlan.hasHeaders()) {
+            final boolean headersMatched = valuesMatch(matchPlan.getHeaders(), assertingRequest.getHeaders());
+            if (matchTrace != null) {
+                matchTrace.record(StubMatchTrace.FIELD_HEADERS, stubbedRequest.getHeaders(), assertingRequest.getHeaders(), headersMatched);
+            }
+            if (!headersMatched) {
                 return false;
             }
-            final String headersMatchSuccess = String.format(MATCHED_ON_STUBBED + MSG_FIELD_HEADERS + MSG_FIELDS_TEMPLATE, stubbedRequest.getHeaders(), assertingRequest.getHeaders());
-            ANSITerminal.info(headersMatchSuccess);
-            LOGGER.info(headersMatchSuccess);
         }
 
         // Match stubbed request query params
-        if (!stubbedRequest.getQuery().isEmpty()) {
-            if (!queriesMatch(stubbedRequest.getQuery(), assertingRequest.getQuery())) {
-                final String uriQueryMatchFailed = String.format(FAILED_TO_MATCH_ON_STUBBED + MSG_FIELD_QUERY + MSG_FIELDS_TEMPLATE, stubbedRequest.getQuery(), assertingRequest.getQuery());
-                ANSITerminal.error(uriQueryMatchFailed);
-                LOGGER.error(uriQueryMatchFailed);
-                return false;
+        if (matchPlan.hasQuery()) {
+            final boolean queryMatched = valuesMatch(matchPlan.getQuery(), assertingRequest.getQuery());
+            if (matchTrace != null) {
+                matchTrace.record(StubMatchTrace.FIELD_QUERY, stubbedRequest.getQuery(), assertingRequest.getQuery(), queryMatched);
             }
-            final String uriQueryMatchSuccess = String.format(MATCHED_ON_STUBBED + MSG_FIELD_QUERY + MSG_FIELDS_TEMPLATE, stubbedRequest.getQuery(), assertingRequest.getQuery());
-            ANSITerminal.info(uriQueryMatchSuccess);
-            LOGGER.info(uriQueryMatchSuccess);
+            return queryMatched;
         }
 
         return true;
     }
 
-    private boolean urlsMatch(final String stubbedUrl, final String assertingUrl) {
-        return stringsMatch(stubbedUrl, assertingUrl, URL.toString());
-    }
-
     @VisibleForTesting
     boolean postBodiesMatch(final StubRequest stubbedRequest, final StubRequest assertingRequest) {
-        final boolean isPostStubbed = stubbedRequest.isRequestBodyStubbed();
-        final String stubbedPostBody = stubbedRequest.getPostBody();
-        final String templateTokenName = stubbedRequest.getStubbedRequestBodyTokenName();
+        return postBodiesMatch(stubbedRequest.getMatchPlan(), assertingRequest);
+    }
+
+    private boolean postBodiesMatch(final StubRequestMatchPlan matchPlan, final StubRequest assertingRequest) {
+        final boolean isPostStubbed = matchPlan.isRequestBodyStubbed();
+        final String templateTokenName = matchPlan.getPostBodyTokenName();
 
         if (isPostStubbed) {
             final String assertingPostBody = assertingRequest.getPostBody();
@@ -146,30 +137,62 @@ class StubMatcher {
                     final String subType = matcher.group(1);
 
                     if ("json".equals(subType)) {
-                        return jsonMatch(stubbedPostBody, assertingPostBody, templateTokenName);
+                        return jsonMatch(matchPlan, assertingRequest);
                     } else if ("xml".equals(subType)) {
-                        return xmlMatch(stubbedPostBody, assertingPostBody, templateTokenName);
+                        return xmlMatch(matchPlan, assertingRequest);
                     }
                 }
             }
 
-            return stringsMatch(stubbedPostBody, assertingPostBody, templateTokenName);
+            return stringsMatch(matchPlan.getPostBodyRegex(), assertingPostBody, templateTokenName);
         }
 
         return true;
     }
 
-    private boolean queriesMatch(final Map<String, String> stubbedQuery, final Map<String, String> assertingQuery) {
-        return mapsMatch(stubbedQuery, assertingQuery, QUERY.toString());
+    private boolean valuesMatch(final StubRequestMatchPlan.ValueMatcher[] stubbedValueMatchers, final Map<String, String> assertingMappings) {
+        if (assertingMappings.isEmpty()) {
+            return false;
+        }
+
+        for (final StubRequestMatchPlan.ValueMatcher stubbedValueMatcher : stubbedValueMatchers) {
+            final String assertingValue = assertingMappings.get(stubbedValueMatcher.getKey());
+            if (assertingValue == null && !assertingMappings.containsKey(stubbedValueMatcher.getKey())) {
+                return false;
+            }
+
+            if (!valuesMatch(stubbedValueMatcher, assertingValue)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean valuesMatch(final StubRequestMatchPlan.ValueMatcher stubbedValueMatcher, final String assertingValue) {
+        switch (stubbedValueMatcher.getKind()) {
+            case ANY:
+                return true;
+            case LITERAL:
+                if (isSet(assertingValue) && stubbedValueMatcher.getValue().equals(assertingValue)) {
+                    // Same as what a regex match would have captured, i.e.: group(0) holds the full match
+                    regexGroups.put(stubbedValueMatcher.getFullMatchTokenName(), assertingValue);
+                    return true;
+                }
+                return false;
+            default:
+                return stringsMatch(stubbedValueMatcher.getRegex(), assertingValue, stubbedValueMatcher.getTemplateTokenName());
+        }
     }
 
-    private boolean headersMatch(final Map<String, String> stubbedHeaders, final Map<String, String> assertingHeaders) {
-        final Map<String, String> stubbedHeadersCopy = new HashMap<>(stubbedHeaders);
-        for (final StubbableAuthorizationType authorizationType : StubbableAuthorizationType.values()) {
-            // auth header is dealt with in StubRepository after request is matched
-            stubbedHeadersCopy.remove(authorizationType.asYAMLProp());
+    /**
+     * Same as {@link #stringsMatch(String, String, String)}, but for a stubbed value that was compiled when the stub was loaded
+     */
+    private boolean stringsMatch(final CompiledRegex stubbedRegex, final String assertingValue, final String templateTokenName) {
+        if (isNotSet(assertingValue)) {
+            return false;
         }
-        return mapsMatch(stubbedHeadersCopy, assertingHeaders, HEADERS.toString());
+        return stubbedRegex.match(assertingValue, templateTokenName, regexGroups) || stubbedRegex.getValue().equals(assertingValue);
     }
 
     @VisibleForTesting
@@ -228,59 +251,131 @@ class StubMatcher {
         return false;
     }
 
-    private boolean jsonMatch(final String stubbedJson, final String assertingJson, final String templateTokenName) {
+    private boolean jsonMatch(final StubRequestMatchPlan matchPlan, final StubRequest assertingRequest) {
+        final JsonBody stubbedJsonBody = matchPlan.getJsonPostBody();
+        final JsonBody assertingJsonBody = assertingRequest.getJsonPostBody();
+        if (!stubbedJsonBody.isJson() || !assertingJsonBody.isJson()) {
+            return jsonMatch(matchPlan, assertingRequest.getPostBody());
+        }
+
+        if (stubbedJsonBody.canonicallyEquals(assertingJsonBody)) {
+            return true;
+        }
+
+        // Different canonical forms fail the NON_EXTENSIBLE comparison, and without regex special
+        // characters, the escaped stubbed JSON regex can only match the identical JSON
+        if (!matchPlan.isPostBodyRegexLike()) {
+            return false;
+        }
+
+        try {
+            if (stubbedJsonBody.nonExtensiblyEquals(assertingJsonBody)) {
+                return true;
+            }
+        } catch (final JSONException e) {
+            // Fall through to match the stubbed JSON as a regex
+        }
+        return stringsMatch(matchPlan.getEscapedPostBodyRegex(), assertingRequest.getPostBody(), matchPlan.getPostBodyTokenName());
+    }
+
+    private boolean jsonMatch(final StubRequestMatchPlan matchPlan, final String assertingJson) {
+        final String stubbedJson = matchPlan.getPostBody();
+        final String templateTokenName = matchPlan.getPostBodyTokenName();
         try {
             final boolean passed = JSONCompare.compareJSON(stubbedJson, assertingJson, JSONCompareMode.NON_EXTENSIBLE).passed();
             if (passed) {
                 return true;
-            } else {
-                final String escapedStubbedPostBody = escapeSpecialRegexCharacters(stubbedJson);
-                return stringsMatch(escapedStubbedPostBody, assertingJson, templateTokenName);
             }
+            return stringsMatch(matchPlan.getEscapedPostBodyRegex(), assertingJson, templateTokenName);
         } catch (final JSONException e) {
             // In a "happy path", this exception happens when stubbed JSON is a RegEx pattern
-            return stringsMatch(stubbedJson, assertingJson, templateTokenName);
+            return stringsMatch(matchPlan.getPostBodyRegex(), assertingJson, templateTokenName);
         }
     }
 
-    private boolean xmlMatch(final String stubbedXml, final String assertingXml, final String templateTokenName) {
+    private boolean xmlMatch(final StubRequestMatchPlan matchPlan, final StubRequest assertingRequest) {
+        final XmlBody stubbedXmlBody = matchPlan.getXmlPostBody();
+        if (!stubbedXmlBody.isXml()) {
+            return xmlMatch(matchPlan, assertingRequest.getPostBody());
+        }
+        final XmlBody assertingXmlBody = assertingRequest.getXmlPostBody();
+        if (!assertingXmlBody.isXml()) {
+            return xmlMatch(matchPlan, assertingRequest.getPostBody());
+        }
+
+        if (!stubbedXmlBody.hasPlaceholders() && stubbedXmlBody.canonicallyEquals(assertingXmlBody)) {
+            return true;
+        }
+
+        Document control = null;
+        Document assertion = null;
         try {
+            control = stubbedXmlBody.acquire();
+            assertion = assertingXmlBody.acquire();
 
-            final Input.Builder control = fromByteArray(getBytesUtf8(stubbedXml));
+            return xmlDiff(Input.fromDocument(control), Input.fromDocument(assertion), matchPlan.getPostBodyTokenName(), stubbedXmlBody.hasPlaceholders());
+        } catch (Exception e) {
+            return xmlMatchFailed(matchPlan, assertingRequest.getPostBody(), e);
+        } finally {
+            if (control != null) {
+                stubbedXmlBody.release(control);
+            }
+            if (assertion != null) {
+                assertingXmlBody.release(assertion);
+            }
+        }
+    }
+
+    private boolean xmlMatch(final StubRequestMatchPlan matchPlan, final String assertingXml) {
+        try {
+            final Input.Builder control = fromByteArray(getBytesUtf8(matchPlan.getPostBody()));
             final Input.Builder assertion = fromByteArray(getBytesUtf8(assertingXml));
 
-            // There is a chance that the stubbed XML contains XMLUnit placeholders,
-            // e.g.: ${xmlunit.matchesRegex(..)}, so let's do another comparison pass
-            // using PlaceholderDifferenceEvaluator.
-            // More info: https://github.com/azagniotov/stubby4j#regex-stubbing-for-xml-content
+            return xmlDiff(control, assertion, matchPlan.getPostBodyTokenName(), true);
+        } catch (Exception e) {
+            return xmlMatchFailed(matchPlan, assertingXml, e);
+        }
+    }
+
+    private boolean xmlDiff(final Input.Builder control, final Input.Builder assertion, final String templateTokenName, final boolean placeholders) {
+        // There is a chance that the stubbed XML contains XMLUnit placeholders,
+        // e.g.: ${xmlunit.matchesRegex(..)}, so let's do another comparison pass
+        // using PlaceholderDifferenceEvaluator.
+        // More info: https://github.com/azagniotov/stubby4j#regex-stubbing-for-xml-content
+        final DifferenceEvaluator differenceEvaluator;
+        if (placeholders) {
             final Stubby4jMatchesRegexPlaceholderHandler matchesRegexPlaceholderHandler =
                     new Stubby4jMatchesRegexPlaceholderHandler(templateTokenName, this.regexGroups);
-            final DifferenceEvaluator differenceEvaluatorChain = DifferenceEvaluators.chain(
+            differenceEvaluator = DifferenceEvaluators.chain(
                     DifferenceEvaluators.Default,
                     new Stubby4jXmlUnitPlaceholderDifferenceEvaluator(matchesRegexPlaceholderHandler)
             );
+        } else {
+            differenceEvaluator = DifferenceEvaluators.Default;
+        }
 
-            final DiffBuilder xmlDiffBuilder = DiffBuilder
-                    .compare(control)
-                    .withTest(assertion)
-                    .withDifferenceEvaluator(differenceEvaluatorChain)
-                    .checkForSimilar()
-                    .normalizeWhitespace()
-                    .ignoreComments()
-                    .withNodeMatcher(NODE_MATCHER_BY_NAME_AND_ALL_ATTRIBUTES)
-                    .withComparisonController(ComparisonControllers.StopWhenDifferent);
+        final DiffBuilder xmlDiffBuilder = DiffBuilder
+                .compare(control)
+                .withTest(assertion)
+                .withDifferenceEvaluator(differenceEvaluator)
+                .checkForSimilar()
+                .normalizeWhitespace()
+                .ignoreComments()
+                .withNodeMatcher(NODE_MATCHER_BY_NAME_AND_ALL_ATTRIBUTES)
+                .withComparisonController(ComparisonControllers.StopWhenDifferent);
 
-            final Diff diff = xmlDiffBuilder.build();
+        final Diff diff = xmlDiffBuilder.build();
 
-            return !diff.hasDifferences();
-        } catch (Exception e) {
-            // A common exception that I have seen to happen is:
-            // org.xmlunit.XMLUnitException: The markup in the document preceding the root element must be well-formed.
+        return !diff.hasDifferences();
+    }
 
-            ANSITerminal.error(String.format("Failed to parse XML markup: %s, cause: %s", e, e.getCause()));
-            LOGGER.error("Failed to parse XML markup: {}, cause: {}", e, e.getCause());
+    private boolean xmlMatchFailed(final StubRequestMatchPlan matchPlan, final String assertingXml, final Exception e) {
+        // A common exception that I have seen to happen is:
+        // org.xmlunit.XMLUnitException: The markup in the document preceding the root element must be well-formed.
 
-            return regexMatch(stubbedXml, assertingXml, templateTokenName);
-        }
+        ANSITerminal.error(String.format("Failed to parse XML markup: %s, cause: %s", e, e.getCause()));
+        LOGGER.error("Failed to parse XML markup: {}, cause: {}", e, e.getCause());
+
+        return matchPlan.getPostBodyRegex().match(assertingXml, matchPlan.getPostBodyTokenName(), regexGroups);
     }
 }
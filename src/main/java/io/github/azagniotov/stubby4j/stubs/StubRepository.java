@@ -1,17 +1,24 @@
 package io.github.azagniotov.stubby4j.stubs;
 
 import io.github.azagniotov.stubby4j.caching.Cache;
+import io.github.azagniotov.stubby4j.caching.FileContentCache;
+import io.github.azagniotov.stubby4j.caching.ProxyResponseCache;
 import io.github.azagniotov.stubby4j.cli.ANSITerminal;
 import io.github.azagniotov.stubby4j.client.StubbyResponse;
 import io.github.azagniotov.stubby4j.http.StubbyHttpTransport;
 import io.github.azagniotov.stubby4j.stubs.proxy.StubProxyConfig;
 import io.github.azagniotov.stubby4j.stubs.websocket.StubWebSocketConfig;
 import io.github.azagniotov.stubby4j.utils.FileUtils;
+import io.github.azagniotov.stubby4j.utils.LatencyHistogram;
 import io.github.azagniotov.stubby4j.utils.ObjectUtils;
+import io.github.azagniotov.stubby4j.utils.PrometheusTextWriter;
 import io.github.azagniotov.stubby4j.utils.StringUtils;
 import io.github.azagniotov.stubby4j.yaml.YamlParseResultSet;
 import io.github.azagniotov.stubby4j.yaml.YamlParser;
+import io.github.azagniotov.stubby4j.yaml.SnakeYaml;
 import org.eclipse.jetty.http.HttpStatus;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,19 +26,25 @@ import javax.servlet.http.HttpServletRequest;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 import static io.github.azagniotov.stubby4j.common.Common.HEADER_X_STUBBY_PROXY_CONFIG;
 import static io.github.azagniotov.stubby4j.common.Common.HEADER_X_STUBBY_PROXY_REQUEST;
@@ -42,42 +55,100 @@ import static io.github.azagniotov.stubby4j.utils.CollectionUtils.constructParam
 import static io.github.azagniotov.stubby4j.utils.ConsoleUtils.logAssertingRequest;
 import static io.github.azagniotov.stubby4j.utils.HandlerUtils.extractPostRequestBody;
 import static io.github.azagniotov.stubby4j.utils.ObjectUtils.isNotNull;
-import static io.github.azagniotov.stubby4j.utils.ReflectionUtils.injectObjectFields;
 import static io.github.azagniotov.stubby4j.utils.StringUtils.isSet;
 import static io.github.azagniotov.stubby4j.utils.StringUtils.toLower;
-import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.BODY;
 import static java.util.Collections.list;
 import static org.eclipse.jetty.http.HttpStatus.getCode;
+import static org.yaml.snakeyaml.DumperOptions.FlowStyle;
 
 public class StubRepository {
     private static final Logger LOGGER = LoggerFactory.getLogger(StubRepository.class);
 
-    private final File configFile;
+    public static final String SEQUENCE_CLIENT_KEY_REMOTE_ADDRESS = "remote-address";
+
+    // Describe the proxied round trip rather than the response, e.g.: the proxied body may have been trimmed,
+    // so its length is computed when the dumped stub is served
+    private static final Set<String> DUMPED_RESPONSE_HEADERS_EXCLUDED = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER) {{
+        add(HEADER_X_STUBBY_PROXY_RESPONSE);
+        add("Connection");
+        add("Content-Length");
+        add("Keep-Alive");
+        add("Transfer-Encoding");
+    }};
+    private static final String ANY_URL_REGEX = "^/.*$";
 
-    private final List<StubHttpLifecycle> stubs;
-    private final Cache<String, StubHttpLifecycle> stubMatchesCache;
+    private final File configFile;
 
-    private final ConcurrentHashMap<String, AtomicLong> resourceStats;
-    private final ConcurrentHashMap<String, StubHttpLifecycle> uuidToStub;
-    private final ConcurrentHashMap<String, StubProxyConfig> proxyConfigs;
-    private final ConcurrentHashMap<String, StubWebSocketConfig> webSocketConfigs;
+    // Readers never lock: they read the current snapshot once and use it for the duration of the operation.
+    // Writers are synchronized with each other, and publish a new snapshot instead of modifying the current one
+    private volatile StubRepositorySnapshot snapshot;
+    private final Cache<String, StubMatch> stubMatchesCache;
+
+    // Incoming requests that matched no stub, and were not proxied. The hits of the stubs and of the proxy configs
+    // are counted by the current snapshot, see StubStats
+    private final LongAdder misses;
+    // Latencies of all requests, the latencies of every stub are held by the current snapshot, see StubStats
+    private final StubLatencies latencies;
+    // Status codes of the responses to the requests that were proxied, and to the requests that matched no stub.
+    // The status codes of the responses of every stub are counted by the current snapshot, see StubStats
+    private final ResponseStatusCounts proxiedStatuses;
+    private final ResponseStatusCounts unmatchedStatuses;
+    private final LongAdder stubMatchesCacheHits;
+    private final LongAdder stubMatchesCacheMisses;
+    private final LongAdder reloads;
+    private final LatencyHistogram reloadDurations;
+
+    // Match tracing is off by default, so that matching does not pay for the diagnostics nobody reads
+    private final StubMatchTraceLog nonMatchTraces;
+    private volatile boolean matchTracing;
+
+    // Sequenced responses are stepped through by all clients together, unless the clients are told apart by a key
+    private volatile String sequenceClientKey;
 
     private final CompletableFuture<YamlParseResultSet> stubLoadComputation;
     private final StubbyHttpTransport stubbyHttpTransport;
+    // The contents of the stubbed 'file' responses, which outlive reloads: a modified file is loaded again when served
+    private final FileContentCache fileContentCache;
+    // Keyed by the UUID of the proxy config. A cache outlives reloads, unless the cache settings of its proxy config change
+    private final ConcurrentMap<String, ProxyResponseCache> proxyResponseCaches;
+    // Keyed by the UUID of the proxy config, the coalescers outlive reloads, unless the proxy config no longer coalesces
+    private final ConcurrentMap<String, ProxyRequestCoalescer> proxyRequestCoalescers;
+    // Keyed by the UUID of the proxy config. A guard outlives reloads, unless its proxy config is deleted or its limits change
+    private final ConcurrentMap<String, ProxyEndpointGuard> proxyEndpointGuards;
 
     public StubRepository(final File configFile,
-                          final Cache<String, StubHttpLifecycle> stubMatchesCache,
+                          final Cache<String, StubMatch> stubMatchesCache,
                           final CompletableFuture<YamlParseResultSet> stubLoadComputation,
                           final StubbyHttpTransport stubbyHttpTransport) {
-        this.stubs = new ArrayList<>();
-        this.uuidToStub = new ConcurrentHashMap<>();
-        this.proxyConfigs = new ConcurrentHashMap<>();
-        this.webSocketConfigs = new ConcurrentHashMap<>();
+        this(configFile, stubMatchesCache, stubLoadComputation, stubbyHttpTransport,
+                FileContentCache.withBudgetMegabytes(FileContentCache.DEFAULT_BUDGET_MEGABYTES));
+    }
+
+    public StubRepository(final File configFile,
+                          final Cache<String, StubMatch> stubMatchesCache,
+                          final CompletableFuture<YamlParseResultSet> stubLoadComputation,
+                          final StubbyHttpTransport stubbyHttpTransport,
+                          final FileContentCache fileContentCache) {
+        this.snapshot = StubRepositorySnapshot.EMPTY;
         this.configFile = configFile;
         this.stubLoadComputation = stubLoadComputation;
         this.stubbyHttpTransport = stubbyHttpTransport;
-        this.resourceStats = new ConcurrentHashMap<>();
+        this.fileContentCache = fileContentCache;
+        this.misses = new LongAdder();
+        this.latencies = new StubLatencies(null);
+        this.proxiedStatuses = new ResponseStatusCounts();
+        this.unmatchedStatuses = new ResponseStatusCounts();
+        this.stubMatchesCacheHits = new LongAdder();
+        this.stubMatchesCacheMisses = new LongAdder();
+        this.reloads = new LongAdder();
+        this.reloadDurations = new LatencyHistogram();
         this.stubMatchesCache = stubMatchesCache;
+        this.nonMatchTraces = new StubMatchTraceLog(StubMatchTraceLog.DEFAULT_CAPACITY);
+        this.matchTracing = false;
+        this.sequenceClientKey = null;
+        this.proxyResponseCaches = new ConcurrentHashMap<>();
+        this.proxyRequestCoalescers = new ConcurrentHashMap<>();
+        this.proxyEndpointGuards = new ConcurrentHashMap<>();
     }
 
 
@@ -108,9 +179,9 @@ public class StubRepository {
         final StubRequest assertionStubRequest = this.toStubRequest(incomingRequest);
         logAssertingRequest(assertionStubRequest);
 
-        final StubResponse match = findMatch(new StubHttpLifecycle.Builder().withRequest(assertionStubRequest).build());
+        final StubHttpLifecycle incomingHttpLifecycle = new StubHttpLifecycle.Builder().withRequest(assertionStubRequest).build();
 
-        return new StubSearchResult(assertionStubRequest, match);
+        return findMatch(incomingHttpLifecycle, toSequenceClientKey(incomingRequest));
     }
 
     /**
@@ -136,88 +207,147 @@ public class StubRepository {
         return builder.withQuery(constructParamMap(request.getQueryString())).build();
     }
 
-    private StubResponse findMatch(final StubHttpLifecycle incomingHttpLifecycle) {
+    private String toSequenceClientKey(final HttpServletRequest incomingRequest) {
+        final String currentSequenceClientKey = this.sequenceClientKey;
+        if (currentSequenceClientKey == null) {
+            return null;
+        }
+        if (SEQUENCE_CLIENT_KEY_REMOTE_ADDRESS.equalsIgnoreCase(currentSequenceClientKey)) {
+            return incomingRequest.getRemoteAddr();
+        }
+        return incomingRequest.getHeader(currentSequenceClientKey);
+    }
+
+    private StubSearchResult findMatch(final StubHttpLifecycle incomingHttpLifecycle, final String sequenceClientKey) {
+        final StubRepositorySnapshot currentSnapshot = this.snapshot;
+        final StubRequest assertionStubRequest = incomingHttpLifecycle.getRequest();
+
+        final long matchStartNanos = System.nanoTime();
+        final Optional<StubHttpLifecycle> matchedStubOptional = matchStub(currentSnapshot, incomingHttpLifecycle);
+        final long matchNanos = System.nanoTime() - matchStartNanos;
 
-        final Optional<StubHttpLifecycle> matchedStubOptional = matchStub(incomingHttpLifecycle);
         if (!matchedStubOptional.isPresent()) {
-            if (!proxyConfigs.isEmpty()) {
-                return proxyRequest(incomingHttpLifecycle);
+            latencies.record(StubLatencies.Phase.MATCH, matchNanos);
+            if (!currentSnapshot.getProxyConfigs().isEmpty()) {
+                return proxyRequest(currentSnapshot, incomingHttpLifecycle);
             } else {
-                return notFoundResponse();
+                misses.increment();
+                return new StubSearchResult(assertionStubRequest, notFoundResponse(), latencies, unmatchedStatuses);
             }
         }
 
         final StubHttpLifecycle matchedStub = matchedStubOptional.get();
-        final String resourceId = matchedStub.getResourceId();
-        resourceStats.putIfAbsent(resourceId, new AtomicLong(0));
-        resourceStats.get(resourceId).incrementAndGet();
+        final StubStats stubStats = currentSnapshot.getStubStats();
+        stubStats.countStubHit(matchedStub);
+
+        final StubLatencies matchedStubLatencies = stubStats.getStubLatencies(matchedStub, latencies);
+        matchedStubLatencies.record(StubLatencies.Phase.MATCH, matchNanos);
+        final ResponseStatusCounts matchedStubStatuses = stubStats.getStubStatuses(matchedStub, unmatchedStatuses);
 
-        final StubResponse matchedStubResponse = matchedStub.getResponse(true);
+        final StubResponse matchedStubResponse = matchedStub.getResponse(sequenceClientKey);
         if (matchedStub.isAuthorizationRequired() && matchedStub.isIncomingRequestUnauthorized(incomingHttpLifecycle)) {
-            return unauthorizedResponse();
+            return new StubSearchResult(assertionStubRequest, unauthorizedResponse(), matchedStubLatencies, matchedStubStatuses);
         }
 
         if (matchedStubResponse.hasHeaderLocation()) {
             // FYI: for the redirect to work correctly, the stubbed status code must be one fo the HTTP
             // codes that cause the redirect. See StubsResponseHandlingStrategyFactory
-            return matchedStubResponse;
+            return new StubSearchResult(assertionStubRequest, matchedStubResponse, matchedStubLatencies, matchedStubStatuses);
         }
 
         if (matchedStubResponse.isRecordingRequired()) {
             recordResponse(incomingHttpLifecycle, matchedStub, matchedStubResponse);
         }
 
-        return matchedStubResponse;
+        return new StubSearchResult(assertionStubRequest, matchedStubResponse, matchedStubLatencies, matchedStubStatuses);
     }
 
     /**
      * That's the point where the incoming {@link StubHttpLifecycle} that was created from the incoming
      * raw {@link HttpServletRequest request} is matched to the in-memory stubs.
      * <p>
-     * First, the local cache holding previously matched stubs is checked to see if there is a match for the incoming
-     * {@link StubHttpLifecycle#hashCode()}. If the incoming {@link StubHttpLifecycle} hashCode found in the cache,
-     * then the cached match and the incoming {@link StubHttpLifecycle} are compared to each other to determine a
-     * complete equality for sanity check based on the {@link StubRequest#equals(Object)}.
+     * First, the local cache holding previously found matches is checked to see if there is a match for the
+     * fingerprint of the incoming {@link StubRequest} (see {@link StubRepositorySnapshot#matchCacheKey(StubRequest)}).
+     * If the fingerprint is found in the cache, the regex groups that were captured when the match was found are
+     * replayed into the incoming {@link StubRequest}, so the template tokens in the stubbed response are replaced
+     * exactly as if the incoming request went through the matching process.
      * <p>
-     * If a complete equality with the cached {@link StubHttpLifecycle match} was not achieved, the incoming
-     * {@link StubHttpLifecycle request} is compared to every {@link StubHttpLifecycle element} in the list of loaded
-     * stubs using their natural order (i.e.: the order in which the stubs were defined in the YAML).
+     * Otherwise, the incoming {@link StubHttpLifecycle request} is compared to the candidate {@link StubHttpLifecycle stubs}
+     * looked up in the {@link StubIndex} using their natural order (i.e.: the order in which the stubs were defined in the YAML).
      * <p>
+     * The matching does not take any lock, it works against the given {@link StubRepositorySnapshot}, which stays
+     * intact even if the stubs are reloaded or modified via the admin API while the matching is in progress.
      *
-     * @param incomingStub {@link StubHttpLifecycle}
+     * @param currentSnapshot the {@link StubRepositorySnapshot} to match against
+     * @param incomingStub    {@link StubHttpLifecycle}
      * @return an {@link Optional} describing {@link StubHttpLifecycle} match, or an empty {@link Optional} if there was no match.
      * @see #toStubRequest(HttpServletRequest)
      * @see StubHttpLifecycle#equals(Object)
      * @see StubRequest#equals(Object)
      * @see StubMatcher#matches(StubRequest, StubRequest)
+     * @see StubIndex#candidates(StubRequest)
      */
-    private synchronized Optional<StubHttpLifecycle> matchStub(final StubHttpLifecycle incomingStub) {
+    private Optional<StubHttpLifecycle> matchStub(final StubRepositorySnapshot currentSnapshot, final StubHttpLifecycle incomingStub) {
 
         final long initialStart = System.currentTimeMillis();
 
-        final String incomingRequestHashCode = String.valueOf(incomingStub.hashCode());
-        final Optional<StubHttpLifecycle> cachedMatchCandidateOptional = stubMatchesCache.get(incomingRequestHashCode);
+        final String matchCacheKey = currentSnapshot.matchCacheKey(incomingStub.getRequest());
+        final Optional<StubMatch> cachedMatchOptional = stubMatchesCache.get(matchCacheKey);
+        (cachedMatchOptional.isPresent() ? stubMatchesCacheHits : stubMatchesCacheMisses).increment();
 
-        //TODO BUG: When stubs are cached, upon finding the previously cached match by hashCode,
-        // if stubbed response has template tokens for dynamic token replacement, the tokens are
-        // not replaced with values from the incoming request because the cached stub is not going
-        // through the same matching process like upon the first match. Either fix this bug or just
-        // deprecate the stub caching all together, as it is causing more headaches than not.
-        // Also, deprecate the --disable_stub_caching command line flag if the caching has retired.
-        return cachedMatchCandidateOptional.map(cachedMatchCandidate -> {
-            ANSITerminal.loaded(String.format("Local cache contains a match for hashCode [%s]", incomingRequestHashCode));
-            LOGGER.debug("Local cache contains a match for hashCode [{}].", incomingRequestHashCode);
+        return cachedMatchOptional.map(cachedMatch -> {
+            ANSITerminal.loaded("Local cache contains a match for the incoming request");
+            LOGGER.debug("Local cache contains a match for the incoming request.");
+
+            incomingStub.getRequest().replayRegexGroups(cachedMatch.getRegexGroups());
 
             final long elapsed = System.currentTimeMillis() - initialStart;
-            logMatch("stubbed match in cache (i.e.: repeated request)", elapsed, cachedMatchCandidate);
+            logMatch("stubbed match in cache (i.e.: repeated request)", elapsed, cachedMatch.getStub());
+
+            return Optional.of(cachedMatch.getStub());
+
+        }).orElseGet(() -> matchAllAndTrace(currentSnapshot, incomingStub, matchCacheKey, initialStart));
+    }
+
+    private Optional<StubHttpLifecycle> matchAllAndTrace(final StubRepositorySnapshot currentSnapshot,
+                                                         final StubHttpLifecycle incomingStub,
+                                                         final String matchCacheKey,
+                                                         final long initialStart) {
+        if (!matchTracing) {
+            return matchAll(currentSnapshot, incomingStub, matchCacheKey, initialStart);
+        }
 
-            return Optional.of(cachedMatchCandidate);
+        final StubRequest incomingRequest = incomingStub.getRequest();
+        final StubMatchTrace matchTrace = new StubMatchTrace(incomingRequest);
+        incomingRequest.traceMatching(matchTrace);
+        try {
+            final Optional<StubHttpLifecycle> matchedStubOptional = matchAll(currentSnapshot, incomingStub, matchCacheKey, initialStart);
+            if (!matchedStubOptional.isPresent()) {
+                nonMatchTraces.add(matchTrace);
 
-        }).orElseGet(() -> matchAll(incomingStub, initialStart));
+                final String explanation = matchTrace.toString();
+                ANSITerminal.warn(explanation);
+                LOGGER.debug(explanation);
+            }
+            return matchedStubOptional;
+        } finally {
+            incomingRequest.traceMatching(null);
+        }
     }
 
-    private StubResponse proxyRequest(final StubHttpLifecycle incomingHttpLifecycle) {
+    /**
+     * Sends the incoming request to the endpoint of the matching proxy config without waiting for the response.
+     * If the proxy config is streaming (see {@link StubProxyConfig#isStreaming()}), the request is not sent until
+     * the response is piped to the client, see {@link StreamedProxyRequest}. If the proxy config is coalescing
+     * (see {@link StubProxyConfig#isCoalescing()}), the request shares the request in flight with the same
+     * fingerprint, if there is one, see {@link ProxyRequestCoalescer}. The request fails fast instead of being proxied
+     * if the {@link ProxyEndpointGuard} of the proxy config does not let it through
+     *
+     * @return the search result holding the pending proxied response, or the streamed proxy request
+     */
+    private StubSearchResult proxyRequest(final StubRepositorySnapshot currentSnapshot, final StubHttpLifecycle incomingHttpLifecycle) {
 
+        final Map<String, StubProxyConfig> proxyConfigs = currentSnapshot.getProxyConfigs();
         // The catch-all will always be there if we have proxy configs, otherwise the YAML loading throws
         final StubProxyConfig catchAllProxyConfig = proxyConfigs.get(StubProxyConfig.Builder.DEFAULT_UUID);
 
@@ -233,43 +363,167 @@ public class StubRepository {
         }
 
         final StubProxyConfig proxyConfig = proxyConfigs.getOrDefault(proxyConfigUuidHeader, catchAllProxyConfig);
+        currentSnapshot.getStubStats().countProxyHit(proxyConfig.getUUID());
         final String proxyEndpoint = String.format("%s%s", proxyConfig.getPropertyEndpoint(), incomingHttpLifecycle.getUrl());
 
-        final String proxyRoundTripUuid = UUID.randomUUID().toString();
-        final Map<String, String> proxyResponseFlatHeaders = new HashMap<>();
-        proxyResponseFlatHeaders.put(HEADER_X_STUBBY_PROXY_RESPONSE, proxyRoundTripUuid);
+        final ProxyResponseCache proxyResponseCache = proxyConfig.isCaching() ? proxyResponseCache(proxyConfig) : null;
+        final ProxyResponseCache.Key proxyResponseCacheKey = proxyConfig.isCaching() ? proxyResponseCache.keyOf(incomingRequest) : null;
+        final boolean coalescing = proxyConfig.isCoalescing() && !proxyConfig.isStreaming() &&
+                !incomingRequest.getMethod().isEmpty() && proxyConfig.getCoalescingMethods().containsAll(incomingRequest.getMethod());
+        final String fingerprint = coalescing ? ProxyRequestCoalescer.fingerprint(incomingRequest, proxyConfig.getCoalescingKeyHeaders()) : null;
+        if (proxyResponseCache != null) {
+            final StubResponse cachedResponse = proxyResponseCache.get(proxyResponseCacheKey);
+            if (cachedResponse != null) {
+                return new StubSearchResult(incomingRequest, cachedResponse, latencies, proxiedStatuses);
+            }
+        }
 
-        try {
-            incomingRequest.getHeaders().put(HEADER_X_STUBBY_PROXY_REQUEST, proxyRoundTripUuid);
+        final String proxyRoundTripUuid = UUID.randomUUID().toString();
+        incomingRequest.getHeaders().put(HEADER_X_STUBBY_PROXY_REQUEST, proxyRoundTripUuid);
+        handleIfAdditiveProxyStrategy(incomingRequest, proxyConfig);
+
+        final ProxyEndpointGuard proxyEndpointGuard = proxyEndpointGuard(proxyConfig);
+        if (proxyConfig.isStreaming()) {
+            // The guard is asked when the request is about to be sent, see StreamedProxyRequest
+            final StreamedProxyRequest streamedProxyRequest = new StreamedProxyRequest(
+                    stubbyHttpTransport,
+                    incomingRequest,
+                    proxyEndpoint,
+                    proxyConfig,
+                    proxyEndpointGuard,
+                    Collections.singletonMap(HEADER_X_STUBBY_PROXY_RESPONSE, proxyRoundTripUuid),
+                    permit -> bufferedProxyRequest(incomingRequest, proxyEndpoint, proxyRoundTripUuid, proxyConfig, proxyEndpointGuard, permit),
+                    rejection -> fastFailResponse(proxyConfig, rejection, proxyRoundTripUuid),
+                    latencies,
+                    proxiedStatuses);
+            return new StubSearchResult(incomingRequest, streamedProxyRequest, latencies, proxiedStatuses);
+        }
 
-            handleIfAdditiveProxyStrategy(incomingRequest, proxyConfig);
+        final Supplier<CompletableFuture<StubResponse>> upstreamRequest = () -> {
+            final ProxyEndpointGuard.Permit permit = proxyEndpointGuard.tryAcquire();
+            if (permit.isRejected()) {
+                return CompletableFuture.completedFuture(fastFailResponse(proxyConfig, permit.getRejection(), proxyRoundTripUuid));
+            }
 
-            final StubbyResponse stubbyResponse = stubbyHttpTransport.httpRequestFromStub(incomingRequest, proxyEndpoint);
-            for (Map.Entry<String, List<String>> entry : stubbyResponse.headers().entrySet()) {
-                final String headerName = ObjectUtils.isNull(entry.getKey()) ? "null" : entry.getKey();
-                if (entry.getValue().size() == 1) {
-                    proxyResponseFlatHeaders.put(headerName, entry.getValue().get(0));
-                } else {
-                    proxyResponseFlatHeaders.put(headerName, new HashSet<>(entry.getValue()).toString());
-                }
+            final CompletableFuture<StubResponse> proxiedResponse = bufferedProxyRequest(incomingRequest, proxyEndpoint, proxyRoundTripUuid, proxyConfig, proxyEndpointGuard, permit);
+            if (proxyResponseCache == null) {
+                return proxiedResponse;
             }
+            return proxiedResponse.thenApply(stubResponse -> {
+                // The responses to the failed proxied requests, and the server errors are not cached. The client
+                // errors are, as they are the answer of the proxy config endpoint to the keyed request
+                if (!stubResponse.getHttpStatusCode().isServerError()) {
+                    proxyResponseCache.put(proxyResponseCacheKey, stubResponse);
+                }
+                return stubResponse;
+            });
+        };
 
-            return new StubResponse.Builder()
-                    .withHttpStatusCode(getCode(stubbyResponse.statusCode()))
-                    .withBody(stubbyResponse.body())
-                    .withHeaders(proxyResponseFlatHeaders)
-                    .build();
+        // The coalesced requests are served the same response, including the X-Stubby-Proxy-Response header
+        // of the request that was actually proxied
+        final CompletableFuture<StubResponse> proxiedResponse = coalescing
+                ? proxyRequestCoalescers.computeIfAbsent(proxyConfig.getUUID(), uuid -> new ProxyRequestCoalescer()).coalesce(fingerprint, upstreamRequest)
+                : upstreamRequest.get();
 
-        } catch (Exception e) {
-            ANSITerminal.error(String.format("Could not proxy to %s: %s", proxyEndpoint, e.toString()));
-            LOGGER.error("Could not proxy to {}.", proxyEndpoint, e);
+        return new StubSearchResult(incomingRequest, proxiedResponse, latencies, proxiedStatuses);
+    }
+
+    private ProxyResponseCache proxyResponseCache(final StubProxyConfig proxyConfig) {
+        final ProxyResponseCache current = proxyResponseCaches.get(proxyConfig.getUUID());
+        if (current != null && current.getConfig().equals(proxyConfig.getCacheConfig())) {
+            return current;
+        }
+        return proxyResponseCaches.compute(proxyConfig.getUUID(), (uuid, cache) ->
+                cache != null && cache.getConfig().equals(proxyConfig.getCacheConfig()) ? cache : new ProxyResponseCache(proxyConfig.getCacheConfig()));
+    }
 
-            return new StubResponse.Builder()
-                    .withHttpStatusCode(HttpStatus.Code.INTERNAL_SERVER_ERROR)
-                    .withBody(e.getMessage())
-                    .withHeaders(proxyResponseFlatHeaders)
-                    .build();
+    private ProxyEndpointGuard proxyEndpointGuard(final StubProxyConfig proxyConfig) {
+        final ProxyEndpointGuard current = proxyEndpointGuards.get(proxyConfig.getUUID());
+        if (current != null && current.isGuarding(proxyConfig)) {
+            return current;
         }
+        return proxyEndpointGuards.compute(proxyConfig.getUUID(), (uuid, guard) ->
+                guard != null && guard.isGuarding(proxyConfig) ? guard : new ProxyEndpointGuard(proxyConfig));
+    }
+
+    private static StubResponse fastFailResponse(final StubProxyConfig proxyConfig,
+                                                 final ProxyEndpointGuard.Rejection rejection,
+                                                 final String proxyRoundTripUuid) {
+        final String reason = rejection == ProxyEndpointGuard.Rejection.CIRCUIT_OPEN
+                ? String.format("Proxy config '%s' circuit breaker is open", proxyConfig.getUUID())
+                : String.format("Proxy config '%s' has %s requests in flight", proxyConfig.getUUID(), proxyConfig.getMaxInFlight());
+        LOGGER.debug("Not proxying to {}: {}.", proxyConfig.getPropertyEndpoint(), reason);
+
+        final Map<String, String> proxyResponseFlatHeaders = new HashMap<>();
+        proxyResponseFlatHeaders.put(HEADER_X_STUBBY_PROXY_RESPONSE, proxyRoundTripUuid);
+        return new StubResponse.Builder()
+                .withHttpStatusCode(getCode(proxyConfig.getFastFailStatus()))
+                .withBody(reason)
+                .withHeaders(proxyResponseFlatHeaders)
+                .build();
+    }
+
+    /**
+     * Sends the request that has been let through by the given guard with the given permit, and tells the guard once
+     * it has completed
+     *
+     * @return a future that is completed with the proxied response on a thread of the HTTP client, once the response
+     * has been received in full. It is never completed exceptionally: if the request could not be proxied, the future
+     * is completed with a 500 response
+     */
+    private CompletableFuture<StubResponse> bufferedProxyRequest(final StubRequest incomingRequest,
+                                                                 final String proxyEndpoint,
+                                                                 final String proxyRoundTripUuid,
+                                                                 final StubProxyConfig proxyConfig,
+                                                                 final ProxyEndpointGuard proxyEndpointGuard,
+                                                                 final ProxyEndpointGuard.Permit permit) {
+        final Map<String, String> proxyResponseFlatHeaders = new HashMap<>();
+        proxyResponseFlatHeaders.put(HEADER_X_STUBBY_PROXY_RESPONSE, proxyRoundTripUuid);
+
+        final long proxyStartNanos = System.nanoTime();
+        try {
+            return stubbyHttpTransport.httpRequestFromStubAsync(incomingRequest, proxyEndpoint, proxyConfig.getConnectTimeoutMillis(), proxyConfig.getReadTimeoutMillis())
+                    .handle((stubbyResponse, failure) -> {
+                        final long elapsedNanos = System.nanoTime() - proxyStartNanos;
+                        latencies.record(StubLatencies.Phase.PROXY, elapsedNanos);
+                        proxyEndpointGuard.onCompleted(permit, failure != null ? HttpStatus.INTERNAL_SERVER_ERROR_500 : stubbyResponse.statusCode(), elapsedNanos);
+                        if (failure != null) {
+                            return proxyFailureResponse(proxyEndpoint, failure, proxyResponseFlatHeaders);
+                        }
+
+                        for (Map.Entry<String, List<String>> entry : stubbyResponse.headers().entrySet()) {
+                            final String headerName = ObjectUtils.isNull(entry.getKey()) ? "null" : entry.getKey();
+                            if (entry.getValue().size() == 1) {
+                                proxyResponseFlatHeaders.put(headerName, entry.getValue().get(0));
+                            } else {
+                                proxyResponseFlatHeaders.put(headerName, new HashSet<>(entry.getValue()).toString());
+                            }
+                        }
+
+                        return new StubResponse.Builder()
+                                .withHttpStatusCode(getCode(stubbyResponse.statusCode()))
+                                .withBody(stubbyResponse.body())
+                                .withHeaders(proxyResponseFlatHeaders)
+                                .build();
+                    });
+
+        } catch (Exception e) {
+            proxyEndpointGuard.onCompleted(permit, HttpStatus.INTERNAL_SERVER_ERROR_500, System.nanoTime() - proxyStartNanos);
+            return CompletableFuture.completedFuture(proxyFailureResponse(proxyEndpoint, e, proxyResponseFlatHeaders));
+        }
+    }
+
+    private static StubResponse proxyFailureResponse(final String proxyEndpoint,
+                                                     final Throwable failure,
+                                                     final Map<String, String> proxyResponseFlatHeaders) {
+        ANSITerminal.error(String.format("Could not proxy to %s: %s", proxyEndpoint, failure.toString()));
+        LOGGER.error("Could not proxy to {}.", proxyEndpoint, failure);
+
+        return new StubResponse.Builder()
+                .withHttpStatusCode(HttpStatus.Code.INTERNAL_SERVER_ERROR)
+                .withBody(failure.getMessage())
+                .withHeaders(proxyResponseFlatHeaders)
+                .build();
     }
 
     private void handleIfAdditiveProxyStrategy(final StubRequest incomingRequest, final StubProxyConfig proxyConfig) {
@@ -286,23 +540,23 @@ public class StubRepository {
         final String recordingSource = String.format("%s%s", matchedStubResponse.getBody(), incomingRequest.getUrl());
         try {
             final StubbyResponse stubbyResponse = stubbyHttpTransport.httpRequestFromStub(matchedStub.getRequest(), recordingSource);
-            injectObjectFields(matchedStubResponse, BODY.toString(), stubbyResponse.body());
+            matchedStubResponse.recordBody(stubbyResponse.body());
         } catch (Exception e) {
             ANSITerminal.error(String.format("Could not record from %s: %s", recordingSource, e.toString()));
             LOGGER.error("Could not record from {}.", recordingSource, e);
         }
     }
 
-    private Optional<StubHttpLifecycle> matchAll(final StubHttpLifecycle incomingStub, final long initialStart) {
-        for (final StubHttpLifecycle stubbed : stubs) {
+    private Optional<StubHttpLifecycle> matchAll(final StubRepositorySnapshot currentSnapshot,
+                                                 final StubHttpLifecycle incomingStub,
+                                                 final String matchCacheKey,
+                                                 final long initialStart) {
+        for (final StubHttpLifecycle stubbed : currentSnapshot.getStubIndex().candidates(incomingStub.getRequest())) {
             if (incomingStub.equals(stubbed)) {
                 final long elapsed = System.currentTimeMillis() - initialStart;
                 logMatch("stubbed match", elapsed, stubbed);
 
-                final String incomingRequestHashCode = String.valueOf(incomingStub.hashCode());
-                // ANSITerminal.status(String.format("Caching the found match for hashCode [%s]", incomingRequestHashCode));
-                // LOGGER.debug("Caching the found match for hashCode [{}].", incomingRequestHashCode);
-                stubMatchesCache.putIfAbsent(incomingRequestHashCode, stubbed);
+                stubMatchesCache.putIfAbsent(matchCacheKey, new StubMatch(stubbed, incomingStub.getRequest().getRegexGroups()));
 
                 return Optional.of(stubbed);
             }
@@ -311,48 +565,56 @@ public class StubRepository {
         return Optional.empty();
     }
 
-    public synchronized Optional<StubHttpLifecycle> matchStubByIndex(final int index) {
-        if (!canMatchStubByIndex(index)) {
+    public Optional<StubHttpLifecycle> matchStubByIndex(final int index) {
+        final List<StubHttpLifecycle> stubs = this.snapshot.getStubs();
+        if (!canMatchStubByIndex(stubs, index)) {
             return Optional.empty();
         }
         return Optional.of(stubs.get(index));
     }
 
-    public synchronized StubProxyConfig matchProxyConfigByName(final String proxyConfigUniqueName) {
-        return proxyConfigs.get(proxyConfigUniqueName);
+    public StubProxyConfig matchProxyConfigByName(final String proxyConfigUniqueName) {
+        return this.snapshot.getProxyConfigs().get(proxyConfigUniqueName);
     }
 
-    public synchronized StubWebSocketConfig matchWebSocketConfigByUrl(final String webSocketConfigUniqueUrl) {
-        return webSocketConfigs.get(webSocketConfigUniqueUrl);
+    public StubWebSocketConfig matchWebSocketConfigByUrl(final String webSocketConfigUniqueUrl) {
+        return this.snapshot.getWebSocketConfigs().get(webSocketConfigUniqueUrl);
     }
 
     synchronized boolean resetStubsCache(final YamlParseResultSet yamlParseResultSet) {
-        this.stubMatchesCache.clear();
-        this.stubs.clear();
-        this.uuidToStub.clear();
-        this.proxyConfigs.clear();
-        this.webSocketConfigs.clear();
+        final List<StubHttpLifecycle> newStubs = new ArrayList<>(yamlParseResultSet.getStubs());
+        final boolean addedStubs = !newStubs.isEmpty();
 
-        final boolean addedStubs = this.stubs.addAll(yamlParseResultSet.getStubs());
+        final Map<String, StubHttpLifecycle> newUuidToStub = new HashMap<>();
         if (addedStubs) {
-            this.stubMatchesCache.clear();
-            updateResourceIDHeaders();
-            this.uuidToStub.putAll(yamlParseResultSet.getUuidToStubs());
+            newUuidToStub.putAll(yamlParseResultSet.getUuidToStubs());
+            updateResourceIDHeaders(newStubs, newUuidToStub);
         }
 
-        loadProxyConfigsWithOptionalThrow(yamlParseResultSet);
-
-        this.webSocketConfigs.putAll(yamlParseResultSet.getWebSocketConfigs());
+        publish(this.snapshot.withAll(
+                newStubs,
+                newUuidToStub,
+                loadProxyConfigsWithOptionalThrow(yamlParseResultSet),
+                yamlParseResultSet.getWebSocketConfigs()));
 
         return addedStubs;
     }
 
     public synchronized void refreshStubsFromYamlConfig(final YamlParser yamlParser) throws Exception {
+        final long reloadStartNanos = System.nanoTime();
         resetStubsCache(yamlParser.parse(this.configFile.getParent(), configFile));
+        countReload(reloadStartNanos);
     }
 
     public synchronized void refreshStubsByPost(final YamlParser yamlParser, final String postPayload) throws Exception {
+        final long reloadStartNanos = System.nanoTime();
         resetStubsCache(yamlParser.parse(this.configFile.getParent(), postPayload));
+        countReload(reloadStartNanos);
+    }
+
+    private void countReload(final long reloadStartNanos) {
+        reloadDurations.record(System.nanoTime() - reloadStartNanos);
+        reloads.increment();
     }
 
     public synchronized String refreshStubByIndex(final YamlParser yamlParser, final String putPayload, final int index) throws Exception {
@@ -381,35 +643,365 @@ public class StubRepository {
 
     // Just a shallow copy that protects collection from modification, the points themselves are not copied
     public List<StubHttpLifecycle> getStubs() {
-        return new LinkedList<>(stubs);
+        return new LinkedList<>(this.snapshot.getStubs());
     }
 
     public Map<String, StubProxyConfig> getProxyConfigs() {
-        return new HashMap<>(proxyConfigs);
+        return new HashMap<>(this.snapshot.getProxyConfigs());
     }
 
-    // Just a shallow copy that protects collection from modification, the points themselves are not copied
-    public ConcurrentHashMap<String, AtomicLong> getResourceStats() {
-        return new ConcurrentHashMap<>(resourceStats);
+    /**
+     * @return the number of hits of every loaded stub that was hit at least once, keyed by the resource ID of the stub
+     */
+    public Map<String, Long> getResourceStats() {
+        return this.snapshot.getStubStats().getResourceHits();
+    }
+
+    /**
+     * Writes the hits of every loaded stub and proxy config, and the number of incoming requests that matched no
+     * stub and were not proxied, as a JSON object. The stats of a coalescing proxy config also have the number of
+     * the coalesced requests, and of the requests in flight to its endpoint
+     */
+    public void writeStatsAsJson(final Appendable output) throws IOException {
+        this.snapshot.getStubStats().writeJson(output, misses.sum(), proxyRequestCoalescers);
+    }
+
+    /**
+     * Same as {@link #writeStatsAsJson(Appendable)}, but writes the stats as CSV
+     */
+    public void writeStatsAsCsv(final Appendable output) throws IOException {
+        this.snapshot.getStubStats().writeCsv(output, misses.sum());
+    }
+
+    /**
+     * @param reset whether to report the latencies recorded since the previous reset and start a new interval,
+     *              instead of the latencies recorded since stubby4j started (or since the stubs were loaded)
+     * @return the count, mean, max and p50/p90/p99/p999 percentiles (in microseconds) of every phase of serving
+     * the incoming requests, for all requests and for every stub that served at least one request
+     */
+    public JSONObject getLatenciesAsJson(final boolean reset) {
+        return new JSONObject()
+                .put("unit", "microseconds")
+                .put("all", latencies.toJson(reset))
+                .put("stubs", this.snapshot.getStubStats().latenciesToJson(reset));
+    }
+
+    /**
+     * Writes the request counts by stub and by response status, the hits of the proxy configs, the misses, the match
+     * cache hits, the proxy endpoint guards, the reloads and the latencies of all requests in the Prometheus text
+     * format. The metrics are read from the counters that are kept while serving the requests, so writing them is
+     * proportional to the number of metrics, not to the number of requests served.
+     */
+    public void writeMetrics(final PrometheusTextWriter writer) throws IOException {
+        final StubStats stubStats = this.snapshot.getStubStats();
+
+        writer.metric("stubby4j_requests_total", PrometheusTextWriter.TYPE_COUNTER,
+                "Responses served, by the UUID (or the resource ID) of the matched stub (or proxy/none) and by status code");
+        for (int index = 0; index < stubStats.getStubCount(); index++) {
+            final ResponseStatusCounts stubStatuses = stubStats.getStubStatuses(index);
+            if (stubStatuses != null) {
+                final String stubId = stubStats.getStubId(index);
+                stubStatuses.forEach((status, count) -> writer.sample("stubby4j_requests_total", count,
+                        "stub", stubId, "status", String.valueOf(status)));
+            }
+        }
+        proxiedStatuses.forEach((status, count) -> writer.sample("stubby4j_requests_total", count,
+                "stub", "proxy", "status", String.valueOf(status)));
+        unmatchedStatuses.forEach((status, count) -> writer.sample("stubby4j_requests_total", count,
+                "stub", "none", "status", String.valueOf(status)));
+
+        writer.metric("stubby4j_stub_hits_total", PrometheusTextWriter.TYPE_COUNTER,
+                "Incoming requests that matched a stub, by the UUID (or the resource ID) of the stub");
+        for (int index = 0; index < stubStats.getStubCount(); index++) {
+            writer.sample("stubby4j_stub_hits_total", stubStats.getStubHits(index), "stub", stubStats.getStubId(index));
+        }
+
+        writer.metric("stubby4j_not_found_total", PrometheusTextWriter.TYPE_COUNTER,
+                "Incoming requests that did not match any stub and were not proxied");
+        writer.sample("stubby4j_not_found_total", misses.sum());
+
+        writer.metric("stubby4j_proxy_requests_total", PrometheusTextWriter.TYPE_COUNTER,
+                "Incoming requests that were proxied, by the UUID of the proxy config");
+        for (final Map.Entry<String, LongAdder> entry : stubStats.getProxyHits().entrySet()) {
+            writer.sample("stubby4j_proxy_requests_total", entry.getValue().sum(), "proxy_config", entry.getKey());
+        }
+
+        final long stubMatchHits = stubMatchesCacheHits.sum();
+        final long stubMatchMisses = stubMatchesCacheMisses.sum();
+        writer.metric("stubby4j_cache_requests_total", PrometheusTextWriter.TYPE_COUNTER,
+                "Lookups of the stub match cache, by result");
+        writer.sample("stubby4j_cache_requests_total", stubMatchHits, "cache", "stub_match", "result", "hit");
+        writer.sample("stubby4j_cache_requests_total", stubMatchMisses, "cache", "stub_match", "result", "miss");
+        writer.metric("stubby4j_cache_hit_ratio", PrometheusTextWriter.TYPE_GAUGE,
+                "Hits out of all lookups of the stub match cache");
+        writer.sample("stubby4j_cache_hit_ratio", hitRatio(stubMatchHits, stubMatchMisses), "cache", "stub_match");
+
+        if (!proxyResponseCaches.isEmpty()) {
+            final Map<String, ProxyResponseCache> caches = new TreeMap<>(proxyResponseCaches);
+            writer.metric("stubby4j_proxy_cache_requests_total", PrometheusTextWriter.TYPE_COUNTER,
+                    "Lookups of the proxy response caches, by the UUID of the proxy config and by result");
+            for (final Map.Entry<String, ProxyResponseCache> entry : caches.entrySet()) {
+                writer.sample("stubby4j_proxy_cache_requests_total", entry.getValue().getHits(), "proxy_config", entry.getKey(), "result", "hit");
+                writer.sample("stubby4j_proxy_cache_requests_total", entry.getValue().getMisses(), "proxy_config", entry.getKey(), "result", "miss");
+            }
+            writer.metric("stubby4j_proxy_cache_entries", PrometheusTextWriter.TYPE_GAUGE,
+                    "Responses held by the proxy response caches, by the UUID of the proxy config");
+            for (final Map.Entry<String, ProxyResponseCache> entry : caches.entrySet()) {
+                writer.sample("stubby4j_proxy_cache_entries", entry.getValue().size(), "proxy_config", entry.getKey());
+            }
+            writer.metric("stubby4j_proxy_cache_bytes", PrometheusTextWriter.TYPE_GAUGE,
+                    "Approximate size of the responses held by the proxy response caches, by the UUID of the proxy config");
+            for (final Map.Entry<String, ProxyResponseCache> entry : caches.entrySet()) {
+                writer.sample("stubby4j_proxy_cache_bytes", entry.getValue().weightBytes(), "proxy_config", entry.getKey());
+            }
+        }
+
+        if (!proxyRequestCoalescers.isEmpty()) {
+            final Map<String, ProxyRequestCoalescer> coalescers = new TreeMap<>(proxyRequestCoalescers);
+            writer.metric("stubby4j_proxy_coalesced_requests_total", PrometheusTextWriter.TYPE_COUNTER,
+                    "Proxied requests that were served the response of a request in flight, by the UUID of the proxy config");
+            for (final Map.Entry<String, ProxyRequestCoalescer> entry : coalescers.entrySet()) {
+                writer.sample("stubby4j_proxy_coalesced_requests_total", entry.getValue().getCoalesced(), "proxy_config", entry.getKey());
+            }
+            writer.metric("stubby4j_proxy_in_flight_requests", PrometheusTextWriter.TYPE_GAUGE,
+                    "Coalescing requests in flight to the proxy config endpoints, by the UUID of the proxy config");
+            for (final Map.Entry<String, ProxyRequestCoalescer> entry : coalescers.entrySet()) {
+                writer.sample("stubby4j_proxy_in_flight_requests", entry.getValue().getInFlight(), "proxy_config", entry.getKey());
+            }
+        }
+
+        if (!proxyEndpointGuards.isEmpty()) {
+            final Map<String, ProxyEndpointGuard> guards = new TreeMap<>(proxyEndpointGuards);
+            writer.metric("stubby4j_proxy_guarded_in_flight_requests", PrometheusTextWriter.TYPE_GAUGE,
+                    "Requests in flight to the proxy config endpoints, by the UUID of the proxy config");
+            for (final Map.Entry<String, ProxyEndpointGuard> entry : guards.entrySet()) {
+                writer.sample("stubby4j_proxy_guarded_in_flight_requests", entry.getValue().getInFlight(), "proxy_config", entry.getKey());
+            }
+            writer.metric("stubby4j_proxy_fast_failed_requests_total", PrometheusTextWriter.TYPE_COUNTER,
+                    "Proxied requests that failed fast instead of being proxied, by the UUID of the proxy config and by reason");
+            for (final Map.Entry<String, ProxyEndpointGuard> entry : guards.entrySet()) {
+                writer.sample("stubby4j_proxy_fast_failed_requests_total", entry.getValue().getRejected(ProxyEndpointGuard.Rejection.MAX_IN_FLIGHT),
+                        "proxy_config", entry.getKey(), "reason", "max_in_flight");
+                writer.sample("stubby4j_proxy_fast_failed_requests_total", entry.getValue().getRejected(ProxyEndpointGuard.Rejection.CIRCUIT_OPEN),
+                        "proxy_config", entry.getKey(), "reason", "circuit_open");
+            }
+            writer.metric("stubby4j_proxy_circuit_breaker_state", PrometheusTextWriter.TYPE_GAUGE,
+                    "Circuit breaker states of the proxy configs, 1 for the current state, by the UUID of the proxy config and by state");
+            for (final Map.Entry<String, ProxyEndpointGuard> entry : guards.entrySet()) {
+                if (entry.getValue().hasCircuitBreaker()) {
+                    final ProxyCircuitBreaker.State currentState = entry.getValue().getCircuitBreakerState();
+                    for (final ProxyCircuitBreaker.State state : ProxyCircuitBreaker.State.values()) {
+                        writer.sample("stubby4j_proxy_circuit_breaker_state", state == currentState ? 1 : 0,
+                                "proxy_config", entry.getKey(), "state", state.toString());
+                    }
+                }
+            }
+            writer.metric("stubby4j_proxy_circuit_breaker_trips_total", PrometheusTextWriter.TYPE_COUNTER,
+                    "Circuit breaker trips of the proxy configs, by the UUID of the proxy config");
+            for (final Map.Entry<String, ProxyEndpointGuard> entry : guards.entrySet()) {
+                if (entry.getValue().hasCircuitBreaker()) {
+                    writer.sample("stubby4j_proxy_circuit_breaker_trips_total", entry.getValue().getCircuitBreakerTrips(), "proxy_config", entry.getKey());
+                }
+            }
+        }
+
+        writer.metric("stubby4j_latency_seconds", PrometheusTextWriter.TYPE_HISTOGRAM,
+                "Latencies of the phases of serving the incoming requests, without stubbed latency");
+        for (final StubLatencies.Phase phase : StubLatencies.Phase.values()) {
+            final LatencyHistogram histogram = latencies.getHistogram(phase);
+            if (histogram != null) {
+                writer.histogram("stubby4j_latency_seconds", histogram.snapshot(), "phase", phase.toString());
+            }
+        }
+
+        writer.metric("stubby4j_reloads_total", PrometheusTextWriter.TYPE_COUNTER,
+                "Reloads of the stubs from the YAML config or from a POST to the admin API");
+        writer.sample("stubby4j_reloads_total", reloads.sum());
+        writer.metric("stubby4j_reload_duration_seconds", PrometheusTextWriter.TYPE_HISTOGRAM,
+                "Durations of parsing and loading the stubs on reload");
+        writer.histogram("stubby4j_reload_duration_seconds", reloadDurations.snapshot());
+    }
+
+    /**
+     * @return the requests in flight to the endpoint of every loaded proxy config, the requests that failed fast
+     * because of the {@code max-in-flight} limit, and the state and trip count of the circuit breaker of the proxy
+     * configs that have one, e.g.:
+     * <pre>
+     * {"proxyConfigs":[{"uuid":"default","endpoint":"https://example.com","inFlight":3,"maxInFlight":50,
+     *   "rejectedMaxInFlight":0,"circuitBreaker":{"state":"open","trips":2,"rejected":118}}]}
+     * </pre>
+     */
+    public JSONObject getProxyHealthAsJson() {
+        final JSONArray proxyConfigsJson = new JSONArray();
+        for (final StubProxyConfig proxyConfig : new TreeMap<>(this.snapshot.getProxyConfigs()).values()) {
+            final ProxyEndpointGuard guard = proxyEndpointGuards.get(proxyConfig.getUUID());
+            final JSONObject guardJson = guard != null && guard.isGuarding(proxyConfig) ? guard.toJson() : new ProxyEndpointGuard(proxyConfig).toJson();
+            proxyConfigsJson.put(guardJson
+                    .put("uuid", proxyConfig.getUUID())
+                    .put("endpoint", proxyConfig.getPropertyEndpoint()));
+        }
+        return new JSONObject().put("proxyConfigs", proxyConfigsJson);
+    }
+
+    /**
+     * Flushes the proxy response cache of the given proxy config, or of all proxy configs
+     *
+     * @param proxyConfigUuid the UUID of the proxy config, or null to flush the caches of all proxy configs
+     * @return the number of the flushed responses
+     */
+    public int flushProxyResponseCaches(final String proxyConfigUuid) {
+        int flushed = 0;
+        for (final Map.Entry<String, ProxyResponseCache> entry : proxyResponseCaches.entrySet()) {
+            if (proxyConfigUuid == null || proxyConfigUuid.equals(entry.getKey())) {
+                flushed += entry.getValue().clear();
+            }
+        }
+        return flushed;
+    }
+
+    /**
+     * Dumps the cached proxy responses as stubs YAML, which can be loaded as is to serve the same responses without
+     * proxying the requests. Every cached response becomes a stub that matches the request fields that the response
+     * was cached by (see {@link io.github.azagniotov.stubby4j.stubs.proxy.StubProxyCacheConfig}), and only those:
+     * the method is dumped if the method is part of the cache key, and the url is a match-all regex unless the path
+     * is part of the cache key, e.g.:
+     * <pre>
+     * - request:
+     *     method: GET
+     *     url: /todos/1
+     *   response:
+     *     status: 200
+     *     headers:
+     *       content-type: application/json; charset=utf-8
+     *     body: '{"id": 1}'
+     * </pre>
+     *
+     * @param proxyConfigUuid the UUID of the proxy config, or null to dump the caches of all proxy configs
+     */
+    public String dumpProxyResponseCachesAsYaml(final String proxyConfigUuid) {
+        final List<Map<String, Object>> stubs = new ArrayList<>();
+        for (final String uuid : new TreeSet<>(proxyResponseCaches.keySet())) {
+            if (proxyConfigUuid != null && !proxyConfigUuid.equals(uuid)) {
+                continue;
+            }
+            for (final ProxyResponseCache.CachedProxyResponse cached : proxyResponseCaches.get(uuid).getResponses()) {
+                stubs.add(toStubYamlMapping(cached));
+            }
+        }
+
+        return stubs.isEmpty() ? "" : SnakeYaml.INSTANCE.getSnakeYaml().dumpAs(stubs, null, FlowStyle.BLOCK);
+    }
+
+    // Every value is a string, the same way the stubs YAML is parsed, see SnakeYaml
+    private static Map<String, Object> toStubYamlMapping(final ProxyResponseCache.CachedProxyResponse cached) {
+        final ProxyResponseCache.Key key = cached.getKey();
+        final Map<String, Object> request = new LinkedHashMap<>();
+        if (key.getMethod() != null) {
+            request.put("method", key.getMethod());
+        }
+        // A stub always has a url, so a response that was not cached by the path matches any path
+        request.put("url", key.getUri() == null ? ANY_URL_REGEX : key.getUri());
+        if (!key.getQuery().isEmpty()) {
+            request.put("query", new LinkedHashMap<>(key.getQuery()));
+        }
+        if (!key.getHeaders().isEmpty()) {
+            request.put("headers", new LinkedHashMap<>(key.getHeaders()));
+        }
+        if (key.getPost() != null) {
+            request.put("post", key.getPost());
+        }
+
+        final StubResponse cachedResponse = cached.getResponse();
+        final Map<String, String> responseHeaders = new TreeMap<>();
+        for (final Map.Entry<String, String> header : cachedResponse.getHeaders().entrySet()) {
+            if (!DUMPED_RESPONSE_HEADERS_EXCLUDED.contains(header.getKey())) {
+                responseHeaders.put(header.getKey(), header.getValue());
+            }
+        }
+
+        final Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", String.valueOf(cachedResponse.getHttpStatusCode().getCode()));
+        if (!responseHeaders.isEmpty()) {
+            response.put("headers", responseHeaders);
+        }
+        if (isSet(cachedResponse.getBody())) {
+            response.put("body", cachedResponse.getBody());
+        }
+
+        final Map<String, Object> stub = new LinkedHashMap<>();
+        stub.put("request", request);
+        stub.put("response", response);
+        return stub;
+    }
+
+    private static double hitRatio(final long hits, final long misses) {
+        final long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    /**
+     * Makes every client step through the sequenced responses on its own, see {@link StubHttpLifecycle#getResponse(String)}
+     *
+     * @param sequenceClientKey the name of the request header that identifies the client, or
+     *                          {@link #SEQUENCE_CLIENT_KEY_REMOTE_ADDRESS} to identify the client by its IP address,
+     *                          or null to have all clients step through the sequenced responses together.
+     *                          A request without the header steps through the sequence shared by all clients
+     */
+    public void setSequenceClientKey(final String sequenceClientKey) {
+        this.sequenceClientKey = isSet(sequenceClientKey) ? sequenceClientKey.trim() : null;
+    }
+
+    /**
+     * Enables or disables recording {@link StubMatchTrace traces} of the incoming requests that did not match any of
+     * the stubs. When disabled (the default), the matching does not record nor log any per-field outcomes.
+     *
+     * @param enable whether match tracing should be enabled
+     */
+    public void enableMatchTracing(final boolean enable) {
+        this.matchTracing = enable;
+        if (!enable) {
+            this.nonMatchTraces.clear();
+        }
+    }
+
+    public boolean isMatchTracingEnabled() {
+        return matchTracing;
+    }
+
+    /**
+     * @param limit the maximum number of traces to return
+     * @return the traces of up to {@code limit} most recent incoming requests that did not match any of the stubs, the newest first
+     */
+    public List<StubMatchTrace> getLastNonMatchTraces(final int limit) {
+        return nonMatchTraces.last(limit);
     }
 
     public String getResourceStatsAsCsv() {
-        final String csvNoHeader = resourceStats.toString().replaceAll("\\{|\\}", "").replaceAll(", ", FileUtils.BR).replaceAll("=", ",");
-        return String.format("resourceId,hits%s%s", FileUtils.BR, csvNoHeader);
+        final StringBuilder builder = new StringBuilder("resourceId,hits").append(FileUtils.BR);
+        String separator = "";
+        for (final Map.Entry<String, Long> entry : getResourceStats().entrySet()) {
+            builder.append(separator).append(entry.getKey()).append(',').append(entry.getValue());
+            separator = FileUtils.BR;
+        }
+        return builder.toString();
+    }
+
+    public String getOnlyStubRequestUrl() {
+        return this.snapshot.getStubs().get(0).getUrl();
     }
 
-    public synchronized String getOnlyStubRequestUrl() {
-        return stubs.get(0).getUrl();
+    public FileContentCache getFileContentCache() {
+        return fileContentCache;
     }
 
     public File getYamlConfig() {
         return configFile;
     }
 
-    public synchronized Map<File, Long> getExternalFiles() {
+    public Map<File, Long> getExternalFiles() {
         final Set<String> escrow = new HashSet<>();
         final Map<File, Long> externalFiles = new HashMap<>();
-        for (final StubHttpLifecycle stub : stubs) {
+        for (final StubHttpLifecycle stub : this.snapshot.getStubs()) {
             cacheExternalFile(escrow, externalFiles, stub.getRequest().getRawFile());
 
             final List<StubResponse> responses = stub.getResponses();
@@ -437,9 +1029,11 @@ public class StubRepository {
         }
     }
 
-    public synchronized String dumpCompleteYamlConfig() {
+    public String dumpCompleteYamlConfig() {
+        final StubRepositorySnapshot currentSnapshot = this.snapshot;
         final StringBuilder builder = new StringBuilder();
 
+        final Map<String, StubProxyConfig> proxyConfigs = currentSnapshot.getProxyConfigs();
         if (!proxyConfigs.isEmpty()) {
             for (final Map.Entry<String, StubProxyConfig> entry : proxyConfigs.entrySet()) {
                 builder.append(entry.getValue().getProxyConfigAsYAML()).append(FileUtils.BR).append(FileUtils.BR);
@@ -447,35 +1041,39 @@ public class StubRepository {
             builder.append(FileUtils.BR);
         }
 
-        for (final StubHttpLifecycle stub : stubs) {
+        for (final StubHttpLifecycle stub : currentSnapshot.getStubs()) {
             builder.append(stub.getCompleteYaml()).append(FileUtils.BR).append(FileUtils.BR);
         }
 
         return builder.toString();
     }
 
-    public synchronized String getStubYamlByIndex(final int index) {
-        return stubs.get(index).getCompleteYaml();
+    public String getStubYamlByIndex(final int index) {
+        return this.snapshot.getStubs().get(index).getCompleteYaml();
     }
 
-    public synchronized String getStubYamlByUuid(final String uuid) {
-        return uuidToStub.get(uuid).getCompleteYaml();
+    public String getStubYamlByUuid(final String uuid) {
+        return this.snapshot.getUuidToStub().get(uuid).getCompleteYaml();
     }
 
-    public synchronized String getProxyConfigYamlByUuid(final String uuid) {
-        return proxyConfigs.get(uuid).getProxyConfigAsYAML();
+    public String getProxyConfigYamlByUuid(final String uuid) {
+        return this.snapshot.getProxyConfigs().get(uuid).getProxyConfigAsYAML();
     }
 
-    public synchronized boolean canMatchStubByIndex(final int index) {
+    public boolean canMatchStubByIndex(final int index) {
+        return canMatchStubByIndex(this.snapshot.getStubs(), index);
+    }
+
+    private static boolean canMatchStubByIndex(final List<StubHttpLifecycle> stubs, final int index) {
         return stubs.size() - 1 >= index;
     }
 
-    public synchronized boolean canMatchStubByUuid(final String uuid) {
-        return uuidToStub.containsKey(uuid);
+    public boolean canMatchStubByUuid(final String uuid) {
+        return this.snapshot.getUuidToStub().containsKey(uuid);
     }
 
-    public synchronized boolean canMatchProxyConfigByUuid(final String uuid) {
-        return proxyConfigs.containsKey(uuid);
+    public boolean canMatchProxyConfigByUuid(final String uuid) {
+        return this.snapshot.getProxyConfigs().containsKey(uuid);
     }
 
     synchronized void updateProxyConfigByUuid(final String uuid, final StubProxyConfig newStubProxyConfig) {
@@ -485,51 +1083,55 @@ public class StubRepository {
             throw new IllegalArgumentException(message);
         }
 
-        if (uuid.equals(StubProxyConfig.Builder.DEFAULT_UUID)) {
-            proxyConfigs.remove(StubProxyConfig.Builder.DEFAULT_UUID);
-            proxyConfigs.put(StubProxyConfig.Builder.DEFAULT_UUID, newStubProxyConfig);
-        } else {
-            proxyConfigs.remove(uuid);
-            proxyConfigs.put(uuid, newStubProxyConfig);
-        }
+        final Map<String, StubProxyConfig> newProxyConfigs = new HashMap<>(this.snapshot.getProxyConfigs());
+        newProxyConfigs.put(uuid, newStubProxyConfig);
+
+        publish(this.snapshot.withProxyConfigs(newProxyConfigs));
     }
 
     synchronized void updateStubByIndex(final int index, final StubHttpLifecycle newStub) {
-        final StubHttpLifecycle deletedStub = deleteStubByIndex(index);
-        stubs.add(index, newStub);
-        updateResourceIDHeaders();
+        final List<StubHttpLifecycle> newStubs = new ArrayList<>(this.snapshot.getStubs());
+        final Map<String, StubHttpLifecycle> newUuidToStub = new HashMap<>(this.snapshot.getUuidToStub());
 
-        this.stubMatchesCache.clear();
+        final StubHttpLifecycle deletedStub = newStubs.set(index, newStub);
 
         if (StringUtils.isSet(deletedStub.getUUID())) {
-            uuidToStub.remove(deletedStub.getUUID());
+            newUuidToStub.remove(deletedStub.getUUID());
         }
 
         if (StringUtils.isSet(newStub.getUUID())) {
-            uuidToStub.put(newStub.getUUID(), newStub);
+            newUuidToStub.put(newStub.getUUID(), newStub);
         }
+        updateResourceIDHeaders(newStubs, newUuidToStub);
+
+        publish(this.snapshot.withStubs(newStubs, newUuidToStub));
     }
 
     synchronized void updateStubByUuid(final String uuid, final StubHttpLifecycle newStub) {
-        final StubHttpLifecycle obsolete = uuidToStub.get(uuid);
+        final StubHttpLifecycle obsolete = this.snapshot.getUuidToStub().get(uuid);
         final int resourceId = Integer.parseInt(obsolete.getResourceId());
 
         updateStubByIndex(resourceId, newStub);
     }
 
     public synchronized StubHttpLifecycle deleteStubByIndex(final int index) {
-        final StubHttpLifecycle removedStub = stubs.remove(index);
-        updateResourceIDHeaders();
+        final List<StubHttpLifecycle> newStubs = new ArrayList<>(this.snapshot.getStubs());
+        final Map<String, StubHttpLifecycle> newUuidToStub = new HashMap<>(this.snapshot.getUuidToStub());
+
+        final StubHttpLifecycle removedStub = newStubs.remove(index);
 
         if (StringUtils.isSet(removedStub.getUUID())) {
-            uuidToStub.remove(removedStub.getUUID());
+            newUuidToStub.remove(removedStub.getUUID());
         }
+        updateResourceIDHeaders(newStubs, newUuidToStub);
+
+        publish(this.snapshot.withStubs(newStubs, newUuidToStub));
 
         return removedStub;
     }
 
     public synchronized StubHttpLifecycle deleteStubByUuid(final String uuid) {
-        final StubHttpLifecycle toBeRemoved = uuidToStub.get(uuid);
+        final StubHttpLifecycle toBeRemoved = this.snapshot.getUuidToStub().get(uuid);
         final int resourceId = Integer.parseInt(toBeRemoved.getResourceId());
 
         return deleteStubByIndex(resourceId);
@@ -539,44 +1141,94 @@ public class StubRepository {
         if (uuid.equals(StubProxyConfig.Builder.DEFAULT_UUID)) {
             throw new IllegalArgumentException("You cannot delete 'default' (i.e.: catch-all) proxy config via API");
         }
-        return proxyConfigs.remove(uuid);
+
+        final Map<String, StubProxyConfig> newProxyConfigs = new HashMap<>(this.snapshot.getProxyConfigs());
+        final StubProxyConfig removedProxyConfig = newProxyConfigs.remove(uuid);
+        publish(this.snapshot.withProxyConfigs(newProxyConfigs));
+
+        return removedProxyConfig;
     }
 
     public synchronized void clear() {
-        this.stubMatchesCache.clear();
-        this.stubs.clear();
-        this.uuidToStub.clear();
-        this.proxyConfigs.clear();
-        this.webSocketConfigs.clear();
+        publish(StubRepositorySnapshot.EMPTY);
     }
 
-    private void updateResourceIDHeaders() {
+    /**
+     * The stubs of the current snapshot may be served while the new snapshot is being built, so a stub that moved
+     * to another position is replaced with a copy of it at that position, instead of being modified in place
+     */
+    private static void updateResourceIDHeaders(final List<StubHttpLifecycle> stubs,
+                                                final Map<String, StubHttpLifecycle> uuidToStub) {
         for (int index = 0; index < stubs.size(); index++) {
-            stubs.get(index).setResourceId(index);
+            final StubHttpLifecycle stub = stubs.get(index);
+            final StubHttpLifecycle positionedStub = stub.withResourceId(index);
+            if (positionedStub != stub) {
+                stubs.set(index, positionedStub);
+                if (StringUtils.isSet(stub.getUUID())) {
+                    uuidToStub.put(stub.getUUID(), positionedStub);
+                }
+            }
+        }
+    }
+
+    /**
+     * The new snapshot is fully built before it gets published in one volatile write, so that a lookup
+     * never observes stubs, index or lookup tables that are half way through being modified. Matches cached
+     * against the previous snapshot are evicted, as they may refer to the stubs that are no longer loaded.
+     */
+    private void publish(final StubRepositorySnapshot newSnapshot) {
+        this.snapshot = newSnapshot;
+        this.stubMatchesCache.clear();
+        pruneProxyEndpointState(newSnapshot.getProxyConfigs());
+    }
+
+    // The caches, coalescers and guards of the deleted proxy configs are dropped, and so are the caches and coalescers
+    // of the proxy configs that no longer cache or coalesce, and the guards whose limits changed. The cache of a proxy
+    // config whose cache settings changed is replaced when the proxy config is next proxied to. The requests in flight
+    // still complete, against the dropped coalescer or guard. The HTTP clients of the connect timeouts that no proxy
+    // config has anymore are stopped, which aborts their requests in flight
+    private void pruneProxyEndpointState(final Map<String, StubProxyConfig> proxyConfigs) {
+        proxyResponseCaches.keySet().removeIf(uuid -> !proxyConfigs.containsKey(uuid) || !proxyConfigs.get(uuid).isCaching());
+        proxyRequestCoalescers.keySet().removeIf(uuid -> !proxyConfigs.containsKey(uuid) || !proxyConfigs.get(uuid).isCoalescing());
+        proxyEndpointGuards.entrySet().removeIf(entry -> !proxyConfigs.containsKey(entry.getKey()) || !entry.getValue().isGuarding(proxyConfigs.get(entry.getKey())));
+
+        final Set<Long> connectTimeoutsMillis = new HashSet<>();
+        for (final StubProxyConfig proxyConfig : proxyConfigs.values()) {
+            connectTimeoutsMillis.add(proxyConfig.getConnectTimeoutMillis());
         }
+        stubbyHttpTransport.retainConnectTimeouts(connectTimeoutsMillis);
     }
 
-    public void retrieveLoadedStubs() {
+    public synchronized void retrieveLoadedStubs() {
         try {
             final YamlParseResultSet yamlParseResultSet = stubLoadComputation.get();
-            this.stubs.addAll(yamlParseResultSet.getStubs());
-            this.uuidToStub.putAll(yamlParseResultSet.getUuidToStubs());
+            final StubRepositorySnapshot currentSnapshot = this.snapshot;
+
+            final List<StubHttpLifecycle> newStubs = new ArrayList<>(currentSnapshot.getStubs());
+            newStubs.addAll(yamlParseResultSet.getStubs());
+
+            final Map<String, StubHttpLifecycle> newUuidToStub = new HashMap<>(currentSnapshot.getUuidToStub());
+            newUuidToStub.putAll(yamlParseResultSet.getUuidToStubs());
+
+            final Map<String, StubProxyConfig> newProxyConfigs = new HashMap<>(currentSnapshot.getProxyConfigs());
+            newProxyConfigs.putAll(loadProxyConfigsWithOptionalThrow(yamlParseResultSet));
 
-            loadProxyConfigsWithOptionalThrow(yamlParseResultSet);
+            final Map<String, StubWebSocketConfig> newWebSocketConfigs = new HashMap<>(currentSnapshot.getWebSocketConfigs());
+            newWebSocketConfigs.putAll(yamlParseResultSet.getWebSocketConfigs());
 
-            this.webSocketConfigs.putAll(yamlParseResultSet.getWebSocketConfigs());
+            publish(currentSnapshot.withAll(newStubs, newUuidToStub, newProxyConfigs, newWebSocketConfigs));
         } catch (InterruptedException | ExecutionException e) {
             e.printStackTrace();
         }
     }
 
-    private void loadProxyConfigsWithOptionalThrow(final YamlParseResultSet yamlParseResultSet) {
+    private Map<String, StubProxyConfig> loadProxyConfigsWithOptionalThrow(final YamlParseResultSet yamlParseResultSet) {
         final Map<String, StubProxyConfig> loadedProxyConfigs = yamlParseResultSet.getProxyConfigs();
 
         if (!loadedProxyConfigs.isEmpty() && !loadedProxyConfigs.containsKey(StubProxyConfig.Builder.DEFAULT_UUID)) {
             throw new IllegalStateException("YAML config contains proxy configs, but the 'default' proxy config is not configured, how so?");
         }
 
-        this.proxyConfigs.putAll(loadedProxyConfigs);
+        return loadedProxyConfigs;
     }
 }
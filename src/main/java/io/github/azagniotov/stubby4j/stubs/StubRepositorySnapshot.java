@@ -0,0 +1,145 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+
+import io.github.azagniotov.stubby4j.stubs.proxy.StubProxyConfig;
+import io.github.azagniotov.stubby4j.stubs.websocket.StubWebSocketConfig;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An immutable, point-in-time view of everything that {@link StubRepository} serves: the loaded stubs (and
+ * their {@link StubIndex}), the UUID lookup table, the proxy configs and the web socket configs.
+ * <p>
+ * Readers (i.e.: Jetty worker threads matching incoming requests) grab the current snapshot once and work with it
+ * without taking any lock. Writers (i.e.: YAML refresh and admin API mutations) never modify a published snapshot,
+ * instead they derive a new one using one of the {@code with*} methods and publish it in place of the old one.
+ * <p>
+ * The {@link StubStats hit counters} are the only mutable part of a snapshot, they are carried over into the
+ * snapshots derived from it.
+ */
+final class StubRepositorySnapshot {
+
+    private static final AtomicLong GENERATIONS = new AtomicLong(0);
+    private static final String CONTENT_TYPE_HEADER = "content-type";
+
+    static final StubRepositorySnapshot EMPTY = new StubRepositorySnapshot(
+            Collections.emptyList(),
+            Collections.emptyMap(),
+            Collections.emptyMap(),
+            Collections.emptyMap());
+
+    private final long generation;
+    private final StubIndex stubIndex;
+    private final Set<String> matchedHeaderNames;
+    private final Map<String, StubHttpLifecycle> uuidToStub;
+    private final Map<String, StubProxyConfig> proxyConfigs;
+    private final Map<String, StubWebSocketConfig> webSocketConfigs;
+    private final StubStats stubStats;
+
+    StubRepositorySnapshot(final List<StubHttpLifecycle> stubs,
+                           final Map<String, StubHttpLifecycle> uuidToStub,
+                           final Map<String, StubProxyConfig> proxyConfigs,
+                           final Map<String, StubWebSocketConfig> webSocketConfigs) {
+        this(new StubIndex(stubs), uuidToStub, proxyConfigs, webSocketConfigs, null);
+    }
+
+    private StubRepositorySnapshot(final StubIndex stubIndex,
+                                   final Map<String, StubHttpLifecycle> uuidToStub,
+                                   final Map<String, StubProxyConfig> proxyConfigs,
+                                   final Map<String, StubWebSocketConfig> webSocketConfigs,
+                                   final StubStats previousStubStats) {
+        this.generation = GENERATIONS.incrementAndGet();
+        this.stubIndex = stubIndex;
+        this.matchedHeaderNames = collectMatchedHeaderNames(stubIndex.getStubs());
+        this.uuidToStub = Collections.unmodifiableMap(new HashMap<>(uuidToStub));
+        this.proxyConfigs = Collections.unmodifiableMap(new HashMap<>(proxyConfigs));
+        this.webSocketConfigs = Collections.unmodifiableMap(new LinkedHashMap<>(webSocketConfigs));
+        this.stubStats = new StubStats(stubIndex.getStubs(), this.proxyConfigs, previousStubStats);
+    }
+
+    private static Set<String> collectMatchedHeaderNames(final List<StubHttpLifecycle> stubs) {
+        final Set<String> headerNames = new TreeSet<>();
+        // The incoming content type decides whether the request body is compared as JSON, XML or a string
+        headerNames.add(CONTENT_TYPE_HEADER);
+        for (final StubHttpLifecycle stub : stubs) {
+            for (final StubRequestMatchPlan.ValueMatcher header : stub.getRequest().getMatchPlan().getHeaders()) {
+                headerNames.add(header.getKey());
+            }
+        }
+
+        return Collections.unmodifiableSet(headerNames);
+    }
+
+    StubRepositorySnapshot withAll(final List<StubHttpLifecycle> stubs,
+                                   final Map<String, StubHttpLifecycle> uuidToStub,
+                                   final Map<String, StubProxyConfig> proxyConfigs,
+                                   final Map<String, StubWebSocketConfig> webSocketConfigs) {
+        return new StubRepositorySnapshot(new StubIndex(stubs), uuidToStub, proxyConfigs, webSocketConfigs, stubStats);
+    }
+
+    StubRepositorySnapshot withStubs(final List<StubHttpLifecycle> stubs, final Map<String, StubHttpLifecycle> uuidToStub) {
+        return new StubRepositorySnapshot(new StubIndex(stubs), uuidToStub, proxyConfigs, webSocketConfigs, stubStats);
+    }
+
+    StubRepositorySnapshot withProxyConfigs(final Map<String, StubProxyConfig> proxyConfigs) {
+        return new StubRepositorySnapshot(stubIndex, uuidToStub, proxyConfigs, webSocketConfigs, stubStats);
+    }
+
+    /**
+     * Computes the key under which a match for the given incoming request is cached. The key is a fingerprint
+     * of everything the {@link StubMatcher} looks at: HTTP methods, URI, query params, values of the headers that
+     * are referenced by at least one loaded stub and a digest of the request body.
+     * <p>
+     * The key is prefixed with the generation of this snapshot, so a match found by a reader against this
+     * snapshot can not be served to the readers of a newer snapshot, even if it was put into the cache after
+     * the cache had been cleared by the writer.
+     *
+     * @param incomingRequest the incoming {@link StubRequest request}
+     * @return a {@link String} key
+     */
+    String matchCacheKey(final StubRequest incomingRequest) {
+        return new RequestFingerprint()
+                .append(String.valueOf(generation))
+                .appendMethods(incomingRequest.getMethod())
+                .append(incomingRequest.getUri())
+                .appendQuery(incomingRequest.getQuery())
+                .appendHeaders(incomingRequest.getHeaders(), matchedHeaderNames)
+                .appendDigest(incomingRequest.getPostBody())
+                .toString();
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    StubIndex getStubIndex() {
+        return stubIndex;
+    }
+
+    List<StubHttpLifecycle> getStubs() {
+        return stubIndex.getStubs();
+    }
+
+    Map<String, StubHttpLifecycle> getUuidToStub() {
+        return uuidToStub;
+    }
+
+    Map<String, StubProxyConfig> getProxyConfigs() {
+        return proxyConfigs;
+    }
+
+    Map<String, StubWebSocketConfig> getWebSocketConfigs() {
+        return webSocketConfigs;
+    }
+
+    StubStats getStubStats() {
+        return stubStats;
+    }
+}
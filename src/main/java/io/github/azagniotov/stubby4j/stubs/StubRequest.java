@@ -51,6 +51,16 @@ public class StubRequest implements ReflectableStub {
     private final Map<String, String> query;
     private final Map<String, String> regexGroups;
 
+    // Both are lazily computed, as they are not needed for every StubRequest instance, e.g.: the
+    // incoming request does not need a match plan and may not have its body compared at all
+    private volatile String normalizedPostBody;
+    private volatile StubRequestMatchPlan matchPlan;
+    private volatile JsonBody jsonPostBody;
+    private volatile XmlBody xmlPostBody;
+
+    // Only ever set on the incoming request, and only when match tracing is enabled
+    private StubMatchTrace matchTrace;
+
     private StubRequest(final String url,
                         final String post,
                         final File file,
@@ -99,11 +109,46 @@ public class StubRequest implements ReflectableStub {
     }
 
     public String getPostBody() {
-        if (fileBytes.length == 0) {
-            return FileUtils.enforceSystemLineSeparator(post);
+        // The benign race is fine here: the post body is computed from final fields, so the result is always the same
+        String postBody = this.normalizedPostBody;
+        if (postBody == null) {
+            if (fileBytes.length == 0) {
+                postBody = FileUtils.enforceSystemLineSeparator(post);
+            } else {
+                final String utf8FileContent = newStringUtf8(fileBytes);
+                postBody = FileUtils.enforceSystemLineSeparator(utf8FileContent);
+            }
+            this.normalizedPostBody = postBody;
         }
-        final String utf8FileContent = newStringUtf8(fileBytes);
-        return FileUtils.enforceSystemLineSeparator(utf8FileContent);
+        return postBody;
+    }
+
+    /**
+     * @return the parsed request body, or {@link JsonBody#NOT_JSON} if the request body is not JSON. The body is parsed
+     * at most once, no matter with how many stubs the incoming request is compared
+     */
+    JsonBody getJsonPostBody() {
+        // The benign race is fine here, for the same reason as in getPostBody()
+        JsonBody parsedPostBody = this.jsonPostBody;
+        if (parsedPostBody == null) {
+            parsedPostBody = JsonBody.parse(getPostBody());
+            this.jsonPostBody = parsedPostBody;
+        }
+        return parsedPostBody;
+    }
+
+    /**
+     * @return the parsed request body, or {@link XmlBody#NOT_XML} if the request body is not XML. The body is parsed
+     * at most once, no matter with how many stubs the incoming request is compared
+     */
+    XmlBody getXmlPostBody() {
+        // The benign race is fine here, for the same reason as in getPostBody()
+        XmlBody parsedPostBody = this.xmlPostBody;
+        if (parsedPostBody == null) {
+            parsedPostBody = XmlBody.parse(getPostBody());
+            this.xmlPostBody = parsedPostBody;
+        }
+        return parsedPostBody;
     }
 
     //Used by reflection when populating stubby admin page with stubbed information
@@ -135,6 +180,14 @@ public class StubRequest implements ReflectableStub {
         return new TreeMap<>(regexGroups);
     }
 
+    void replayRegexGroups(final Map<String, String> capturedRegexGroups) {
+        this.regexGroups.putAll(capturedRegexGroups);
+    }
+
+    void traceMatching(final StubMatchTrace matchTrace) {
+        this.matchTrace = matchTrace;
+    }
+
     public File getRawFile() {
         return file;
     }
@@ -193,16 +246,22 @@ public class StubRequest implements ReflectableStub {
         }
     }
 
-    public void compileRegexPatternsAndCache() {
-        if (isSet(this.url)) {
-            RegexParser.INSTANCE.compilePatternAndCache(this.url);
-        }
-        if (isRequestBodyStubbed()) {
-            RegexParser.INSTANCE.compilePatternAndCache(getPostBody());
-        }
+    /**
+     * Pre-computes the {@link StubRequestMatchPlan} of this stubbed request, so that the work is not
+     * done on the first incoming request. Regex patterns of the stubbed values are compiled and cached.
+     */
+    public void compileMatchPlan() {
+        this.matchPlan = new StubRequestMatchPlan(this);
+    }
 
-        this.getQuery().values().forEach(RegexParser.INSTANCE::compilePatternAndCache);
-        this.getHeaders().values().forEach(RegexParser.INSTANCE::compilePatternAndCache);
+    StubRequestMatchPlan getMatchPlan() {
+        StubRequestMatchPlan plan = this.matchPlan;
+        if (plan == null) {
+            // i.e.: the stub was not loaded by the YamlParser, but was created by other means
+            plan = new StubRequestMatchPlan(this);
+            this.matchPlan = plan;
+        }
+        return plan;
     }
 
     @Override
@@ -213,7 +272,7 @@ public class StubRequest implements ReflectableStub {
         } else if (that instanceof StubRequest) {
             final StubRequest stubbedRequest = (StubRequest) that;
 
-            if (new StubMatcher(regexGroups).matches(stubbedRequest, this)) {
+            if (new StubMatcher(regexGroups, matchTrace).matches(stubbedRequest, this)) {
                 return true;
             }
         }
@@ -0,0 +1,268 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+
+import io.github.azagniotov.stubby4j.http.HttpMethodExtended;
+import io.github.azagniotov.stubby4j.utils.StringUtils;
+import org.eclipse.jetty.http.HttpMethod;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static io.github.azagniotov.stubby4j.utils.StringUtils.buildToken;
+import static io.github.azagniotov.stubby4j.utils.StringUtils.escapeSpecialRegexCharacters;
+import static io.github.azagniotov.stubby4j.utils.StringUtils.isNotSet;
+import static io.github.azagniotov.stubby4j.utils.StringUtils.isSet;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.HEADERS;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.QUERY;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.URL;
+
+/**
+ * An immutable, pre-computed form of the stubbed {@link StubRequest}, which is what the {@link StubMatcher}
+ * actually works with when matching the incoming request.
+ * <p>
+ * Everything that does not depend on the incoming request is computed once, when the stub is loaded
+ * (see {@link StubRequest#compileMatchPlan()}): upper-cased HTTP methods, lower-cased required headers
+ * without the authorization headers (which are dealt with after the request is matched), the template
+ * token names of the headers and query params, the normalized request body, whether a stubbed value
+ * has to be matched as a regex or can simply be compared for equality and the {@link CompiledRegex compiled
+ * regex patterns} of the stubbed values, which are owned by the plan for as long as the stub is loaded.
+ */
+final class StubRequestMatchPlan {
+
+    private static final String[] NO_METHODS = new String[]{};
+    private static final ValueMatcher[] NO_VALUE_MATCHERS = new ValueMatcher[]{};
+
+    private final ValueMatcher url;
+    private final String[] methods;
+    private final boolean requestBodyStubbed;
+    private final String postBody;
+    private final String postBodyTokenName;
+    private final CompiledRegex postBodyRegex;
+    private final CompiledRegex escapedPostBodyRegex;
+    private final JsonBody jsonPostBody;
+    private final XmlBody xmlPostBody;
+    private final boolean postBodyRegexLike;
+    private final ValueMatcher[] headers;
+    private final ValueMatcher[] query;
+
+    StubRequestMatchPlan(final StubRequest stubbedRequest) {
+        this.url = new ValueMatcher(null, stubbedRequest.getUri(), URL.toString());
+
+        final List<String> stubbedMethods = stubbedRequest.getMethod();
+        this.methods = stubbedMethods.isEmpty() ? NO_METHODS : new LinkedHashSet<>(stubbedMethods).toArray(NO_METHODS);
+
+        this.postBody = stubbedRequest.getPostBody();
+        this.postBodyTokenName = stubbedRequest.getStubbedRequestBodyTokenName();
+        this.requestBodyStubbed = isSet(postBody) &&
+                (stubbedMethods.contains(HttpMethod.POST.asString()) ||
+                        stubbedMethods.contains(HttpMethod.PUT.asString()) ||
+                        stubbedMethods.contains(HttpMethodExtended.PATCH.asString()));
+        this.postBodyRegex = requestBodyStubbed ? CompiledRegex.compile(postBody) : null;
+        // The escaped stubbed body is matched whenever the incoming request is JSON, whether or not the stubbed body
+        // looks like JSON, so it is compiled here instead of on the request path
+        this.escapedPostBodyRegex = requestBodyStubbed ? CompiledRegex.compile(escapeSpecialRegexCharacters(postBody)) : null;
+        this.jsonPostBody = requestBodyStubbed && isPotentialJson(postBody) ? JsonBody.parse(postBody) : JsonBody.NOT_JSON;
+        this.postBodyRegexLike = requestBodyStubbed && !RegexParser.isLiteral(withoutJsonBrackets(postBody));
+        this.xmlPostBody = requestBodyStubbed && postBody.trim().startsWith("<") ? XmlBody.parse(postBody) : XmlBody.NOT_XML;
+
+        final Map<String, String> stubbedHeaders = stubbedRequest.getHeaders();
+        final Set<String> authorizationHeaders = new LinkedHashSet<>();
+        for (final StubbableAuthorizationType authorizationType : StubbableAuthorizationType.values()) {
+            // auth header is dealt with in StubRepository after request is matched
+            authorizationHeaders.add(authorizationType.asYAMLProp());
+        }
+        this.headers = toValueMatchers(stubbedHeaders, authorizationHeaders, HEADERS.toString());
+        this.query = toValueMatchers(stubbedRequest.getQuery(), new LinkedHashSet<>(), QUERY.toString());
+    }
+
+    private static ValueMatcher[] toValueMatchers(final Map<String, String> stubbedMappings,
+                                                  final Set<String> excludedKeys,
+                                                  final String mapName) {
+        final List<ValueMatcher> valueMatchers = new ArrayList<>();
+        for (final Map.Entry<String, String> stubbedMappingEntry : stubbedMappings.entrySet()) {
+            final String key = stubbedMappingEntry.getKey();
+            if (!excludedKeys.contains(key)) {
+                final String templateTokenName = String.format("%s.%s", mapName, key);
+                valueMatchers.add(new ValueMatcher(key, stubbedMappingEntry.getValue(), templateTokenName));
+            }
+        }
+
+        return valueMatchers.isEmpty() ? NO_VALUE_MATCHERS : valueMatchers.toArray(NO_VALUE_MATCHERS);
+    }
+
+    private static boolean isPotentialJson(final String postBody) {
+        final String trimmedPostBody = postBody.trim();
+        return trimmedPostBody.startsWith("{") || trimmedPostBody.startsWith("[");
+    }
+
+    // Curly and square brackets are escaped before the stubbed JSON is matched as a regex, see StubMatcher
+    private static String withoutJsonBrackets(final String postBody) {
+        final StringBuilder builder = new StringBuilder(postBody.length());
+        for (int idx = 0; idx < postBody.length(); idx++) {
+            final char currentChar = postBody.charAt(idx);
+            if (currentChar != '{' && currentChar != '}' && currentChar != '[' && currentChar != ']') {
+                builder.append(currentChar);
+            }
+        }
+        return builder.toString();
+    }
+
+    ValueMatcher getUrl() {
+        return url;
+    }
+
+    boolean hasMethods() {
+        return methods.length > 0;
+    }
+
+    /**
+     * @param assertingMethods HTTP methods of the incoming request, in any case
+     * @return true if at least one of the incoming HTTP methods was stubbed
+     */
+    boolean methodsIntersect(final List<String> assertingMethods) {
+        for (final String assertingMethod : assertingMethods) {
+            // String.toUpperCase returns the same instance when there is nothing to upper-case
+            final String upperCasedAssertingMethod = StringUtils.toUpper(assertingMethod);
+            for (final String stubbedMethod : methods) {
+                if (stubbedMethod.equals(upperCasedAssertingMethod)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    boolean isRequestBodyStubbed() {
+        return requestBodyStubbed;
+    }
+
+    String getPostBody() {
+        return postBody;
+    }
+
+    String getPostBodyTokenName() {
+        return postBodyTokenName;
+    }
+
+    /**
+     * @return the compiled stubbed request body, or {@code null} if the request body is not stubbed
+     */
+    CompiledRegex getPostBodyRegex() {
+        return postBodyRegex;
+    }
+
+    /**
+     * @return the compiled stubbed request body with the regex special characters escaped, or {@code null}
+     * if the request body is not stubbed
+     */
+    CompiledRegex getEscapedPostBodyRegex() {
+        return escapedPostBodyRegex;
+    }
+
+    /**
+     * @return the parsed stubbed request body, or {@link JsonBody#NOT_JSON} if the request body is not stubbed or is not JSON
+     */
+    JsonBody getJsonPostBody() {
+        return jsonPostBody;
+    }
+
+    /**
+     * @return the parsed stubbed request body, or {@link XmlBody#NOT_XML} if the request body is not stubbed or is not XML
+     */
+    XmlBody getXmlPostBody() {
+        return xmlPostBody;
+    }
+
+    /**
+     * @return true if the stubbed request body has regex special characters (apart from the curly and square brackets),
+     * i.e.: when the stubbed JSON body is matched as a regex, it can match more than just the identical body
+     */
+    boolean isPostBodyRegexLike() {
+        return postBodyRegexLike;
+    }
+
+    boolean hasHeaders() {
+        return headers.length > 0;
+    }
+
+    ValueMatcher[] getHeaders() {
+        return headers;
+    }
+
+    boolean hasQuery() {
+        return query.length > 0;
+    }
+
+    ValueMatcher[] getQuery() {
+        return query;
+    }
+
+    /**
+     * A single stubbed value (i.e.: URL, header or query param value) and the way it should be matched
+     */
+    static final class ValueMatcher {
+
+        private final String key;
+        private final String value;
+        private final String templateTokenName;
+        private final String fullMatchTokenName;
+        private final Kind kind;
+        private final CompiledRegex regex;
+
+        private ValueMatcher(final String key, final String value, final String templateTokenName) {
+            this.key = key;
+            this.value = value;
+            this.templateTokenName = templateTokenName;
+            this.fullMatchTokenName = buildToken(templateTokenName, 0);
+
+            if (isNotSet(value)) {
+                this.kind = Kind.ANY;
+                this.regex = null;
+            } else if (RegexParser.isLiteral(value)) {
+                this.kind = Kind.LITERAL;
+                this.regex = null;
+            } else {
+                this.kind = Kind.REGEX;
+                this.regex = CompiledRegex.compile(value);
+            }
+        }
+
+        String getKey() {
+            return key;
+        }
+
+        String getValue() {
+            return value;
+        }
+
+        String getTemplateTokenName() {
+            return templateTokenName;
+        }
+
+        String getFullMatchTokenName() {
+            return fullMatchTokenName;
+        }
+
+        Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the compiled stubbed value, or {@code null} unless the value is matched as {@link Kind#REGEX}
+         */
+        CompiledRegex getRegex() {
+            return regex;
+        }
+
+        enum Kind {
+            // Stubbed value is not set, so any incoming value matches
+            ANY,
+            // Stubbed value has no regex special characters, so regex match is equivalent to equality
+            LITERAL,
+            REGEX
+        }
+    }
+}
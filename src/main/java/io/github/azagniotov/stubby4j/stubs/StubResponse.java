@@ -1,6 +1,8 @@
 package io.github.azagniotov.stubby4j.stubs;
 
 import io.github.azagniotov.stubby4j.annotations.VisibleForTesting;
+import io.github.azagniotov.stubby4j.caching.FileContent;
+import io.github.azagniotov.stubby4j.caching.FileContentCache;
 import io.github.azagniotov.stubby4j.common.Common;
 import io.github.azagniotov.stubby4j.utils.FileUtils;
 import io.github.azagniotov.stubby4j.utils.StringUtils;
@@ -8,13 +10,16 @@ import io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty;
 import org.eclipse.jetty.http.HttpStatus.Code;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static io.github.azagniotov.generics.TypeSafeConverter.asCheckedLinkedHashMap;
-import static io.github.azagniotov.stubby4j.utils.FileUtils.fileToBytes;
 import static io.github.azagniotov.stubby4j.utils.FileUtils.isFilePathContainTemplateTokens;
+import static io.github.azagniotov.stubby4j.utils.ObjectUtils.isNotNull;
 import static io.github.azagniotov.stubby4j.utils.ObjectUtils.isNull;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.BANDWIDTH;
 import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.BODY;
 import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.FILE;
 import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.HEADERS;
@@ -27,23 +32,45 @@ import static org.eclipse.jetty.http.HttpStatus.getCode;
 public class StubResponse implements ReflectableStub {
 
     private final Code httpStatusCode;
-    private final String body;
+    // Not final, the body of a recordable response is replaced with the recorded body
+    private volatile String body;
     private final File file;
-    private final byte[] fileBytes;
     private final String latency;
+    private final String bandwidth;
     private final Map<String, String> headers;
+    private volatile EncodedBody encodedBody;
+    private final ResponseTemplate filePathTemplate;
+    private final Map<String, ResponseTemplate> headerTemplates;
+    private final boolean redirect;
+    private final long latencyMillis;
+    private final boolean latencyNumeric;
+    private final long bandwidthBytesPerSecond;
+    private final boolean bandwidthNumeric;
 
     private StubResponse(final Code httpStatusCode,
                          final String body,
                          final File file,
                          final String latency,
+                         final String bandwidth,
                          final Map<String, String> headers) {
         this.httpStatusCode = httpStatusCode;
         this.body = body;
         this.file = file;
-        this.fileBytes = isNull(file) ? new byte[]{} : getFileBytes();
         this.latency = latency;
+        this.bandwidth = bandwidth;
         this.headers = isNull(headers) ? new LinkedHashMap<>() : headers;
+
+        // The response is classified and encoded once, here, so that serving a static response does no string work.
+        // Templates are compiled once too, and are rendered with the regex groups captured by each incoming request.
+        // The 'file' content is not loaded here, but when it is served (see #getFileContent(FileContentCache))
+        this.encodedBody = encodeBody();
+        this.filePathTemplate = isFilePathTemplate() ? ResponseTemplate.compile(file.getAbsolutePath()) : null;
+        this.headerTemplates = compileHeaderTemplates(this.headers);
+        this.redirect = this.headers.containsKey("location");
+        this.latencyNumeric = isLatencyNumeric(latency);
+        this.latencyMillis = StringUtils.isSet(latency) && latencyNumeric ? Long.parseLong(latency.trim()) : 0L;
+        this.bandwidthNumeric = isBandwidthNumeric(bandwidth);
+        this.bandwidthBytesPerSecond = StringUtils.isSet(bandwidth) && bandwidthNumeric ? toBytesPerSecond(bandwidth) : 0L;
     }
 
     public static StubResponse okResponse() {
@@ -67,8 +94,7 @@ public class StubResponse implements ReflectableStub {
     }
 
     public boolean isRecordingRequired() {
-        final String body = getBody();
-        return StringUtils.toLower(body).startsWith("http");
+        return encodedBody.recordingRequired;
     }
 
     public Map<String, String> getHeaders() {
@@ -80,10 +106,47 @@ public class StubResponse implements ReflectableStub {
     }
 
     /**
-     * Used by reflection when populating stubby admin page with stubbed information
+     * @return the stubbed latency in milliseconds, or 0 if the latency was not stubbed
+     * @throws NumberFormatException if the stubbed latency is not a number
+     */
+    public long getLatencyMillis() {
+        if (!latencyNumeric) {
+            throw new NumberFormatException(String.format("For input string: \"%s\"", latency));
+        }
+        return latencyMillis;
+    }
+
+    public String getBandwidth() {
+        return bandwidth;
+    }
+
+    /**
+     * The stubbed 'bandwidth' is the response body transfer rate in kilobytes per second, e.g.: 64 or 0.5,
+     * while the stubbed 'latency' is the time to the first byte of the response
+     *
+     * @return the stubbed bandwidth in bytes per second, or 0 if the body transfer rate was not stubbed
+     * @throws NumberFormatException if the stubbed bandwidth is not a positive number
+     */
+    public long getBandwidthBytesPerSecond() {
+        if (!bandwidthNumeric) {
+            throw new NumberFormatException(String.format("For input string: \"%s\"", bandwidth));
+        }
+        return bandwidthBytesPerSecond;
+    }
+
+    /**
+     * Used by reflection when populating stubby admin page with stubbed information. The file is read
+     * every time, the content that is served is looked up with {@link #getFileContent(FileContentCache)}
      */
     public byte[] getFile() {
-        return fileBytes;
+        if (isNull(file) || isNotNull(filePathTemplate)) {
+            return new byte[]{};
+        }
+        try {
+            return FileUtils.fileToBytes(file);
+        } catch (final Exception e) {
+            return new byte[]{};
+        }
     }
 
     public File getRawFile() {
@@ -94,65 +157,175 @@ public class StubResponse implements ReflectableStub {
         return file.getAbsolutePath();
     }
 
-    public byte[] getResponseBodyAsBytes() {
-
-        if (fileBytes.length == 0) {
-            return StringUtils.getBytesUtf8(getBody());
-        }
-        return fileBytes;
+    /**
+     * @return the 'file' content, or the stubbed 'body' bytes if there is no file content. The body is encoded once
+     * and is shared, so it must not be modified. The file is read every time, the response body is served from
+     * {@link #getFileContent(FileContentCache)} and {@link #getResponseBody()}
+     */
+    @VisibleForTesting
+    byte[] getResponseBodyAsBytes() {
+        final byte[] fileBytes = getFile();
+        return fileBytes.length == 0 ? encodedBody.bytes : fileBytes;
     }
 
-    public boolean isBodyContainsTemplateTokens() {
-        final boolean isFileTemplate = fileBytes.length != 0 && isTemplateFile();
-        return isFileTemplate || StringUtils.isTokenized(getBody());
+    /**
+     * @return a read-only view of the stubbed 'body' bytes, which can be written without copying them. The 'file'
+     * content, which is served instead of the body, is looked up with {@link #getFileContent(FileContentCache)}
+     */
+    public ByteBuffer getResponseBody() {
+        return encodedBody.readOnlyBuffer.duplicate();
     }
 
     public boolean isFilePathContainsTemplateTokens() {
+        return filePathTemplate != null;
+    }
+
+    /**
+     * @return the compiled template of the stubbed 'body', or null if there are no template tokens. The template
+     * of the 'file' content is held by the {@link FileContent}
+     */
+    public ResponseTemplate getBodyTemplate() {
+        return encodedBody.template;
+    }
+
+    /**
+     * @return the compiled template of the stubbed 'file' path, or null if there are no template tokens
+     */
+    public ResponseTemplate getFilePathTemplate() {
+        return filePathTemplate;
+    }
+
+    /**
+     * @return the compiled template of the stubbed header value, or null if there are no template tokens
+     */
+    public ResponseTemplate getHeaderTemplate(final String headerName) {
+        return headerTemplates.get(headerName);
+    }
+
+    /**
+     * Replaces the stubbed body (i.e.: the URL to record from) with the recorded body
+     */
+    void recordBody(final String recordedBody) {
+        this.body = recordedBody;
+        this.encodedBody = encodeBody();
+    }
+
+    private EncodedBody encodeBody() {
+        final String body = getBody();
+        final boolean recordingRequired = body.regionMatches(true, 0, "http", 0, 4);
+        final ResponseTemplate template = StringUtils.isTokenized(body) ? ResponseTemplate.compile(body) : null;
+        return new EncodedBody(StringUtils.getBytesUtf8(body), template, recordingRequired);
+    }
+
+    private static boolean isLatencyNumeric(final String latency) {
+        if (StringUtils.isNotSet(latency)) {
+            return true;
+        }
         try {
-            // This checks if the 'file' key that was stubbed(!) is tokenized, i.e.:
-            // file: ../html/<% url.1 %>.html
-            return isFilePathContainTemplateTokens(file);
-        } catch (Exception e) {
+            Long.parseLong(latency.trim());
+            return true;
+        } catch (final NumberFormatException e) {
             return false;
         }
     }
 
-
-    private boolean isTemplateFile() {
+    private static boolean isBandwidthNumeric(final String bandwidth) {
+        if (StringUtils.isNotSet(bandwidth)) {
+            return true;
+        }
         try {
-            return FileUtils.isTemplateFile(file);
-        } catch (Exception e) {
+            return toBytesPerSecond(bandwidth) > 0;
+        } catch (final NumberFormatException e) {
             return false;
         }
     }
 
+    private static long toBytesPerSecond(final String bandwidth) {
+        final double kilobytesPerSecond = Double.parseDouble(bandwidth.trim());
+        if (Double.isNaN(kilobytesPerSecond) || Double.isInfinite(kilobytesPerSecond)) {
+            throw new NumberFormatException(String.format("For input string: \"%s\"", bandwidth));
+        }
+        return Math.round(kilobytesPerSecond * 1024);
+    }
 
-    private byte[] getFileBytes() {
+    private boolean isFilePathTemplate() {
         try {
-            return fileToBytes(file);
+            // This checks if the 'file' key that was stubbed(!) is tokenized, i.e.:
+            // file: ../html/<% url.1 %>.html
+            return isFilePathContainTemplateTokens(file);
         } catch (Exception e) {
-            return new byte[]{};
+            return false;
+        }
+    }
+
+    /**
+     * Looks up the stubbed 'file' content, which checks the file for modifications, so the content of a served
+     * response is looked up once per request and is passed down to whoever writes the response body.
+     *
+     * @return the stubbed 'file' content, or null if there is no file (or its path is a template), or if the file
+     * is empty or can not be read, in which case the stubbed 'body' is served instead
+     */
+    public FileContent getFileContent(final FileContentCache fileContentCache) {
+        if (isNull(file) || isNotNull(filePathTemplate)) {
+            return null;
         }
+        final FileContent fileContent = fileContentCache.get(file);
+        return isNull(fileContent) || fileContent.isEmpty() ? null : fileContent;
+    }
+
+    private static Map<String, ResponseTemplate> compileHeaderTemplates(final Map<String, String> headers) {
+        final Map<String, ResponseTemplate> headerTemplates = new HashMap<>();
+        for (final Map.Entry<String, String> headerPair : headers.entrySet()) {
+            if (headerPair.getValue() != null && StringUtils.isTokenized(headerPair.getValue())) {
+                headerTemplates.put(headerPair.getKey(), ResponseTemplate.compile(headerPair.getValue()));
+            }
+        }
+        return headerTemplates;
     }
 
     public boolean hasHeaderLocation() {
-        return getHeaders().containsKey("location");
+        return redirect;
     }
 
     void addResourceIDHeader(final int resourceIndex) {
         getHeaders().put(Common.HEADER_X_STUBBY_RESOURCE_ID, String.valueOf(resourceIndex));
     }
 
+    /**
+     * @return a copy of this response with the given resource ID header, this response is not modified
+     */
+    StubResponse withResourceIDHeader(final int resourceIndex) {
+        final Map<String, String> newHeaders = new LinkedHashMap<>(headers);
+        newHeaders.put(Common.HEADER_X_STUBBY_RESOURCE_ID, String.valueOf(resourceIndex));
+        return new StubResponse(httpStatusCode, body, file, latency, bandwidth, newHeaders);
+    }
+
     String getResourceIDHeader() {
         return getHeaders().get(Common.HEADER_X_STUBBY_RESOURCE_ID);
     }
 
+    private static final class EncodedBody {
+        private final byte[] bytes;
+        private final ByteBuffer readOnlyBuffer;
+        private final ResponseTemplate template;
+        private final boolean recordingRequired;
+
+        private EncodedBody(final byte[] bytes, final ResponseTemplate template, final boolean recordingRequired) {
+            this.bytes = bytes;
+            this.readOnlyBuffer = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+            this.template = template;
+            this.recordingRequired = recordingRequired;
+        }
+
+    }
+
     public static final class Builder extends AbstractBuilder<StubResponse> {
 
         private String status;
         private String body;
         private File file;
         private String latency;
+        private String bandwidth;
         private Map<String, String> headers;
 
         public Builder() {
@@ -161,6 +334,7 @@ public class StubResponse implements ReflectableStub {
             this.body = null;
             this.file = null;
             this.latency = null;
+            this.bandwidth = null;
             this.headers = new LinkedHashMap<>();
         }
 
@@ -206,14 +380,16 @@ public class StubResponse implements ReflectableStub {
             this.body = getStaged(String.class, BODY, body);
             this.file = getStaged(File.class, FILE, file);
             this.latency = getStaged(String.class, LATENCY, latency);
+            this.bandwidth = getStaged(String.class, BANDWIDTH, bandwidth);
             this.headers = asCheckedLinkedHashMap(getStaged(Map.class, HEADERS, headers), String.class, String.class);
 
-            final StubResponse stubResponse = new StubResponse(getHttpStatusCode(), body, file, latency, headers);
+            final StubResponse stubResponse = new StubResponse(getHttpStatusCode(), body, file, latency, bandwidth, headers);
 
             this.status = null;
             this.body = null;
             this.file = null;
             this.latency = null;
+            this.bandwidth = null;
             this.headers = new LinkedHashMap<>();
             this.fieldNameAndValues.clear();
 
@@ -1,21 +1,115 @@
 package io.github.azagniotov.stubby4j.stubs;
 
 
+import java.util.concurrent.CompletableFuture;
+
 public class StubSearchResult {
 
     private final StubRequest invariant;
     private final StubResponse match;
+    // Set instead of the match when the response is not known yet, e.g.: the request is being proxied
+    private final CompletableFuture<StubResponse> pendingMatch;
+    // Set instead of the match when the proxied response is to be streamed to the client
+    private final StreamedProxyRequest streamedProxyRequest;
+    private final StubLatencies latencies;
+    private final ResponseStatusCounts statusCounts;
 
-    StubSearchResult(final StubRequest invariant, final StubResponse match) {
+    StubSearchResult(final StubRequest invariant,
+                     final StubResponse match,
+                     final StubLatencies latencies,
+                     final ResponseStatusCounts statusCounts) {
         this.invariant = invariant;
         this.match = match;
+        this.pendingMatch = null;
+        this.streamedProxyRequest = null;
+        this.latencies = latencies;
+        this.statusCounts = statusCounts;
+    }
+
+    StubSearchResult(final StubRequest invariant,
+                     final CompletableFuture<StubResponse> pendingMatch,
+                     final StubLatencies latencies,
+                     final ResponseStatusCounts statusCounts) {
+        this.invariant = invariant;
+        this.match = null;
+        this.pendingMatch = pendingMatch;
+        this.streamedProxyRequest = null;
+        this.latencies = latencies;
+        this.statusCounts = statusCounts;
+    }
+
+    StubSearchResult(final StubRequest invariant,
+                     final StreamedProxyRequest streamedProxyRequest,
+                     final StubLatencies latencies,
+                     final ResponseStatusCounts statusCounts) {
+        this.invariant = invariant;
+        this.match = null;
+        this.pendingMatch = null;
+        this.streamedProxyRequest = streamedProxyRequest;
+        this.latencies = latencies;
+        this.statusCounts = statusCounts;
     }
 
     public StubRequest getInvariant() {
         return invariant;
     }
 
+    /**
+     * @return the response to the incoming request. If the response is still pending (see {@link #isPending()}),
+     * blocks until it is known. If the proxied response is to be streamed (see {@link #isStreamed()}), the response
+     * is received in full instead
+     */
     public StubResponse getMatch() {
-        return match;
+        if (match != null) {
+            return match;
+        }
+        return pendingMatch != null ? pendingMatch.join() : streamedProxyRequest.buffered().join();
+    }
+
+    /**
+     * @return whether the incoming request is to be proxied to a streaming proxy config, in which case
+     * the proxied response should be piped to the client using {@link #getStreamedProxyRequest()}
+     */
+    public boolean isStreamed() {
+        return streamedProxyRequest != null;
+    }
+
+    public StreamedProxyRequest getStreamedProxyRequest() {
+        return streamedProxyRequest;
+    }
+
+    /**
+     * @return whether the response to the incoming request is not known yet, e.g.: the request is being proxied
+     */
+    public boolean isPending() {
+        return pendingMatch != null && !pendingMatch.isDone();
+    }
+
+    /**
+     * Runs the given callback once the response to the incoming request is known, on the thread that completes
+     * the response, or right away on the calling thread if the response is already known
+     */
+    public void whenMatched(final Runnable callback) {
+        if (pendingMatch == null) {
+            callback.run();
+        } else {
+            pendingMatch.whenComplete((response, failure) -> callback.run());
+        }
+    }
+
+    /**
+     * Records the latency of serving the incoming request into the latencies of the matched stub (if any),
+     * and into the latencies of all requests
+     */
+    public void recordLatency(final StubLatencies.Phase phase, final long nanos) {
+        latencies.record(phase, nanos);
+    }
+
+    /**
+     * Counts the status code of the response served to the incoming request, against the matched stub (if any),
+     * or against the proxied or the unmatched requests
+     */
+    public void recordStatus(final int status) {
+        statusCounts.count(status);
     }
 }
@@ -0,0 +1,368 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+
+import io.github.azagniotov.stubby4j.stubs.proxy.StubProxyConfig;
+import io.github.azagniotov.stubby4j.utils.FileUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hit counters, {@link ResponseStatusCounts response status counts} and {@link StubLatencies latencies} of the stubs,
+ * and hit counters of the proxy configs of a {@link StubRepositorySnapshot}. The counters of a stub are looked up by
+ * the position of the stub among the loaded stubs (see {@link StubHttpLifecycle#getResourceIndex()}), so counting
+ * a hit neither allocates nor takes a lock. The counters are {@link LongAdder}s, which are striped internally, so
+ * the Jetty worker threads serving the same stub do not contend on a single counter.
+ * <p>
+ * When a snapshot is derived from another one (e.g.: a stub is updated via the admin API), the counters and the
+ * latencies of the stubs and the proxy configs that are still loaded are carried over into the new snapshot, i.e.:
+ * they keep counting. A stub that moved to another position is a copy of the loaded stub, which shares its
+ * {@link StubRequest} (see {@link StubHttpLifecycle#withResourceId(int)}), so the counters follow the request.
+ * The stubs reloaded from YAML are parsed anew, so their counters follow the YAML of the stub instead
+ * (see {@link StubHttpLifecycle#getCompleteYaml()}): a stub that was not changed keeps counting, a stub that
+ * was changed starts over.
+ */
+final class StubStats {
+
+    private static final String NULL = "null";
+    private static final char CSV_QUOTE = '"';
+    private static final String CSV_SEPARATOR = ",";
+
+    private final List<StubHttpLifecycle> stubs;
+    private final StubCounters[] stubCounters;
+    private final Map<String, StubProxyConfig> proxyConfigs;
+    private final Map<String, LongAdder> proxyHits;
+
+    StubStats(final List<StubHttpLifecycle> stubs,
+              final Map<String, StubProxyConfig> proxyConfigs,
+              final StubStats previous) {
+        this.stubs = stubs;
+        this.stubCounters = new StubCounters[stubs.size()];
+        this.proxyConfigs = proxyConfigs;
+
+        if (previous != null) {
+            carryOverStubCounters(previous);
+        }
+        for (int index = 0; index < stubCounters.length; index++) {
+            if (stubCounters[index] == null) {
+                stubCounters[index] = new StubCounters();
+            }
+        }
+
+        // Sorted by UUID, so that the stats are always listed in the same order
+        final Map<String, LongAdder> newProxyHits = new LinkedHashMap<>();
+        for (final String proxyConfigUuid : new TreeSet<>(proxyConfigs.keySet())) {
+            final LongAdder carriedOver = previous == null ? null : previous.proxyHits.get(proxyConfigUuid);
+            newProxyHits.put(proxyConfigUuid, carriedOver == null ? new LongAdder() : carriedOver);
+        }
+        this.proxyHits = Collections.unmodifiableMap(newProxyHits);
+    }
+
+    private void carryOverStubCounters(final StubStats previous) {
+        final Map<StubRequest, Integer> previousIndexes = new IdentityHashMap<>();
+        for (int index = 0; index < previous.stubCounters.length; index++) {
+            previousIndexes.put(previous.stubs.get(index).getRequest(), index);
+        }
+
+        final boolean[] carriedOver = new boolean[previous.stubCounters.length];
+        for (int index = 0; index < stubCounters.length; index++) {
+            final Integer previousIndex = previousIndexes.get(stubs.get(index).getRequest());
+            if (previousIndex != null && !carriedOver[previousIndex]) {
+                stubCounters[index] = previous.stubCounters[previousIndex];
+                carriedOver[previousIndex] = true;
+            }
+        }
+
+        // Identical stubs are told apart by their order
+        final Map<String, Deque<Integer>> previousIndexesByYaml = new HashMap<>();
+        for (int index = 0; index < previous.stubCounters.length; index++) {
+            final String completeYaml = previous.stubs.get(index).getCompleteYaml();
+            if (!carriedOver[index] && completeYaml != null) {
+                previousIndexesByYaml.computeIfAbsent(completeYaml, yaml -> new ArrayDeque<>()).add(index);
+            }
+        }
+        for (int index = 0; index < stubCounters.length; index++) {
+            final String completeYaml = stubs.get(index).getCompleteYaml();
+            if (stubCounters[index] != null || completeYaml == null) {
+                continue;
+            }
+            final Deque<Integer> sameYamlIndexes = previousIndexesByYaml.get(completeYaml);
+            final Integer previousIndex = sameYamlIndexes == null ? null : sameYamlIndexes.poll();
+            if (previousIndex != null) {
+                stubCounters[index] = previous.stubCounters[previousIndex];
+            }
+        }
+    }
+
+    void countStubHit(final StubHttpLifecycle stub) {
+        final int index = indexOf(stub);
+        if (index >= 0) {
+            stubCounters[index].hits.increment();
+        }
+    }
+
+    /**
+     * @param stub         a loaded stub
+     * @param allLatencies the latencies of all requests
+     * @return the latencies of the given stub, which also record into the given latencies of all requests,
+     * or the latencies of all requests if the stub is not loaded
+     */
+    StubLatencies getStubLatencies(final StubHttpLifecycle stub, final StubLatencies allLatencies) {
+        final int index = indexOf(stub);
+        return index < 0 ? allLatencies : stubCounters[index].getLatencies(allLatencies);
+    }
+
+    /**
+     * @param stub              a loaded stub
+     * @param unmatchedStatuses the response status counts of the requests that did not match any stub
+     * @return the response status counts of the given stub, or the given counts if the stub is not loaded
+     */
+    ResponseStatusCounts getStubStatuses(final StubHttpLifecycle stub, final ResponseStatusCounts unmatchedStatuses) {
+        final int index = indexOf(stub);
+        return index < 0 ? unmatchedStatuses : stubCounters[index].getStatuses();
+    }
+
+    private int indexOf(final StubHttpLifecycle stub) {
+        final int index = stub.getResourceIndex();
+        if (index >= 0 && index < stubCounters.length && stubs.get(index) == stub) {
+            return index;
+        }
+
+        // The position of the stub is not known, e.g.: the stub was appended to the loaded stubs as it was parsed
+        for (int idx = 0; idx < stubCounters.length; idx++) {
+            if (stubs.get(idx) == stub) {
+                return idx;
+            }
+        }
+        return -1;
+    }
+
+    void countProxyHit(final String proxyConfigUuid) {
+        final LongAdder hits = proxyHits.get(proxyConfigUuid);
+        if (hits != null) {
+            hits.increment();
+        }
+    }
+
+    int getStubCount() {
+        return stubCounters.length;
+    }
+
+    /**
+     * @return the UUID of the stub at the given position, or its resource ID if it has no UUID. Unlike the resource ID,
+     * the UUID does not change when the stubs before it are deleted, so it identifies the stub across snapshots
+     */
+    String getStubId(final int index) {
+        final String uuid = stubs.get(index).getUUID();
+        return uuid == null ? String.valueOf(index) : uuid;
+    }
+
+    long getStubHits(final int index) {
+        return stubCounters[index].hits.sum();
+    }
+
+    /**
+     * @return the response status counts of the stub at the given position, or null if it did not serve any request yet
+     */
+    ResponseStatusCounts getStubStatuses(final int index) {
+        return stubCounters[index].statuses;
+    }
+
+    Map<String, LongAdder> getProxyHits() {
+        return proxyHits;
+    }
+
+    long getProxyHits(final String proxyConfigUuid) {
+        final LongAdder hits = proxyHits.get(proxyConfigUuid);
+        return hits == null ? 0L : hits.sum();
+    }
+
+    /**
+     * @return the number of hits of every stub that was hit at least once, keyed by the resource ID of the stub
+     */
+    Map<String, Long> getResourceHits() {
+        final Map<String, Long> resourceHits = new LinkedHashMap<>();
+        for (int index = 0; index < stubCounters.length; index++) {
+            final long hits = stubCounters[index].hits.sum();
+            if (hits > 0) {
+                resourceHits.put(String.valueOf(index), hits);
+            }
+        }
+        return resourceHits;
+    }
+
+    /**
+     * @param reset whether to report the latencies recorded since the previous reset, see {@link StubLatencies#toJson(boolean)}
+     * @return the latencies of every stub that served at least one request
+     */
+    JSONArray latenciesToJson(final boolean reset) {
+        final JSONArray json = new JSONArray();
+        for (int index = 0; index < stubCounters.length; index++) {
+            final StubLatencies latencies = stubCounters[index].latencies;
+            if (latencies == null) {
+                continue;
+            }
+            final StubHttpLifecycle stub = stubs.get(index);
+            json.put(new JSONObject()
+                    .put("resourceId", index)
+                    .put("uuid", stub.getUUID() == null ? JSONObject.NULL : stub.getUUID())
+                    .put("url", stub.getUrl())
+                    .put("latencies", latencies.toJson(reset)));
+        }
+        return json;
+    }
+
+    /**
+     * Writes the stats as a JSON object, e.g.:
+     * <pre>
+     * {"stubs":[{"resourceId":0,"uuid":null,"url":"/item/1","hits":7}],
+     *  "proxyConfigs":[{"uuid":"default","endpoint":"https://example.com","hits":2,"coalesced":1,"inFlight":0}],
+     *  "misses":3}
+     * </pre>
+     * The output is written as it is produced, the stats are not collected into an intermediate document.
+     *
+     * @param coalescers the coalescers of the proxy configs keyed by their UUIDs, only the proxy configs that have
+     *                   coalesced requests have the {@code coalesced} and {@code inFlight} fields
+     */
+    void writeJson(final Appendable output, final long misses, final Map<String, ProxyRequestCoalescer> coalescers) throws IOException {
+        output.append("{\"stubs\":[");
+        for (int index = 0; index < stubCounters.length; index++) {
+            final StubHttpLifecycle stub = stubs.get(index);
+            output.append(index == 0 ? "{" : ",{")
+                    .append("\"resourceId\":").append(String.valueOf(index))
+                    .append(",\"uuid\":").append(jsonString(stub.getUUID()))
+                    .append(",\"url\":").append(jsonString(stub.getUrl()))
+                    .append(",\"hits\":").append(String.valueOf(stubCounters[index].hits.sum()))
+                    .append('}');
+        }
+
+        output.append("],\"proxyConfigs\":[");
+        boolean first = true;
+        for (final Map.Entry<String, LongAdder> entry : proxyHits.entrySet()) {
+            output.append(first ? "{" : ",{")
+                    .append("\"uuid\":").append(jsonString(entry.getKey()))
+                    .append(",\"endpoint\":").append(jsonString(proxyConfigs.get(entry.getKey()).getPropertyEndpoint()))
+                    .append(",\"hits\":").append(String.valueOf(entry.getValue().sum()));
+            final ProxyRequestCoalescer coalescer = coalescers.get(entry.getKey());
+            if (coalescer != null) {
+                output.append(",\"coalesced\":").append(String.valueOf(coalescer.getCoalesced()))
+                        .append(",\"inFlight\":").append(String.valueOf(coalescer.getInFlight()));
+            }
+            output.append('}');
+            first = false;
+        }
+
+        output.append("],\"misses\":").append(String.valueOf(misses)).append('}');
+    }
+
+    /**
+     * Writes the stats as CSV, one row per stub and per proxy config, followed by the row of the misses, e.g.:
+     * <pre>
+     * type,id,url,hits
+     * stub,0,/item/1,7
+     * proxy,default,https://example.com,2
+     * miss,,,3
+     * </pre>
+     */
+    void writeCsv(final Appendable output, final long misses) throws IOException {
+        output.append("type,id,url,hits").append(FileUtils.BR);
+        for (int index = 0; index < stubCounters.length; index++) {
+            output.append("stub").append(CSV_SEPARATOR)
+                    .append(String.valueOf(index)).append(CSV_SEPARATOR);
+            appendCsvField(output, stubs.get(index).getUrl());
+            output.append(CSV_SEPARATOR).append(String.valueOf(stubCounters[index].hits.sum())).append(FileUtils.BR);
+        }
+
+        for (final Map.Entry<String, LongAdder> entry : proxyHits.entrySet()) {
+            output.append("proxy").append(CSV_SEPARATOR);
+            appendCsvField(output, entry.getKey());
+            output.append(CSV_SEPARATOR);
+            appendCsvField(output, proxyConfigs.get(entry.getKey()).getPropertyEndpoint());
+            output.append(CSV_SEPARATOR).append(String.valueOf(entry.getValue().sum())).append(FileUtils.BR);
+        }
+
+        output.append("miss,,,").append(String.valueOf(misses)).append(FileUtils.BR);
+    }
+
+    private static String jsonString(final String value) {
+        return value == null ? NULL : JSONObject.quote(value);
+    }
+
+    private static void appendCsvField(final Appendable output, final String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+
+        boolean quote = false;
+        for (int idx = 0; idx < value.length() && !quote; idx++) {
+            final char character = value.charAt(idx);
+            quote = character == ',' || character == CSV_QUOTE || character == '\n' || character == '\r';
+        }
+
+        if (!quote) {
+            output.append(value);
+            return;
+        }
+
+        output.append(CSV_QUOTE);
+        for (int idx = 0; idx < value.length(); idx++) {
+            final char character = value.charAt(idx);
+            if (character == CSV_QUOTE) {
+                output.append(CSV_QUOTE);
+            }
+            output.append(character);
+        }
+        output.append(CSV_QUOTE);
+    }
+
+    /**
+     * The counters of a single stub. The latencies and the response status counts are only allocated
+     * once the stub serves a request, as most of the loaded stubs may never be hit.
+     */
+    private static final class StubCounters {
+        private final LongAdder hits;
+        private volatile StubLatencies latencies;
+        private volatile ResponseStatusCounts statuses;
+
+        private StubCounters() {
+            this.hits = new LongAdder();
+        }
+
+        private StubLatencies getLatencies(final StubLatencies allLatencies) {
+            StubLatencies current = latencies;
+            if (current == null) {
+                synchronized (this) {
+                    if (latencies == null) {
+                        latencies = new StubLatencies(allLatencies);
+                    }
+                    current = latencies;
+                }
+            }
+            return current;
+        }
+
+        private ResponseStatusCounts getStatuses() {
+            ResponseStatusCounts current = statuses;
+            if (current == null) {
+                synchronized (this) {
+                    if (statuses == null) {
+                        statuses = new ResponseStatusCounts();
+                    }
+                    current = statuses;
+                }
+            }
+            return current;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A character trie over the literal prefixes of regex URLs (see {@link RegexParser#literalPrefix(String)}), which
+ * pre-filters the stubs whose regex URL can potentially match the incoming URL in a single walk over the
+ * incoming URL characters, instead of trying every regex URL in turn.
+ * <p>
+ * The trie is populated once at load time and is not modified after it was handed over to the {@link StubIndex}.
+ */
+final class UrlPrefixTrie {
+
+    private static final int[] NO_INDICES = new int[]{};
+
+    private final Node root;
+
+    UrlPrefixTrie() {
+        this.root = new Node();
+    }
+
+    void add(final String literalPrefix, final int stubIndex) {
+        Node currentNode = root;
+        for (int idx = 0; idx < literalPrefix.length(); idx++) {
+            currentNode = currentNode.children.computeIfAbsent(literalPrefix.charAt(idx), key -> new Node());
+        }
+        currentNode.indices = Arrays.copyOf(currentNode.indices, currentNode.indices.length + 1);
+        currentNode.indices[currentNode.indices.length - 1] = stubIndex;
+    }
+
+    /**
+     * Collects the stub indices of all the prefixes that the given URL starts with
+     *
+     * @param url     incoming URL, may be null
+     * @param buckets where the found stub indices are added to
+     */
+    void collect(final String url, final List<int[]> buckets) {
+        Node currentNode = root;
+        addIfNotEmpty(currentNode, buckets);
+
+        if (url == null) {
+            return;
+        }
+
+        for (int idx = 0; idx < url.length(); idx++) {
+            currentNode = currentNode.children.get(url.charAt(idx));
+            if (currentNode == null) {
+                return;
+            }
+            addIfNotEmpty(currentNode, buckets);
+        }
+    }
+
+    private static void addIfNotEmpty(final Node node, final List<int[]> buckets) {
+        if (node.indices.length > 0) {
+            buckets.add(node.indices);
+        }
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private int[] indices = NO_INDICES;
+    }
+}
@@ -0,0 +1,226 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * An XML request body parsed into a DOM {@link Document}, together with its canonical form, i.e.: comments
+ * dropped, whitespace normalized, attributes sorted and namespace prefixes replaced with namespace URIs. The XML
+ * declaration and the DOCTYPE, including its public and system identifiers, are a part of the canonical form. Two
+ * bodies with the same canonical form are similar under the XMLUnit comparison that {@link StubMatcher} runs,
+ * so the equality of the canonical forms is checked before running the comparison.
+ * <p>
+ * A DOM {@link Document} is not safe to be read by multiple threads at once, so instead of sharing one document,
+ * an {@link XmlBody} keeps a pool of identical parsed documents, which grows only as large as the number of threads
+ * that concurrently compare the body. The documents are parsed using thread-confined {@link DocumentBuilder}s.
+ */
+final class XmlBody {
+
+    static final XmlBody NOT_XML = new XmlBody(null, null, false);
+
+    private static final String PLACEHOLDER_PREFIX = "xmlunit.";
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDERS = ThreadLocal.withInitial(XmlBody::newDocumentBuilder);
+
+    private final String source;
+    private final String canonical;
+    private final int canonicalHash;
+    private final boolean placeholders;
+    private final Queue<Document> documents;
+
+    private XmlBody(final String source, final Document document, final boolean placeholders) {
+        this.source = source;
+        this.canonical = document == null ? null : canonicalize(document);
+        this.canonicalHash = canonical == null ? 0 : canonical.hashCode();
+        this.placeholders = placeholders;
+        this.documents = new ConcurrentLinkedQueue<>();
+        if (document != null) {
+            this.documents.offer(document);
+        }
+    }
+
+    /**
+     * @param body request body
+     * @return the parsed body, or {@link #NOT_XML} if the body is not well-formed XML
+     */
+    static XmlBody parse(final String body) {
+        if (body == null) {
+            return NOT_XML;
+        }
+
+        try {
+            return new XmlBody(body, parseDocument(body), body.contains(PLACEHOLDER_PREFIX));
+        } catch (final Exception e) {
+            return NOT_XML;
+        }
+    }
+
+    boolean isXml() {
+        return source != null;
+    }
+
+    /**
+     * @return true if the body may have XMLUnit placeholders, e.g.: ${xmlunit.matchesRegex(..)}
+     */
+    boolean hasPlaceholders() {
+        return placeholders;
+    }
+
+    String getCanonical() {
+        return canonical;
+    }
+
+    boolean canonicallyEquals(final XmlBody that) {
+        return this.canonicalHash == that.canonicalHash && this.canonical.equals(that.canonical);
+    }
+
+    /**
+     * Takes a parsed document out of the pool, the document must be returned with {@link #release(Document)}
+     * once the caller is done with it
+     */
+    Document acquire() throws Exception {
+        final Document document = documents.poll();
+        return document != null ? document : parseDocument(source);
+    }
+
+    void release(final Document document) {
+        documents.offer(document);
+    }
+
+    private static Document parseDocument(final String body) throws Exception {
+        final DocumentBuilder documentBuilder = DOCUMENT_BUILDERS.get();
+        try {
+            return documentBuilder.parse(new InputSource(new StringReader(body)));
+        } finally {
+            documentBuilder.reset();
+        }
+    }
+
+    private static DocumentBuilder newDocumentBuilder() {
+        try {
+            // The same safe defaults that XMLUnit uses, when it parses the documents itself
+            final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+            documentBuilderFactory.setNamespaceAware(true);
+            documentBuilderFactory.setExpandEntityReferences(false);
+            documentBuilderFactory.setXIncludeAware(false);
+            documentBuilderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            setFeatureIfSupported(documentBuilderFactory, "http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            setFeatureIfSupported(documentBuilderFactory, "http://xml.org/sax/features/external-general-entities", false);
+            setFeatureIfSupported(documentBuilderFactory, "http://xml.org/sax/features/external-parameter-entities", false);
+
+            final DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
+            // Do not let the parser print the parsing errors to the console
+            documentBuilder.setErrorHandler(null);
+            return documentBuilder;
+        } catch (final ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void setFeatureIfSupported(final DocumentBuilderFactory documentBuilderFactory, final String feature, final boolean value) {
+        try {
+            documentBuilderFactory.setFeature(feature, value);
+        } catch (final ParserConfigurationException e) {
+            // Not supported by the underlying parser implementation
+        }
+    }
+
+    private static String canonicalize(final Document document) {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("<?xml version=").append(quoted(document.getXmlVersion()))
+                .append(" encoding=").append(quoted(document.getXmlEncoding()))
+                .append(" standalone=").append(quoted(document.getXmlStandalone() ? "yes" : "no"))
+                .append("?>");
+
+        final DocumentType documentType = document.getDoctype();
+        if (documentType != null) {
+            builder.append("<!DOCTYPE ").append(documentType.getName())
+                    .append(" PUBLIC ").append(quoted(documentType.getPublicId()))
+                    .append(" SYSTEM ").append(quoted(documentType.getSystemId()))
+                    .append('>');
+        }
+        canonicalize(document.getDocumentElement(), builder);
+        return builder.toString();
+    }
+
+    private static void canonicalize(final Node node, final StringBuilder builder) {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                builder.append('<').append(qualifiedName(node));
+                for (final String attribute : canonicalAttributes(node.getAttributes())) {
+                    builder.append(' ').append(attribute);
+                }
+                builder.append('>');
+
+                final NodeList childNodes = node.getChildNodes();
+                for (int idx = 0; idx < childNodes.getLength(); idx++) {
+                    canonicalize(childNodes.item(idx), builder);
+                }
+
+                builder.append("</").append(qualifiedName(node)).append('>');
+                break;
+            case Node.TEXT_NODE:
+            case Node.CDATA_SECTION_NODE:
+                // Text and CDATA nodes are similar, and the whitespace-only text nodes are dropped by the comparison
+                final String normalizedText = node.getNodeValue().trim().replaceAll("\\s+", " ");
+                if (!normalizedText.isEmpty()) {
+                    builder.append(quoted(normalizedText));
+                }
+                break;
+            case Node.PROCESSING_INSTRUCTION_NODE:
+                builder.append("<?").append(node.getNodeName()).append(' ').append(node.getNodeValue()).append("?>");
+                break;
+            case Node.ENTITY_REFERENCE_NODE:
+                // Entity references are not expanded
+                builder.append('&').append(node.getNodeName()).append(';');
+                break;
+            default:
+                // Comments are ignored by the comparison
+                break;
+        }
+    }
+
+    private static List<String> canonicalAttributes(final NamedNodeMap attributes) {
+        final List<String> canonicalAttributes = new ArrayList<>(attributes.getLength());
+        for (int idx = 0; idx < attributes.getLength(); idx++) {
+            final Attr attribute = (Attr) attributes.item(idx);
+            if (!XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI())) {
+                canonicalAttributes.add(qualifiedName(attribute) + "=" + quoted(attribute.getValue()));
+            }
+        }
+        Collections.sort(canonicalAttributes);
+        return canonicalAttributes;
+    }
+
+    /**
+     * Quotes the given value, escaping the backslashes before the quotes, so that a value ending with a backslash
+     * can not be mistaken for an escaped quote. A null value is written as null, unquoted.
+     */
+    private static String quoted(final String value) {
+        if (value == null) {
+            return "null";
+        }
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    private static String qualifiedName(final Node node) {
+        final String localName = node.getLocalName() != null ? node.getLocalName() : node.getNodeName();
+        return node.getNamespaceURI() != null ? "{" + node.getNamespaceURI() + "}" + localName : localName;
+    }
+}
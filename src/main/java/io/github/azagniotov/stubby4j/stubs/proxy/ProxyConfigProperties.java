@@ -0,0 +1,41 @@
+package io.github.azagniotov.stubby4j.stubs.proxy;
+
+import io.github.azagniotov.stubby4j.utils.StringUtils;
+
+import java.util.Map;
+
+/**
+ * Reads the typed values of the proxy config properties, which are all parsed from YAML as strings
+ */
+final class ProxyConfigProperties {
+
+    private ProxyConfigProperties() {
+
+    }
+
+    /**
+     * @throws IllegalArgumentException if the property is set to a value that is not a number
+     */
+    static long parseLong(final Map<String, String> properties, final String propertyName, final long defaultValue) {
+        final String value = properties.get(propertyName);
+        if (StringUtils.isNotSet(value)) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Proxy config property '%s' must be a number, got '%s'", propertyName, value));
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the property is set to a value that is not a number, or to a negative number
+     */
+    static long parseNonNegativeLong(final Map<String, String> properties, final String propertyName, final long defaultValue) {
+        final long value = parseLong(properties, propertyName, defaultValue);
+        if (value < 0) {
+            throw new IllegalArgumentException(String.format("Proxy config property '%s' must not be negative, got '%s'", propertyName, value));
+        }
+        return value;
+    }
+}
@@ -0,0 +1,169 @@
+package io.github.azagniotov.stubby4j.stubs.proxy;
+
+import io.github.azagniotov.stubby4j.utils.StringUtils;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.azagniotov.stubby4j.stubs.proxy.ProxyConfigProperties.parseLong;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.CACHE_KEY;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.CACHE_KEY_HEADERS;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.CACHE_MAX_BYTES;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.CACHE_MAX_ENTRIES;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.CACHE_TTL_SECONDS;
+
+/**
+ * The settings of the proxy response cache of a {@link StubProxyConfig}, read from the proxy config properties, e.g.:
+ * <pre>
+ * - proxy-config:
+ *     properties:
+ *       endpoint: https://jsonplaceholder.typicode.com
+ *       cache-ttl-seconds: 300
+ *       cache-max-entries: 1000
+ *       cache-max-bytes: 16777216
+ *       cache-key: method, path, query, body
+ *       cache-key-headers: accept, accept-language
+ * </pre>
+ * The cache is enabled by a positive {@code cache-ttl-seconds}. The cache key is made of the request fields listed
+ * in {@code cache-key} ({@code method}, {@code path}, {@code query} and {@code body}, by default all but the body),
+ * and of the values of the request headers listed in {@code cache-key-headers} (by default {@code authorization}
+ * and {@code cookie}, so that the responses to one user are never served to another). The request body is keyed by
+ * its SHA-256 digest.
+ * <p>
+ * Every response that the proxy config endpoint answers with is cached, client errors (4xx) included, as they are
+ * the answer of the endpoint to the keyed request. The responses to the failed proxied requests and the server
+ * errors (5xx) are not cached. A streaming proxy config can not cache, see {@link StubProxyConfig#isStreaming()}.
+ */
+public final class StubProxyCacheConfig {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024L * 1024L;
+
+    private static final String KEY_FIELD_METHOD = "method";
+    private static final String KEY_FIELD_PATH = "path";
+    private static final String KEY_FIELD_QUERY = "query";
+    private static final String KEY_FIELD_BODY = "body";
+
+    private static final String DEFAULT_KEY_FIELDS = "method, path, query";
+    // The responses to different users are never shared, unless the proxy config says otherwise
+    private static final String DEFAULT_KEY_HEADERS = "authorization, cookie";
+
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final boolean keyMethod;
+    private final boolean keyPath;
+    private final boolean keyQuery;
+    private final boolean keyBody;
+    private final Set<String> keyHeaders;
+
+    private StubProxyCacheConfig(final long ttlMillis,
+                                 final int maxEntries,
+                                 final long maxBytes,
+                                 final Set<String> keyFields,
+                                 final Set<String> keyHeaders) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.keyMethod = keyFields.contains(KEY_FIELD_METHOD);
+        this.keyPath = keyFields.contains(KEY_FIELD_PATH);
+        this.keyQuery = keyFields.contains(KEY_FIELD_QUERY);
+        this.keyBody = keyFields.contains(KEY_FIELD_BODY);
+        this.keyHeaders = Collections.unmodifiableSet(keyHeaders);
+    }
+
+    /**
+     * @return the cache settings, or null if the cache is not enabled by the given proxy config properties
+     * @throws IllegalArgumentException if a cache property has an invalid value
+     */
+    static StubProxyCacheConfig fromProperties(final Map<String, String> properties) {
+        final long ttlSeconds = parseLong(properties, CACHE_TTL_SECONDS.toString(), 0L);
+        if (ttlSeconds <= 0) {
+            return null;
+        }
+
+        final long maxEntries = parseLong(properties, CACHE_MAX_ENTRIES.toString(), DEFAULT_MAX_ENTRIES);
+        final long maxBytes = parseLong(properties, CACHE_MAX_BYTES.toString(), DEFAULT_MAX_BYTES);
+        if (maxEntries <= 0 || maxEntries > Integer.MAX_VALUE || maxBytes <= 0) {
+            throw new IllegalArgumentException(String.format("Proxy config cache limits must be positive, got %s entries and %s bytes", maxEntries, maxBytes));
+        }
+
+        final Set<String> keyFields = new TreeSet<>();
+        for (final String keyField : StringUtils.splitCsv(properties.getOrDefault(CACHE_KEY.toString(), DEFAULT_KEY_FIELDS))) {
+            final String field = StringUtils.toLower(keyField);
+            if (!field.equals(KEY_FIELD_METHOD) && !field.equals(KEY_FIELD_PATH) && !field.equals(KEY_FIELD_QUERY) && !field.equals(KEY_FIELD_BODY)) {
+                throw new IllegalArgumentException(String.format("Unknown proxy config cache key field '%s'", keyField));
+            }
+            keyFields.add(field);
+        }
+
+        // The incoming request header names are lower case, see StubRequest#getHeaders()
+        final Set<String> keyHeaders = new TreeSet<>();
+        for (final String keyHeader : StringUtils.splitCsv(properties.getOrDefault(CACHE_KEY_HEADERS.toString(), DEFAULT_KEY_HEADERS))) {
+            if (StringUtils.isSet(keyHeader)) {
+                keyHeaders.add(StringUtils.toLower(keyHeader));
+            }
+        }
+
+        return new StubProxyCacheConfig(TimeUnit.SECONDS.toMillis(ttlSeconds), (int) maxEntries, maxBytes, keyFields, keyHeaders);
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public boolean isKeyMethod() {
+        return keyMethod;
+    }
+
+    public boolean isKeyPath() {
+        return keyPath;
+    }
+
+    public boolean isKeyQuery() {
+        return keyQuery;
+    }
+
+    public boolean isKeyBody() {
+        return keyBody;
+    }
+
+    /**
+     * @return the lower case names of the request headers whose values are part of the cache key
+     */
+    public Set<String> getKeyHeaders() {
+        return keyHeaders;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof StubProxyCacheConfig)) return false;
+        final StubProxyCacheConfig that = (StubProxyCacheConfig) o;
+        return ttlMillis == that.ttlMillis &&
+                maxEntries == that.maxEntries &&
+                maxBytes == that.maxBytes &&
+                keyMethod == that.keyMethod &&
+                keyPath == that.keyPath &&
+                keyQuery == that.keyQuery &&
+                keyBody == that.keyBody &&
+                keyHeaders.equals(that.keyHeaders);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(ttlMillis, maxEntries, maxBytes, keyMethod, keyPath, keyQuery, keyBody, keyHeaders);
+    }
+}
@@ -0,0 +1,116 @@
+package io.github.azagniotov.stubby4j.stubs.proxy;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.azagniotov.stubby4j.stubs.proxy.ProxyConfigProperties.parseNonNegativeLong;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.CIRCUIT_BREAKER_ERROR_RATE;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.CIRCUIT_BREAKER_LATENCY_MILLIS;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.CIRCUIT_BREAKER_OPEN_SECONDS;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.CIRCUIT_BREAKER_WINDOW;
+
+/**
+ * The settings of the circuit breaker of a {@link StubProxyConfig}, read from the proxy config properties, e.g.:
+ * <pre>
+ * - proxy-config:
+ *     properties:
+ *       endpoint: https://jsonplaceholder.typicode.com
+ *       circuit-breaker-error-rate: 50
+ *       circuit-breaker-latency-millis: 2000
+ *       circuit-breaker-window: 20
+ *       circuit-breaker-open-seconds: 30
+ *       fast-fail-status: 503
+ * </pre>
+ * The circuit breaker is enabled by either {@code circuit-breaker-error-rate} or {@code circuit-breaker-latency-millis}.
+ * A proxied request fails if it could not be sent or if its response is a server error, or if it took longer than
+ * {@code circuit-breaker-latency-millis}. Once the percentage of the failed requests out of the last
+ * {@code circuit-breaker-window} requests reaches {@code circuit-breaker-error-rate} (50 by default), the breaker
+ * trips: the requests are not proxied but fail fast with the {@code fast-fail-status} for
+ * {@code circuit-breaker-open-seconds}. Then, a single trial request is proxied, which closes the breaker if it
+ * succeeds, or trips it again if it fails.
+ */
+public final class StubProxyCircuitBreakerConfig {
+
+    public static final int DEFAULT_ERROR_RATE_PERCENT = 50;
+    public static final int DEFAULT_WINDOW = 20;
+    public static final long DEFAULT_OPEN_SECONDS = 30L;
+
+    private final int errorRatePercent;
+    private final long latencyMillis;
+    private final int window;
+    private final long openMillis;
+
+    private StubProxyCircuitBreakerConfig(final int errorRatePercent,
+                                          final long latencyMillis,
+                                          final int window,
+                                          final long openMillis) {
+        this.errorRatePercent = errorRatePercent;
+        this.latencyMillis = latencyMillis;
+        this.window = window;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * @return the circuit breaker settings, or null if the circuit breaker is not enabled by the given proxy config properties
+     * @throws IllegalArgumentException if a circuit breaker property has an invalid value
+     */
+    static StubProxyCircuitBreakerConfig fromProperties(final Map<String, String> properties) {
+        if (!properties.containsKey(CIRCUIT_BREAKER_ERROR_RATE.toString()) && !properties.containsKey(CIRCUIT_BREAKER_LATENCY_MILLIS.toString())) {
+            return null;
+        }
+
+        final long errorRatePercent = parseNonNegativeLong(properties, CIRCUIT_BREAKER_ERROR_RATE.toString(), DEFAULT_ERROR_RATE_PERCENT);
+        if (errorRatePercent < 1 || errorRatePercent > 100) {
+            throw new IllegalArgumentException(String.format("Proxy config circuit breaker error rate must be a percentage between 1 and 100, got %s", errorRatePercent));
+        }
+
+        final long window = parseNonNegativeLong(properties, CIRCUIT_BREAKER_WINDOW.toString(), DEFAULT_WINDOW);
+        final long openSeconds = parseNonNegativeLong(properties, CIRCUIT_BREAKER_OPEN_SECONDS.toString(), DEFAULT_OPEN_SECONDS);
+        if (window == 0 || window > Integer.MAX_VALUE || openSeconds == 0) {
+            throw new IllegalArgumentException(String.format("Proxy config circuit breaker window and open duration must be positive, got %s requests and %s seconds", window, openSeconds));
+        }
+
+        final long latencyMillis = parseNonNegativeLong(properties, CIRCUIT_BREAKER_LATENCY_MILLIS.toString(), 0L);
+
+        return new StubProxyCircuitBreakerConfig((int) errorRatePercent, latencyMillis, (int) window, TimeUnit.SECONDS.toMillis(openSeconds));
+    }
+
+    public int getErrorRatePercent() {
+        return errorRatePercent;
+    }
+
+    /**
+     * @return the latency above which a proxied request is counted as failed, or zero if the latency is not considered
+     */
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * @return the number of the most recent proxied requests that the error rate is computed over
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    public long getOpenMillis() {
+        return openMillis;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (!(o instanceof StubProxyCircuitBreakerConfig)) return false;
+        final StubProxyCircuitBreakerConfig that = (StubProxyCircuitBreakerConfig) o;
+        return errorRatePercent == that.errorRatePercent &&
+                latencyMillis == that.latencyMillis &&
+                window == that.window &&
+                openMillis == that.openMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(errorRatePercent, latencyMillis, window, openMillis);
+    }
+}
@@ -3,29 +3,59 @@ package io.github.azagniotov.stubby4j.stubs.proxy;
 import io.github.azagniotov.stubby4j.stubs.AbstractBuilder;
 import io.github.azagniotov.stubby4j.stubs.ReflectableStub;
 import io.github.azagniotov.stubby4j.utils.ReflectionUtils;
+import io.github.azagniotov.stubby4j.utils.StringUtils;
 import io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty;
+import org.eclipse.jetty.http.HttpStatus;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
 
 import static io.github.azagniotov.generics.TypeSafeConverter.asCheckedLinkedHashMap;
+import static io.github.azagniotov.stubby4j.stubs.proxy.ProxyConfigProperties.parseNonNegativeLong;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.COALESCING;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.COALESCING_KEY_HEADERS;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.COALESCING_METHODS;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.CONNECT_TIMEOUT_MILLIS;
 import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.DESCRIPTION;
 import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.ENDPOINT;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.FAST_FAIL_STATUS;
 import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.HEADERS;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.MAX_IN_FLIGHT;
 import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.PROPERTIES;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.READ_TIMEOUT_MILLIS;
 import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.STRATEGY;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.STREAMING;
 import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.UUID;
 
 public class StubProxyConfig implements ReflectableStub {
 
+    // Requests of different users are never coalesced, unless the proxy config says otherwise
+    private static final String DEFAULT_COALESCING_KEY_HEADERS = "authorization, cookie";
+    // Only the requests that do not change anything upstream are coalesced, unless the proxy config says otherwise
+    private static final String DEFAULT_COALESCING_METHODS = "GET, HEAD";
+    private static final int DEFAULT_FAST_FAIL_STATUS = 503;
+
     private final String description;
     private final String uuid;
     private final StubProxyStrategy strategy;
     private final Map<String, String> headers;
     private final Map<String, String> properties;
     private final String proxyConfigAsYAML;
+    private final boolean streaming;
+    private final StubProxyCacheConfig cacheConfig;
+    private final boolean coalescing;
+    private final Set<String> coalescingKeyHeaders;
+    private final Set<String> coalescingMethods;
+    private final long connectTimeoutMillis;
+    private final long readTimeoutMillis;
+    private final int maxInFlight;
+    private final int fastFailStatus;
+    private final StubProxyCircuitBreakerConfig circuitBreakerConfig;
 
     private StubProxyConfig(final String description,
                             final String uuid,
@@ -39,6 +69,51 @@ public class StubProxyConfig implements ReflectableStub {
         this.headers = headers;
         this.properties = properties;
         this.proxyConfigAsYAML = proxyConfigAsYAML;
+        this.streaming = Boolean.parseBoolean(properties.get(STREAMING.toString()));
+        this.cacheConfig = StubProxyCacheConfig.fromProperties(properties);
+        this.coalescing = Boolean.parseBoolean(properties.get(COALESCING.toString()));
+        this.coalescingKeyHeaders = parseCoalescingKeyHeaders(properties);
+        this.coalescingMethods = parseCoalescingMethods(properties);
+        this.connectTimeoutMillis = parseNonNegativeLong(properties, CONNECT_TIMEOUT_MILLIS.toString(), 0L);
+        this.readTimeoutMillis = parseNonNegativeLong(properties, READ_TIMEOUT_MILLIS.toString(), 0L);
+        this.maxInFlight = (int) Math.min(Integer.MAX_VALUE, parseNonNegativeLong(properties, MAX_IN_FLIGHT.toString(), 0L));
+        this.fastFailStatus = parseFastFailStatus(properties);
+        this.circuitBreakerConfig = StubProxyCircuitBreakerConfig.fromProperties(properties);
+
+        // A streamed response is piped to the client as it arrives, so there is never a received response to cache
+        if (streaming && cacheConfig != null) {
+            throw new IllegalArgumentException(String.format("Proxy config '%s' can not both stream and cache the proxied responses", uuid));
+        }
+    }
+
+    private static int parseFastFailStatus(final Map<String, String> properties) {
+        final long status = parseNonNegativeLong(properties, FAST_FAIL_STATUS.toString(), DEFAULT_FAST_FAIL_STATUS);
+        if (status > Integer.MAX_VALUE || HttpStatus.getCode((int) status) == null) {
+            throw new IllegalArgumentException(String.format("Proxy config fast fail status must be a known HTTP status code, got %s", status));
+        }
+        return (int) status;
+    }
+
+    // The incoming request header names are lower case, see StubRequest#getHeaders()
+    private static Set<String> parseCoalescingKeyHeaders(final Map<String, String> properties) {
+        final Set<String> keyHeaders = new TreeSet<>();
+        for (final String keyHeader : StringUtils.splitCsv(properties.getOrDefault(COALESCING_KEY_HEADERS.toString(), DEFAULT_COALESCING_KEY_HEADERS))) {
+            if (StringUtils.isSet(keyHeader)) {
+                keyHeaders.add(StringUtils.toLower(keyHeader));
+            }
+        }
+        return Collections.unmodifiableSet(keyHeaders);
+    }
+
+    // The incoming request methods are upper case, see StubRequest#getMethod()
+    private static Set<String> parseCoalescingMethods(final Map<String, String> properties) {
+        final Set<String> methods = new TreeSet<>();
+        for (final String method : StringUtils.splitCsv(properties.getOrDefault(COALESCING_METHODS.toString(), DEFAULT_COALESCING_METHODS))) {
+            if (StringUtils.isSet(method)) {
+                methods.add(StringUtils.toUpper(method));
+            }
+        }
+        return Collections.unmodifiableSet(methods);
     }
 
     public String getDescription() {
@@ -73,6 +148,92 @@ public class StubProxyConfig implements ReflectableStub {
         return properties.get(ENDPOINT.toString());
     }
 
+    /**
+     * @return whether the proxied responses are piped to the client as they arrive, instead of being received in full
+     * before they are served. A streamed response is served exactly as it was received, i.e.: its status code, body and
+     * header fields (except for the hop-by-hop ones) are not altered
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * @return the settings of the proxy response cache, or null if the proxied responses are not cached,
+     * see {@link StubProxyCacheConfig}. A streaming proxy config can not cache, see {@link #isStreaming()}
+     */
+    public StubProxyCacheConfig getCacheConfig() {
+        return cacheConfig;
+    }
+
+    public boolean isCaching() {
+        return cacheConfig != null;
+    }
+
+    /**
+     * @return whether the concurrent proxied requests with the same fingerprint share a single request in flight to
+     * the proxy config endpoint, and are all served its response. The fingerprint is made of the HTTP method, URI,
+     * query params and body of the request, and of the values of the request headers listed in
+     * {@code coalescing-key-headers} ({@code authorization} and {@code cookie} by default). Only the requests with
+     * the HTTP methods listed in {@code coalescing-methods} ({@code GET} and {@code HEAD} by default) are coalesced,
+     * and streamed proxied requests are never coalesced, see {@link #isStreaming()}
+     */
+    public boolean isCoalescing() {
+        return coalescing;
+    }
+
+    /**
+     * @return the upper case HTTP methods of the requests that may be coalesced, see {@link #isCoalescing()}
+     */
+    public Set<String> getCoalescingMethods() {
+        return coalescingMethods;
+    }
+
+    /**
+     * @return the lower case names of the request headers whose values are part of the coalescing fingerprint
+     */
+    public Set<String> getCoalescingKeyHeaders() {
+        return coalescingKeyHeaders;
+    }
+
+    /**
+     * @return the timeout of connecting to the proxy config endpoint, or zero to use the default one of the HTTP client
+     */
+    public long getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * @return the longest silence of the proxy config endpoint while the response is awaited or read, or zero to use
+     * the default idle timeout of the HTTP client
+     */
+    public long getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    /**
+     * @return the most proxied requests that may be in flight to the proxy config endpoint at the same time, or zero
+     * if they are not limited. The requests over the limit fail fast with the {@link #getFastFailStatus()}
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * @return the status code of the response to the requests that are not proxied because of the
+     * {@link #getMaxInFlight()} limit, or because the circuit breaker is open
+     */
+    public int getFastFailStatus() {
+        return fastFailStatus;
+    }
+
+    /**
+     * @return the settings of the circuit breaker, or null if the proxy config has no circuit breaker,
+     * see {@link StubProxyCircuitBreakerConfig}
+     */
+    public StubProxyCircuitBreakerConfig getCircuitBreakerConfig() {
+        return circuitBreakerConfig;
+    }
+
     /**
      * Do not remove this method if your IDE complains that it is unused.
      * It is used by {@link ReflectionUtils} at runtime when fetching content for Ajax response
@@ -149,6 +310,18 @@ public class StubProxyConfig implements ReflectableStub {
             return this;
         }
 
+        public Builder withPropertyStreaming(final boolean streaming) {
+            this.properties.put(STREAMING.toString(), String.valueOf(streaming));
+
+            return this;
+        }
+
+        public Builder withPropertyCoalescing(final boolean coalescing) {
+            this.properties.put(COALESCING.toString(), String.valueOf(coalescing));
+
+            return this;
+        }
+
         public Builder withProxyConfigAsYAML(final String proxyConfigAsYAML) {
             this.proxyConfigAsYAML = proxyConfigAsYAML;
 
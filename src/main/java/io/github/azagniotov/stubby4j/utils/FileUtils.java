@@ -87,6 +87,10 @@ public final class FileUtils {
         return StringUtils.isTokenized(file.getAbsolutePath());
     }
 
+    public static boolean isBinaryFile(final File file) throws IOException {
+        return !isCharacterFile(file);
+    }
+
     public static byte[] fileToBytes(final File file) throws IOException {
         if (isCharacterFile(file)) {
             return characterFileToUtf8Bytes(file);
@@ -0,0 +1,184 @@
+package io.github.azagniotov.stubby4j.utils;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-bucket histogram of latencies in nanoseconds, laid out the same way as an HDR histogram: every power of two
+ * range of values is split into {@value #SUB_BUCKET_COUNT} equally wide buckets, so that a value is bucketed with a
+ * relative error of at most 1/{@value #SUB_BUCKET_COUNT} (i.e.: 6.25%), regardless of its magnitude. Values up to
+ * 2^{@value #MAX_VALUE_BITS} nanoseconds (i.e.: ~18 minutes) are bucketed, larger values are counted in the last bucket.
+ * <p>
+ * Recording a value increments one bucket, it neither allocates nor takes a lock. Snapshots are either cumulative
+ * (i.e.: since the histogram was created), or cover the interval since the previous reset, see {@link #snapshotAndReset()}.
+ * Resetting does not clear the buckets, it only moves the baseline the interval is measured from, so the cumulative
+ * view is not affected by resets and no value that is recorded while a reset is in progress is lost.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_VALUE_BITS = 40;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+
+    static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_VALUE_BITS - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray buckets;
+    private final LongAdder sumNanos;
+    private final AtomicLong maxNanos;
+    private final AtomicLong intervalMaxNanos;
+
+    // The cumulative counts and sum at the time of the previous reset, guarded by 'this'
+    private long[] baselineBuckets;
+    private long baselineSumNanos;
+
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(BUCKET_COUNT);
+        this.sumNanos = new LongAdder();
+        this.maxNanos = new AtomicLong(0);
+        this.intervalMaxNanos = new AtomicLong(0);
+        this.baselineBuckets = new long[BUCKET_COUNT];
+        this.baselineSumNanos = 0;
+    }
+
+    public void record(final long nanos) {
+        final long value = Math.min(Math.max(nanos, 0L), MAX_VALUE);
+        buckets.incrementAndGet(bucketIndex(value));
+        sumNanos.add(value);
+        updateMax(maxNanos, value);
+        updateMax(intervalMaxNanos, value);
+    }
+
+    /**
+     * @return the values recorded since the histogram was created
+     */
+    public Snapshot snapshot() {
+        final long[] counts = new long[BUCKET_COUNT];
+        for (int idx = 0; idx < BUCKET_COUNT; idx++) {
+            counts[idx] = buckets.get(idx);
+        }
+        return new Snapshot(counts, sumNanos.sum(), maxNanos.get());
+    }
+
+    /**
+     * @return the values recorded since the previous call to this method (or since the histogram was created),
+     * the next interval starts right away
+     */
+    public synchronized Snapshot snapshotAndReset() {
+        final long[] cumulativeCounts = new long[BUCKET_COUNT];
+        final long[] intervalCounts = new long[BUCKET_COUNT];
+        for (int idx = 0; idx < BUCKET_COUNT; idx++) {
+            cumulativeCounts[idx] = buckets.get(idx);
+            intervalCounts[idx] = cumulativeCounts[idx] - baselineBuckets[idx];
+        }
+        final long cumulativeSumNanos = sumNanos.sum();
+        final long intervalSumNanos = cumulativeSumNanos - baselineSumNanos;
+
+        this.baselineBuckets = cumulativeCounts;
+        this.baselineSumNanos = cumulativeSumNanos;
+
+        return new Snapshot(intervalCounts, intervalSumNanos, intervalMaxNanos.getAndSet(0));
+    }
+
+    static int bucketIndex(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKET_COUNT - 1));
+    }
+
+    /**
+     * @return the highest value that is counted in the bucket at the given index
+     */
+    static long bucketUpperBound(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        final long lowerBound = ((long) (SUB_BUCKET_COUNT + (index & (SUB_BUCKET_COUNT - 1)))) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    private static void updateMax(final AtomicLong max, final long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * An immutable copy of the bucket counts of a {@link LatencyHistogram}
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sumNanos;
+        private final long maxNanos;
+
+        private Snapshot(final long[] counts, final long sumNanos, final long maxNanos) {
+            this.counts = counts;
+            this.sumNanos = sumNanos;
+            this.maxNanos = maxNanos;
+
+            long total = 0;
+            for (final long bucketCount : counts) {
+                total += bucketCount;
+            }
+            this.count = total;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSumNanos() {
+            return sumNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getMeanNanos() {
+            return count == 0 ? 0L : sumNanos / count;
+        }
+
+        /**
+         * @param percentile e.g.: 99.9
+         * @return the highest value that is bucketed together with the value at the given percentile, or 0 if no
+         * values were recorded. The value is never reported higher than the highest recorded value
+         */
+        public long getValueAtPercentile(final double percentile) {
+            if (count == 0) {
+                return 0L;
+            }
+
+            final long rank = Math.max(1L, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+            long seen = 0;
+            for (int idx = 0; idx < counts.length; idx++) {
+                seen += counts[idx];
+                if (seen >= rank) {
+                    final long upperBound = bucketUpperBound(idx);
+                    return maxNanos > 0 ? Math.min(upperBound, maxNanos) : upperBound;
+                }
+            }
+            return maxNanos;
+        }
+
+        /**
+         * @return the number of recorded values that are at most the given value, give or take the bucket width
+         */
+        public long getCountAtOrBelow(final long nanos) {
+            final int lastIndex = bucketIndex(Math.min(Math.max(nanos, 0L), MAX_VALUE));
+            long total = 0;
+            for (int idx = 0; idx <= lastIndex; idx++) {
+                total += counts[idx];
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package io.github.azagniotov.stubby4j.utils;
+
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes metrics in the Prometheus text exposition format (version 0.0.4), which OpenMetrics scrapers accept too.
+ * The metrics are written straight into the given output as they are read from the counters, e.g.:
+ * <pre>
+ * # HELP stubby4j_not_found_total Incoming requests that did not match any stub and were not proxied
+ * # TYPE stubby4j_not_found_total counter
+ * stubby4j_not_found_total 3
+ * </pre>
+ */
+public final class PrometheusTextWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    public static final String TYPE_COUNTER = "counter";
+    public static final String TYPE_GAUGE = "gauge";
+    public static final String TYPE_HISTOGRAM = "histogram";
+
+    // The upper bounds (in seconds) of the histogram buckets, from 50 microseconds up to 10 seconds
+    private static final double[] LATENCY_BUCKETS_SECONDS = {
+            0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    private static final long[] LATENCY_BUCKETS_NANOS = new long[LATENCY_BUCKETS_SECONDS.length];
+    private static final String[] LATENCY_BUCKETS_LABELS = new String[LATENCY_BUCKETS_SECONDS.length];
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    static {
+        for (int idx = 0; idx < LATENCY_BUCKETS_SECONDS.length; idx++) {
+            LATENCY_BUCKETS_NANOS[idx] = (long) (LATENCY_BUCKETS_SECONDS[idx] * NANOS_PER_SECOND);
+            LATENCY_BUCKETS_LABELS[idx] = Double.toString(LATENCY_BUCKETS_SECONDS[idx]);
+        }
+    }
+
+    private final Appendable output;
+
+    public PrometheusTextWriter(final Appendable output) {
+        this.output = output;
+    }
+
+    /**
+     * Writes the HELP and TYPE lines of a metric, must be written once before the samples of the metric
+     */
+    public PrometheusTextWriter metric(final String name, final String type, final String help) throws IOException {
+        output.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        output.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    /**
+     * @param labels label names and values, one after another, e.g.: "status", "200"
+     */
+    public PrometheusTextWriter sample(final String name, final long value, final String... labels) throws IOException {
+        appendNameAndLabels(name, labels, null);
+        output.append(' ').append(Long.toString(value)).append('\n');
+        return this;
+    }
+
+    /**
+     * @param labels label names and values, one after another, e.g.: "status", "200"
+     */
+    public PrometheusTextWriter sample(final String name, final double value, final String... labels) throws IOException {
+        appendNameAndLabels(name, labels, null);
+        output.append(' ').append(formatDouble(value)).append('\n');
+        return this;
+    }
+
+    /**
+     * Writes the cumulative buckets, the sum (in seconds) and the count samples of a histogram of latencies
+     *
+     * @param labels label names and values, one after another, e.g.: "phase", "match"
+     */
+    public PrometheusTextWriter histogram(final String name, final LatencyHistogram.Snapshot snapshot, final String... labels) throws IOException {
+        final String bucketName = name + "_bucket";
+        for (int idx = 0; idx < LATENCY_BUCKETS_NANOS.length; idx++) {
+            appendNameAndLabels(bucketName, labels, LATENCY_BUCKETS_LABELS[idx]);
+            output.append(' ').append(Long.toString(snapshot.getCountAtOrBelow(LATENCY_BUCKETS_NANOS[idx]))).append('\n');
+        }
+        appendNameAndLabels(bucketName, labels, "+Inf");
+        output.append(' ').append(Long.toString(snapshot.getCount())).append('\n');
+
+        sample(name + "_sum", snapshot.getSumNanos() / NANOS_PER_SECOND, labels);
+        return sample(name + "_count", snapshot.getCount(), labels);
+    }
+
+    private void appendNameAndLabels(final String name, final String[] labels, final String le) throws IOException {
+        output.append(name);
+        if (labels.length == 0 && le == null) {
+            return;
+        }
+
+        output.append('{');
+        for (int idx = 0; idx + 1 < labels.length; idx += 2) {
+            if (idx > 0) {
+                output.append(',');
+            }
+            appendLabel(labels[idx], labels[idx + 1]);
+        }
+        if (le != null) {
+            if (labels.length > 0) {
+                output.append(',');
+            }
+            appendLabel("le", le);
+        }
+        output.append('}');
+    }
+
+    private void appendLabel(final String labelName, final String labelValue) throws IOException {
+        output.append(labelName).append("=\"");
+        final String value = labelValue == null ? "" : labelValue;
+        for (int idx = 0; idx < value.length(); idx++) {
+            final char character = value.charAt(idx);
+            if (character == '\\') {
+                output.append("\\\\");
+            } else if (character == '"') {
+                output.append("\\\"");
+            } else if (character == '\n') {
+                output.append("\\n");
+            } else {
+                output.append(character);
+            }
+        }
+        output.append('"');
+    }
+
+    private static String formatDouble(final double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        return Double.toString(value);
+    }
+}
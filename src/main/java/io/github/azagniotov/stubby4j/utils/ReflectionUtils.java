@@ -20,7 +20,10 @@ public final class ReflectionUtils {
 
     // These fields are defined in various Stub* classes, e.g.: StubRequest or StubProxyConfig
     private static List<String> reflectionSkippableProperties =
-            Collections.unmodifiableList(Arrays.asList("proxyConfigAsYAML", "webSocketConfigAsYAML", "regexGroups", "fileBytes"));
+            Collections.unmodifiableList(Arrays.asList("proxyConfigAsYAML", "webSocketConfigAsYAML", "regexGroups", "fileBytes",
+                    "normalizedPostBody", "matchPlan", "matchTrace", "jsonPostBody", "xmlPostBody",
+                    "encodedBody", "filePathTemplate", "headerTemplates", "redirect", "latencyMillis", "latencyNumeric",
+                    "bandwidthBytesPerSecond", "bandwidthNumeric"));
 
     private ReflectionUtils() {
 
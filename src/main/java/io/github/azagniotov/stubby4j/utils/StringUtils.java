@@ -5,11 +5,12 @@ import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashSet;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.StringJoiner;
@@ -27,7 +28,6 @@ public final class StringUtils {
     private static final CharsetEncoder US_ASCII_ENCODER = StandardCharsets.US_ASCII.newEncoder();
 
     private static final String TEMPLATE_TOKEN_LEFT = "<%";
-    private static final String TEMPLATE_TOKEN_RIGHT = "%>";
     private static final Base64.Encoder BASE_64_ENCODER = Base64.getEncoder();
 
     private StringUtils() {
@@ -89,18 +89,6 @@ public final class StringUtils {
         return String.format("%s.%s", propertyName, capturingGroupIdx);
     }
 
-    public static String replaceTokens(final byte[] stringBytes, final Map<String, String> tokensAndValues) {
-        return replaceTokensInString(StringUtils.newStringUtf8(stringBytes), tokensAndValues);
-    }
-
-    public static String replaceTokensInString(String template, final Map<String, String> tokensAndValues) {
-        for (final Map.Entry<String, String> entry : tokensAndValues.entrySet()) {
-            final String regexifiedKey = String.format("%s\\s{0,}%s\\s{0,}%s", TEMPLATE_TOKEN_LEFT, entry.getKey(), TEMPLATE_TOKEN_RIGHT);
-            template = template.replaceAll(regexifiedKey, entry.getValue());
-        }
-        return template;
-    }
-
     public static boolean isTokenized(final String target) {
         return target.contains(TEMPLATE_TOKEN_LEFT);
     }
@@ -166,6 +154,19 @@ public final class StringUtils {
         return BASE_64_ENCODER.encodeToString(StringUtils.getBytesUtf8(toEncode));
     }
 
+    /**
+     * @return the Base64 encoded SHA-256 digest of the UTF-8 bytes of the given string
+     */
+    public static String sha256(final String content) {
+        try {
+            final MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return BASE_64_ENCODER.encodeToString(messageDigest.digest(getBytesUtf8(content)));
+        } catch (final NoSuchAlgorithmException e) {
+            // Every implementation of the Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
     public static String encodeBase16(byte[] bytes) {
         final char[] hexDigits = "0123456789abcdef".toCharArray();
 
@@ -34,6 +34,23 @@ public enum ConfigurableYAMLProperty {
     STRATEGY("strategy"),
     PROPERTIES("properties"),
     ENDPOINT("endpoint"),
+    STREAMING("streaming"),
+    CACHE_TTL_SECONDS("cache-ttl-seconds"),
+    CACHE_MAX_ENTRIES("cache-max-entries"),
+    CACHE_MAX_BYTES("cache-max-bytes"),
+    CACHE_KEY("cache-key"),
+    CACHE_KEY_HEADERS("cache-key-headers"),
+    COALESCING("coalescing"),
+    COALESCING_KEY_HEADERS("coalescing-key-headers"),
+    COALESCING_METHODS("coalescing-methods"),
+    CONNECT_TIMEOUT_MILLIS("connect-timeout-millis"),
+    READ_TIMEOUT_MILLIS("read-timeout-millis"),
+    MAX_IN_FLIGHT("max-in-flight"),
+    FAST_FAIL_STATUS("fast-fail-status"),
+    CIRCUIT_BREAKER_ERROR_RATE("circuit-breaker-error-rate"),
+    CIRCUIT_BREAKER_LATENCY_MILLIS("circuit-breaker-latency-millis"),
+    CIRCUIT_BREAKER_WINDOW("circuit-breaker-window"),
+    CIRCUIT_BREAKER_OPEN_SECONDS("circuit-breaker-open-seconds"),
 
     HTTPLIFECYCLE("httplifecycle"),
     REQUEST("request"),
@@ -48,6 +65,7 @@ public enum ConfigurableYAMLProperty {
     // stub response specific
     BODY("body"), // web-socket properties
     LATENCY("latency"),
+    BANDWIDTH("bandwidth"),
     STATUS("status"),
 
     // stub request & response properties
@@ -87,6 +105,7 @@ public enum ConfigurableYAMLProperty {
         final Set<String> responseProperties = new HashSet<>();
         responseProperties.add(BODY.toString());
         responseProperties.add(LATENCY.toString());
+        responseProperties.add(BANDWIDTH.toString());
         responseProperties.add(STATUS.toString());
         responseProperties.add(FILE.toString());
         responseProperties.add(HEADERS.toString());
@@ -98,6 +117,23 @@ public enum ConfigurableYAMLProperty {
         proxyConfigProperties.add(STRATEGY.toString());
         proxyConfigProperties.add(PROPERTIES.toString());
         proxyConfigProperties.add(ENDPOINT.toString());
+        proxyConfigProperties.add(STREAMING.toString());
+        proxyConfigProperties.add(CACHE_TTL_SECONDS.toString());
+        proxyConfigProperties.add(CACHE_MAX_ENTRIES.toString());
+        proxyConfigProperties.add(CACHE_MAX_BYTES.toString());
+        proxyConfigProperties.add(CACHE_KEY.toString());
+        proxyConfigProperties.add(CACHE_KEY_HEADERS.toString());
+        proxyConfigProperties.add(COALESCING.toString());
+        proxyConfigProperties.add(COALESCING_KEY_HEADERS.toString());
+        proxyConfigProperties.add(COALESCING_METHODS.toString());
+        proxyConfigProperties.add(CONNECT_TIMEOUT_MILLIS.toString());
+        proxyConfigProperties.add(READ_TIMEOUT_MILLIS.toString());
+        proxyConfigProperties.add(MAX_IN_FLIGHT.toString());
+        proxyConfigProperties.add(FAST_FAIL_STATUS.toString());
+        proxyConfigProperties.add(CIRCUIT_BREAKER_ERROR_RATE.toString());
+        proxyConfigProperties.add(CIRCUIT_BREAKER_LATENCY_MILLIS.toString());
+        proxyConfigProperties.add(CIRCUIT_BREAKER_WINDOW.toString());
+        proxyConfigProperties.add(CIRCUIT_BREAKER_OPEN_SECONDS.toString());
         proxyConfigProperties.add(HEADERS.toString());
         PROPERTY_NAME_TO_FAMILY.put(PROXY_CONFIG.toString(), proxyConfigProperties);
 
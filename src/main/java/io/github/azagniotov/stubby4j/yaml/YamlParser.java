@@ -346,7 +346,7 @@ public class YamlParser {
     private void parseStubbedRequestConfig(final StubHttpLifecycle.Builder stubBuilder, final Map<String, Object> requestProperties) {
         final StubRequest.Builder requestStubBuilder = buildReflectableStub(requestProperties, new StubRequest.Builder());
         final StubRequest stubRequest = requestStubBuilder.build();
-        stubRequest.compileRegexPatternsAndCache();
+        stubRequest.compileMatchPlan();
         stubBuilder.withRequest(stubRequest);
     }
 
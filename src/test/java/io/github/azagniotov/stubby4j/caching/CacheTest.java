@@ -1,8 +1,10 @@
 package io.github.azagniotov.stubby4j.caching;
 
 import io.github.azagniotov.stubby4j.stubs.StubHttpLifecycle;
+import io.github.azagniotov.stubby4j.stubs.StubMatch;
 import org.junit.Test;
 
+import java.util.HashMap;
 import java.util.Optional;
 
 import static com.google.common.truth.Truth.assertThat;
@@ -11,14 +13,14 @@ public class CacheTest {
 
     @Test
     public void shouldBuildNoOpCache() throws Exception {
-        final Cache<String, StubHttpLifecycle> cache = Cache.stubHttpLifecycleCache(true);
+        final Cache<String, StubMatch> cache = Cache.stubHttpLifecycleCache(true);
 
         assertThat(cache).isInstanceOf(NoOpStubHttpLifecycleCache.class);
     }
 
     @Test
     public void shouldBuildDefaultCache() throws Exception {
-        final Cache<String, StubHttpLifecycle> cache = Cache.stubHttpLifecycleCache(false);
+        final Cache<String, StubMatch> cache = Cache.stubHttpLifecycleCache(false);
 
         assertThat(cache).isInstanceOf(StubHttpLifecycleCache.class);
     }
@@ -26,15 +28,15 @@ public class CacheTest {
     @Test
     public void shouldClearCacheByKey() throws Exception {
 
-        final Cache<String, StubHttpLifecycle> cache = Cache.stubHttpLifecycleCache(false);
+        final Cache<String, StubMatch> cache = Cache.stubHttpLifecycleCache(false);
 
-        final StubHttpLifecycle stubHttpLifeCycle = new StubHttpLifecycle.Builder().build();
+        final StubMatch stubMatch = new StubMatch(new StubHttpLifecycle.Builder().build(), new HashMap<>());
         final String targetKey = "/some/url";
 
-        cache.putIfAbsent(targetKey, stubHttpLifeCycle);
+        cache.putIfAbsent(targetKey, stubMatch);
         assertThat(cache.size().get()).isEqualTo(1);
 
-        assertThat(cache.get(targetKey)).isEqualTo(Optional.of(stubHttpLifeCycle));
+        assertThat(cache.get(targetKey)).isEqualTo(Optional.of(stubMatch));
 
         assertThat(cache.clearByKey(targetKey)).isTrue();
         assertThat(cache.size().get()).isEqualTo(0);
@@ -44,18 +46,18 @@ public class CacheTest {
     @Test
     public void shouldNotClearCacheByKey() throws Exception {
 
-        final Cache<String, StubHttpLifecycle> cache = Cache.stubHttpLifecycleCache(false);
+        final Cache<String, StubMatch> cache = Cache.stubHttpLifecycleCache(false);
 
-        final StubHttpLifecycle stubHttpLifeCycle = new StubHttpLifecycle.Builder().build();
+        final StubMatch stubMatch = new StubMatch(new StubHttpLifecycle.Builder().build(), new HashMap<>());
         final String targetHashCodeKey = "-124354548";
 
-        cache.putIfAbsent(targetHashCodeKey, stubHttpLifeCycle);
+        cache.putIfAbsent(targetHashCodeKey, stubMatch);
         assertThat(cache.size().get()).isEqualTo(1);
 
-        assertThat(cache.get(targetHashCodeKey)).isEqualTo(Optional.of(stubHttpLifeCycle));
+        assertThat(cache.get(targetHashCodeKey)).isEqualTo(Optional.of(stubMatch));
 
         assertThat(cache.clearByKey("99999")).isFalse();
         assertThat(cache.size().get()).isEqualTo(1);
-        assertThat(cache.get(targetHashCodeKey)).isEqualTo(Optional.of(stubHttpLifeCycle));
+        assertThat(cache.get(targetHashCodeKey)).isEqualTo(Optional.of(stubMatch));
     }
 }
@@ -0,0 +1,151 @@
+package io.github.azagniotov.stubby4j.caching;
+
+import io.github.azagniotov.stubby4j.utils.StringUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class FileContentCacheTest {
+
+    @Test
+    public void shouldLoadContentOnFirstGet_AndServeItFromCacheAfterwards() throws Exception {
+        final FileContentCache fileContentCache = new FileContentCache(1024L);
+        final File file = createFile(".txt", "Hello, world!");
+
+        assertThat(fileContentCache.size()).isEqualTo(0);
+
+        final FileContent loaded = fileContentCache.get(file);
+        assertThat(StringUtils.newStringUtf8(loaded.getBytes())).isEqualTo("Hello, world!");
+        assertThat(loaded.getTemplate()).isNull();
+        assertThat(fileContentCache.size()).isEqualTo(1);
+        assertThat(fileContentCache.weightBytes()).isEqualTo(13L);
+
+        assertThat(fileContentCache.get(file)).isSameInstanceAs(loaded);
+    }
+
+    @Test
+    public void shouldReloadContent_WhenFileWasModified() throws Exception {
+        final FileContentCache fileContentCache = new FileContentCache(1024L);
+        final File file = createFile(".txt", "Hello, world!");
+
+        final FileContent loaded = fileContentCache.get(file);
+
+        Files.write(file.toPath(), StringUtils.getBytesUtf8("Goodbye, world!"));
+        file.setLastModified(file.lastModified() + 2000L);
+
+        final FileContent reloaded = fileContentCache.get(file);
+        assertThat(reloaded).isNotSameInstanceAs(loaded);
+        assertThat(StringUtils.newStringUtf8(reloaded.getBytes())).isEqualTo("Goodbye, world!");
+        assertThat(fileContentCache.size()).isEqualTo(1);
+        assertThat(fileContentCache.weightBytes()).isEqualTo(15L);
+    }
+
+    @Test
+    public void shouldCompileTemplate_WhenContentHasTemplateTokens() throws Exception {
+        final FileContentCache fileContentCache = new FileContentCache(1024L);
+        final File file = createFile(".json", "{\"id\": \"<% url.1 %>\"}");
+
+        final Map<String, String> regexGroups = new HashMap<>();
+        regexGroups.put("url.1", "123");
+
+        final FileContent loaded = fileContentCache.get(file);
+        assertThat(loaded.getTemplate()).isNotNull();
+        assertThat(loaded.getTemplate().render(regexGroups)).isEqualTo("{\"id\": \"123\"}");
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyServedContent_WhenOverBudget() throws Exception {
+        final FileContentCache fileContentCache = new FileContentCache(20L);
+        final File first = createFile(".txt", "0123456789");
+        final File second = createFile(".txt", "abcdefghij");
+        final File third = createFile(".txt", "ABCDEFGHIJ");
+
+        final FileContent firstLoaded = fileContentCache.get(first);
+        fileContentCache.get(second);
+        // Serve the first one again, so that the second one becomes the least recently served
+        assertThat(fileContentCache.get(first)).isSameInstanceAs(firstLoaded);
+        fileContentCache.get(third);
+
+        assertThat(fileContentCache.size()).isEqualTo(2);
+        assertThat(fileContentCache.weightBytes()).isEqualTo(20L);
+        assertThat(fileContentCache.get(first)).isSameInstanceAs(firstLoaded);
+    }
+
+    @Test
+    public void shouldServeButNotCacheContent_WhenContentIsLargerThanBudget() throws Exception {
+        final FileContentCache fileContentCache = new FileContentCache(5L);
+        final File file = createFile(".txt", "Hello, world!");
+
+        final FileContent loaded = fileContentCache.get(file);
+        assertThat(StringUtils.newStringUtf8(loaded.getBytes())).isEqualTo("Hello, world!");
+        assertThat(fileContentCache.size()).isEqualTo(0);
+        assertThat(fileContentCache.weightBytes()).isEqualTo(0L);
+    }
+
+    @Test
+    public void shouldReturnNullAndInvalidate_WhenFileNoLongerExists() throws Exception {
+        final FileContentCache fileContentCache = new FileContentCache(1024L);
+        final File file = createFile(".txt", "Hello, world!");
+
+        assertThat(fileContentCache.get(file)).isNotNull();
+        assertThat(file.delete()).isTrue();
+
+        assertThat(fileContentCache.get(file)).isNull();
+        assertThat(fileContentCache.size()).isEqualTo(0);
+        assertThat(fileContentCache.weightBytes()).isEqualTo(0L);
+    }
+
+    @Test
+    public void shouldStreamButNotLoadContent_WhenBinaryFileIsLargerThanBudget() throws Exception {
+        final byte[] content = new byte[]{'%', 'P', 'D', 'F', '-', '1', '.', '4', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3};
+        final FileContentCache fileContentCache = new FileContentCache(5L);
+        final File file = createFile(".pdf", content);
+
+        final FileContent loaded = fileContentCache.get(file);
+        assertThat(loaded.isStreamed()).isTrue();
+        assertThat(loaded.isEmpty()).isFalse();
+        assertThat(loaded.getBytes()).isEqualTo(content);
+        assertThat(fileContentCache.size()).isEqualTo(1);
+        assertThat(fileContentCache.weightBytes()).isEqualTo(0L);
+
+        try (final FileChannel fileChannel = loaded.openChannel()) {
+            assertThat(fileChannel.size()).isEqualTo((long) content.length);
+        }
+    }
+
+    @Test
+    public void shouldLoadContentOntoHeap_WhenBinaryFileIsWithinBudget() throws Exception {
+        final byte[] content = new byte[]{'%', 'P', 'D', 'F', '-', '1', '.', '4', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3};
+        final FileContentCache fileContentCache = new FileContentCache(1024L);
+        final File file = createFile(".pdf", content);
+
+        final FileContent loaded = fileContentCache.get(file);
+        assertThat(loaded.isStreamed()).isFalse();
+        assertThat(loaded.getContent().isDirect()).isFalse();
+        assertThat(loaded.getContent().isReadOnly()).isTrue();
+        assertThat(loaded.getBytes()).isEqualTo(content);
+        assertThat(fileContentCache.weightBytes()).isEqualTo((long) content.length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldThrow_WhenBudgetIsNegative() throws Exception {
+        FileContentCache.withBudgetMegabytes(-1L);
+    }
+
+    private static File createFile(final String suffix, final String content) throws Exception {
+        return createFile(suffix, StringUtils.getBytesUtf8(content));
+    }
+
+    private static File createFile(final String suffix, final byte[] content) throws Exception {
+        final File file = File.createTempFile("tmp" + System.nanoTime(), suffix);
+        file.deleteOnExit();
+        Files.write(file.toPath(), content);
+        return file;
+    }
+}
@@ -1,8 +1,10 @@
 package io.github.azagniotov.stubby4j.caching;
 
 import io.github.azagniotov.stubby4j.stubs.StubHttpLifecycle;
+import io.github.azagniotov.stubby4j.stubs.StubMatch;
 import org.junit.Test;
 
+import java.util.HashMap;
 import java.util.Optional;
 
 import static com.google.common.truth.Truth.assertThat;
@@ -12,13 +14,13 @@ public class NoOpStubHttpLifecycleCacheTest {
 
     @Test
     public void putIfAbsentAndGet() {
-        final Cache<String, StubHttpLifecycle> cache = Cache.stubHttpLifecycleCache(true);
+        final Cache<String, StubMatch> cache = Cache.stubHttpLifecycleCache(true);
         assertThat(cache.size().get()).isEqualTo(0);
 
-        final StubHttpLifecycle stubHttpLifeCycle = new StubHttpLifecycle.Builder().build();
+        final StubMatch stubMatch = new StubMatch(new StubHttpLifecycle.Builder().build(), new HashMap<>());
         final String targetKey = "/some/url";
 
-        cache.putIfAbsent(targetKey, stubHttpLifeCycle);
+        cache.putIfAbsent(targetKey, stubMatch);
 
         assertThat(cache.size().get()).isEqualTo(0);
         assertThat(cache.get(targetKey)).isEqualTo(Optional.empty());
@@ -27,13 +29,13 @@ public class NoOpStubHttpLifecycleCacheTest {
     @Test
     public void clearByKey() {
 
-        final Cache<String, StubHttpLifecycle> cache = Cache.stubHttpLifecycleCache(true);
+        final Cache<String, StubMatch> cache = Cache.stubHttpLifecycleCache(true);
 
-        final StubHttpLifecycle stubHttpLifeCycle = new StubHttpLifecycle.Builder().build();
+        final StubMatch stubMatch = new StubMatch(new StubHttpLifecycle.Builder().build(), new HashMap<>());
         final String targetKey = "/some/url";
 
         assertThat(cache.clearByKey(targetKey)).isTrue();
-        cache.putIfAbsent(targetKey, stubHttpLifeCycle);
+        cache.putIfAbsent(targetKey, stubMatch);
 
         assertThat(cache.get(targetKey)).isEqualTo(Optional.empty());
         assertThat(cache.clearByKey(targetKey)).isTrue();
@@ -41,7 +43,7 @@ public class NoOpStubHttpLifecycleCacheTest {
 
     @Test
     public void cache() {
-        final Cache<String, StubHttpLifecycle> cache = Cache.stubHttpLifecycleCache(true);
+        final Cache<String, StubMatch> cache = Cache.stubHttpLifecycleCache(true);
         assertThrows(UnsupportedOperationException.class, cache::cache);
     }
 }
\ No newline at end of file
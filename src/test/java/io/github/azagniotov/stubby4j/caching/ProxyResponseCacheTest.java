@@ -0,0 +1,163 @@
+package io.github.azagniotov.stubby4j.caching;
+
+import io.github.azagniotov.stubby4j.stubs.StubRequest;
+import io.github.azagniotov.stubby4j.stubs.StubResponse;
+import io.github.azagniotov.stubby4j.stubs.proxy.StubProxyCacheConfig;
+import io.github.azagniotov.stubby4j.stubs.proxy.StubProxyConfig;
+import org.eclipse.jetty.http.HttpStatus;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ProxyResponseCacheTest {
+
+    private final AtomicLong nanoClock = new AtomicLong(0L);
+
+    @Test
+    public void shouldServeCachedResponse_UntilTtlExpires() throws Exception {
+        final ProxyResponseCache proxyResponseCache = new ProxyResponseCache(cacheConfig("60", "100", "1024", null, null), nanoClock::get);
+        final ProxyResponseCache.Key key = proxyResponseCache.keyOf(new StubRequest.Builder().withUrl("/todos/1").withMethodGet().build());
+
+        assertThat(proxyResponseCache.get(key)).isNull();
+
+        final StubResponse response = response("{\"id\": 1}");
+        proxyResponseCache.put(key, response);
+        assertThat(proxyResponseCache.get(key)).isSameInstanceAs(response);
+        assertThat(proxyResponseCache.size()).isEqualTo(1);
+
+        nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        assertThat(proxyResponseCache.get(key)).isNull();
+        assertThat(proxyResponseCache.size()).isEqualTo(0);
+        assertThat(proxyResponseCache.weightBytes()).isEqualTo(0L);
+
+        assertThat(proxyResponseCache.getHits()).isEqualTo(1L);
+        assertThat(proxyResponseCache.getMisses()).isEqualTo(2L);
+    }
+
+    @Test
+    public void shouldKeyRequests_ByConfiguredFields() throws Exception {
+        final ProxyResponseCache proxyResponseCache = new ProxyResponseCache(cacheConfig("60", null, null, "method, path, body", "accept"), nanoClock::get);
+
+        final ProxyResponseCache.Key key = proxyResponseCache.keyOf(new StubRequest.Builder()
+                .withUrl("/todos").withMethodPost().withPost("{\"title\": \"one\"}").withHeader("Accept", "application/json").withQuery("page", "1").build());
+        proxyResponseCache.put(key, response("OK"));
+
+        // The query is not part of the key
+        assertThat(proxyResponseCache.get(proxyResponseCache.keyOf(new StubRequest.Builder()
+                .withUrl("/todos").withMethodPost().withPost("{\"title\": \"one\"}").withHeader("Accept", "application/json").withQuery("page", "2").build()))).isNotNull();
+
+        assertThat(proxyResponseCache.get(proxyResponseCache.keyOf(new StubRequest.Builder()
+                .withUrl("/todos").withMethodPost().withPost("{\"title\": \"two\"}").withHeader("Accept", "application/json").build()))).isNull();
+        assertThat(proxyResponseCache.get(proxyResponseCache.keyOf(new StubRequest.Builder()
+                .withUrl("/todos").withMethodPost().withPost("{\"title\": \"one\"}").withHeader("Accept", "text/plain").build()))).isNull();
+        assertThat(proxyResponseCache.get(proxyResponseCache.keyOf(new StubRequest.Builder()
+                .withUrl("/todos").withMethodPut().withPost("{\"title\": \"one\"}").withHeader("Accept", "application/json").build()))).isNull();
+
+        assertThat(key.getMethod()).isEqualTo("POST");
+        assertThat(key.getUri()).isEqualTo("/todos");
+        assertThat(key.getQuery()).isEmpty();
+        assertThat(key.getHeaders()).containsExactly("accept", "application/json");
+        assertThat(key.getPost()).isEqualTo("{\"title\": \"one\"}");
+    }
+
+    @Test
+    public void shouldNotHoldMethodAndPath_WhenNotKeyedBy() throws Exception {
+        final ProxyResponseCache proxyResponseCache = new ProxyResponseCache(cacheConfig("60", null, null, "query", null), nanoClock::get);
+
+        final ProxyResponseCache.Key key = proxyResponseCache.keyOf(new StubRequest.Builder()
+                .withUrl("/todos").withMethodGet().withQuery("page", "1").build());
+        proxyResponseCache.put(key, response("OK"));
+
+        assertThat(proxyResponseCache.get(proxyResponseCache.keyOf(new StubRequest.Builder()
+                .withUrl("/posts").withMethodPost().withQuery("page", "1").build()))).isNotNull();
+
+        assertThat(key.getMethod()).isNull();
+        assertThat(key.getUri()).isNull();
+        assertThat(key.getQuery()).containsExactly("page", "1");
+    }
+
+    @Test
+    public void shouldNotServeCachedResponse_ForQueryParamWithSameNameAndValueAsKeyHeader() throws Exception {
+        final ProxyResponseCache proxyResponseCache = new ProxyResponseCache(cacheConfig("60", null, null, "method, path, query", "content-type"), nanoClock::get);
+
+        proxyResponseCache.put(proxyResponseCache.keyOf(new StubRequest.Builder()
+                .withUrl("/x").withMethodGet().withQuery("content-type", "application/json").build()), response("OK"));
+
+        assertThat(proxyResponseCache.get(proxyResponseCache.keyOf(new StubRequest.Builder()
+                .withUrl("/x").withMethodGet().withHeader("Content-Type", "application/json").build()))).isNull();
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyServedResponses_WhenMaxEntriesReached() throws Exception {
+        final ProxyResponseCache proxyResponseCache = new ProxyResponseCache(cacheConfig("60", "2", null, null, null), nanoClock::get);
+        final ProxyResponseCache.Key one = proxyResponseCache.keyOf(new StubRequest.Builder().withUrl("/todos/1").withMethodGet().build());
+        final ProxyResponseCache.Key two = proxyResponseCache.keyOf(new StubRequest.Builder().withUrl("/todos/2").withMethodGet().build());
+        final ProxyResponseCache.Key three = proxyResponseCache.keyOf(new StubRequest.Builder().withUrl("/todos/3").withMethodGet().build());
+
+        proxyResponseCache.put(one, response("1"));
+        proxyResponseCache.put(two, response("2"));
+        assertThat(proxyResponseCache.get(one)).isNotNull();
+
+        proxyResponseCache.put(three, response("3"));
+        assertThat(proxyResponseCache.size()).isEqualTo(2);
+        assertThat(proxyResponseCache.get(two)).isNull();
+        assertThat(proxyResponseCache.get(one)).isNotNull();
+        assertThat(proxyResponseCache.get(three)).isNotNull();
+    }
+
+    @Test
+    public void shouldNotCacheResponse_WhenLargerThanMaxBytes() throws Exception {
+        final ProxyResponseCache proxyResponseCache = new ProxyResponseCache(cacheConfig("60", null, "64", null, null), nanoClock::get);
+        final ProxyResponseCache.Key key = proxyResponseCache.keyOf(new StubRequest.Builder().withUrl("/todos/1").withMethodGet().build());
+
+        proxyResponseCache.put(key, response(new String(new char[128]).replace('\0', 'x')));
+
+        assertThat(proxyResponseCache.size()).isEqualTo(0);
+        assertThat(proxyResponseCache.get(key)).isNull();
+    }
+
+    @Test
+    public void shouldFlushCachedResponses() throws Exception {
+        final ProxyResponseCache proxyResponseCache = new ProxyResponseCache(cacheConfig("60", null, null, null, null), nanoClock::get);
+        proxyResponseCache.put(proxyResponseCache.keyOf(new StubRequest.Builder().withUrl("/todos/1").withMethodGet().build()), response("1"));
+        proxyResponseCache.put(proxyResponseCache.keyOf(new StubRequest.Builder().withUrl("/todos/2").withMethodGet().build()), response("2"));
+        assertThat(proxyResponseCache.getResponses()).hasSize(2);
+
+        assertThat(proxyResponseCache.clear()).isEqualTo(2);
+        assertThat(proxyResponseCache.getResponses()).isEmpty();
+        assertThat(proxyResponseCache.weightBytes()).isEqualTo(0L);
+    }
+
+    private static StubResponse response(final String body) {
+        return new StubResponse.Builder()
+                .withHttpStatusCode(HttpStatus.Code.OK)
+                .withBody(body)
+                .build();
+    }
+
+    private static StubProxyCacheConfig cacheConfig(final String ttlSeconds,
+                                                    final String maxEntries,
+                                                    final String maxBytes,
+                                                    final String keyFields,
+                                                    final String keyHeaders) {
+        final StubProxyConfig.Builder builder = new StubProxyConfig.Builder()
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .withProperty("cache-ttl-seconds", ttlSeconds);
+        if (maxEntries != null) {
+            builder.withProperty("cache-max-entries", maxEntries);
+        }
+        if (maxBytes != null) {
+            builder.withProperty("cache-max-bytes", maxBytes);
+        }
+        if (keyFields != null) {
+            builder.withProperty("cache-key", keyFields);
+        }
+        if (keyHeaders != null) {
+            builder.withProperty("cache-key-headers", keyHeaders);
+        }
+        return builder.build().getCacheConfig();
+    }
+}
@@ -15,6 +15,7 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ReadListener;
 import javax.servlet.ServletInputStream;
 import javax.servlet.ServletOutputStream;
@@ -25,10 +26,15 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -77,6 +83,9 @@ public class StubsPortalHandlerTest {
     @Mock
     private Request mockBaseRequest;
 
+    @Mock
+    private AsyncContext mockAsyncContext;
+
     @BeforeClass
     public static void beforeClass() throws Exception {
         ANSITerminal.muteConsole(true);
@@ -113,7 +122,7 @@ public class StubsPortalHandlerTest {
         when(mockHttpServletRequest.getMethod()).thenReturn(HttpMethod.GET.asString());
         when(mockHttpServletRequest.getPathInfo()).thenReturn(requestPathInfo);
         when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.NOT_FOUND);
-        when(mockStubResponse.getResponseBodyAsBytes()).thenReturn(new byte[]{});
+        when(mockStubResponse.getResponseBody()).thenReturn(ByteBuffer.wrap(new byte[]{}));
 
         setUpStubSearchMockExpectations(requestPathInfo);
 
@@ -130,7 +139,7 @@ public class StubsPortalHandlerTest {
         when(mockHttpServletRequest.getMethod()).thenReturn(HttpMethod.POST.asString());
         when(mockHttpServletRequest.getPathInfo()).thenReturn(requestPathInfo);
         when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.NOT_FOUND);
-        when(mockStubResponse.getResponseBodyAsBytes()).thenReturn(new byte[]{});
+        when(mockStubResponse.getResponseBody()).thenReturn(ByteBuffer.wrap(new byte[]{}));
 
         final InputStream inputStream = new ByteArrayInputStream(postData.getBytes());
         when(mockHttpServletRequest.getInputStream()).thenReturn(getServletInputStream(inputStream));
@@ -182,7 +191,7 @@ public class StubsPortalHandlerTest {
         when(mockHttpServletRequest.getMethod()).thenReturn(HttpMethod.GET.asString());
         when(mockHttpServletRequest.getPathInfo()).thenReturn(requestPathInfo);
         when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.OK);
-        when(mockStubResponse.getResponseBodyAsBytes()).thenReturn(null);
+        when(mockStubResponse.getResponseBody()).thenReturn(null);
 
         setUpStubSearchMockExpectations(requestPathInfo);
 
@@ -245,7 +254,7 @@ public class StubsPortalHandlerTest {
         when(mockHttpServletRequest.getMethod()).thenReturn(HttpMethod.POST.asString());
         when(mockHttpServletRequest.getPathInfo()).thenReturn(requestPathInfo);
         when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.OK);
-        when(mockStubResponse.getResponseBodyAsBytes()).thenReturn(null);
+        when(mockStubResponse.getResponseBody()).thenReturn(null);
         final InputStream inputStream = new ByteArrayInputStream(postData.getBytes());
         when(mockHttpServletRequest.getInputStream()).thenReturn(getServletInputStream(inputStream));
 
@@ -261,24 +270,94 @@ public class StubsPortalHandlerTest {
 
         when(mockHttpServletRequest.getMethod()).thenReturn(HttpMethod.GET.asString());
         when(mockHttpServletRequest.getPathInfo()).thenReturn(requestPathInfo);
-        when(mockStubResponse.getLatency()).thenReturn("50");
+        when(mockStubResponse.getLatencyMillis()).thenReturn(50L);
         when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.OK);
-        when(mockStubResponse.getResponseBodyAsBytes()).thenReturn(new byte[]{});
+        when(mockStubResponse.getResponseBody()).thenReturn(ByteBuffer.wrap(new byte[]{}));
         when(mockHttpServletResponse.getOutputStream()).thenReturn(SERVLET_OUTPUT_STREAM);
 
+        final long before = System.currentTimeMillis();
         setUpStubSearchMockExpectations(requestPathInfo);
+        final long after = System.currentTimeMillis();
 
+        assertThat(after - before).isAtLeast(50L);
         verify(mockHttpServletResponse, never()).setStatus(HttpStatus.INTERNAL_SERVER_ERROR_500);
         verify(mockHttpServletResponse).setStatus(HttpStatus.OK_200);
     }
 
+    @Test
+    public void verifyBehaviourDuringHandleGetRequestWithLatency_WhenAsyncSupported() throws Exception {
+
+        final String requestPathInfo = "/path/1";
+
+        when(mockHttpServletRequest.getMethod()).thenReturn(HttpMethod.GET.asString());
+        when(mockHttpServletRequest.getPathInfo()).thenReturn(requestPathInfo);
+        when(mockHttpServletRequest.isAsyncSupported()).thenReturn(true);
+        when(mockHttpServletRequest.startAsync()).thenReturn(mockAsyncContext);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(mockAsyncContext).start(any(Runnable.class));
+        when(mockStubResponse.getLatencyMillis()).thenReturn(200L);
+        when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.OK);
+        when(mockStubResponse.getResponseBody()).thenReturn(ByteBuffer.wrap(new byte[]{}));
+        when(mockHttpServletResponse.getOutputStream()).thenReturn(SERVLET_OUTPUT_STREAM);
+
+        setUpStubSearchMockExpectations(requestPathInfo);
+
+        // The handler returns without waiting for the latency, and the response is completed afterwards
+        verify(mockAsyncContext).setTimeout(0);
+        verify(mockAsyncContext, never()).complete();
+        verify(mockHttpServletResponse, never()).setStatus(HttpStatus.OK_200);
+
+        verify(mockAsyncContext, timeout(5000)).complete();
+        verify(mockHttpServletResponse).setStatus(HttpStatus.OK_200);
+        verify(mockHttpServletResponse, never()).setStatus(HttpStatus.INTERNAL_SERVER_ERROR_500);
+    }
+
+    @Test
+    public void verifyBehaviourDuringHandleGetRequest_WhenResponseIsPending() throws Exception {
+
+        final String requestPathInfo = "/path/1";
+        final AtomicReference<Runnable> whenMatchedCallback = new AtomicReference<>();
+
+        when(mockHttpServletRequest.getMethod()).thenReturn(HttpMethod.GET.asString());
+        when(mockHttpServletRequest.getPathInfo()).thenReturn(requestPathInfo);
+        when(mockHttpServletRequest.isAsyncSupported()).thenReturn(true);
+        when(mockHttpServletRequest.startAsync()).thenReturn(mockAsyncContext);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(mockAsyncContext).start(any(Runnable.class));
+        when(mockStubSearchResult.isPending()).thenReturn(true);
+        doAnswer(invocation -> {
+            whenMatchedCallback.set(invocation.getArgument(0));
+            return null;
+        }).when(mockStubSearchResult).whenMatched(any(Runnable.class));
+        when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.OK);
+        when(mockStubResponse.getResponseBody()).thenReturn(ByteBuffer.wrap(new byte[]{}));
+        when(mockHttpServletResponse.getOutputStream()).thenReturn(SERVLET_OUTPUT_STREAM);
+
+        setUpStubSearchMockExpectations(requestPathInfo);
+
+        // The handler returns without waiting for the pending (e.g.: proxied) response
+        verify(mockAsyncContext).setTimeout(0);
+        verify(mockAsyncContext, never()).complete();
+        verify(mockHttpServletResponse, never()).setStatus(HttpStatus.OK_200);
+
+        whenMatchedCallback.get().run();
+
+        verify(mockAsyncContext).complete();
+        verify(mockHttpServletResponse).setStatus(HttpStatus.OK_200);
+        verify(mockHttpServletResponse, never()).setStatus(HttpStatus.INTERNAL_SERVER_ERROR_500);
+    }
+
     @Test
     public void verifyBehaviourDuringHandleGetRequestWithInvalidLatency() throws Exception {
         final String method = HttpMethod.GET.asString();
         final String requestPathInfo = "/path/1";
 
         when(mockHttpServletRequest.getMethod()).thenReturn(method);
-        when(mockStubResponse.getLatency()).thenReturn("43rl4knt3l");
+        when(mockStubResponse.getLatencyMillis()).thenThrow(new NumberFormatException("For input string: \"43rl4knt3l\""));
         when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.OK);
 
         setUpStubSearchMockExpectations(requestPathInfo);
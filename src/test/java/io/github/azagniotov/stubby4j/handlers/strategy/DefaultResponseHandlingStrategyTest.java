@@ -1,9 +1,11 @@
 package io.github.azagniotov.stubby4j.handlers.strategy;
 
 import io.github.azagniotov.stubby4j.handlers.strategy.stubs.DefaultResponseHandlingStrategy;
+import io.github.azagniotov.stubby4j.stubs.ResponseTemplate;
 import io.github.azagniotov.stubby4j.stubs.StubRequest;
 import io.github.azagniotov.stubby4j.stubs.StubResponse;
 import io.github.azagniotov.stubby4j.utils.HandlerUtils;
+import io.github.azagniotov.stubby4j.utils.StringUtils;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpStatus.Code;
@@ -14,16 +16,21 @@ import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.truth.Truth.assertThat;
 import static io.github.azagniotov.stubby4j.utils.StringUtils.getBytesUtf8;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -63,13 +70,16 @@ public class DefaultResponseHandlingStrategyTest {
     @Mock
     private HttpServletResponse mockHttpServletResponse;
 
+    @Mock
+    private AsyncContext mockAsyncContext;
+
     @InjectMocks
     private DefaultResponseHandlingStrategy defaultResponseHandlingStrategy;
 
     @Test
     public void shouldVerifyBehaviourWhenHandlingDefaultResponseWithoutLatency() throws Exception {
         when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.OK);
-        when(mockStubResponse.getResponseBodyAsBytes()).thenReturn(EMPTY_BYTES);
+        when(mockStubResponse.getResponseBody()).thenReturn(ByteBuffer.wrap(EMPTY_BYTES));
         when(mockHttpServletResponse.getOutputStream()).thenReturn(SERVLET_OUTPUT_STREAM);
 
         defaultResponseHandlingStrategy.handle(mockHttpServletResponse, mockAssertionRequest);
@@ -79,31 +89,63 @@ public class DefaultResponseHandlingStrategyTest {
     }
 
     @Test
-    public void shouldVerifyBehaviourWhenHandlingDefaultResponseWithLatency() throws Exception {
+    public void shouldReturnThrottledBodyWriter_WhenHandlingAsyncResponseWithBandwidth() throws Exception {
         when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.OK);
-        when(mockStubResponse.getResponseBodyAsBytes()).thenReturn(EMPTY_BYTES);
-        when(mockStubResponse.getLatency()).thenReturn("100");
+        when(mockStubResponse.getResponseBody()).thenReturn(ByteBuffer.wrap(getBytesUtf8(SOME_RESULTS_MESSAGE)));
+        when(mockStubResponse.getBandwidthBytesPerSecond()).thenReturn(1024L);
         when(mockHttpServletResponse.getOutputStream()).thenReturn(SERVLET_OUTPUT_STREAM);
 
-        defaultResponseHandlingStrategy.handle(mockHttpServletResponse, mockAssertionRequest);
+        final WriteListener bodyWriter = defaultResponseHandlingStrategy.handle(mockHttpServletResponse, mockAssertionRequest, mockAsyncContext);
 
+        assertThat(bodyWriter).isNotNull();
         verify(mockHttpServletResponse).setStatus(HttpStatus.OK_200);
         verifyMainHeaders(mockHttpServletResponse);
+        verify(mockAsyncContext, never()).complete();
     }
 
     @Test
-    public void shouldCheckLatencyDelayWhenHandlingDefaultResponseWithLatency() throws Exception {
+    public void shouldWriteWholeThrottledBody_WhenHandlingResponseWithBandwidthWithoutAsync() throws Exception {
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
         when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.OK);
-        when(mockStubResponse.getResponseBodyAsBytes()).thenReturn(getBytesUtf8(SOME_RESULTS_MESSAGE));
-        when(mockStubResponse.getLatency()).thenReturn("100");
-        when(mockHttpServletResponse.getOutputStream()).thenReturn(SERVLET_OUTPUT_STREAM);
+        when(mockStubResponse.getResponseBody()).thenReturn(ByteBuffer.wrap(getBytesUtf8(SOME_RESULTS_MESSAGE)));
+        // Chunks of 10 bytes, one every 100 milliseconds
+        when(mockStubResponse.getBandwidthBytesPerSecond()).thenReturn(100L);
+        when(mockHttpServletResponse.getOutputStream()).thenReturn(new ServletOutputStream() {
+
+            @Override
+            public void write(final int i) throws IOException {
+                written.write(i);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(final WriteListener writeListener) {
+
+            }
+        });
 
-        long before = System.currentTimeMillis();
+        final long startNanos = System.nanoTime();
         defaultResponseHandlingStrategy.handle(mockHttpServletResponse, mockAssertionRequest);
-        long after = System.currentTimeMillis();
 
-        assertThat(after - before).isAtLeast(100L);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)).isAtLeast(100L);
+        assertThat(StringUtils.newStringUtf8(written.toByteArray())).isEqualTo(SOME_RESULTS_MESSAGE);
+        verify(mockHttpServletResponse).setStatus(HttpStatus.OK_200);
+    }
+
+    @Test
+    public void shouldWriteResponse_WhenHandlingAsyncResponseWithoutBandwidth() throws Exception {
+        when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.OK);
+        when(mockStubResponse.getResponseBody()).thenReturn(ByteBuffer.wrap(EMPTY_BYTES));
+        when(mockHttpServletResponse.getOutputStream()).thenReturn(SERVLET_OUTPUT_STREAM);
 
+        final WriteListener bodyWriter = defaultResponseHandlingStrategy.handle(mockHttpServletResponse, mockAssertionRequest, mockAsyncContext);
+
+        assertThat(bodyWriter).isNull();
+        verify(mockHttpServletResponse).setStatus(HttpStatus.OK_200);
         verifyMainHeaders(mockHttpServletResponse);
     }
 
@@ -121,7 +163,8 @@ public class DefaultResponseHandlingStrategyTest {
         when(mockStubResponse.getHeaders()).thenReturn(new HashMap<String, String>() {{
             put("Location", headerValuePrefix + "<%post.1%>");
         }});
-        when(mockStubResponse.getResponseBodyAsBytes()).thenReturn(getBytesUtf8(SOME_RESULTS_MESSAGE));
+        when(mockStubResponse.getHeaderTemplate("Location")).thenReturn(ResponseTemplate.compile(headerValuePrefix + "<%post.1%>"));
+        when(mockStubResponse.getResponseBody()).thenReturn(ByteBuffer.wrap(getBytesUtf8(SOME_RESULTS_MESSAGE)));
 
         defaultResponseHandlingStrategy.handle(mockHttpServletResponse, mockAssertionRequest);
 
@@ -1,5 +1,6 @@
 package io.github.azagniotov.stubby4j.handlers.strategy;
 
+import io.github.azagniotov.stubby4j.caching.FileContentCache;
 import io.github.azagniotov.stubby4j.handlers.strategy.stubs.DefaultResponseHandlingStrategy;
 import io.github.azagniotov.stubby4j.handlers.strategy.stubs.NotFoundResponseHandlingStrategy;
 import io.github.azagniotov.stubby4j.handlers.strategy.stubs.RedirectResponseHandlingStrategy;
@@ -15,11 +16,13 @@ import static com.google.common.truth.Truth.assertThat;
 
 public class HandlingStrategyFactoryTest {
 
+    private static final FileContentCache FILE_CONTENT_CACHE = FileContentCache.withBudgetMegabytes(1L);
+
     @Test
     public void shouldIdentifyResponseStrategyForDefaultResponse() throws Exception {
         final StubResponse stubResponse = StubResponse.okResponse();
 
-        final StubResponseHandlingStrategy stubResponseHandlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(stubResponse);
+        final StubResponseHandlingStrategy stubResponseHandlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(stubResponse, FILE_CONTENT_CACHE);
         assertThat(stubResponseHandlingStrategy).isInstanceOf(DefaultResponseHandlingStrategy.class);
     }
 
@@ -27,7 +30,7 @@ public class HandlingStrategyFactoryTest {
     public void shouldIdentifyResponseStrategyForNotFoundResponse() throws Exception {
         final StubResponse stubResponse = StubResponse.notFoundResponse();
 
-        final StubResponseHandlingStrategy stubResponseHandlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(stubResponse);
+        final StubResponseHandlingStrategy stubResponseHandlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(stubResponse, FILE_CONTENT_CACHE);
         assertThat(stubResponseHandlingStrategy).isInstanceOf(NotFoundResponseHandlingStrategy.class);
     }
 
@@ -35,7 +38,7 @@ public class HandlingStrategyFactoryTest {
     public void shouldIdentifyResponseStrategyForUnauthorizedResponse() throws Exception {
         final StubResponse stubResponse = StubResponse.unauthorizedResponse();
 
-        final StubResponseHandlingStrategy stubResponseHandlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(stubResponse);
+        final StubResponseHandlingStrategy stubResponseHandlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(stubResponse, FILE_CONTENT_CACHE);
         assertThat(stubResponseHandlingStrategy).isInstanceOf(UnauthorizedResponseHandlingStrategy.class);
     }
 
@@ -45,7 +48,7 @@ public class HandlingStrategyFactoryTest {
                 .withHttpStatusCode(Code.MOVED_PERMANENTLY)
                 .build();
 
-        final StubResponseHandlingStrategy stubResponseHandlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(stubResponse);
+        final StubResponseHandlingStrategy stubResponseHandlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(stubResponse, FILE_CONTENT_CACHE);
         assertThat(stubResponseHandlingStrategy).isInstanceOf(RedirectResponseHandlingStrategy.class);
     }
 
@@ -55,7 +58,7 @@ public class HandlingStrategyFactoryTest {
                 .withHttpStatusCode(Code.MOVED_TEMPORARILY)
                 .build();
 
-        final StubResponseHandlingStrategy stubResponseHandlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(stubResponse);
+        final StubResponseHandlingStrategy stubResponseHandlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(stubResponse, FILE_CONTENT_CACHE);
         assertThat(stubResponseHandlingStrategy).isInstanceOf(RedirectResponseHandlingStrategy.class);
     }
 
@@ -65,7 +68,7 @@ public class HandlingStrategyFactoryTest {
                 .withHttpStatusCode(Code.FOUND)
                 .build();
 
-        final StubResponseHandlingStrategy stubResponseHandlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(stubResponse);
+        final StubResponseHandlingStrategy stubResponseHandlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(stubResponse, FILE_CONTENT_CACHE);
         assertThat(stubResponseHandlingStrategy).isInstanceOf(RedirectResponseHandlingStrategy.class);
     }
 
@@ -75,7 +78,7 @@ public class HandlingStrategyFactoryTest {
                 .withHttpStatusCode(Code.SEE_OTHER)
                 .build();
 
-        final StubResponseHandlingStrategy stubResponseHandlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(stubResponse);
+        final StubResponseHandlingStrategy stubResponseHandlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(stubResponse, FILE_CONTENT_CACHE);
         assertThat(stubResponseHandlingStrategy).isInstanceOf(RedirectResponseHandlingStrategy.class);
     }
 
@@ -85,7 +88,7 @@ public class HandlingStrategyFactoryTest {
                 .withHttpStatusCode(Code.TEMPORARY_REDIRECT)
                 .build();
 
-        final StubResponseHandlingStrategy stubResponseHandlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(stubResponse);
+        final StubResponseHandlingStrategy stubResponseHandlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(stubResponse, FILE_CONTENT_CACHE);
         assertThat(stubResponseHandlingStrategy).isInstanceOf(RedirectResponseHandlingStrategy.class);
     }
 
@@ -95,7 +98,7 @@ public class HandlingStrategyFactoryTest {
                 .withHttpStatusCode(Code.PERMANENT_REDIRECT)
                 .build();
 
-        final StubResponseHandlingStrategy stubResponseHandlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(stubResponse);
+        final StubResponseHandlingStrategy stubResponseHandlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(stubResponse, FILE_CONTENT_CACHE);
         assertThat(stubResponseHandlingStrategy).isInstanceOf(RedirectResponseHandlingStrategy.class);
     }
 }
@@ -1,6 +1,7 @@
 package io.github.azagniotov.stubby4j.handlers.strategy;
 
 import io.github.azagniotov.stubby4j.handlers.strategy.stubs.RedirectResponseHandlingStrategy;
+import io.github.azagniotov.stubby4j.stubs.ResponseTemplate;
 import io.github.azagniotov.stubby4j.stubs.StubRequest;
 import io.github.azagniotov.stubby4j.stubs.StubResponse;
 import io.github.azagniotov.stubby4j.utils.HandlerUtils;
@@ -72,19 +73,6 @@ public class RedirectResponseHandlingStrategyTest {
         verifyMainHeaders(mockHttpServletResponse);
     }
 
-    @Test
-    public void shouldVerifyBehaviourWhenHandlingRedirectResponseWithLatency() throws Exception {
-        when(mockStubResponse.getHttpStatusCode()).thenReturn(Code.MOVED_PERMANENTLY);
-        when(mockStubResponse.getLatency()).thenReturn("100");
-
-        redirectResponseHandlingStrategy.handle(mockHttpServletResponse, mockAssertionRequest);
-
-        verify(mockHttpServletResponse).setStatus(HttpStatus.MOVED_PERMANENTLY_301);
-        verify(mockHttpServletResponse).setHeader(HttpHeader.LOCATION.asString(), mockStubResponse.getHeaders().get("location"));
-        verify(mockHttpServletResponse).setHeader(HttpHeader.CONNECTION.asString(), "close");
-        verifyMainHeaders(mockHttpServletResponse);
-    }
-
     @Test
     public void shouldReturnReplacedValueInLocationHeaderWhenQueryParamHasDynamicToken() throws Exception {
         String redirectUrlDomain = "test.com";
@@ -97,6 +85,7 @@ public class RedirectResponseHandlingStrategyTest {
         when(mockStubResponse.getHeaders()).thenReturn(new HashMap<String, String>() {{
             put("location", tokenizedLocationHeaderValue);
         }});
+        when(mockStubResponse.getHeaderTemplate("location")).thenReturn(ResponseTemplate.compile(tokenizedLocationHeaderValue));
 
         redirectResponseHandlingStrategy.handle(mockHttpServletResponse, mockAssertionRequest);
 
@@ -1,5 +1,6 @@
 package io.github.azagniotov.stubby4j.handlers.strategy;
 
+import io.github.azagniotov.stubby4j.caching.FileContentCache;
 import io.github.azagniotov.stubby4j.handlers.strategy.stubs.DefaultResponseHandlingStrategy;
 import io.github.azagniotov.stubby4j.handlers.strategy.stubs.NotFoundResponseHandlingStrategy;
 import io.github.azagniotov.stubby4j.handlers.strategy.stubs.StubResponseHandlingStrategy;
@@ -11,6 +12,8 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.nio.ByteBuffer;
+
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Mockito.when;
 
@@ -18,6 +21,7 @@ import static org.mockito.Mockito.when;
 public class StubsResponseHandlingStrategyFactoryTest {
 
     private static final byte[] EMPTY_BYTES = {};
+    private static final FileContentCache FILE_CONTENT_CACHE = FileContentCache.withBudgetMegabytes(1L);
 
     @Mock
     private StubResponse mockStubResponse;
@@ -25,9 +29,9 @@ public class StubsResponseHandlingStrategyFactoryTest {
     @Test
     public void shouldReturnNotFoundResponseHandlingStrategyWhen404ResponseHasNoBody() throws Exception {
         when(mockStubResponse.getHttpStatusCode()).thenReturn(HttpStatus.Code.NOT_FOUND);
-        when(mockStubResponse.getResponseBodyAsBytes()).thenReturn(EMPTY_BYTES);
+        when(mockStubResponse.getResponseBody()).thenReturn(ByteBuffer.wrap(EMPTY_BYTES));
 
-        StubResponseHandlingStrategy handlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(mockStubResponse);
+        StubResponseHandlingStrategy handlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(mockStubResponse, FILE_CONTENT_CACHE);
 
         assertThat(handlingStrategy).isInstanceOf(NotFoundResponseHandlingStrategy.class);
     }
@@ -35,9 +39,9 @@ public class StubsResponseHandlingStrategyFactoryTest {
     @Test
     public void shouldReturnDefaultResponseHandlingStrategyWhen404ResponseHasNoBody() throws Exception {
         when(mockStubResponse.getHttpStatusCode()).thenReturn(HttpStatus.Code.NOT_FOUND);
-        when(mockStubResponse.getResponseBodyAsBytes()).thenReturn("something".getBytes());
+        when(mockStubResponse.getResponseBody()).thenReturn(ByteBuffer.wrap("something".getBytes()));
 
-        StubResponseHandlingStrategy handlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(mockStubResponse);
+        StubResponseHandlingStrategy handlingStrategy = StubsResponseHandlingStrategyFactory.getStrategy(mockStubResponse, FILE_CONTENT_CACHE);
 
         assertThat(handlingStrategy).isInstanceOf(DefaultResponseHandlingStrategy.class);
     }
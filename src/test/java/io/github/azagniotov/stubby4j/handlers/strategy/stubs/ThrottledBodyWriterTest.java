@@ -0,0 +1,102 @@
+package io.github.azagniotov.stubby4j.handlers.strategy.stubs;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ThrottledBodyWriterTest {
+
+    @Mock
+    private AsyncContext mockAsyncContext;
+
+    @Test
+    public void shouldWriteBodyInChunksAtStubbedBandwidth_AndCompleteRequest() throws Exception {
+        final byte[] body = new byte[3000];
+        Arrays.fill(body, (byte) 'a');
+        final RecordingOutputStream outputStream = new RecordingOutputStream();
+
+        // 10 KB/s, i.e.: a 1024 bytes chunk every 100 milliseconds
+        final ThrottledBodyWriter throttledBodyWriter =
+                new ThrottledBodyWriter(mockAsyncContext, outputStream, ByteBuffer.wrap(body).asReadOnlyBuffer(), 10240L);
+
+        final long before = System.currentTimeMillis();
+        throttledBodyWriter.onWritePossible();
+
+        // Only the first chunk is written right away
+        assertThat(outputStream.size()).isEqualTo(1024);
+        verify(mockAsyncContext, never()).complete();
+
+        verify(mockAsyncContext, timeout(5000)).complete();
+        final long after = System.currentTimeMillis();
+
+        assertThat(after - before).isAtLeast(190L);
+        assertThat(outputStream.toByteArray()).isEqualTo(body);
+    }
+
+    @Test
+    public void shouldCompleteRequest_WhenBodyIsEmpty() throws Exception {
+        final ThrottledBodyWriter throttledBodyWriter =
+                new ThrottledBodyWriter(mockAsyncContext, new RecordingOutputStream(), ByteBuffer.wrap(new byte[]{}), 1024L);
+
+        throttledBodyWriter.onWritePossible();
+
+        verify(mockAsyncContext).complete();
+    }
+
+    @Test
+    public void shouldCompleteRequestOnce_WhenWritingFails() throws Exception {
+        final ThrottledBodyWriter throttledBodyWriter =
+                new ThrottledBodyWriter(mockAsyncContext, new RecordingOutputStream(), ByteBuffer.wrap(new byte[]{1, 2, 3}), 1024L);
+
+        throttledBodyWriter.onError(new IllegalStateException("Connection closed"));
+        throttledBodyWriter.onError(new IllegalStateException("Connection closed"));
+
+        verify(mockAsyncContext).complete();
+    }
+
+    private static final class RecordingOutputStream extends ServletOutputStream {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        @Override
+        public synchronized void write(final int b) {
+            bytes.write(b);
+        }
+
+        @Override
+        public synchronized void write(final byte[] b, final int off, final int len) {
+            bytes.write(b, off, len);
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(final WriteListener writeListener) {
+
+        }
+
+        private synchronized int size() {
+            return bytes.size();
+        }
+
+        private synchronized byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package io.github.azagniotov.stubby4j.http;
+
+import io.github.azagniotov.stubby4j.utils.StringUtils;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.HttpChannel;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.util.Callback;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProxyResponsePipeTest {
+
+    private static final String PROXY_HEADER = "x-stubby-proxy-response";
+
+    @Mock
+    private AsyncContext mockAsyncContext;
+
+    @Mock
+    private HttpServletResponse mockHttpServletResponse;
+
+    @Mock
+    private ServletOutputStream mockServletOutputStream;
+
+    @Mock
+    private Response mockUpstreamResponse;
+
+    @Mock
+    private org.eclipse.jetty.client.api.Request mockUpstreamRequest;
+
+    @Mock
+    private Callback mockContentCallback;
+
+    private List<Integer> completedStatuses;
+    private AtomicInteger startedResponses;
+    private ProxyResponsePipe proxyResponsePipe;
+
+    @Before
+    public void beforeEach() throws Exception {
+        completedStatuses = new ArrayList<>();
+        startedResponses = new AtomicInteger(0);
+        proxyResponsePipe = new ProxyResponsePipe(mockAsyncContext, mockHttpServletResponse,
+                Collections.singletonMap(PROXY_HEADER, "default"), startedResponses::incrementAndGet, completedStatuses::add);
+    }
+
+    @Test
+    public void shouldNotAskForNextChunk_UntilPreviousChunkWasWritten() throws Exception {
+        startUpstreamResponse();
+        // The first chunk is written right away, after which the output is not ready until Jetty says so
+        when(mockServletOutputStream.isReady()).thenReturn(true, false, true);
+
+        proxyResponsePipe.onContent(mockUpstreamResponse, ByteBuffer.wrap(StringUtils.getBytesUtf8("chunk")), mockContentCallback);
+
+        verify(mockServletOutputStream).write(StringUtils.getBytesUtf8("chunk"));
+        verify(mockContentCallback, never()).succeeded();
+
+        proxyResponsePipe.onWritePossible();
+
+        verify(mockContentCallback).succeeded();
+        verify(mockAsyncContext, never()).complete();
+
+        proxyResponsePipe.onComplete(new Result(mockUpstreamRequest, mockUpstreamResponse));
+
+        verify(mockAsyncContext).complete();
+        assertThat(completedStatuses).containsExactly(HttpStatus.OK_200);
+    }
+
+    @Test
+    public void shouldAbortClientConnection_WhenUpstreamFailsMidBody() throws Exception {
+        final Request mockBaseRequest = mock(Request.class);
+        final HttpChannel mockHttpChannel = mock(HttpChannel.class);
+        when(mockAsyncContext.getRequest()).thenReturn(mockBaseRequest);
+        when(mockBaseRequest.getHttpChannel()).thenReturn(mockHttpChannel);
+
+        startUpstreamResponse();
+        when(mockServletOutputStream.isReady()).thenReturn(true);
+        proxyResponsePipe.onContent(mockUpstreamResponse, ByteBuffer.wrap(StringUtils.getBytesUtf8("chunk")), mockContentCallback);
+
+        final IOException failure = new IOException("upstream went away");
+        proxyResponsePipe.onComplete(new Result(mockUpstreamRequest, mockUpstreamResponse, failure));
+
+        verify(mockHttpChannel).abort(failure);
+        verify(mockHttpServletResponse, never()).setStatus(HttpStatus.INTERNAL_SERVER_ERROR_500);
+        verify(mockAsyncContext).complete();
+        assertThat(completedStatuses).containsExactly(HttpStatus.OK_200);
+    }
+
+    @Test
+    public void shouldServe500OnJettyThread_WhenUpstreamFailsBeforeResponseStarted() throws Exception {
+        final List<Runnable> dispatched = new ArrayList<>();
+        doAnswer(invocation -> dispatched.add(invocation.getArgument(0))).when(mockAsyncContext).start(any(Runnable.class));
+        when(mockHttpServletResponse.getOutputStream()).thenReturn(mockServletOutputStream);
+
+        proxyResponsePipe.fail(new IOException("Connection refused"));
+
+        verify(mockHttpServletResponse).reset();
+        verify(mockHttpServletResponse).setStatus(HttpStatus.INTERNAL_SERVER_ERROR_500);
+        verify(mockHttpServletResponse).setHeader(PROXY_HEADER, "default");
+        // Nothing is written by the thread that reported the failure
+        verify(mockServletOutputStream, never()).write(any(byte[].class));
+        verify(mockAsyncContext, never()).complete();
+
+        assertThat(dispatched).hasSize(1);
+        dispatched.get(0).run();
+
+        verify(mockServletOutputStream).write(StringUtils.getBytesUtf8("Connection refused"));
+        verify(mockAsyncContext).complete();
+        assertThat(completedStatuses).containsExactly(HttpStatus.INTERNAL_SERVER_ERROR_500);
+        assertThat(startedResponses.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldCallOnCompletedOnce_WhenCompletedMoreThanOnce() throws Exception {
+        startUpstreamResponse();
+        when(mockServletOutputStream.isReady()).thenReturn(true);
+
+        proxyResponsePipe.onComplete(new Result(mockUpstreamRequest, mockUpstreamResponse));
+        proxyResponsePipe.onError(new IOException("client went away"));
+        proxyResponsePipe.fail(new IOException("upstream went away"));
+        proxyResponsePipe.onWritePossible();
+
+        verify(mockAsyncContext, times(1)).complete();
+        assertThat(completedStatuses).containsExactly(HttpStatus.OK_200);
+    }
+
+    private void startUpstreamResponse() throws Exception {
+        when(mockUpstreamResponse.getStatus()).thenReturn(HttpStatus.OK_200);
+        when(mockUpstreamResponse.getHeaders()).thenReturn(new HttpFields());
+        when(mockHttpServletResponse.getOutputStream()).thenReturn(mockServletOutputStream);
+
+        proxyResponsePipe.onHeaders(mockUpstreamResponse);
+
+        assertThat(startedResponses.get()).isEqualTo(1);
+        verify(mockHttpServletResponse).setStatus(HttpStatus.OK_200);
+        verify(mockHttpServletResponse).setHeader(PROXY_HEADER, "default");
+        verify(mockServletOutputStream).setWriteListener(proxyResponsePipe);
+    }
+}
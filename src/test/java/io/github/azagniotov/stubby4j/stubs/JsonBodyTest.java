@@ -0,0 +1,43 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+import org.junit.Test;
+
+import static com.google.common.truth.Truth.assertThat;
+
+
+public class JsonBodyTest {
+
+    @Test
+    public void shouldCanonicallyEqual_WhenKeysAndArrayElementsInDifferentOrder() throws Exception {
+        final JsonBody stubbed = JsonBody.parse("{\"name\": \"one\", \"ids\": [1, 2, 3], \"nested\": {\"b\": true, \"a\": null}}");
+        final JsonBody incoming = JsonBody.parse("{\"nested\": {\"a\": null, \"b\": true}, \"ids\": [3, 1, 2], \"name\": \"one\"}");
+
+        assertThat(stubbed.canonicallyEquals(incoming)).isTrue();
+        assertThat(stubbed.nonExtensiblyEquals(incoming)).isTrue();
+    }
+
+    @Test
+    public void shouldCanonicallyEqual_WhenNumbersHaveSameValue() throws Exception {
+        assertThat(JsonBody.parse("{\"amount\": 1}").canonicallyEquals(JsonBody.parse("{\"amount\": 1.0}"))).isTrue();
+        assertThat(JsonBody.parse("[1, 2]").canonicallyEquals(JsonBody.parse("[2, 1.0]"))).isTrue();
+    }
+
+    @Test
+    public void shouldNotCanonicallyEqual_WhenBodiesDiffer() throws Exception {
+        final JsonBody stubbed = JsonBody.parse("{\"name\": \"one\"}");
+
+        assertThat(stubbed.canonicallyEquals(JsonBody.parse("{\"name\": \"two\"}"))).isFalse();
+        assertThat(stubbed.canonicallyEquals(JsonBody.parse("{\"name\": \"one\", \"extra\": 1}"))).isFalse();
+        assertThat(stubbed.canonicallyEquals(JsonBody.parse("{\"name\": 1}"))).isFalse();
+        assertThat(stubbed.canonicallyEquals(JsonBody.parse("[{\"name\": \"one\"}]"))).isFalse();
+    }
+
+    @Test
+    public void shouldNotParse_WhenBodyIsNotJsonObjectNorArray() throws Exception {
+        assertThat(JsonBody.parse(null).isJson()).isFalse();
+        assertThat(JsonBody.parse("").isJson()).isFalse();
+        assertThat(JsonBody.parse("^.*$").isJson()).isFalse();
+        assertThat(JsonBody.parse("\"just a string\"").isJson()).isFalse();
+        assertThat(JsonBody.parse("{\"name\": ").isJson()).isFalse();
+    }
+}
@@ -0,0 +1,133 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+import io.github.azagniotov.stubby4j.stubs.proxy.StubProxyConfig;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.truth.Truth.assertThat;
+
+
+public class ProxyCircuitBreakerTest {
+
+    private final AtomicLong nanoClock = new AtomicLong(0L);
+
+    @Test
+    public void shouldTrip_WhenErrorRateReachedOverFullWindow() throws Exception {
+        final ProxyCircuitBreaker circuitBreaker = circuitBreaker("50", null, "4");
+
+        completeRequest(circuitBreaker, true, 0L);
+        completeRequest(circuitBreaker, true, 0L);
+        completeRequest(circuitBreaker, false, 0L);
+        // The window is not full yet
+        assertThat(circuitBreaker.getState()).isEqualTo(ProxyCircuitBreaker.State.CLOSED);
+
+        completeRequest(circuitBreaker, false, 0L);
+        assertThat(circuitBreaker.getState()).isEqualTo(ProxyCircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.getTrips()).isEqualTo(1L);
+        assertThat(circuitBreaker.tryAcquire()).isEqualTo(ProxyCircuitBreaker.Admission.REJECTED);
+    }
+
+    @Test
+    public void shouldNotTrip_WhenErrorRateBelowThreshold() throws Exception {
+        final ProxyCircuitBreaker circuitBreaker = circuitBreaker("50", null, "4");
+
+        for (int idx = 0; idx < 10; idx++) {
+            completeRequest(circuitBreaker, idx % 4 == 0, 0L);
+        }
+
+        assertThat(circuitBreaker.getState()).isEqualTo(ProxyCircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.getTrips()).isEqualTo(0L);
+    }
+
+    @Test
+    public void shouldCountSlowRequestsAsFailed() throws Exception {
+        final ProxyCircuitBreaker circuitBreaker = circuitBreaker(null, "100", "2");
+
+        completeRequest(circuitBreaker, false, TimeUnit.MILLISECONDS.toNanos(150));
+        completeRequest(circuitBreaker, false, TimeUnit.MILLISECONDS.toNanos(50));
+
+        assertThat(circuitBreaker.getState()).isEqualTo(ProxyCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void shouldLetSingleTrialRequestThrough_OnceOpenDurationElapsed() throws Exception {
+        final ProxyCircuitBreaker circuitBreaker = circuitBreaker("100", null, "1");
+
+        completeRequest(circuitBreaker, true, 0L);
+        assertThat(circuitBreaker.tryAcquire()).isEqualTo(ProxyCircuitBreaker.Admission.REJECTED);
+
+        nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertThat(circuitBreaker.getState()).isEqualTo(ProxyCircuitBreaker.State.HALF_OPEN);
+        assertThat(circuitBreaker.tryAcquire()).isEqualTo(ProxyCircuitBreaker.Admission.TRIAL);
+        assertThat(circuitBreaker.tryAcquire()).isEqualTo(ProxyCircuitBreaker.Admission.REJECTED);
+
+        // The trial request fails, so the breaker trips again
+        circuitBreaker.onCompleted(ProxyCircuitBreaker.Admission.TRIAL, true, 0L);
+        assertThat(circuitBreaker.getState()).isEqualTo(ProxyCircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.getTrips()).isEqualTo(2L);
+
+        nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertThat(circuitBreaker.tryAcquire()).isEqualTo(ProxyCircuitBreaker.Admission.TRIAL);
+        circuitBreaker.onCompleted(ProxyCircuitBreaker.Admission.TRIAL, false, 0L);
+        assertThat(circuitBreaker.getState()).isEqualTo(ProxyCircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.tryAcquire()).isEqualTo(ProxyCircuitBreaker.Admission.REGULAR);
+    }
+
+    @Test
+    public void shouldIgnoreStragglerRequests_WhenHalfOpen() throws Exception {
+        final ProxyCircuitBreaker circuitBreaker = circuitBreaker("100", null, "1");
+
+        // Let through while the breaker was closed, and still in flight once it is half-open
+        assertThat(circuitBreaker.tryAcquire()).isEqualTo(ProxyCircuitBreaker.Admission.REGULAR);
+        assertThat(circuitBreaker.tryAcquire()).isEqualTo(ProxyCircuitBreaker.Admission.REGULAR);
+        completeRequest(circuitBreaker, true, 0L);
+        nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertThat(circuitBreaker.tryAcquire()).isEqualTo(ProxyCircuitBreaker.Admission.TRIAL);
+
+        circuitBreaker.onCompleted(ProxyCircuitBreaker.Admission.REGULAR, false, 0L);
+        assertThat(circuitBreaker.getState()).isEqualTo(ProxyCircuitBreaker.State.HALF_OPEN);
+        circuitBreaker.release(ProxyCircuitBreaker.Admission.REGULAR);
+        assertThat(circuitBreaker.tryAcquire()).isEqualTo(ProxyCircuitBreaker.Admission.REJECTED);
+        assertThat(circuitBreaker.getTrips()).isEqualTo(1L);
+
+        circuitBreaker.onCompleted(ProxyCircuitBreaker.Admission.TRIAL, true, 0L);
+        assertThat(circuitBreaker.getState()).isEqualTo(ProxyCircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.getTrips()).isEqualTo(2L);
+    }
+
+    @Test
+    public void shouldLetAnotherTrialRequestThrough_WhenTrialRequestReleased() throws Exception {
+        final ProxyCircuitBreaker circuitBreaker = circuitBreaker("100", null, "1");
+
+        completeRequest(circuitBreaker, true, 0L);
+        nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(30));
+        assertThat(circuitBreaker.tryAcquire()).isEqualTo(ProxyCircuitBreaker.Admission.TRIAL);
+
+        // The trial request was never proxied, so it has no outcome
+        circuitBreaker.release(ProxyCircuitBreaker.Admission.TRIAL);
+        assertThat(circuitBreaker.getState()).isEqualTo(ProxyCircuitBreaker.State.HALF_OPEN);
+        assertThat(circuitBreaker.tryAcquire()).isEqualTo(ProxyCircuitBreaker.Admission.TRIAL);
+        assertThat(circuitBreaker.tryAcquire()).isEqualTo(ProxyCircuitBreaker.Admission.REJECTED);
+    }
+
+    private static void completeRequest(final ProxyCircuitBreaker circuitBreaker, final boolean serverError, final long elapsedNanos) {
+        final ProxyCircuitBreaker.Admission admission = circuitBreaker.tryAcquire();
+        assertThat(admission).isNotEqualTo(ProxyCircuitBreaker.Admission.REJECTED);
+        circuitBreaker.onCompleted(admission, serverError, elapsedNanos);
+    }
+
+    private ProxyCircuitBreaker circuitBreaker(final String errorRate, final String latencyMillis, final String window) {
+        final StubProxyConfig.Builder builder = new StubProxyConfig.Builder()
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .withProperty("circuit-breaker-window", window);
+        if (errorRate != null) {
+            builder.withProperty("circuit-breaker-error-rate", errorRate);
+        }
+        if (latencyMillis != null) {
+            builder.withProperty("circuit-breaker-latency-millis", latencyMillis);
+        }
+        return new ProxyCircuitBreaker(builder.build().getCircuitBreakerConfig(), nanoClock::get);
+    }
+}
@@ -12,6 +12,52 @@ import static io.github.azagniotov.stubby4j.utils.FileUtils.BR;
 
 public class RegexParserTest {
 
+    @Test
+    public void shouldExtractLiteralPrefixOfRegexPatterns() throws Exception {
+        assertThat(RegexParser.literalPrefix("^/api/v1/users/(\\d+)$")).isEqualTo("/api/v1/users/");
+        assertThat(RegexParser.literalPrefix("/api/v1/users/(\\d+)")).isEqualTo("/api/v1/users/");
+        assertThat(RegexParser.literalPrefix("/resource/item.json")).isEqualTo("/resource/item");
+        assertThat(RegexParser.literalPrefix("/resource/items?")).isEqualTo("/resource/item");
+        assertThat(RegexParser.literalPrefix("/resource/items*")).isEqualTo("/resource/item");
+        assertThat(RegexParser.literalPrefix("/resource/items{0,1}")).isEqualTo("/resource/item");
+        assertThat(RegexParser.literalPrefix("/resource/items+")).isEqualTo("/resource/items");
+
+        assertThat(RegexParser.literalPrefix("^/api/v1|/api/v2")).isEmpty();
+        assertThat(RegexParser.literalPrefix("(?i)/api/v1")).isEmpty();
+        assertThat(RegexParser.literalPrefix("^.*")).isEmpty();
+        assertThat(RegexParser.literalPrefix("a?")).isEmpty();
+    }
+
+    @Test
+    public void shouldDetermineWhetherDotAllCanChangePatternOutcome() throws Exception {
+        assertThat(RegexParser.isDotAllSensitive("^/invoice/123.*")).isTrue();
+        assertThat(RegexParser.isDotAllSensitive("(.*)\\s+Apple:\\s+(.*)")).isTrue();
+        assertThat(RegexParser.isDotAllSensitive("[a-z]+\\.json.")).isTrue();
+        assertThat(RegexParser.isDotAllSensitive("\\Qabc\\E")).isTrue();
+
+        assertThat(RegexParser.isDotAllSensitive("^/resource/item/(\\d+)$")).isFalse();
+        assertThat(RegexParser.isDotAllSensitive("^/resource/item\\.json$")).isFalse();
+        assertThat(RegexParser.isDotAllSensitive("[.]+")).isFalse();
+        assertThat(RegexParser.isDotAllSensitive("([A-Z]{5})")).isFalse();
+    }
+
+    @Test
+    public void shouldDetectLineTerminators() throws Exception {
+        assertThat(RegexParser.hasLineTerminator("one" + BR + "two")).isTrue();
+        assertThat(RegexParser.hasLineTerminator("one\rtwo")).isTrue();
+        assertThat(RegexParser.hasLineTerminator("one\u2028two")).isTrue();
+        assertThat(RegexParser.hasLineTerminator("/resource/item/1")).isFalse();
+        assertThat(RegexParser.hasLineTerminator("")).isFalse();
+    }
+
+    @Test
+    public void shouldCompileDotAllPattern_OnlyWhenDotAllCanChangeOutcome() throws Exception {
+        assertThat(CompiledRegex.compile("^/resource/item/(\\d+)$").isDotAllSensitive()).isFalse();
+        assertThat(CompiledRegex.compile("^/invoice/123.*").isDotAllSensitive()).isTrue();
+        // Syntax error, compiled as a literal
+        assertThat(CompiledRegex.compile("^abc[xyz{*.").isDotAllSensitive()).isFalse();
+    }
+
     @Test
     public void shouldDetermineStringAsPotentialRegexPatterns() throws Exception {
 
@@ -59,6 +105,17 @@ public class RegexParserTest {
         assertThat(match).isFalse();
     }
 
+    @Test
+    public void shouldNotMixUpCompiledPatterns_WhenPatternsHaveSameHashCode() throws Exception {
+        final String patternOne = "^/Aa/(\\d+)$";
+        final String patternTwo = "^/BB/(\\d+)$";
+        assertThat(patternOne.hashCode()).isEqualTo(patternTwo.hashCode());
+
+        assertThat(RegexParser.INSTANCE.match(patternOne, "/Aa/1", "url", new HashMap<>())).isTrue();
+        assertThat(RegexParser.INSTANCE.match(patternTwo, "/Aa/1", "url", new HashMap<>())).isFalse();
+        assertThat(RegexParser.INSTANCE.match(patternTwo, "/BB/1", "url", new HashMap<>())).isTrue();
+    }
+
     @Test
     public void shouldMatchSubjectWithMultiline() throws Exception {
         final String testSubject =
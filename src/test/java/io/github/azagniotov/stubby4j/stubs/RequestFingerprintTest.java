@@ -0,0 +1,107 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.truth.Truth.assertThat;
+
+
+public class RequestFingerprintTest {
+
+    @Test
+    public void shouldComputeDifferentFingerprints_ForNullAndEmptyFields() throws Exception {
+        final String nullField = new RequestFingerprint().append((String) null).toString();
+        final String emptyField = new RequestFingerprint().append("").toString();
+
+        assertThat(nullField).isNotEqualTo(emptyField);
+    }
+
+    @Test
+    public void shouldComputeDifferentFingerprints_WhenFieldsAreSplitDifferently() throws Exception {
+        final String one = new RequestFingerprint().appendMethods(Arrays.asList("ab", "c")).toString();
+        final String two = new RequestFingerprint().appendMethods(Arrays.asList("a", "bc")).toString();
+
+        assertThat(one).isNotEqualTo(two);
+    }
+
+    @Test
+    public void shouldComputeSameFingerprint_ForQueryParamsInDifferentOrder() throws Exception {
+        final Map<String, String> one = new LinkedHashMap<>();
+        one.put("a", "1");
+        one.put("b", "2");
+        final Map<String, String> two = new LinkedHashMap<>();
+        two.put("b", "2");
+        two.put("a", "1");
+
+        assertThat(new RequestFingerprint().appendQuery(one).toString()).isEqualTo(new RequestFingerprint().appendQuery(two).toString());
+    }
+
+    @Test
+    public void shouldComputeDifferentFingerprints_ForQueryParamAndHeaderWithSameNameAndValue() throws Exception {
+        final Map<String, String> pair = Collections.singletonMap("content-type", "application/json");
+        final Map<String, String> none = Collections.emptyMap();
+
+        // GET /x?content-type=application/json vs. GET /x with a 'Content-Type: application/json' header
+        final String queried = new RequestFingerprint()
+                .appendMethods(Collections.singletonList("GET"))
+                .append("/x")
+                .appendQuery(pair)
+                .appendHeaders(none, Collections.singleton("content-type"))
+                .toString();
+        final String headed = new RequestFingerprint()
+                .appendMethods(Collections.singletonList("GET"))
+                .append("/x")
+                .appendQuery(none)
+                .appendHeaders(pair, Collections.singleton("content-type"))
+                .toString();
+
+        assertThat(queried).isNotEqualTo(headed);
+    }
+
+    @Test
+    public void shouldNotCoalesceRequests_ForQueryParamAndKeyHeaderWithSameNameAndValue() throws Exception {
+        final StubRequest queried = new StubRequest.Builder()
+                .withUrl("/x").withMethodGet().withQuery("authorization", "Bearer one").build();
+        final StubRequest headed = new StubRequest.Builder()
+                .withUrl("/x").withMethodGet().withHeader("Authorization", "Bearer one").build();
+
+        final Set<String> keyHeaders = Collections.singleton("authorization");
+
+        assertThat(ProxyRequestCoalescer.fingerprint(queried, keyHeaders)).isNotEqualTo(ProxyRequestCoalescer.fingerprint(headed, keyHeaders));
+    }
+
+    @Test
+    public void shouldComputeDifferentFingerprints_WhenFieldsMoveBetweenMethodsAndUri() throws Exception {
+        final String one = new RequestFingerprint().appendMethods(Arrays.asList("GET", "/x")).append(null).toString();
+        final String two = new RequestFingerprint().appendMethods(Collections.singletonList("GET")).append("/x").toString();
+
+        assertThat(one).isNotEqualTo(two);
+    }
+
+    @Test
+    public void shouldAppendOnlyListedHeaders_WhenComputingFingerprint() throws Exception {
+        final Map<String, String> incomingHeaders = new LinkedHashMap<>();
+        incomingHeaders.put("authorization", "Bearer one");
+        incomingHeaders.put("x-request-id", "1");
+        final Map<String, String> listedHeaders = Collections.singletonMap("authorization", "Bearer one");
+
+        final String fingerprint = new RequestFingerprint().appendHeaders(incomingHeaders, Collections.singleton("authorization")).toString();
+        final String expected = new RequestFingerprint().appendHeaders(listedHeaders, listedHeaders.keySet()).toString();
+
+        assertThat(fingerprint).isEqualTo(expected);
+    }
+
+    @Test
+    public void shouldAppendBodyDigest_WhenComputingFingerprint() throws Exception {
+        final String fingerprint = new RequestFingerprint().appendDigest("{\"name\": \"one\"}").toString();
+
+        assertThat(fingerprint).doesNotContain("name");
+        assertThat(fingerprint).isNotEqualTo(new RequestFingerprint().appendDigest("{\"name\": \"two\"}").toString());
+        assertThat(new RequestFingerprint().appendDigest("").toString()).isEqualTo(new RequestFingerprint().append((String) null).toString());
+    }
+}
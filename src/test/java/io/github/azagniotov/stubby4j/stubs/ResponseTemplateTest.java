@@ -0,0 +1,91 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+import static io.github.azagniotov.stubby4j.utils.StringUtils.getBytesUtf8;
+
+
+public class ResponseTemplateTest {
+
+    @Test
+    public void shouldRenderTokens_WhenTokensHaveValues() throws Exception {
+        final Map<String, String> tokensAndValues = new HashMap<>();
+        tokensAndValues.put("url.1", "cheburashka");
+        tokensAndValues.put("query.1", "KOKO");
+
+        final ResponseTemplate template = ResponseTemplate.compile("<% url.1 %> content <%query.1    %><%url.1%>");
+
+        assertThat(template.hasTokens()).isTrue();
+        assertThat(template.render(tokensAndValues)).isEqualTo("cheburashka content KOKOcheburashka");
+    }
+
+    @Test
+    public void shouldReplaceTokensInATemplateWhenAllTokensPresent() throws Exception {
+
+        final Map<String, String> tokensAndValues = new HashMap<>();
+        tokensAndValues.put("url.1", "cheburashka");
+        tokensAndValues.put("url.2", "JOHN");
+        tokensAndValues.put("url.3", "wendy");
+        tokensAndValues.put("query.1", "KOKO");
+        final String template = "This is a response <% url.1 %> content <%url.2%> that going to be <%query.1    %> returned";
+
+        final String replacedTemplate = ResponseTemplate.compile(getBytesUtf8(template)).render(tokensAndValues);
+        assertThat(replacedTemplate).isEqualTo("This is a response cheburashka content JOHN that going to be KOKO returned");
+    }
+
+    @Test
+    public void shouldReplaceTokensInATemplateWhenNotAllTokenValuesPresent() throws Exception {
+
+        final Map<String, String> tokensAndValues = new HashMap<String, String>();
+        tokensAndValues.put("url.1", "cheburashka");
+        tokensAndValues.put("url.2", "JOHN");
+        final String template = "This is a response <% url.1 %> content <%url.2%> that going to be <% query.1 %> returned";
+
+        final String replacedTemplate = ResponseTemplate.compile(getBytesUtf8(template)).render(tokensAndValues);
+        assertThat(replacedTemplate).isEqualTo("This is a response cheburashka content JOHN that going to be <% query.1 %> returned");
+    }
+
+    @Test
+    public void shouldRenderTokensAsStubbed_WhenTokensHaveNoValues() throws Exception {
+        final ResponseTemplate template = ResponseTemplate.compile("Hello, <%  url.2 %>!");
+
+        assertThat(template.render(new HashMap<>())).isEqualTo("Hello, <%  url.2 %>!");
+    }
+
+    @Test
+    public void shouldRenderTokenValuesLiterally() throws Exception {
+        final Map<String, String> tokensAndValues = new HashMap<>();
+        tokensAndValues.put("post.1", "$1 \\d <% post.2 %>");
+        tokensAndValues.put("post.2", "nope");
+
+        final ResponseTemplate template = ResponseTemplate.compile("{\"price\": \"<% post.1 %>\"}");
+
+        assertThat(template.render(tokensAndValues)).isEqualTo("{\"price\": \"$1 \\d <% post.2 %>\"}");
+    }
+
+    @Test
+    public void shouldNotCompileTokens_WhenDelimitersAreNotTokens() throws Exception {
+        final String content = "if (a <% b) { return <% %> c; } <% unclosed";
+        final ResponseTemplate template = ResponseTemplate.compile(content);
+
+        assertThat(template.hasTokens()).isFalse();
+        assertThat(template.render(new HashMap<>())).isEqualTo(content);
+    }
+
+    @Test
+    public void shouldRenderMultiByteContentIntoOutputStream() throws Exception {
+        final Map<String, String> tokensAndValues = new HashMap<>();
+        tokensAndValues.put("url.1", "Пётр");
+
+        final ResponseTemplate template = ResponseTemplate.compile(getBytesUtf8("Привет, <% url.1 %> 👋"));
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        template.render(outputStream, tokensAndValues);
+
+        assertThat(outputStream.toByteArray()).isEqualTo(getBytesUtf8("Привет, Пётр 👋"));
+    }
+}
@@ -8,9 +8,16 @@ import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Matchers.any;
@@ -155,6 +162,86 @@ public class StubHttpLifecycleBuilderTest {
         assertThat(stubHttpLifecycle.getNextSequencedResponseId()).isEqualTo(0);
     }
 
+    @Test
+    public void shouldServeSequenceResponsesEvenly_WhenSequenceIsSteppedThroughConcurrently() throws Exception {
+        final List<StubResponse> sequence = new LinkedList<StubResponse>() {{
+            add(responseBuilder.withHttpStatusCode(Code.OK).withBody("#1").build());
+            add(responseBuilder.withHttpStatusCode(Code.OK).withBody("#2").build());
+            add(responseBuilder.withHttpStatusCode(Code.OK).withBody("#3").build());
+        }};
+        final StubHttpLifecycle stubHttpLifecycle = httpCycleBuilder.withResponse(sequence).build();
+
+        final int threads = 8;
+        final int callsPerThread = 3000;
+        final ConcurrentHashMap<String, AtomicInteger> servedResponses = new ConcurrentHashMap<>();
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                futures.add(executorService.submit(() -> {
+                    for (int call = 0; call < callsPerThread; call++) {
+                        final String body = stubHttpLifecycle.getResponse(true).getBody();
+                        servedResponses.computeIfAbsent(body, key -> new AtomicInteger()).incrementAndGet();
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                // Re-throws, if a thread went out of the sequence bounds
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertThat(servedResponses.keySet()).containsExactly("#1", "#2", "#3");
+        for (final AtomicInteger servedCount : servedResponses.values()) {
+            assertThat(servedCount.get()).isEqualTo(threads * callsPerThread / 3);
+        }
+        assertThat(stubHttpLifecycle.getNextSequencedResponseId()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldStepThroughSequenceResponsesPerClient_WhenSequenceClientKeyGiven() throws Exception {
+        final List<StubResponse> sequence = new LinkedList<StubResponse>() {{
+            add(responseBuilder.withHttpStatusCode(Code.OK).withBody("#1").build());
+            add(responseBuilder.withHttpStatusCode(Code.OK).withBody("#2").build());
+        }};
+        final StubHttpLifecycle stubHttpLifecycle = httpCycleBuilder.withResponse(sequence).build();
+
+        assertThat(stubHttpLifecycle.getResponse("worker-1").getBody()).isEqualTo("#1");
+        assertThat(stubHttpLifecycle.getResponse("worker-2").getBody()).isEqualTo("#1");
+        assertThat(stubHttpLifecycle.getResponse("worker-1").getBody()).isEqualTo("#2");
+        assertThat(stubHttpLifecycle.getResponse("worker-1").getBody()).isEqualTo("#1");
+        assertThat(stubHttpLifecycle.getResponse("worker-2").getBody()).isEqualTo("#2");
+
+        // The sequence shared by all clients was not stepped through
+        assertThat(stubHttpLifecycle.getNextSequencedResponseId()).isEqualTo(0);
+        assertThat(stubHttpLifecycle.getResponse((String) null).getBody()).isEqualTo("#1");
+        assertThat(stubHttpLifecycle.getNextSequencedResponseId()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldStartSequenceOver_WhenClientSequencePositionWasDropped() throws Exception {
+        final List<StubResponse> sequence = new LinkedList<StubResponse>() {{
+            add(responseBuilder.withHttpStatusCode(Code.OK).withBody("#1").build());
+            add(responseBuilder.withHttpStatusCode(Code.OK).withBody("#2").build());
+            add(responseBuilder.withHttpStatusCode(Code.OK).withBody("#3").build());
+        }};
+        final StubHttpLifecycle stubHttpLifecycle = httpCycleBuilder.withResponse(sequence).build();
+
+        for (int client = 0; client < StubHttpLifecycle.MAX_CLIENT_SEQUENCES; client++) {
+            assertThat(stubHttpLifecycle.getResponse("worker-" + client).getBody()).isEqualTo("#1");
+        }
+        // The first client is active again, so the second one is now the least recently served
+        assertThat(stubHttpLifecycle.getResponse("worker-0").getBody()).isEqualTo("#2");
+
+        assertThat(stubHttpLifecycle.getResponse("worker-" + StubHttpLifecycle.MAX_CLIENT_SEQUENCES).getBody()).isEqualTo("#1");
+
+        assertThat(stubHttpLifecycle.getResponse("worker-0").getBody()).isEqualTo("#3");
+        assertThat(stubHttpLifecycle.getResponse("worker-2").getBody()).isEqualTo("#2");
+        assertThat(stubHttpLifecycle.getResponse("worker-1").getBody()).isEqualTo("#1");
+    }
+
     @Test
     public void shouldRequireBasicAuthorization() throws Exception {
         final StubRequest stubRequest = requestBuilder
@@ -0,0 +1,128 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+
+public class StubIndexTest {
+
+    @Test
+    public void shouldReturnNoCandidates_WhenNoStubsLoaded() throws Exception {
+        final StubIndex stubIndex = new StubIndex(new LinkedList<>());
+
+        assertThat(stubIndex.size()).isEqualTo(0);
+        assertThat(stubIndex.candidates(incoming("GET", "/resource/item/1"))).isEmpty();
+    }
+
+    @Test
+    public void shouldReturnOnlyLiteralUrlCandidatesWithTheSameMethod() throws Exception {
+        final StubHttpLifecycle getItemOne = stub("/resource/item/1", "GET");
+        final StubHttpLifecycle getItemTwo = stub("/resource/item/2", "GET");
+        final StubHttpLifecycle postItemOne = stub("/resource/item/1", "POST");
+
+        final StubIndex stubIndex = new StubIndex(stubs(getItemOne, getItemTwo, postItemOne));
+
+        assertThat(stubIndex.candidates(incoming("GET", "/resource/item/1"))).containsExactly(getItemOne);
+        assertThat(stubIndex.candidates(incoming("POST", "/resource/item/1"))).containsExactly(postItemOne);
+        assertThat(stubIndex.candidates(incoming("PUT", "/resource/item/1"))).isEmpty();
+        assertThat(stubIndex.candidates(incoming("GET", "/resource/item/3"))).isEmpty();
+    }
+
+    @Test
+    public void shouldReturnRegexUrlCandidatesTogetherWithLiteralUrlCandidatesInDefinitionOrder() throws Exception {
+        final StubHttpLifecycle regexItem = stub("^/resource/item/(\\d+)$", "GET");
+        final StubHttpLifecycle literalItem = stub("/resource/item/1", "GET");
+        final StubHttpLifecycle anyMethodItem = stub("/resource/item/1");
+        final StubHttpLifecycle noUrl = stub(null, "GET");
+
+        final StubIndex stubIndex = new StubIndex(stubs(regexItem, literalItem, anyMethodItem, noUrl));
+
+        assertThat(stubIndex.candidates(incoming("GET", "/resource/item/1")))
+                .containsExactly(regexItem, literalItem, anyMethodItem, noUrl)
+                .inOrder();
+        assertThat(stubIndex.candidates(incoming("DELETE", "/resource/item/1")))
+                .containsExactly(anyMethodItem);
+    }
+
+    @Test
+    public void shouldTreatUrlWithSingleRegexCharAsNonLiteral() throws Exception {
+        final StubHttpLifecycle dottedUrl = stub("/resource/item.json", "GET");
+
+        final StubIndex stubIndex = new StubIndex(stubs(dottedUrl));
+
+        // '.' is a regex special char, so the stubbed URL may potentially match more than one incoming URL
+        assertThat(stubIndex.candidates(incoming("GET", "/resource/itemXjson"))).containsExactly(dottedUrl);
+    }
+
+    @Test
+    public void shouldReturnOnlyRegexUrlCandidatesWithMatchingLiteralPrefix() throws Exception {
+        final StubHttpLifecycle users = stub("^/api/v1/users/(\\d+)$", "GET");
+        final StubHttpLifecycle orders = stub("^/api/v1/orders/(\\d+)$", "GET");
+        final StubHttpLifecycle alternation = stub("^/api/v1/users/1|/api/v1/orders/1$", "GET");
+        final StubHttpLifecycle catchAll = stub("^/api/.*", "GET");
+
+        final StubIndex stubIndex = new StubIndex(stubs(users, orders, alternation, catchAll));
+
+        assertThat(stubIndex.candidates(incoming("GET", "/api/v1/users/1")))
+                .containsExactly(users, alternation, catchAll)
+                .inOrder();
+        assertThat(stubIndex.candidates(incoming("GET", "/api/v1/orders/1")))
+                .containsExactly(orders, alternation, catchAll)
+                .inOrder();
+        assertThat(stubIndex.candidates(incoming("GET", "/other"))).containsExactly(alternation);
+    }
+
+    @Test
+    public void shouldReturnRegexUrlCandidate_WhenIncomingUrlEqualsRawStubbedUrl() throws Exception {
+        final StubHttpLifecycle regexItem = stub("^/resource/item/(\\d+)$", "GET");
+
+        final StubIndex stubIndex = new StubIndex(stubs(regexItem));
+
+        // Stubbed URL is also compared for equality, i.e.: in case it is not a valid regex
+        assertThat(stubIndex.candidates(incoming("GET", "^/resource/item/(\\d+)$"))).containsExactly(regexItem);
+    }
+
+    @Test
+    public void shouldNotReturnDuplicateCandidates_WhenStubHasMultipleMethods() throws Exception {
+        final StubHttpLifecycle multiMethodStub = new StubHttpLifecycle.Builder()
+                .withRequest(new StubRequest.Builder().withUrl("/resource/item/1").withMethodGet().withMethodHead().build())
+                .build();
+
+        final StubIndex stubIndex = new StubIndex(stubs(multiMethodStub));
+
+        final StubRequest incomingRequest = new StubRequest.Builder()
+                .withUrl("/resource/item/1")
+                .withMethodGet()
+                .withMethodHead()
+                .build();
+
+        assertThat(stubIndex.candidates(incomingRequest)).containsExactly(multiMethodStub);
+    }
+
+    private static StubHttpLifecycle stub(final String url, final String... methods) {
+        final StubRequest.Builder requestBuilder = new StubRequest.Builder().withUrl(url);
+        for (final String method : methods) {
+            requestBuilder.withMethod(method);
+        }
+
+        return new StubHttpLifecycle.Builder().withRequest(requestBuilder.build()).build();
+    }
+
+    private static StubRequest incoming(final String method, final String url) {
+        return new StubRequest.Builder().withUrl(url).withMethod(method).build();
+    }
+
+    private static List<StubHttpLifecycle> stubs(final StubHttpLifecycle... stubs) {
+        final List<StubHttpLifecycle> loaded = new ArrayList<>();
+        for (final StubHttpLifecycle stub : stubs) {
+            loaded.add(stub);
+        }
+
+        return loaded;
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+
+public class StubMatchTraceLogTest {
+
+    @Test
+    public void shouldReturnMostRecentTracesFirst_AndEvictOldestWhenFull() throws Exception {
+        final StubMatchTraceLog stubMatchTraceLog = new StubMatchTraceLog(2);
+
+        stubMatchTraceLog.add(trace("/one"));
+        stubMatchTraceLog.add(trace("/two"));
+        stubMatchTraceLog.add(trace("/three"));
+
+        final List<StubMatchTrace> lastTraces = stubMatchTraceLog.last(10);
+        assertThat(lastTraces.size()).isEqualTo(2);
+        assertThat(lastTraces.get(0).getUrl()).isEqualTo("/three");
+        assertThat(lastTraces.get(1).getUrl()).isEqualTo("/two");
+
+        assertThat(stubMatchTraceLog.last(1).size()).isEqualTo(1);
+        assertThat(stubMatchTraceLog.last(0)).isEmpty();
+    }
+
+    @Test
+    public void shouldBoundTracedStubsPerRequest() throws Exception {
+        final StubMatchTrace matchTrace = trace("/resource");
+        final StubRequest stubbedRequest = new StubRequest.Builder().withUrl("/resource").withMethodGet().build();
+
+        for (int idx = 0; idx < StubMatchTrace.MAX_TRACED_STUBS + 3; idx++) {
+            matchTrace.beginStub(stubbedRequest);
+            matchTrace.record(StubMatchTrace.FIELD_URL, "/resource", "/resource", true);
+        }
+
+        assertThat(matchTrace.getTracedStubsCount()).isEqualTo(StubMatchTrace.MAX_TRACED_STUBS);
+        assertThat(matchTrace.getUntracedStubsCount()).isEqualTo(3);
+    }
+
+    private static StubMatchTrace trace(final String url) {
+        return new StubMatchTrace(new StubRequest.Builder().withUrl(url).withMethodGet().build());
+    }
+}
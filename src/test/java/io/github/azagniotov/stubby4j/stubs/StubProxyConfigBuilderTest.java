@@ -1,8 +1,9 @@
 package io.github.azagniotov.stubby4j.stubs;
 
+import io.github.azagniotov.stubby4j.stubs.proxy.StubProxyCacheConfig;
+import io.github.azagniotov.stubby4j.stubs.proxy.StubProxyCircuitBreakerConfig;
 import io.github.azagniotov.stubby4j.stubs.proxy.StubProxyConfig;
 import io.github.azagniotov.stubby4j.stubs.proxy.StubProxyStrategy;
-import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -25,11 +26,6 @@ public class StubProxyConfigBuilderTest {
         builder = new StubProxyConfig.Builder();
     }
 
-    @After
-    public void cleanup() throws Exception {
-        RegexParser.REGEX_PATTERN_CACHE.clear();
-    }
-
     @Test
     public void stubbedProxyConfigDefaultStrategyNotAdditive() throws Exception {
 
@@ -46,6 +42,183 @@ public class StubProxyConfigBuilderTest {
         assertThat(stubProxyConfig.getStrategy()).isEqualTo(StubProxyStrategy.ADDITIVE);
     }
 
+    @Test
+    public void stubbedProxyConfigNotStreamingByDefault() throws Exception {
+
+        final StubProxyConfig stubProxyConfig = builder.build();
+        assertThat(stubProxyConfig.isStreaming()).isFalse();
+    }
+
+    @Test
+    public void stubbedProxyConfigStreaming() throws Exception {
+
+        final StubProxyConfig stubProxyConfig = builder.withProperty("streaming", "true").build();
+        assertThat(stubProxyConfig.isStreaming()).isTrue();
+
+        final StubProxyConfig freshStubProxyConfig = builder.build();
+        assertThat(freshStubProxyConfig.isStreaming()).isFalse();
+    }
+
+    @Test
+    public void stubbedProxyConfigNotCoalescingByDefault() throws Exception {
+
+        final StubProxyConfig stubProxyConfig = builder.build();
+        assertThat(stubProxyConfig.isCoalescing()).isFalse();
+        assertThat(stubProxyConfig.getCoalescingKeyHeaders()).containsExactly("authorization", "cookie").inOrder();
+        assertThat(stubProxyConfig.getCoalescingMethods()).containsExactly("GET", "HEAD").inOrder();
+    }
+
+    @Test
+    public void stubbedProxyConfigCoalescing() throws Exception {
+
+        final StubProxyConfig stubProxyConfig = builder
+                .withProperty("coalescing", "true")
+                .withProperty("coalescing-key-headers", "X-Tenant, Authorization")
+                .withProperty("coalescing-methods", "get, Post")
+                .build();
+        assertThat(stubProxyConfig.isCoalescing()).isTrue();
+        assertThat(stubProxyConfig.getCoalescingKeyHeaders()).containsExactly("authorization", "x-tenant").inOrder();
+        assertThat(stubProxyConfig.getCoalescingMethods()).containsExactly("GET", "POST").inOrder();
+    }
+
+    @Test
+    public void stubbedProxyConfigNotCachingByDefault() throws Exception {
+
+        final StubProxyConfig stubProxyConfig = builder.build();
+        assertThat(stubProxyConfig.isCaching()).isFalse();
+        assertThat(stubProxyConfig.getCacheConfig()).isNull();
+    }
+
+    @Test
+    public void stubbedProxyConfigCaching() throws Exception {
+
+        final StubProxyConfig stubProxyConfig = builder
+                .withProperty("cache-ttl-seconds", "300")
+                .withProperty("cache-max-entries", "10")
+                .withProperty("cache-key", "Method, path, body")
+                .withProperty("cache-key-headers", "Accept, X-Tenant")
+                .build();
+        assertThat(stubProxyConfig.isCaching()).isTrue();
+
+        final StubProxyCacheConfig cacheConfig = stubProxyConfig.getCacheConfig();
+        assertThat(cacheConfig.getTtlMillis()).isEqualTo(300000L);
+        assertThat(cacheConfig.getMaxEntries()).isEqualTo(10);
+        assertThat(cacheConfig.getMaxBytes()).isEqualTo(StubProxyCacheConfig.DEFAULT_MAX_BYTES);
+        assertThat(cacheConfig.isKeyMethod()).isTrue();
+        assertThat(cacheConfig.isKeyPath()).isTrue();
+        assertThat(cacheConfig.isKeyQuery()).isFalse();
+        assertThat(cacheConfig.isKeyBody()).isTrue();
+        assertThat(cacheConfig.getKeyHeaders()).containsExactly("accept", "x-tenant").inOrder();
+    }
+
+    @Test
+    public void stubbedProxyConfigCaching_KeyedByUserHeadersByDefault() throws Exception {
+
+        final StubProxyCacheConfig cacheConfig = builder.withProperty("cache-ttl-seconds", "300").build().getCacheConfig();
+        assertThat(cacheConfig.isKeyMethod()).isTrue();
+        assertThat(cacheConfig.isKeyPath()).isTrue();
+        assertThat(cacheConfig.isKeyQuery()).isTrue();
+        assertThat(cacheConfig.isKeyBody()).isFalse();
+        assertThat(cacheConfig.getKeyHeaders()).containsExactly("authorization", "cookie").inOrder();
+    }
+
+    @Test
+    public void stubbedProxyConfigCachingThrows_WhenUnknownCacheKeyField() throws Exception {
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> {
+            builder.withProperty("cache-ttl-seconds", "300").withProperty("cache-key", "method, cookie").build();
+        });
+
+        assertThat(exception.getMessage()).isEqualTo("Unknown proxy config cache key field 'cookie'");
+    }
+
+    @Test
+    public void stubbedProxyConfigCachingThrows_WhenCacheLimitNotNumeric() throws Exception {
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> {
+            builder.withProperty("cache-ttl-seconds", "300").withProperty("cache-max-bytes", "lots").build();
+        });
+
+        assertThat(exception.getMessage()).isEqualTo("Proxy config property 'cache-max-bytes' must be a number, got 'lots'");
+    }
+
+    @Test
+    public void stubbedProxyConfigNotGuardedByDefault() throws Exception {
+
+        final StubProxyConfig stubProxyConfig = builder.build();
+        assertThat(stubProxyConfig.getConnectTimeoutMillis()).isEqualTo(0L);
+        assertThat(stubProxyConfig.getReadTimeoutMillis()).isEqualTo(0L);
+        assertThat(stubProxyConfig.getMaxInFlight()).isEqualTo(0);
+        assertThat(stubProxyConfig.getFastFailStatus()).isEqualTo(503);
+        assertThat(stubProxyConfig.getCircuitBreakerConfig()).isNull();
+    }
+
+    @Test
+    public void stubbedProxyConfigGuarded() throws Exception {
+
+        final StubProxyConfig stubProxyConfig = builder
+                .withProperty("connect-timeout-millis", "500")
+                .withProperty("read-timeout-millis", "2000")
+                .withProperty("max-in-flight", "50")
+                .withProperty("fast-fail-status", "429")
+                .withProperty("circuit-breaker-latency-millis", "1500")
+                .build();
+
+        assertThat(stubProxyConfig.getConnectTimeoutMillis()).isEqualTo(500L);
+        assertThat(stubProxyConfig.getReadTimeoutMillis()).isEqualTo(2000L);
+        assertThat(stubProxyConfig.getMaxInFlight()).isEqualTo(50);
+        assertThat(stubProxyConfig.getFastFailStatus()).isEqualTo(429);
+
+        final StubProxyCircuitBreakerConfig circuitBreakerConfig = stubProxyConfig.getCircuitBreakerConfig();
+        assertThat(circuitBreakerConfig.getLatencyMillis()).isEqualTo(1500L);
+        assertThat(circuitBreakerConfig.getErrorRatePercent()).isEqualTo(StubProxyCircuitBreakerConfig.DEFAULT_ERROR_RATE_PERCENT);
+        assertThat(circuitBreakerConfig.getWindow()).isEqualTo(StubProxyCircuitBreakerConfig.DEFAULT_WINDOW);
+        assertThat(circuitBreakerConfig.getOpenMillis()).isEqualTo(30000L);
+    }
+
+    @Test
+    public void stubbedProxyConfigGuardedThrows_WhenTimeoutNegative() throws Exception {
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> {
+            builder.withProperty("read-timeout-millis", "-1").build();
+        });
+
+        assertThat(exception.getMessage()).isEqualTo("Proxy config property 'read-timeout-millis' must not be negative, got '-1'");
+    }
+
+    @Test
+    public void stubbedProxyConfigGuardedThrows_WhenFastFailStatusUnknown() throws Exception {
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> {
+            builder.withProperty("fast-fail-status", "999").build();
+        });
+
+        assertThat(exception.getMessage()).isEqualTo("Proxy config fast fail status must be a known HTTP status code, got 999");
+    }
+
+    @Test
+    public void stubbedProxyConfigThrows_WhenStreamingAndCaching() throws Exception {
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> {
+            builder.withUuid("unique")
+                    .withPropertyStreaming(true)
+                    .withProperty("cache-ttl-seconds", "300")
+                    .build();
+        });
+
+        assertThat(exception.getMessage()).isEqualTo("Proxy config 'unique' can not both stream and cache the proxied responses");
+    }
+
+    @Test
+    public void stubbedProxyConfigGuardedThrows_WhenCircuitBreakerErrorRateNotPercentage() throws Exception {
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> {
+            builder.withProperty("circuit-breaker-error-rate", "150").build();
+        });
+
+        assertThat(exception.getMessage()).isEqualTo("Proxy config circuit breaker error rate must be a percentage between 1 and 100, got 150");
+    }
+
     @Test
     public void stubbedProxyConfigHasNoHeaders() throws Exception {
 
@@ -0,0 +1,84 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+
+public class StubRepositorySnapshotTest {
+
+    @Test
+    public void shouldComputeSameMatchCacheKey_ForIdenticalRequests() throws Exception {
+        final StubRepositorySnapshot snapshot = snapshot(stubWithHeader("x-api-key", "secret"));
+
+        final StubRequest incomingOne = incoming().withHeader("x-api-key", "secret").withQuery("one", "1").withQuery("two", "2").build();
+        final StubRequest incomingTwo = incoming().withHeader("x-api-key", "secret").withQuery("two", "2").withQuery("one", "1").build();
+
+        assertThat(snapshot.matchCacheKey(incomingOne)).isEqualTo(snapshot.matchCacheKey(incomingTwo));
+    }
+
+    @Test
+    public void shouldIgnoreHeadersNotReferencedByStubs_WhenComputingMatchCacheKey() throws Exception {
+        final StubRepositorySnapshot snapshot = snapshot(stubWithHeader("x-api-key", "secret"));
+
+        final StubRequest incomingOne = incoming().withHeader("x-api-key", "secret").withHeader("x-request-id", "1").build();
+        final StubRequest incomingTwo = incoming().withHeader("x-api-key", "secret").withHeader("x-request-id", "2").build();
+        final StubRequest incomingThree = incoming().withHeader("x-api-key", "other").withHeader("x-request-id", "1").build();
+
+        assertThat(snapshot.matchCacheKey(incomingOne)).isEqualTo(snapshot.matchCacheKey(incomingTwo));
+        assertThat(snapshot.matchCacheKey(incomingOne)).isNotEqualTo(snapshot.matchCacheKey(incomingThree));
+    }
+
+    @Test
+    public void shouldComputeDifferentMatchCacheKeys_ForDifferentQueryOrBody() throws Exception {
+        final StubRepositorySnapshot snapshot = snapshot(stubWithHeader("x-api-key", "secret"));
+
+        // Without length prefixes, both would be flattened to the same "a=1, b=2"
+        final StubRequest incomingOne = incoming().withQuery("a", "1, b=2").build();
+        final StubRequest incomingTwo = incoming().withQuery("a", "1").withQuery("b", "2").build();
+        final StubRequest incomingThree = incoming().withMethodPost().withPost("{\"name\": \"one\"}").build();
+        final StubRequest incomingFour = incoming().withMethodPost().withPost("{\"name\": \"two\"}").build();
+
+        assertThat(snapshot.matchCacheKey(incomingOne)).isNotEqualTo(snapshot.matchCacheKey(incomingTwo));
+        assertThat(snapshot.matchCacheKey(incomingThree)).isNotEqualTo(snapshot.matchCacheKey(incomingFour));
+    }
+
+    @Test
+    public void shouldComputeDifferentMatchCacheKeys_ForQueryParamAndHeaderWithSameNameAndValue() throws Exception {
+        final StubRepositorySnapshot snapshot = snapshot(stubWithHeader("content-type", "application/json"));
+
+        final StubRequest queried = incoming().withQuery("content-type", "application/json").build();
+        final StubRequest headed = incoming().withHeader("content-type", "application/json").build();
+
+        assertThat(snapshot.matchCacheKey(queried)).isNotEqualTo(snapshot.matchCacheKey(headed));
+    }
+
+    @Test
+    public void shouldComputeDifferentMatchCacheKeys_ForDifferentSnapshots() throws Exception {
+        final StubRepositorySnapshot snapshot = snapshot(stubWithHeader("x-api-key", "secret"));
+        final StubRepositorySnapshot newerSnapshot = snapshot.withProxyConfigs(new HashMap<>());
+
+        final StubRequest incomingRequest = incoming().build();
+
+        assertThat(snapshot.matchCacheKey(incomingRequest)).isNotEqualTo(newerSnapshot.matchCacheKey(incomingRequest));
+    }
+
+    private static StubRequest.Builder incoming() {
+        return new StubRequest.Builder().withUrl("/resource/item/1").withMethodGet();
+    }
+
+    private static StubHttpLifecycle stubWithHeader(final String headerName, final String headerValue) {
+        return new StubHttpLifecycle.Builder()
+                .withRequest(new StubRequest.Builder().withUrl("/resource/item/1").withMethodGet().withHeader(headerName, headerValue).build())
+                .build();
+    }
+
+    private static StubRepositorySnapshot snapshot(final StubHttpLifecycle stub) {
+        final List<StubHttpLifecycle> stubs = Collections.singletonList(stub);
+        return new StubRepositorySnapshot(stubs, new HashMap<>(), new HashMap<>(), new HashMap<>());
+    }
+}
@@ -6,9 +6,12 @@ import io.github.azagniotov.stubby4j.client.StubbyResponse;
 import io.github.azagniotov.stubby4j.common.Common;
 import io.github.azagniotov.stubby4j.http.StubbyHttpTransport;
 import io.github.azagniotov.stubby4j.stubs.proxy.StubProxyConfig;
+import io.github.azagniotov.stubby4j.utils.FileUtils;
+import io.github.azagniotov.stubby4j.utils.PrometheusTextWriter;
 import io.github.azagniotov.stubby4j.yaml.YamlParseResultSet;
 import io.github.azagniotov.stubby4j.yaml.YamlParser;
 import org.eclipse.jetty.http.HttpStatus;
+import org.json.JSONObject;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -19,14 +22,18 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.regex.Pattern;
@@ -37,9 +44,12 @@ import static io.github.azagniotov.stubby4j.common.Common.HEADER_X_STUBBY_PROXY_
 import static io.github.azagniotov.stubby4j.common.Common.HEADER_X_STUBBY_PROXY_RESPONSE;
 import static org.junit.Assert.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -106,6 +116,618 @@ public class StubRepositoryTest {
         assertThat(spyStubRepository.getResourceStatsAsCsv()).isEqualTo("resourceId,hits\n");
     }
 
+    @Test
+    public void shouldCountStubHitsAndMisses_AndWriteStats() throws Exception {
+        final YamlParseResultSet yamlParseResultSet = parseYaml("/resource/item/1", STUB_UUID_ONE);
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        for (final String url : Arrays.asList("/resource/item/1", "/resource/item/2", "/resource/item/1")) {
+            final StubRequest incomingRequest = new StubRequest.Builder()
+                    .withUrl(url)
+                    .withMethodGet()
+                    .withHeader("content-type", Common.HEADER_APPLICATION_JSON)
+                    .build();
+            doReturn(incomingRequest).when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+
+            spyStubRepository.search(mockHttpServletRequest);
+        }
+
+        assertThat(spyStubRepository.getResourceStats()).containsExactly("0", 2L);
+        assertThat(spyStubRepository.getResourceStatsAsCsv()).isEqualTo("resourceId,hits" + FileUtils.BR + "0,2");
+
+        final StringBuilder csv = new StringBuilder();
+        spyStubRepository.writeStatsAsCsv(csv);
+        assertThat(csv.toString()).isEqualTo("type,id,url,hits" + FileUtils.BR + "stub,0,/resource/item/1,2" + FileUtils.BR + "miss,,,1" + FileUtils.BR);
+
+        final StringBuilder json = new StringBuilder();
+        spyStubRepository.writeStatsAsJson(json);
+        final JSONObject stats = new JSONObject(json.toString());
+        assertThat(stats.getLong("misses")).isEqualTo(1L);
+        assertThat(stats.getJSONArray("proxyConfigs").length()).isEqualTo(0);
+        assertThat(stats.getJSONArray("stubs").length()).isEqualTo(1);
+
+        final JSONObject stubStats = stats.getJSONArray("stubs").getJSONObject(0);
+        assertThat(stubStats.getInt("resourceId")).isEqualTo(0);
+        assertThat(stubStats.getString("uuid")).isEqualTo(STUB_UUID_ONE);
+        assertThat(stubStats.getString("url")).isEqualTo("/resource/item/1");
+        assertThat(stubStats.getLong("hits")).isEqualTo(2L);
+    }
+
+    @Test
+    public void shouldRecordMatchLatencies_PerStubAndForAllRequests() throws Exception {
+        final YamlParseResultSet yamlParseResultSet = parseYaml("/resource/item/1", STUB_UUID_ONE);
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        for (final String url : Arrays.asList("/resource/item/1", "/resource/item/2", "/resource/item/1")) {
+            final StubRequest incomingRequest = new StubRequest.Builder()
+                    .withUrl(url)
+                    .withMethodGet()
+                    .withHeader("content-type", Common.HEADER_APPLICATION_JSON)
+                    .build();
+            doReturn(incomingRequest).when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+
+            final StubSearchResult stubSearchResult = spyStubRepository.search(mockHttpServletRequest);
+            stubSearchResult.recordLatency(StubLatencies.Phase.RENDER, 1000L);
+        }
+
+        final JSONObject latencies = spyStubRepository.getLatenciesAsJson(true);
+        assertThat(latencies.getJSONObject("all").getJSONObject("match").getLong("count")).isEqualTo(3L);
+        assertThat(latencies.getJSONObject("all").getJSONObject("render").getLong("count")).isEqualTo(3L);
+        assertThat(latencies.getJSONObject("all").getJSONObject("render").getLong("p99")).isEqualTo(1L);
+        assertThat(latencies.getJSONObject("all").has("proxy")).isFalse();
+
+        assertThat(latencies.getJSONArray("stubs").length()).isEqualTo(1);
+        final JSONObject stubLatencies = latencies.getJSONArray("stubs").getJSONObject(0);
+        assertThat(stubLatencies.getString("url")).isEqualTo("/resource/item/1");
+        assertThat(stubLatencies.getJSONObject("latencies").getJSONObject("match").getLong("count")).isEqualTo(2L);
+        assertThat(stubLatencies.getJSONObject("latencies").getJSONObject("render").getLong("count")).isEqualTo(2L);
+
+        // Reset on read
+        final JSONObject nextLatencies = spyStubRepository.getLatenciesAsJson(true);
+        assertThat(nextLatencies.getJSONObject("all").getJSONObject("match").getLong("count")).isEqualTo(0L);
+        assertThat(spyStubRepository.getLatenciesAsJson(false).getJSONObject("all").getJSONObject("match").getLong("count")).isEqualTo(3L);
+    }
+
+    @Test
+    public void shouldWriteMetrics_WithRequestCountsByStubAndStatus() throws Exception {
+        final YamlParseResultSet yamlParseResultSet = parseYaml("/resource/item/1", STUB_UUID_ONE);
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        for (final String url : Arrays.asList("/resource/item/1", "/resource/item/2", "/resource/item/1")) {
+            final StubRequest incomingRequest = new StubRequest.Builder()
+                    .withUrl(url)
+                    .withMethodGet()
+                    .withHeader("content-type", Common.HEADER_APPLICATION_JSON)
+                    .build();
+            doReturn(incomingRequest).when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+
+            final StubSearchResult stubSearchResult = spyStubRepository.search(mockHttpServletRequest);
+            stubSearchResult.recordStatus(stubSearchResult.getMatch().getHttpStatusCode().getCode());
+        }
+
+        final StringBuilder metrics = new StringBuilder();
+        spyStubRepository.writeMetrics(new PrometheusTextWriter(metrics));
+
+        assertThat(metrics.toString()).contains("# TYPE stubby4j_requests_total counter\n");
+        assertThat(metrics.toString()).contains("stubby4j_requests_total{stub=\"" + STUB_UUID_ONE + "\",status=\"200\"} 2\n");
+        assertThat(metrics.toString()).contains("stubby4j_requests_total{stub=\"none\",status=\"404\"} 1\n");
+        assertThat(metrics.toString()).contains("stubby4j_stub_hits_total{stub=\"" + STUB_UUID_ONE + "\"} 2\n");
+        assertThat(metrics.toString()).contains("stubby4j_not_found_total 1\n");
+        assertThat(metrics.toString()).contains("stubby4j_latency_seconds_bucket{phase=\"match\",le=\"+Inf\"} 3\n");
+        assertThat(metrics.toString()).contains("stubby4j_latency_seconds_count{phase=\"match\"} 3\n");
+        assertThat(metrics.toString()).contains("stubby4j_cache_hit_ratio{cache=\"stub_match\"}");
+        assertThat(metrics.toString()).contains("stubby4j_reloads_total 0\n");
+    }
+
+    @Test
+    public void shouldWriteMetrics_WithResourceIdOfStubWithoutUuid() throws Exception {
+        spyStubRepository.resetStubsCache(new YamlParseResultSet(new LinkedList<>(Arrays.asList(
+                yamlStub("/resource/item/1", "url: /resource/item/1"))), new HashMap<>()));
+
+        doReturn(new StubRequest.Builder().withUrl("/resource/item/1").withMethodGet().build())
+                .when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+        spyStubRepository.search(mockHttpServletRequest);
+
+        final StringBuilder metrics = new StringBuilder();
+        spyStubRepository.writeMetrics(new PrometheusTextWriter(metrics));
+
+        assertThat(metrics.toString()).contains("stubby4j_stub_hits_total{stub=\"0\"} 1\n");
+    }
+
+    @Test
+    public void shouldKeepCountingStubHits_WhenStubMovesToAnotherResourceId() throws Exception {
+        final StubHttpLifecycle deletedStub = new StubHttpLifecycle.Builder()
+                .withRequest(new StubRequest.Builder().withUrl("/resource/item/1").withMethodGet().build())
+                .withResponse(StubResponse.okResponse())
+                .build();
+        final StubHttpLifecycle keptStub = new StubHttpLifecycle.Builder()
+                .withRequest(new StubRequest.Builder().withUrl("/resource/item/2").withMethodGet().build())
+                .withResponse(StubResponse.okResponse())
+                .build();
+        spyStubRepository.resetStubsCache(new YamlParseResultSet(new LinkedList<>(Arrays.asList(deletedStub, keptStub)), new HashMap<>()));
+
+        final StubRequest incomingRequest = new StubRequest.Builder().withUrl("/resource/item/2").withMethodGet().build();
+        doReturn(incomingRequest).when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+
+        spyStubRepository.search(mockHttpServletRequest);
+        spyStubRepository.search(mockHttpServletRequest);
+        assertThat(spyStubRepository.getResourceStats()).containsExactly("1", 2L);
+
+        spyStubRepository.deleteStubByIndex(0);
+        spyStubRepository.search(mockHttpServletRequest);
+
+        assertThat(spyStubRepository.getResourceStats()).containsExactly("0", 3L);
+    }
+
+    @Test
+    public void shouldKeepCountingStubHits_WhenUnchangedStubIsReloaded() throws Exception {
+        spyStubRepository.resetStubsCache(new YamlParseResultSet(new LinkedList<>(Arrays.asList(
+                yamlStub("/resource/item/1", "url: /resource/item/1"),
+                yamlStub("/resource/item/2", "url: /resource/item/2"))), new HashMap<>()));
+
+        doReturn(new StubRequest.Builder().withUrl("/resource/item/1").withMethodGet().build())
+                .when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+        spyStubRepository.search(mockHttpServletRequest);
+        doReturn(new StubRequest.Builder().withUrl("/resource/item/2").withMethodGet().build())
+                .when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+        spyStubRepository.search(mockHttpServletRequest);
+        assertThat(spyStubRepository.getResourceStats()).containsExactly("0", 1L, "1", 1L);
+
+        // Reloaded stubs are parsed anew: the first one is unchanged, the second one was edited
+        spyStubRepository.resetStubsCache(new YamlParseResultSet(new LinkedList<>(Arrays.asList(
+                yamlStub("/resource/item/1", "url: /resource/item/1"),
+                yamlStub("/resource/item/2", "url: /resource/item/2\nmethod: GET"))), new HashMap<>()));
+
+        assertThat(spyStubRepository.getResourceStats()).containsExactly("0", 1L);
+    }
+
+    @Test
+    public void shouldNotModifyLoadedStub_WhenStubMovesToAnotherResourceId() throws Exception {
+        final StubHttpLifecycle deletedStub = parseYaml("/resource/item/1", STUB_UUID_ONE).getStubs().get(0);
+        final StubHttpLifecycle keptStub = parseYaml("/resource/item/2", STUB_UUID_TWO).getStubs().get(0);
+        spyStubRepository.resetStubsCache(new YamlParseResultSet(
+                new LinkedList<>(Arrays.asList(deletedStub, keptStub)),
+                new HashMap<String, StubHttpLifecycle>() {{
+                    put(STUB_UUID_ONE, deletedStub);
+                    put(STUB_UUID_TWO, keptStub);
+                }}));
+
+        final StubHttpLifecycle movedStub = spyStubRepository.getStubs().get(1);
+        assertThat(movedStub.getResourceId()).isEqualTo("1");
+
+        spyStubRepository.deleteStubByIndex(0);
+
+        final StubHttpLifecycle loadedStub = spyStubRepository.getStubs().get(0);
+        assertThat(loadedStub).isNotSameInstanceAs(movedStub);
+        assertThat(loadedStub.getResourceId()).isEqualTo("0");
+        assertThat(loadedStub.getUUID()).isEqualTo(STUB_UUID_TWO);
+        assertThat(movedStub.getResourceId()).isEqualTo("1");
+        assertThat(spyStubRepository.deleteStubByUuid(STUB_UUID_TWO)).isSameInstanceAs(loadedStub);
+    }
+
+    @Test
+    public void shouldCountProxyConfigHits_WhenRequestIsProxied() throws Exception {
+        final StubProxyConfig stubProxyConfig = new StubProxyConfig.Builder()
+                .withStrategy("as-is")
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .build();
+
+        final YamlParseResultSet yamlParseResultSet = new YamlParseResultSet(new LinkedList<>(), new HashMap<>(), new HashMap<String, StubProxyConfig>() {{
+            put(stubProxyConfig.getUUID(), stubProxyConfig);
+        }});
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        when(mockStubbyHttpTransport.httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong())).thenReturn(CompletableFuture.completedFuture(new StubbyResponse(200, "OK", new HashMap<>())));
+
+        final StubRequest incomingRequest = new StubRequest.Builder().withUrl("/post/1").withMethodGet().build();
+        doReturn(incomingRequest).when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+        spyStubRepository.search(mockHttpServletRequest);
+
+        final StringBuilder csv = new StringBuilder();
+        spyStubRepository.writeStatsAsCsv(csv);
+        assertThat(csv.toString()).isEqualTo("type,id,url,hits" + FileUtils.BR + "proxy,default,https://jsonplaceholder.typicode.com,1" + FileUtils.BR + "miss,,,0" + FileUtils.BR);
+        assertThat(spyStubRepository.getResourceStats()).isEmpty();
+    }
+
+    @Test
+    public void shouldNotSendProxiedRequest_UntilStreamed_WhenProxyConfigIsStreaming() throws Exception {
+        final StubProxyConfig stubProxyConfig = new StubProxyConfig.Builder()
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .withPropertyStreaming(true)
+                .build();
+
+        final YamlParseResultSet yamlParseResultSet = new YamlParseResultSet(new LinkedList<>(), new HashMap<>(), new HashMap<String, StubProxyConfig>() {{
+            put(stubProxyConfig.getUUID(), stubProxyConfig);
+        }});
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        final StubRequest incomingRequest = new StubRequest.Builder().withUrl("/post/1").withMethodGet().build();
+        doReturn(incomingRequest).when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+        final StubSearchResult stubSearchResult = spyStubRepository.search(mockHttpServletRequest);
+
+        assertThat(stubSearchResult.isStreamed()).isTrue();
+        assertThat(stubSearchResult.isPending()).isFalse();
+        assertThat(stubSearchResult.getStreamedProxyRequest()).isNotNull();
+        verify(mockStubbyHttpTransport, never()).httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void shouldReceiveProxiedResponseInFull_WhenStreamedResponseIsMatched() throws Exception {
+        final StubProxyConfig stubProxyConfig = new StubProxyConfig.Builder()
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .withPropertyStreaming(true)
+                .build();
+
+        final YamlParseResultSet yamlParseResultSet = new YamlParseResultSet(new LinkedList<>(), new HashMap<>(), new HashMap<String, StubProxyConfig>() {{
+            put(stubProxyConfig.getUUID(), stubProxyConfig);
+        }});
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        when(mockStubbyHttpTransport.httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong())).thenReturn(CompletableFuture.completedFuture(new StubbyResponse(200, "OK", new HashMap<>())));
+
+        final StubRequest incomingRequest = new StubRequest.Builder().withUrl("/post/1").withMethodGet().build();
+        doReturn(incomingRequest).when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+        final StubSearchResult stubSearchResult = spyStubRepository.search(mockHttpServletRequest);
+
+        final StubResponse proxiedResponse = stubSearchResult.getMatch();
+        assertThat(proxiedResponse.getHttpStatusCode().getCode()).isEqualTo(200);
+        assertThat(proxiedResponse.getBody()).isEqualTo("OK");
+        assertThat(stubSearchResult.getMatch()).isSameInstanceAs(proxiedResponse);
+        verify(mockStubbyHttpTransport, times(1)).httpRequestFromStubAsync(any(StubRequest.class), eq("https://jsonplaceholder.typicode.com/post/1"), anyLong(), anyLong());
+    }
+
+    @Test
+    public void shouldServeProxiedResponseFromCache_WhenProxyConfigIsCaching() throws Exception {
+        final StubProxyConfig stubProxyConfig = new StubProxyConfig.Builder()
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .withProperty("cache-ttl-seconds", "300")
+                .build();
+
+        final YamlParseResultSet yamlParseResultSet = new YamlParseResultSet(new LinkedList<>(), new HashMap<>(), new HashMap<String, StubProxyConfig>() {{
+            put(stubProxyConfig.getUUID(), stubProxyConfig);
+        }});
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        final Map<String, List<String>> upstreamHeaders = new HashMap<>();
+        upstreamHeaders.put("Content-Type", Collections.singletonList("application/json"));
+        upstreamHeaders.put("Content-Length", Collections.singletonList("9"));
+        when(mockStubbyHttpTransport.httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong())).thenReturn(CompletableFuture.completedFuture(new StubbyResponse(200, "{\"id\": 1}", upstreamHeaders)));
+
+        doReturn(new StubRequest.Builder().withUrl("/todos/1").withMethodGet().build(),
+                new StubRequest.Builder().withUrl("/todos/1").withMethodGet().build())
+                .when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+
+        final StubResponse proxiedResponse = spyStubRepository.search(mockHttpServletRequest).getMatch();
+        final StubSearchResult cachedSearchResult = spyStubRepository.search(mockHttpServletRequest);
+
+        assertThat(cachedSearchResult.isPending()).isFalse();
+        assertThat(cachedSearchResult.getMatch()).isSameInstanceAs(proxiedResponse);
+        verify(mockStubbyHttpTransport, times(1)).httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong());
+
+        assertThat(spyStubRepository.dumpProxyResponseCachesAsYaml(null)).isEqualTo(
+                "- request:\n" +
+                        "    method: GET\n" +
+                        "    url: /todos/1\n" +
+                        "  response:\n" +
+                        "    status: 200\n" +
+                        "    headers:\n" +
+                        "      Content-Type: application/json\n" +
+                        "    body: '{\"id\": 1}'\n");
+
+        assertThat(spyStubRepository.flushProxyResponseCaches(null)).isEqualTo(1);
+        assertThat(spyStubRepository.dumpProxyResponseCachesAsYaml(null)).isEmpty();
+    }
+
+    @Test
+    public void shouldDumpCachedProxiedResponse_WithKeyedRequestFieldsOnly() throws Exception {
+        final StubProxyConfig stubProxyConfig = new StubProxyConfig.Builder()
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .withProperty("cache-ttl-seconds", "300")
+                .withProperty("cache-key", "query")
+                .build();
+
+        final YamlParseResultSet yamlParseResultSet = new YamlParseResultSet(new LinkedList<>(), new HashMap<>(), new HashMap<String, StubProxyConfig>() {{
+            put(stubProxyConfig.getUUID(), stubProxyConfig);
+        }});
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        when(mockStubbyHttpTransport.httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong())).thenReturn(CompletableFuture.completedFuture(new StubbyResponse(404, "Not Found", new HashMap<>())));
+        doReturn(new StubRequest.Builder().withUrl("/todos/1").withMethodGet().withQuery("page", "1").build())
+                .when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+
+        assertThat(spyStubRepository.search(mockHttpServletRequest).getMatch().getHttpStatusCode().getCode()).isEqualTo(404);
+
+        assertThat(spyStubRepository.dumpProxyResponseCachesAsYaml(null)).isEqualTo(
+                "- request:\n" +
+                        "    url: ^/.*$\n" +
+                        "    query:\n" +
+                        "      page: 1\n" +
+                        "  response:\n" +
+                        "    status: 404\n" +
+                        "    body: Not Found\n");
+    }
+
+    @Test
+    public void shouldDropProxyResponseCache_WhenProxyConfigIsReloadedWithoutCaching() throws Exception {
+        final StubProxyConfig cachingProxyConfig = new StubProxyConfig.Builder()
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .withProperty("cache-ttl-seconds", "300")
+                .build();
+        spyStubRepository.resetStubsCache(new YamlParseResultSet(new LinkedList<>(), new HashMap<>(), new HashMap<String, StubProxyConfig>() {{
+            put(cachingProxyConfig.getUUID(), cachingProxyConfig);
+        }}));
+
+        when(mockStubbyHttpTransport.httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong())).thenReturn(CompletableFuture.completedFuture(new StubbyResponse(200, "OK", new HashMap<>())));
+        doReturn(new StubRequest.Builder().withUrl("/todos/1").withMethodGet().build())
+                .when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+        spyStubRepository.search(mockHttpServletRequest);
+        assertThat(spyStubRepository.dumpProxyResponseCachesAsYaml(null)).isNotEmpty();
+
+        final StubProxyConfig proxyConfig = new StubProxyConfig.Builder()
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .build();
+        spyStubRepository.resetStubsCache(new YamlParseResultSet(new LinkedList<>(), new HashMap<>(), new HashMap<String, StubProxyConfig>() {{
+            put(proxyConfig.getUUID(), proxyConfig);
+        }}));
+
+        assertThat(spyStubRepository.dumpProxyResponseCachesAsYaml(null)).isEmpty();
+        assertThat(spyStubRepository.flushProxyResponseCaches(null)).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldShareProxiedRequestInFlight_WhenProxyConfigIsCoalescing() throws Exception {
+        final StubProxyConfig stubProxyConfig = new StubProxyConfig.Builder()
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .withPropertyCoalescing(true)
+                .build();
+
+        final YamlParseResultSet yamlParseResultSet = new YamlParseResultSet(new LinkedList<>(), new HashMap<>(), new HashMap<String, StubProxyConfig>() {{
+            put(stubProxyConfig.getUUID(), stubProxyConfig);
+        }});
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        final CompletableFuture<StubbyResponse> upstreamResponse = new CompletableFuture<>();
+        when(mockStubbyHttpTransport.httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong())).thenReturn(upstreamResponse);
+
+        doReturn(new StubRequest.Builder().withUrl("/todos/1").withMethodGet().build(),
+                new StubRequest.Builder().withUrl("/todos/1").withMethodGet().build(),
+                new StubRequest.Builder().withUrl("/todos/1").withMethodGet().withHeader("authorization", "Bearer other").build())
+                .when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+
+        final StubSearchResult firstSearchResult = spyStubRepository.search(mockHttpServletRequest);
+        final StubSearchResult coalescedSearchResult = spyStubRepository.search(mockHttpServletRequest);
+        final StubSearchResult otherUserSearchResult = spyStubRepository.search(mockHttpServletRequest);
+
+        assertThat(coalescedSearchResult.isPending()).isTrue();
+        verify(mockStubbyHttpTransport, times(2)).httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong());
+
+        final StringBuilder inFlightStats = new StringBuilder();
+        spyStubRepository.writeStatsAsJson(inFlightStats);
+        assertThat(inFlightStats.toString()).contains("\"hits\":3,\"coalesced\":1,\"inFlight\":2}");
+
+        upstreamResponse.complete(new StubbyResponse(200, "{\"id\": 1}", new HashMap<>()));
+
+        assertThat(coalescedSearchResult.getMatch()).isSameInstanceAs(firstSearchResult.getMatch());
+        assertThat(otherUserSearchResult.getMatch()).isNotSameInstanceAs(firstSearchResult.getMatch());
+
+        final StringBuilder completedStats = new StringBuilder();
+        spyStubRepository.writeStatsAsJson(completedStats);
+        assertThat(completedStats.toString()).contains("\"hits\":3,\"coalesced\":1,\"inFlight\":0}");
+    }
+
+    @Test
+    public void shouldNotShareProxiedRequestInFlight_WhenRequestMethodIsNotCoalesced() throws Exception {
+        final StubProxyConfig stubProxyConfig = new StubProxyConfig.Builder()
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .withPropertyCoalescing(true)
+                .build();
+
+        final YamlParseResultSet yamlParseResultSet = new YamlParseResultSet(new LinkedList<>(), new HashMap<>(), new HashMap<String, StubProxyConfig>() {{
+            put(stubProxyConfig.getUUID(), stubProxyConfig);
+        }});
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        when(mockStubbyHttpTransport.httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong())).thenReturn(new CompletableFuture<>());
+        doReturn(new StubRequest.Builder().withUrl("/todos").withMethodPost().withPost("{\"title\": \"one\"}").build(),
+                new StubRequest.Builder().withUrl("/todos").withMethodPost().withPost("{\"title\": \"one\"}").build())
+                .when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+
+        spyStubRepository.search(mockHttpServletRequest);
+        spyStubRepository.search(mockHttpServletRequest);
+
+        // Both requests are proxied, as POST is not one of the default coalescing methods
+        verify(mockStubbyHttpTransport, times(2)).httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void shouldFailFast_WhenProxyConfigMaxInFlightReached() throws Exception {
+        final StubProxyConfig stubProxyConfig = new StubProxyConfig.Builder()
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .withProperty("max-in-flight", "1")
+                .withProperty("fast-fail-status", "429")
+                .withProperty("read-timeout-millis", "2000")
+                .build();
+
+        final YamlParseResultSet yamlParseResultSet = new YamlParseResultSet(new LinkedList<>(), new HashMap<>(), new HashMap<String, StubProxyConfig>() {{
+            put(stubProxyConfig.getUUID(), stubProxyConfig);
+        }});
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        final CompletableFuture<StubbyResponse> upstreamResponse = new CompletableFuture<>();
+        when(mockStubbyHttpTransport.httpRequestFromStubAsync(any(StubRequest.class), anyString(), eq(0L), eq(2000L)))
+                .thenReturn(upstreamResponse, CompletableFuture.completedFuture(new StubbyResponse(200, "OK", new HashMap<>())));
+
+        doReturn(new StubRequest.Builder().withUrl("/todos/1").withMethodGet().build(),
+                new StubRequest.Builder().withUrl("/todos/1").withMethodGet().build(),
+                new StubRequest.Builder().withUrl("/todos/1").withMethodGet().build())
+                .when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+
+        final StubSearchResult inFlightSearchResult = spyStubRepository.search(mockHttpServletRequest);
+        final StubSearchResult fastFailedSearchResult = spyStubRepository.search(mockHttpServletRequest);
+
+        assertThat(fastFailedSearchResult.isPending()).isFalse();
+        assertThat(fastFailedSearchResult.getMatch().getHttpStatusCode()).isEqualTo(HttpStatus.Code.TOO_MANY_REQUESTS);
+        assertThat(fastFailedSearchResult.getMatch().getBody()).isEqualTo("Proxy config 'default' has 1 requests in flight");
+
+        upstreamResponse.complete(new StubbyResponse(200, "OK", new HashMap<>()));
+        assertThat(inFlightSearchResult.getMatch().getHttpStatusCode()).isEqualTo(HttpStatus.Code.OK);
+        assertThat(spyStubRepository.search(mockHttpServletRequest).getMatch().getHttpStatusCode()).isEqualTo(HttpStatus.Code.OK);
+        verify(mockStubbyHttpTransport, times(2)).httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong());
+
+        final JSONObject proxyHealth = spyStubRepository.getProxyHealthAsJson().getJSONArray("proxyConfigs").getJSONObject(0);
+        assertThat(proxyHealth.getInt("inFlight")).isEqualTo(0);
+        assertThat(proxyHealth.getInt("maxInFlight")).isEqualTo(1);
+        assertThat(proxyHealth.getLong("rejectedMaxInFlight")).isEqualTo(1L);
+        assertThat(proxyHealth.has("circuitBreaker")).isFalse();
+    }
+
+    @Test
+    public void shouldFailFast_WhenStreamedRequestNotLetThrough() throws Exception {
+        final StubProxyConfig stubProxyConfig = new StubProxyConfig.Builder()
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .withPropertyStreaming(true)
+                .withProperty("max-in-flight", "1")
+                .build();
+
+        final YamlParseResultSet yamlParseResultSet = new YamlParseResultSet(new LinkedList<>(), new HashMap<>(), new HashMap<String, StubProxyConfig>() {{
+            put(stubProxyConfig.getUUID(), stubProxyConfig);
+        }});
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        doReturn(new StubRequest.Builder().withUrl("/todos/1").withMethodGet().build(),
+                new StubRequest.Builder().withUrl("/todos/1").withMethodGet().build())
+                .when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+        when(mockHttpServletRequest.startAsync()).thenReturn(mock(AsyncContext.class));
+
+        final StubSearchResult streamedSearchResult = spyStubRepository.search(mockHttpServletRequest);
+        final StubSearchResult fastFailedSearchResult = spyStubRepository.search(mockHttpServletRequest);
+
+        assertThat(streamedSearchResult.getStreamedProxyRequest().stream(mockHttpServletRequest, mock(HttpServletResponse.class))).isTrue();
+        assertThat(fastFailedSearchResult.getStreamedProxyRequest().stream(mockHttpServletRequest, mock(HttpServletResponse.class))).isFalse();
+        assertThat(fastFailedSearchResult.getMatch().getHttpStatusCode()).isEqualTo(HttpStatus.Code.SERVICE_UNAVAILABLE);
+
+        verify(mockHttpServletRequest, times(1)).startAsync();
+        verify(mockStubbyHttpTransport, never()).httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void shouldReleaseStreamedRequestSlot_WhenRequestCannotBeSuspended() throws Exception {
+        final StubProxyConfig stubProxyConfig = new StubProxyConfig.Builder()
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .withPropertyStreaming(true)
+                .withProperty("max-in-flight", "1")
+                .build();
+
+        final YamlParseResultSet yamlParseResultSet = new YamlParseResultSet(new LinkedList<>(), new HashMap<>(), new HashMap<String, StubProxyConfig>() {{
+            put(stubProxyConfig.getUUID(), stubProxyConfig);
+        }});
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        doReturn(new StubRequest.Builder().withUrl("/todos/1").withMethodGet().build())
+                .when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+        when(mockHttpServletRequest.startAsync()).thenThrow(new IllegalStateException("Async is not supported"));
+
+        final StreamedProxyRequest streamedProxyRequest = spyStubRepository.search(mockHttpServletRequest).getStreamedProxyRequest();
+        assertThrows(IllegalStateException.class, () -> streamedProxyRequest.stream(mockHttpServletRequest, mock(HttpServletResponse.class)));
+
+        final JSONObject proxyHealth = spyStubRepository.getProxyHealthAsJson().getJSONArray("proxyConfigs").getJSONObject(0);
+        assertThat(proxyHealth.getInt("inFlight")).isEqualTo(0);
+        assertThat(proxyHealth.getLong("rejectedMaxInFlight")).isEqualTo(0L);
+    }
+
+    @Test
+    public void shouldDropProxyEndpointGuard_WhenProxyConfigIsDeleted() throws Exception {
+        final StubProxyConfig defaultProxyConfig = new StubProxyConfig.Builder()
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .build();
+        final StubProxyConfig guardedProxyConfig = new StubProxyConfig.Builder()
+                .withUuid("guarded")
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .withProperty("max-in-flight", "1")
+                .build();
+
+        final YamlParseResultSet yamlParseResultSet = new YamlParseResultSet(new LinkedList<>(), new HashMap<>(), new HashMap<String, StubProxyConfig>() {{
+            put(defaultProxyConfig.getUUID(), defaultProxyConfig);
+            put(guardedProxyConfig.getUUID(), guardedProxyConfig);
+        }});
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        when(mockStubbyHttpTransport.httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong()))
+                .thenReturn(CompletableFuture.completedFuture(new StubbyResponse(200, "OK", new HashMap<>())));
+        doReturn(new StubRequest.Builder().withUrl("/todos/1").withMethodGet().withHeader(HEADER_X_STUBBY_PROXY_CONFIG, "guarded").build())
+                .when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+        spyStubRepository.search(mockHttpServletRequest).getMatch();
+
+        final StringBuilder guardedMetrics = new StringBuilder();
+        spyStubRepository.writeMetrics(new PrometheusTextWriter(guardedMetrics));
+        assertThat(guardedMetrics.toString()).contains("stubby4j_proxy_guarded_in_flight_requests{proxy_config=\"guarded\"} 0");
+
+        spyStubRepository.deleteProxyConfigByUuid("guarded");
+
+        final StringBuilder metrics = new StringBuilder();
+        spyStubRepository.writeMetrics(new PrometheusTextWriter(metrics));
+        assertThat(metrics.toString()).doesNotContain("proxy_config=\"guarded\"");
+    }
+
+    @Test
+    public void shouldRetainHttpClientsOfLoadedConnectTimeouts_WhenProxyConfigIsDeleted() throws Exception {
+        final StubProxyConfig defaultProxyConfig = new StubProxyConfig.Builder()
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .build();
+        final StubProxyConfig timedProxyConfig = new StubProxyConfig.Builder()
+                .withUuid("timed")
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .withProperty("connect-timeout-millis", "500")
+                .build();
+
+        final YamlParseResultSet yamlParseResultSet = new YamlParseResultSet(new LinkedList<>(), new HashMap<>(), new HashMap<String, StubProxyConfig>() {{
+            put(defaultProxyConfig.getUUID(), defaultProxyConfig);
+            put(timedProxyConfig.getUUID(), timedProxyConfig);
+        }});
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+        verify(mockStubbyHttpTransport).retainConnectTimeouts(new HashSet<>(Arrays.asList(0L, 500L)));
+
+        clearInvocations(mockStubbyHttpTransport);
+        spyStubRepository.deleteProxyConfigByUuid("timed");
+        verify(mockStubbyHttpTransport).retainConnectTimeouts(Collections.singleton(0L));
+    }
+
+    @Test
+    public void shouldFailFast_WhenProxyConfigCircuitBreakerTrips() throws Exception {
+        final StubProxyConfig stubProxyConfig = new StubProxyConfig.Builder()
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .withProperty("circuit-breaker-error-rate", "50")
+                .withProperty("circuit-breaker-window", "2")
+                .build();
+
+        final YamlParseResultSet yamlParseResultSet = new YamlParseResultSet(new LinkedList<>(), new HashMap<>(), new HashMap<String, StubProxyConfig>() {{
+            put(stubProxyConfig.getUUID(), stubProxyConfig);
+        }});
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        when(mockStubbyHttpTransport.httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong()))
+                .thenReturn(CompletableFuture.completedFuture(new StubbyResponse(500, "Oops", new HashMap<>())));
+
+        doReturn(new StubRequest.Builder().withUrl("/todos/1").withMethodGet().build(),
+                new StubRequest.Builder().withUrl("/todos/1").withMethodGet().build(),
+                new StubRequest.Builder().withUrl("/todos/1").withMethodGet().build())
+                .when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+
+        assertThat(spyStubRepository.search(mockHttpServletRequest).getMatch().getHttpStatusCode()).isEqualTo(HttpStatus.Code.INTERNAL_SERVER_ERROR);
+        assertThat(spyStubRepository.search(mockHttpServletRequest).getMatch().getHttpStatusCode()).isEqualTo(HttpStatus.Code.INTERNAL_SERVER_ERROR);
+
+        final StubResponse fastFailedResponse = spyStubRepository.search(mockHttpServletRequest).getMatch();
+        assertThat(fastFailedResponse.getHttpStatusCode()).isEqualTo(HttpStatus.Code.SERVICE_UNAVAILABLE);
+        assertThat(fastFailedResponse.getBody()).isEqualTo("Proxy config 'default' circuit breaker is open");
+        verify(mockStubbyHttpTransport, times(2)).httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong());
+
+        final JSONObject circuitBreaker = spyStubRepository.getProxyHealthAsJson()
+                .getJSONArray("proxyConfigs").getJSONObject(0).getJSONObject("circuitBreaker");
+        assertThat(circuitBreaker.getString("state")).isEqualTo("open");
+        assertThat(circuitBreaker.getLong("trips")).isEqualTo(1L);
+        assertThat(circuitBreaker.getLong("rejected")).isEqualTo(1L);
+    }
+
     @Test
     public void canMatchHttpCycleByUuid() throws Exception {
         final YamlParseResultSet yamlParseResultSet = parseYaml("/resource/item/1", STUB_UUID_ONE);
@@ -216,6 +838,98 @@ public class StubRepositoryTest {
         assertThat(spyStubRepository.getStubs()).isEmpty();
     }
 
+    @Test
+    public void shouldKeepServingLoadedStubs_WhenResetFailsOnMissingDefaultProxyConfig() throws Exception {
+        final YamlParseResultSet yamlParseResultSet = parseYaml("/resource/item/1", STUB_UUID_ONE);
+        assertThat(spyStubRepository.resetStubsCache(yamlParseResultSet)).isTrue();
+
+        final YamlParseResultSet yamlParseResultSetTwo = parseYaml("/resource/item/2", STUB_UUID_TWO);
+        final StubProxyConfig nonDefaultProxyConfig = new StubProxyConfig.Builder()
+                .withUuid(STUB_UUID_THREE)
+                .withStrategy("as-is")
+                .withPropertyEndpoint("https://jsonplaceholder.typicode.com")
+                .build();
+        final YamlParseResultSet invalidYamlParseResultSet = new YamlParseResultSet(
+                yamlParseResultSetTwo.getStubs(),
+                yamlParseResultSetTwo.getUuidToStubs(),
+                new HashMap<String, StubProxyConfig>() {{
+                    put(nonDefaultProxyConfig.getUUID(), nonDefaultProxyConfig);
+                }});
+
+        assertThrows(IllegalStateException.class, () -> spyStubRepository.resetStubsCache(invalidYamlParseResultSet));
+
+        assertThat(spyStubRepository.getStubs().size()).isEqualTo(1);
+        assertThat(spyStubRepository.getStubs().get(0).getUrl()).isEqualTo("/resource/item/1");
+        assertThat(spyStubRepository.canMatchStubByUuid(STUB_UUID_ONE)).isTrue();
+        assertThat(spyStubRepository.canMatchStubByUuid(STUB_UUID_TWO)).isFalse();
+    }
+
+    @Test
+    public void shouldReplayCapturedRegexGroups_WhenMatchServedFromCache() throws Exception {
+        final YamlParseResultSet yamlParseResultSet = parseYaml("^/resource/item/(\\d+)$", STUB_UUID_ONE);
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        for (final String itemId : Arrays.asList("123", "123", "456", "123")) {
+            final StubRequest incomingRequest = new StubRequest.Builder()
+                    .withUrl("/resource/item/" + itemId)
+                    .withMethodGet()
+                    .withHeader("content-type", Common.HEADER_APPLICATION_JSON)
+                    .build();
+            doReturn(incomingRequest).when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+
+            final StubSearchResult stubSearchResult = spyStubRepository.search(mockHttpServletRequest);
+
+            assertThat(stubSearchResult.getMatch().getHttpStatusCode()).isEqualTo(HttpStatus.Code.OK);
+            assertThat(stubSearchResult.getInvariant().getRegexGroups()).containsEntry("url.1", itemId);
+        }
+    }
+
+    @Test
+    public void shouldRecordNonMatchTraces_WhenMatchTracingEnabled() throws Exception {
+        final YamlParseResultSet yamlParseResultSet = parseYaml("/resource/item/1", STUB_UUID_ONE);
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+        spyStubRepository.enableMatchTracing(true);
+
+        final StubRequest incomingRequest = new StubRequest.Builder()
+                .withUrl("/resource/item/1")
+                .withMethodGet()
+                .withHeader("content-type", "text/plain")
+                .build();
+        doReturn(incomingRequest).when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+
+        final StubSearchResult stubSearchResult = spyStubRepository.search(mockHttpServletRequest);
+        assertThat(stubSearchResult.getMatch().getHttpStatusCode()).isEqualTo(HttpStatus.Code.NOT_FOUND);
+
+        final List<StubMatchTrace> nonMatchTraces = spyStubRepository.getLastNonMatchTraces(10);
+        assertThat(nonMatchTraces.size()).isEqualTo(1);
+        assertThat(nonMatchTraces.get(0).getUrl()).isEqualTo("/resource/item/1");
+        assertThat(nonMatchTraces.get(0).getTracedStubsCount()).isEqualTo(1);
+
+        final String explanation = nonMatchTraces.get(0).toJson().toString();
+        assertThat(explanation).contains("\"field\":\"headers\"");
+        assertThat(explanation).contains("\"matched\":false");
+        assertThat(explanation).contains("text/plain");
+    }
+
+    @Test
+    public void shouldNotRecordNonMatchTraces_WhenMatchTracingDisabled() throws Exception {
+        final YamlParseResultSet yamlParseResultSet = parseYaml("/resource/item/1", STUB_UUID_ONE);
+        spyStubRepository.resetStubsCache(yamlParseResultSet);
+
+        final StubRequest incomingRequest = new StubRequest.Builder()
+                .withUrl("/resource/item/1")
+                .withMethodGet()
+                .withHeader("content-type", "text/plain")
+                .build();
+        doReturn(incomingRequest).when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
+
+        final StubSearchResult stubSearchResult = spyStubRepository.search(mockHttpServletRequest);
+        assertThat(stubSearchResult.getMatch().getHttpStatusCode()).isEqualTo(HttpStatus.Code.NOT_FOUND);
+
+        assertThat(spyStubRepository.isMatchTracingEnabled()).isFalse();
+        assertThat(spyStubRepository.getLastNonMatchTraces(10)).isEmpty();
+    }
+
     @Test
     public void shouldDeleteOriginalHttpCycleList_WhenInvalidIndexGiven() throws Exception {
 
@@ -1107,7 +1821,7 @@ public class StubRepositoryTest {
         httpProxyResponseHeaders.put("Expires", Collections.singletonList("12345"));
         httpProxyResponseHeaders.put("SomeHeader", Arrays.asList("one", "two"));
 
-        when(mockStubbyHttpTransport.httpRequestFromStub(any(StubRequest.class), anyString())).thenReturn(new StubbyResponse(201, actualResponseText, httpProxyResponseHeaders));
+        when(mockStubbyHttpTransport.httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong())).thenReturn(CompletableFuture.completedFuture(new StubbyResponse(201, actualResponseText, httpProxyResponseHeaders)));
 
         final StubRequest incomingRequest =
                 requestBuilder
@@ -1129,7 +1843,7 @@ public class StubRepositoryTest {
         assertThat(proxiedResponse.getHeaders().get("Expires")).isEqualTo("12345");
         assertThat(proxiedResponse.getHeaders().get("SomeHeader")).isEqualTo("[one, two]");
 
-        verify(mockStubbyHttpTransport, times(1)).httpRequestFromStub(stubRequestCaptor.capture(), stringCaptor.capture());
+        verify(mockStubbyHttpTransport, times(1)).httpRequestFromStubAsync(stubRequestCaptor.capture(), stringCaptor.capture(), anyLong(), anyLong());
 
         assertThat(stringCaptor.getValue()).isEqualTo("https://jsonplaceholder.typicode.com/post/1");
         assertThat(stubRequestCaptor.getValue().getHeaders().containsKey(HEADER_X_STUBBY_PROXY_REQUEST)).isTrue();
@@ -1164,7 +1878,7 @@ public class StubRepositoryTest {
 
         spyStubRepository.resetStubsCache(yamlParseResultSet);
 
-        when(mockStubbyHttpTransport.httpRequestFromStub(any(StubRequest.class), anyString())).thenReturn(new StubbyResponse(201, "OK!", new HashMap<>()));
+        when(mockStubbyHttpTransport.httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong())).thenReturn(CompletableFuture.completedFuture(new StubbyResponse(201, "OK!", new HashMap<>())));
 
         final StubRequest incomingRequest =
                 requestBuilder
@@ -1176,7 +1890,7 @@ public class StubRepositoryTest {
         doReturn(incomingRequest).when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
         spyStubRepository.search(mockHttpServletRequest);
 
-        verify(mockStubbyHttpTransport, times(1)).httpRequestFromStub(stubRequestCaptor.capture(), anyString());
+        verify(mockStubbyHttpTransport, times(1)).httpRequestFromStubAsync(stubRequestCaptor.capture(), anyString(), anyLong(), anyLong());
 
         // The 'content-type', HEADER_X_STUBBY_PROXY_REQUEST and two additive headers
         assertThat(stubRequestCaptor.getValue().getHeaders().size()).isEqualTo(4);
@@ -1209,7 +1923,7 @@ public class StubRepositoryTest {
 
         spyStubRepository.resetStubsCache(yamlParseResultSet);
 
-        when(mockStubbyHttpTransport.httpRequestFromStub(any(StubRequest.class), anyString())).thenReturn(new StubbyResponse(201, "OK!", new HashMap<>()));
+        when(mockStubbyHttpTransport.httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong())).thenReturn(CompletableFuture.completedFuture(new StubbyResponse(201, "OK!", new HashMap<>())));
 
         final StubRequest incomingRequest =
                 requestBuilder
@@ -1221,7 +1935,7 @@ public class StubRepositoryTest {
         doReturn(incomingRequest).when(spyStubRepository).toStubRequest(any(HttpServletRequest.class));
         spyStubRepository.search(mockHttpServletRequest);
 
-        verify(mockStubbyHttpTransport, times(1)).httpRequestFromStub(stubRequestCaptor.capture(), anyString());
+        verify(mockStubbyHttpTransport, times(1)).httpRequestFromStubAsync(stubRequestCaptor.capture(), anyString(), anyLong(), anyLong());
 
         // The 'content-type' header and the HEADER_X_STUBBY_PROXY_REQUEST only
         assertThat(stubRequestCaptor.getValue().getHeaders().size()).isEqualTo(2);
@@ -1268,7 +1982,7 @@ public class StubRepositoryTest {
         httpProxyResponseHeaders.put("Expires", Collections.singletonList("12345"));
         httpProxyResponseHeaders.put("SomeHeader", Arrays.asList("one", "two"));
 
-        when(mockStubbyHttpTransport.httpRequestFromStub(any(StubRequest.class), anyString())).thenReturn(new StubbyResponse(201, actualResponseText, httpProxyResponseHeaders));
+        when(mockStubbyHttpTransport.httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong())).thenReturn(CompletableFuture.completedFuture(new StubbyResponse(201, actualResponseText, httpProxyResponseHeaders)));
 
         final StubRequest incomingRequest =
                 requestBuilder
@@ -1291,7 +2005,7 @@ public class StubRepositoryTest {
         assertThat(proxiedResponse.getHeaders().get("Expires")).isEqualTo("12345");
         assertThat(proxiedResponse.getHeaders().get("SomeHeader")).isEqualTo("[one, two]");
 
-        verify(mockStubbyHttpTransport, times(1)).httpRequestFromStub(stubRequestCaptor.capture(), stringCaptor.capture());
+        verify(mockStubbyHttpTransport, times(1)).httpRequestFromStubAsync(stubRequestCaptor.capture(), stringCaptor.capture(), anyLong(), anyLong());
 
         // the non-default proxy config was used to proxy the request because
         // the 'x-stubby4j-proxy-config-uuid' header was set on the asserting incoming HTTP request
@@ -1301,7 +2015,7 @@ public class StubRepositoryTest {
         final String proxyRequestUuid = stubRequestCaptor.getValue().getHeaders().get(HEADER_X_STUBBY_PROXY_REQUEST);
         assertThat(proxiedResponse.getHeaders().get(HEADER_X_STUBBY_PROXY_RESPONSE)).isEqualTo(proxyRequestUuid);
 
-        verify(mockStubbyHttpTransport, never()).httpRequestFromStub(any(StubRequest.class), eq("https://jsonplaceholder.typicode.com"));
+        verify(mockStubbyHttpTransport, never()).httpRequestFromStubAsync(any(StubRequest.class), eq("https://jsonplaceholder.typicode.com"), anyLong(), anyLong());
     }
 
     @Test
@@ -1343,7 +2057,7 @@ public class StubRepositoryTest {
         httpProxyResponseHeaders.put("Expires", Collections.singletonList("12345"));
         httpProxyResponseHeaders.put("SomeHeader", Arrays.asList("one", "two"));
 
-        when(mockStubbyHttpTransport.httpRequestFromStub(any(StubRequest.class), anyString())).thenReturn(new StubbyResponse(201, actualResponseText, httpProxyResponseHeaders));
+        when(mockStubbyHttpTransport.httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong())).thenReturn(CompletableFuture.completedFuture(new StubbyResponse(201, actualResponseText, httpProxyResponseHeaders)));
 
         final StubRequest incomingRequest =
                 requestBuilder
@@ -1366,7 +2080,7 @@ public class StubRepositoryTest {
         assertThat(proxiedResponse.getHeaders().get("Expires")).isEqualTo("12345");
         assertThat(proxiedResponse.getHeaders().get("SomeHeader")).isEqualTo("[one, two]");
 
-        verify(mockStubbyHttpTransport, times(1)).httpRequestFromStub(stubRequestCaptor.capture(), stringCaptor.capture());
+        verify(mockStubbyHttpTransport, times(1)).httpRequestFromStubAsync(stubRequestCaptor.capture(), stringCaptor.capture(), anyLong(), anyLong());
 
         // the default proxy config was used to proxy the request because
         // the 'x-stubby4j-proxy-config-uuid' header was set to a value that does not exist in proxyConfigs map
@@ -1376,7 +2090,7 @@ public class StubRepositoryTest {
         final String proxyRequestUuid = stubRequestCaptor.getValue().getHeaders().get(HEADER_X_STUBBY_PROXY_REQUEST);
         assertThat(proxiedResponse.getHeaders().get(HEADER_X_STUBBY_PROXY_RESPONSE)).isEqualTo(proxyRequestUuid);
 
-        verify(mockStubbyHttpTransport, never()).httpRequestFromStub(any(StubRequest.class), eq("https://jsonplaceholder.typicode.com"));
+        verify(mockStubbyHttpTransport, never()).httpRequestFromStubAsync(any(StubRequest.class), eq("https://jsonplaceholder.typicode.com"), anyLong(), anyLong());
     }
 
     @Test
@@ -1402,7 +2116,9 @@ public class StubRepositoryTest {
         }});
 
         spyStubRepository.resetStubsCache(yamlParseResultSet);
-        when(mockStubbyHttpTransport.httpRequestFromStub(any(StubRequest.class), anyString())).thenThrow(new IOException("Boom!"));
+        final CompletableFuture<StubbyResponse> failedProxyResponse = new CompletableFuture<>();
+        failedProxyResponse.completeExceptionally(new IOException("Boom!"));
+        when(mockStubbyHttpTransport.httpRequestFromStubAsync(any(StubRequest.class), anyString(), anyLong(), anyLong())).thenReturn(failedProxyResponse);
 
         final StubRequest incomingRequest =
                 requestBuilder
@@ -1419,7 +2135,7 @@ public class StubRepositoryTest {
         assertThat(proxiedResponse.getHttpStatusCode()).isEqualTo(HttpStatus.Code.INTERNAL_SERVER_ERROR);
         assertThat(proxiedResponse.getHeaders().size()).isEqualTo(1);
 
-        verify(mockStubbyHttpTransport, times(1)).httpRequestFromStub(stubRequestCaptor.capture(), stringCaptor.capture());
+        verify(mockStubbyHttpTransport, times(1)).httpRequestFromStubAsync(stubRequestCaptor.capture(), stringCaptor.capture(), anyLong(), anyLong());
 
         assertThat(stringCaptor.getValue()).isEqualTo("https://jsonplaceholder.typicode.com/post/1");
         assertThat(stubRequestCaptor.getValue().getHeaders().containsKey(HEADER_X_STUBBY_PROXY_REQUEST)).isTrue();
@@ -1482,4 +2198,12 @@ public class StubRepositoryTest {
             put(stubHttpLifecycle.getUUID(), stubHttpLifecycle);
         }});
     }
+
+    private static StubHttpLifecycle yamlStub(final String url, final String completeYaml) {
+        return new StubHttpLifecycle.Builder()
+                .withRequest(new StubRequest.Builder().withUrl(url).withMethodGet().build())
+                .withResponse(StubResponse.okResponse())
+                .withCompleteYAML(completeYaml)
+                .build();
+    }
 }
@@ -1,7 +1,6 @@
 package io.github.azagniotov.stubby4j.stubs;
 
 import io.github.azagniotov.stubby4j.utils.FileUtils;
-import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -30,11 +29,6 @@ public class StubRequestBuilderTest {
         builder = new StubRequest.Builder();
     }
 
-    @After
-    public void cleanup() throws Exception {
-        RegexParser.REGEX_PATTERN_CACHE.clear();
-    }
-
     @Test
     public void shouldStage_WhenConfigurablePropertyAndFieldValuePresent() throws Exception {
         final String expectedFieldValue = "Hello!";
@@ -1325,22 +1319,6 @@ public class StubRequestBuilderTest {
         assertThat(regexGroups.get("post.1")).isEqualTo("12345");
     }
 
-    @Test
-    public void shouldComputeRegexPatterns() throws Exception {
-
-        final String url = "^/resources/asn/.*$";
-        final String post = "{\"objects\": [{\"key\": \"value\"}, {\"key\": \"value\"}, {\"key\": {\"key\": \"(.*)\"}}]}";
-
-        final StubRequest stubRequest =
-                builder.withUrl(url)
-                        .withMethodPost()
-                        .withApplicationJsonContentType()
-                        .withPost(post).build();
-        stubRequest.compileRegexPatternsAndCache();
-
-        assertThat(RegexParser.REGEX_PATTERN_CACHE.size().get()).isEqualTo(3);
-    }
-
     @Test
     public void stubbedRequestEqualsAssertingRequest_WhenPostRegexMatchingSubsectionOfMultiLineJsonPost() throws Exception {
 
@@ -0,0 +1,112 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+
+
+public class StubRequestMatchPlanTest {
+
+    @Test
+    public void shouldClassifyStubbedValues() throws Exception {
+        final StubRequest stubbedRequest = new StubRequest.Builder()
+                .withUrl("^/resource/item/(\\d+)$")
+                .withMethodGet()
+                .withQuery("type", "literal")
+                .withQuery("id", "")
+                .build();
+
+        final StubRequestMatchPlan matchPlan = new StubRequestMatchPlan(stubbedRequest);
+
+        assertThat(matchPlan.getUrl().getKind()).isEqualTo(StubRequestMatchPlan.ValueMatcher.Kind.REGEX);
+        assertThat(matchPlan.getQuery()[0].getKind()).isEqualTo(StubRequestMatchPlan.ValueMatcher.Kind.LITERAL);
+        assertThat(matchPlan.getQuery()[0].getTemplateTokenName()).isEqualTo("query.type");
+        assertThat(matchPlan.getQuery()[0].getFullMatchTokenName()).isEqualTo("query.type.0");
+        assertThat(matchPlan.getQuery()[1].getKind()).isEqualTo(StubRequestMatchPlan.ValueMatcher.Kind.ANY);
+
+        assertThat(matchPlan.getUrl().getRegex().getValue()).isEqualTo("^/resource/item/(\\d+)$");
+        assertThat(matchPlan.getQuery()[0].getRegex()).isNull();
+        assertThat(matchPlan.getQuery()[1].getRegex()).isNull();
+    }
+
+    @Test
+    public void shouldExcludeStubbedAuthorizationHeaders() throws Exception {
+        final StubRequest stubbedRequest = new StubRequest.Builder()
+                .withUrl("/resource/item/1")
+                .withYAMLHeaderAuthorizationBasic("Ym9iOnNlY3JldA==")
+                .withHeader("X-Custom-Header", "value")
+                .build();
+
+        final StubRequestMatchPlan matchPlan = new StubRequestMatchPlan(stubbedRequest);
+
+        assertThat(matchPlan.hasHeaders()).isTrue();
+        assertThat(matchPlan.getHeaders().length).isEqualTo(1);
+        assertThat(matchPlan.getHeaders()[0].getKey()).isEqualTo("x-custom-header");
+    }
+
+    @Test
+    public void shouldNotHaveHeaders_WhenOnlyAuthorizationHeadersStubbed() throws Exception {
+        final StubRequest stubbedRequest = new StubRequest.Builder()
+                .withUrl("/resource/item/1")
+                .withYAMLHeaderAuthorizationBearer("Ym9iOnNlY3JldA==")
+                .build();
+
+        assertThat(new StubRequestMatchPlan(stubbedRequest).hasHeaders()).isFalse();
+    }
+
+    @Test
+    public void shouldIntersectMethodsRegardlessOfCase() throws Exception {
+        final StubRequest stubbedRequest = new StubRequest.Builder()
+                .withUrl("/resource/item/1")
+                .withMethod("get")
+                .withMethodHead()
+                .build();
+
+        final StubRequestMatchPlan matchPlan = new StubRequestMatchPlan(stubbedRequest);
+
+        assertThat(matchPlan.hasMethods()).isTrue();
+        assertThat(matchPlan.methodsIntersect(Arrays.asList("POST", "GET"))).isTrue();
+        assertThat(matchPlan.methodsIntersect(Arrays.asList("head"))).isTrue();
+        assertThat(matchPlan.methodsIntersect(Arrays.asList("PUT"))).isFalse();
+    }
+
+    @Test
+    public void shouldStubRequestBody_OnlyForMethodsWithBody() throws Exception {
+        final StubRequest postRequest = new StubRequest.Builder().withUrl("/resource").withMethodPost().withPost("{\"name\": \"value\"}").build();
+        final StubRequest getRequest = new StubRequest.Builder().withUrl("/resource").withMethodGet().withPost("{\"name\": \"value\"}").build();
+
+        assertThat(new StubRequestMatchPlan(postRequest).isRequestBodyStubbed()).isTrue();
+        assertThat(new StubRequestMatchPlan(postRequest).getPostBodyTokenName()).isEqualTo("post");
+        assertThat(new StubRequestMatchPlan(postRequest).getPostBodyRegex()).isNotNull();
+        assertThat(new StubRequestMatchPlan(postRequest).getEscapedPostBodyRegex()).isNotNull();
+        assertThat(new StubRequestMatchPlan(getRequest).isRequestBodyStubbed()).isFalse();
+        assertThat(new StubRequestMatchPlan(getRequest).getPostBodyRegex()).isNull();
+    }
+
+    @Test
+    public void shouldParseStubbedJsonBody() throws Exception {
+        final StubRequest literalJsonRequest = new StubRequest.Builder().withUrl("/resource").withMethodPost().withPost("{\"name\": [\"value\"]}").build();
+        final StubRequest regexJsonRequest = new StubRequest.Builder().withUrl("/resource").withMethodPost().withPost("{\"name\": \"(.*)\"}").build();
+        final StubRequest regexRequest = new StubRequest.Builder().withUrl("/resource").withMethodPost().withPost("^.*$").build();
+
+        assertThat(new StubRequestMatchPlan(literalJsonRequest).getJsonPostBody().isJson()).isTrue();
+        assertThat(new StubRequestMatchPlan(literalJsonRequest).isPostBodyRegexLike()).isFalse();
+        assertThat(new StubRequestMatchPlan(regexJsonRequest).getJsonPostBody().isJson()).isTrue();
+        assertThat(new StubRequestMatchPlan(regexJsonRequest).isPostBodyRegexLike()).isTrue();
+        assertThat(new StubRequestMatchPlan(regexRequest).getJsonPostBody().isJson()).isFalse();
+    }
+
+    @Test
+    public void shouldCaptureFullMatch_WhenLiteralStubbedUrlMatches() throws Exception {
+        final StubRequest stubbedRequest = new StubRequest.Builder().withUrl("/resource/item/1").withMethodGet().build();
+        final StubRequest assertingRequest = new StubRequest.Builder().withUrl("/resource/item/1").withMethodGet().build();
+
+        final Map<String, String> regexGroups = new HashMap<>();
+        assertThat(new StubMatcher(regexGroups).matches(stubbedRequest, assertingRequest)).isTrue();
+        assertThat(regexGroups).containsEntry("url.0", "/resource/item/1");
+    }
+}
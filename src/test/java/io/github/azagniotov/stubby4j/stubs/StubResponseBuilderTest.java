@@ -1,17 +1,24 @@
 package io.github.azagniotov.stubby4j.stubs;
 
 
+import io.github.azagniotov.stubby4j.caching.FileContent;
+import io.github.azagniotov.stubby4j.caching.FileContentCache;
 import io.github.azagniotov.stubby4j.utils.StringUtils;
 import org.eclipse.jetty.http.HttpStatus.Code;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.HashMap;
 import java.util.Optional;
 
 import static com.google.common.truth.Truth.assertThat;
 import static io.github.azagniotov.stubby4j.utils.FileUtils.tempFileFromString;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.BANDWIDTH;
 import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.BODY;
+import static io.github.azagniotov.stubby4j.yaml.ConfigurableYAMLProperty.LATENCY;
 
 public class StubResponseBuilderTest {
 
@@ -184,7 +191,7 @@ public class StubResponseBuilderTest {
                 .withBody(body)
                 .build();
 
-        assertThat(stubResponse.isBodyContainsTemplateTokens()).isTrue();
+        assertThat(stubResponse.getBodyTemplate()).isNotNull();
     }
 
     @Test
@@ -197,7 +204,8 @@ public class StubResponseBuilderTest {
                 .withFile(tempFileFromString("file content with a <% token %>"))
                 .build();
 
-        assertThat(stubResponse.isBodyContainsTemplateTokens()).isTrue();
+        assertThat(stubResponse.getBodyTemplate()).isNull();
+        assertThat(stubResponse.getFileContent(FileContentCache.withBudgetMegabytes(1L)).getTemplate()).isNotNull();
     }
 
     @Test
@@ -210,6 +218,121 @@ public class StubResponseBuilderTest {
                 .withFile(tempFileFromString("file content"))
                 .build();
 
-        assertThat(stubResponse.isBodyContainsTemplateTokens()).isFalse();
+        assertThat(stubResponse.getBodyTemplate()).isNull();
+        assertThat(stubResponse.getFileContent(FileContentCache.withBudgetMegabytes(1L)).getTemplate()).isNull();
+    }
+
+    @Test
+    public void shouldCompileTemplates_OnlyForTokenizedHeaderValues() throws Exception {
+
+        final StubResponse stubResponse = builder
+                .withHttpStatusCode(Code.OK)
+                .withHeaders(new HashMap<String, String>() {{
+                    put("location", "https://<% query.redirect_uri.1 %>/auth");
+                    put("content-type", "application/json");
+                }})
+                .build();
+
+        assertThat(stubResponse.getHeaderTemplate("content-type")).isNull();
+        assertThat(stubResponse.getHeaderTemplate("location").render(new HashMap<String, String>() {{
+            put("query.redirect_uri.1", "test.com");
+        }})).isEqualTo("https://test.com/auth");
+    }
+
+    @Test
+    public void shouldPreEncodeBody_WhenResponseBuilt() throws Exception {
+
+        final StubResponse stubResponse = builder
+                .withHttpStatusCode(Code.OK)
+                .withBody("Привет")
+                .build();
+
+        final ByteBuffer responseBody = stubResponse.getResponseBody();
+        assertThat(responseBody.isReadOnly()).isTrue();
+        assertThat(responseBody.remaining()).isEqualTo(StringUtils.getBytesUtf8("Привет").length);
+        assertThat(stubResponse.getResponseBodyAsBytes()).isSameInstanceAs(stubResponse.getResponseBodyAsBytes());
+
+        // Every caller gets its own position
+        responseBody.get(new byte[responseBody.remaining()]);
+        assertThat(stubResponse.getResponseBody().remaining()).isEqualTo(StringUtils.getBytesUtf8("Привет").length);
+    }
+
+    @Test
+    public void shouldParseLatency_WhenResponseBuilt() throws Exception {
+        builder.stage(LATENCY, Optional.of("250"));
+        assertThat(builder.build().getLatencyMillis()).isEqualTo(250L);
+
+        assertThat(builder.build().getLatencyMillis()).isEqualTo(0L);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldThrow_WhenStubbedLatencyIsNotNumeric() throws Exception {
+        builder.stage(LATENCY, Optional.of("43rl4knt3l"));
+
+        builder.build().getLatencyMillis();
+    }
+
+    @Test
+    public void shouldParseBandwidthInKilobytesPerSecond_WhenResponseBuilt() throws Exception {
+        builder.stage(BANDWIDTH, Optional.of("64"));
+        assertThat(builder.build().getBandwidthBytesPerSecond()).isEqualTo(65536L);
+
+        builder.stage(BANDWIDTH, Optional.of("0.5"));
+        assertThat(builder.build().getBandwidthBytesPerSecond()).isEqualTo(512L);
+
+        assertThat(builder.build().getBandwidthBytesPerSecond()).isEqualTo(0L);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldThrow_WhenStubbedBandwidthIsNotNumeric() throws Exception {
+        builder.stage(BANDWIDTH, Optional.of("fast"));
+
+        builder.build().getBandwidthBytesPerSecond();
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldThrow_WhenStubbedBandwidthIsNotPositive() throws Exception {
+        builder.stage(BANDWIDTH, Optional.of("0"));
+
+        builder.build().getBandwidthBytesPerSecond();
+    }
+
+    @Test
+    public void shouldReclassifyBody_WhenBodyRecorded() throws Exception {
+
+        final StubResponse stubResponse = builder
+                .withHttpStatusCode(Code.OK)
+                .withBody("HTTP://google.com")
+                .build();
+
+        assertThat(stubResponse.isRecordingRequired()).isTrue();
+
+        stubResponse.recordBody("recorded with a <% token %>");
+
+        assertThat(stubResponse.isRecordingRequired()).isFalse();
+        assertThat(stubResponse.getBodyTemplate()).isNotNull();
+        assertThat(StringUtils.newStringUtf8(stubResponse.getResponseBodyAsBytes())).isEqualTo("recorded with a <% token %>");
+    }
+
+    @Test
+    public void shouldServeFileContent_WhenFileIsBinary() throws Exception {
+        final byte[] content = new byte[]{'%', 'P', 'D', 'F', '-', '1', '.', '4', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3};
+        final File binaryFile = File.createTempFile("tmp" + System.currentTimeMillis(), ".pdf");
+        binaryFile.deleteOnExit();
+        Files.write(binaryFile.toPath(), content);
+
+        final StubResponse stubResponse = builder
+                .withHttpStatusCode(Code.OK)
+                .withFile(binaryFile)
+                .build();
+
+        final FileContent fileContent = stubResponse.getFileContent(FileContentCache.withBudgetMegabytes(1L));
+        final ByteBuffer responseBody = fileContent.getContent();
+        assertThat(responseBody.isReadOnly()).isTrue();
+        assertThat(responseBody.remaining()).isEqualTo(content.length);
+        assertThat(fileContent.getTemplate()).isNull();
+        assertThat(stubResponse.getResponseBody().hasRemaining()).isFalse();
+        assertThat(stubResponse.getResponseBodyAsBytes()).isEqualTo(content);
+        assertThat(stubResponse.getFile()).isEqualTo(content);
     }
 }
@@ -0,0 +1,83 @@
+package io.github.azagniotov.stubby4j.stubs;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import static com.google.common.truth.Truth.assertThat;
+
+
+public class XmlBodyTest {
+
+    @Test
+    public void shouldCanonicallyEqual_WhenOnlyFormattingDiffers() throws Exception {
+        final XmlBody stubbed = XmlBody.parse("<ns:order xmlns:ns=\"urn:orders\" id=\"1\" type=\"online\">\n" +
+                "    <!-- the ordered item -->\n" +
+                "    <ns:item>  Book   about XML </ns:item>\n" +
+                "</ns:order>");
+        final XmlBody incoming = XmlBody.parse("<order xmlns=\"urn:orders\" type=\"online\" id=\"1\"><item>Book about XML</item></order>");
+
+        assertThat(stubbed.canonicallyEquals(incoming)).isTrue();
+    }
+
+    @Test
+    public void shouldNotCanonicallyEqual_WhenContentDiffers() throws Exception {
+        final XmlBody stubbed = XmlBody.parse("<order id=\"1\"><item>Book</item></order>");
+
+        assertThat(stubbed.canonicallyEquals(XmlBody.parse("<order id=\"2\"><item>Book</item></order>"))).isFalse();
+        assertThat(stubbed.canonicallyEquals(XmlBody.parse("<order id=\"1\"><item>Pen</item></order>"))).isFalse();
+        assertThat(stubbed.canonicallyEquals(XmlBody.parse("<order xmlns=\"urn:orders\" id=\"1\"><item>Book</item></order>"))).isFalse();
+    }
+
+    @Test
+    public void shouldNotCanonicallyEqual_WhenXmlDeclarationOrDoctypeDiffers() throws Exception {
+        final XmlBody stubbed = XmlBody.parse("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                "<!DOCTYPE order PUBLIC \"-//Orders//DTD Order 1.0//EN\" \"order.dtd\"><order id=\"1\"/>");
+
+        assertThat(stubbed.canonicallyEquals(XmlBody.parse("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                "<!DOCTYPE order PUBLIC \"-//Orders//DTD Order 1.0//EN\" \"order.dtd\"><order id=\"1\"></order>"))).isTrue();
+        assertThat(stubbed.canonicallyEquals(XmlBody.parse("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>" +
+                "<!DOCTYPE order PUBLIC \"-//Orders//DTD Order 1.0//EN\" \"order.dtd\"><order id=\"1\"/>"))).isFalse();
+        assertThat(stubbed.canonicallyEquals(XmlBody.parse("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>" +
+                "<!DOCTYPE order PUBLIC \"-//Orders//DTD Order 1.0//EN\" \"order.dtd\"><order id=\"1\"/>"))).isFalse();
+        assertThat(stubbed.canonicallyEquals(XmlBody.parse("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                "<!DOCTYPE order PUBLIC \"-//Orders//DTD Order 2.0//EN\" \"order.dtd\"><order id=\"1\"/>"))).isFalse();
+        assertThat(stubbed.canonicallyEquals(XmlBody.parse("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+                "<!DOCTYPE order PUBLIC \"-//Orders//DTD Order 1.0//EN\" \"order-v2.dtd\"><order id=\"1\"/>"))).isFalse();
+    }
+
+    @Test
+    public void shouldEscapeBackslashes_WhenCanonicalizing() throws Exception {
+        final XmlBody stubbed = XmlBody.parse("<order note='C:\\orders\\\"1\"'><item>\\\"Book\\</item></order>");
+
+        assertThat(stubbed.getCanonical()).contains("note=\"C:\\\\orders\\\\\\\"1\\\"\"");
+        assertThat(stubbed.getCanonical()).contains("<item>\"\\\\\\\"Book\\\\\"</item>");
+        assertThat(stubbed.canonicallyEquals(XmlBody.parse("<order note='C:\\orders\\\"1\"'><item>\\\"Book\\</item></order>"))).isTrue();
+        assertThat(stubbed.canonicallyEquals(XmlBody.parse("<order note='C:\\orders\\1'><item>\\\"Book\\</item></order>"))).isFalse();
+    }
+
+    @Test
+    public void shouldDetectPlaceholders() throws Exception {
+        assertThat(XmlBody.parse("<order><id>${xmlunit.matchesRegex(^\\d+$)}</id></order>").hasPlaceholders()).isTrue();
+        assertThat(XmlBody.parse("<order><id>1</id></order>").hasPlaceholders()).isFalse();
+    }
+
+    @Test
+    public void shouldNotParse_WhenBodyIsNotWellFormedXml() throws Exception {
+        assertThat(XmlBody.parse(null).isXml()).isFalse();
+        assertThat(XmlBody.parse("^.*$").isXml()).isFalse();
+        assertThat(XmlBody.parse("<order><id>1</order>").isXml()).isFalse();
+    }
+
+    @Test
+    public void shouldReuseReleasedDocuments() throws Exception {
+        final XmlBody xmlBody = XmlBody.parse("<order><id>1</id></order>");
+
+        final Document first = xmlBody.acquire();
+        final Document second = xmlBody.acquire();
+        assertThat(second).isNotSameInstanceAs(first);
+        assertThat(second.getDocumentElement().getTagName()).isEqualTo("order");
+
+        xmlBody.release(first);
+        assertThat(xmlBody.acquire()).isSameInstanceAs(first);
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.azagniotov.stubby4j.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void shouldBucketEveryValueWithinSixPercent() throws Exception {
+        for (long value = 0; value < TimeUnit.SECONDS.toNanos(10); value = value * 3 / 2 + 1) {
+            final int index = LatencyHistogram.bucketIndex(value);
+            final long upperBound = LatencyHistogram.bucketUpperBound(index);
+
+            assertThat(index).isLessThan(LatencyHistogram.BUCKET_COUNT);
+            assertThat(upperBound).isAtLeast(value);
+            assertThat((double) (upperBound - value)).isAtMost(value * 0.0625);
+        }
+    }
+
+    @Test
+    public void shouldReportPercentiles() throws Exception {
+        final LatencyHistogram latencyHistogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            latencyHistogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+
+        final LatencyHistogram.Snapshot snapshot = latencyHistogram.snapshot();
+        assertThat(snapshot.getCount()).isEqualTo(1000L);
+        assertThat(snapshot.getMaxNanos()).isEqualTo(TimeUnit.MICROSECONDS.toNanos(1000));
+        assertThat(snapshot.getMeanNanos()).isEqualTo(500500L);
+        assertPercentile(snapshot, 50.0, 500);
+        assertPercentile(snapshot, 90.0, 900);
+        assertPercentile(snapshot, 99.0, 990);
+        assertThat(snapshot.getValueAtPercentile(99.9)).isEqualTo(snapshot.getMaxNanos());
+    }
+
+    @Test
+    public void shouldReportIntervalSincePreviousReset_WithoutAffectingCumulativeSnapshot() throws Exception {
+        final LatencyHistogram latencyHistogram = new LatencyHistogram();
+        latencyHistogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+        latencyHistogram.record(TimeUnit.MILLISECONDS.toNanos(7));
+
+        final LatencyHistogram.Snapshot firstInterval = latencyHistogram.snapshotAndReset();
+        assertThat(firstInterval.getCount()).isEqualTo(2L);
+        assertThat(firstInterval.getMaxNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(7));
+
+        latencyHistogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+
+        final LatencyHistogram.Snapshot secondInterval = latencyHistogram.snapshotAndReset();
+        assertThat(secondInterval.getCount()).isEqualTo(1L);
+        assertThat(secondInterval.getSumNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(secondInterval.getMaxNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(1));
+
+        assertThat(latencyHistogram.snapshotAndReset().getCount()).isEqualTo(0L);
+        assertThat(latencyHistogram.snapshot().getCount()).isEqualTo(3L);
+        assertThat(latencyHistogram.snapshot().getMaxNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(7));
+    }
+
+    @Test
+    public void shouldCountValuesAtOrBelow() throws Exception {
+        final LatencyHistogram latencyHistogram = new LatencyHistogram();
+        latencyHistogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+        latencyHistogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+        latencyHistogram.record(TimeUnit.MILLISECONDS.toNanos(100));
+        latencyHistogram.record(Long.MAX_VALUE);
+
+        final LatencyHistogram.Snapshot snapshot = latencyHistogram.snapshot();
+        assertThat(snapshot.getCountAtOrBelow(TimeUnit.MILLISECONDS.toNanos(50))).isEqualTo(2L);
+        assertThat(snapshot.getCountAtOrBelow(TimeUnit.SECONDS.toNanos(1))).isEqualTo(3L);
+        assertThat(snapshot.getCountAtOrBelow(Long.MAX_VALUE)).isEqualTo(4L);
+    }
+
+    private static void assertPercentile(final LatencyHistogram.Snapshot snapshot, final double percentile, final long expectedMicros) {
+        final long expectedNanos = TimeUnit.MICROSECONDS.toNanos(expectedMicros);
+        final long actualNanos = snapshot.getValueAtPercentile(percentile);
+
+        assertThat(actualNanos).isAtLeast(expectedNanos);
+        assertThat((double) (actualNanos - expectedNanos)).isAtMost(expectedNanos * 0.0625);
+    }
+}
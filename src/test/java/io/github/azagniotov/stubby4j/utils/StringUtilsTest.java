@@ -8,9 +8,7 @@ import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.NoSuchElementException;
 
 import static com.google.common.truth.Truth.assertThat;
@@ -261,32 +259,6 @@ public class StringUtilsTest {
         assertThat(escaped).isEqualTo("\\[\\{'key': 'value'\\}, \\{'key': 'value'\\}\\]");
     }
 
-    @Test
-    public void shouldReplaceTokensInATemplateWhenAllTokensPresent() throws Exception {
-
-        final Map<String, String> tokensAndValues = new HashMap<>();
-        tokensAndValues.put("url.1", "cheburashka");
-        tokensAndValues.put("url.2", "JOHN");
-        tokensAndValues.put("url.3", "wendy");
-        tokensAndValues.put("query.1", "KOKO");
-        final String template = "This is a response <% url.1 %> content <%url.2%> that going to be <%query.1    %> returned";
-
-        final String replacedTemplate = StringUtils.replaceTokens(StringUtils.getBytesUtf8(template), tokensAndValues);
-        assertThat(replacedTemplate).isEqualTo("This is a response cheburashka content JOHN that going to be KOKO returned");
-    }
-
-    @Test
-    public void shouldReplaceTokensInATemplateWhenNotAllTokenValuesPresent() throws Exception {
-
-        final Map<String, String> tokensAndValues = new HashMap<String, String>();
-        tokensAndValues.put("url.1", "cheburashka");
-        tokensAndValues.put("url.2", "JOHN");
-        final String template = "This is a response <% url.1 %> content <%url.2%> that going to be <% query.1 %> returned";
-
-        final String replacedTemplate = StringUtils.replaceTokens(StringUtils.getBytesUtf8(template), tokensAndValues);
-        assertThat(replacedTemplate).isEqualTo("This is a response cheburashka content JOHN that going to be <% query.1 %> returned");
-    }
-
     @Test
     public void shouldJoinArrayString() {
         assertThat("").isEqualTo(StringUtils.join(EMPTY_ARRAY_LIST, SEPARATOR));